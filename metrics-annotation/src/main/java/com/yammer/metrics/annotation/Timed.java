@@ -48,4 +48,10 @@ public @interface Timed {
      * The time unit of the timer's duration.
      */
     TimeUnit durationUnit() default TimeUnit.MILLISECONDS;
+
+    /**
+     * The fraction of invocations whose duration is recorded, in {@code (0..1]}. Every invocation
+     * is counted, but only sampled invocations are timed.
+     */
+    double sampleRate() default 1.0;
 }
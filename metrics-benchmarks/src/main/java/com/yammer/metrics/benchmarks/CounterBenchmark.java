@@ -0,0 +1,43 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@link Counter#inc()} against a single shared {@link AtomicLong}, which is what
+ * {@link Counter} used before it was striped. Run with {@link ThreadScaling} to see how each
+ * scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CounterBenchmark {
+    private MetricsRegistry registry;
+    private Counter counter;
+    private final AtomicLong atomicLong = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.counter = registry.newCounter(CounterBenchmark.class, "counter");
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public void inc() {
+        counter.inc();
+    }
+
+    @Benchmark
+    public long atomicLongBaseline() {
+        return atomicLong.incrementAndGet();
+    }
+}
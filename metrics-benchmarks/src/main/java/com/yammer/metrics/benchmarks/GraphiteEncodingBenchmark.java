@@ -0,0 +1,103 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.reporting.GraphiteEncoder;
+import com.yammer.metrics.reporting.PickleEncoder;
+import com.yammer.metrics.reporting.PlaintextEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of encoding a datapoint in each of Graphite's protocols, for a timer's
+ * worth of integral and floating-point values, both from the metric's name and from the cached,
+ * pre-encoded path the reporter uses, and prints the number of bytes each datapoint puts on the
+ * wire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GraphiteEncodingBenchmark {
+    private static final String NAME = "servers.web-042.com.example.service.RequestResource.requests";
+    private static final String[] VALUE_NAMES = {
+            "count", "min", "max", "mean", "stddev", "median", "75percentile", "95percentile",
+            "98percentile", "99percentile", "999percentile", "meanRate", "1MinuteRate",
+            "5MinuteRate", "15MinuteRate"
+    };
+    private static final long TIMESTAMP = 1400000000L;
+
+    @Param({"plaintext", "pickle"})
+    private String protocol;
+
+    private byte[][] paths;
+    private GraphiteEncoder encoder;
+    private ByteBuffer buffer;
+    private int next;
+    private long datapoints;
+    private long bytes;
+
+    @Setup
+    public void setUp() {
+        this.encoder = "pickle".equals(protocol) ? new PickleEncoder() : new PlaintextEncoder();
+        this.buffer = ByteBuffer.allocateDirect(64 * 1024);
+        this.paths = new byte[VALUE_NAMES.length][];
+        for (int i = 0; i < VALUE_NAMES.length; i++) {
+            paths[i] = (NAME + '.' + VALUE_NAMES[i]).getBytes(Charset.forName("UTF-8"));
+        }
+        encoder.begin(buffer);
+    }
+
+    @TearDown
+    public void tearDown() {
+        sendBatch();
+        System.out.printf("%n%s: %.1f bytes per datapoint%n", protocol, (double) bytes / datapoints);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeLong() {
+        final String valueName = nextValueName();
+        reserve(valueName);
+        encoder.encode(buffer, NAME, valueName, 1234567L + next, TIMESTAMP);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDouble() {
+        final String valueName = nextValueName();
+        reserve(valueName);
+        encoder.encode(buffer, NAME, valueName, 12.3456789 * next, TIMESTAMP);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDoublePath() {
+        nextValueName();
+        final byte[] path = paths[next];
+        if (buffer.remaining() < encoder.maxLength(path)) {
+            sendBatch();
+            encoder.begin(buffer);
+        }
+        encoder.encode(buffer, path, 12.3456789 * next, TIMESTAMP);
+        return buffer;
+    }
+
+    private String nextValueName() {
+        datapoints++;
+        next = (next + 1) % VALUE_NAMES.length;
+        return VALUE_NAMES[next];
+    }
+
+    private void reserve(String valueName) {
+        if (buffer.remaining() < encoder.maxLength(NAME, valueName)) {
+            sendBatch();
+            encoder.begin(buffer);
+        }
+    }
+
+    private void sendBatch() {
+        encoder.finish(buffer);
+        bytes += buffer.position();
+        buffer.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Histogram.SampleType;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Histogram#update(long)} for each sample type. Run with {@link ThreadScaling} to
+ * see how it scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HistogramBenchmark {
+    @Param({"UNIFORM", "BIASED", "STRIPED_BIASED", "LOG_LINEAR", "SLIDING_TIME_WINDOW",
+            "INTERVAL"})
+    private SampleType sampleType;
+
+    private MetricsRegistry registry;
+    private Histogram histogram;
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.histogram = registry.newHistogram(HistogramBenchmark.class, "histogram", null,
+                                               sampleType);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public void update() {
+        histogram.update(ThreadLocalRandom.current().nextLong(1000000));
+    }
+}
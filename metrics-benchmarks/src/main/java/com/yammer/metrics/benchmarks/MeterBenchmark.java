@@ -0,0 +1,35 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Meter#mark()}. Run with {@link ThreadScaling} to see how it scales with the
+ * number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MeterBenchmark {
+    private MetricsRegistry registry;
+    private Meter meter;
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.meter = registry.newMeter(MeterBenchmark.class, "meter", "events", TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public void mark() {
+        meter.mark();
+    }
+}
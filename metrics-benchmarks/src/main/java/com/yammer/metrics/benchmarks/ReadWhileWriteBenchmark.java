@@ -0,0 +1,52 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Histogram.SampleType;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.stats.Snapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a reporter taking snapshots of a histogram while 32 threads update it, and how much
+ * the snapshots slow the updates down.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReadWhileWriteBenchmark {
+    @Param({"UNIFORM", "BIASED", "STRIPED_BIASED", "LOG_LINEAR", "SLIDING_TIME_WINDOW",
+            "INTERVAL"})
+    private SampleType sampleType;
+
+    private MetricsRegistry registry;
+    private Histogram histogram;
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.histogram = registry.newHistogram(ReadWhileWriteBenchmark.class, "histogram", null,
+                                               sampleType);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    @Group("histogram")
+    @GroupThreads(32)
+    public void write() {
+        histogram.update(ThreadLocalRandom.current().nextLong(1000000));
+    }
+
+    @Benchmark
+    @Group("histogram")
+    @GroupThreads(1)
+    public Snapshot read() {
+        return histogram.getSnapshot();
+    }
+}
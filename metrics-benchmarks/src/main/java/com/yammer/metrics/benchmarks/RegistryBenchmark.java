@@ -0,0 +1,44 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up an existing metric by name, which is what code that calls
+ * {@code newCounter} and friends on every use pays.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegistryBenchmark {
+    @Param({"1", "1000"})
+    private int metricCount;
+
+    private MetricsRegistry registry;
+    private MetricName[] names;
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.names = new MetricName[metricCount];
+        for (int i = 0; i < metricCount; i++) {
+            names[i] = new MetricName(RegistryBenchmark.class, "counter-" + i);
+            registry.newCounter(names[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public Counter getExisting() {
+        return registry.newCounter(names[ThreadLocalRandom.current().nextInt(metricCount)]);
+    }
+}
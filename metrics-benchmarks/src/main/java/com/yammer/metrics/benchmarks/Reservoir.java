@@ -0,0 +1,64 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.stats.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Sample} implementations, so that benchmarks can be parameterized by reservoir type
+ * and size.
+ */
+public enum Reservoir {
+    UNIFORM {
+        @Override
+        Sample newSample(int size) {
+            return new UniformSample(size);
+        }
+    },
+
+    EXPONENTIALLY_DECAYING {
+        @Override
+        Sample newSample(int size) {
+            return new ExponentiallyDecayingSample(size, ALPHA);
+        }
+    },
+
+    STRIPED_EXPONENTIALLY_DECAYING {
+        @Override
+        Sample newSample(int size) {
+            return new StripedExponentiallyDecayingSample(size, ALPHA);
+        }
+    },
+
+    /**
+     * Ignores the size; the sample has a fixed number of buckets.
+     */
+    LOG_LINEAR {
+        @Override
+        Sample newSample(int size) {
+            return new LogLinearSample();
+        }
+    },
+
+    SLIDING_TIME_WINDOW {
+        @Override
+        Sample newSample(int size) {
+            return new SlidingTimeWindowSample(60, TimeUnit.SECONDS, size, Clock.defaultClock());
+        }
+    },
+
+    /**
+     * Ignores the size; the sample has a fixed number of buckets.
+     */
+    INTERVAL {
+        @Override
+        Sample newSample(int size) {
+            return new IntervalSample();
+        }
+    };
+
+    private static final double ALPHA = 0.015;
+
+    abstract Sample newSample(int size);
+}
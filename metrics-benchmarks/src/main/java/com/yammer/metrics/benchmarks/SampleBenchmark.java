@@ -0,0 +1,44 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.stats.Sample;
+import com.yammer.metrics.stats.Snapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Sample#update(long)} and {@link Sample#getSnapshot()} for each reservoir type
+ * and size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SampleBenchmark {
+    @Param({"UNIFORM", "EXPONENTIALLY_DECAYING", "STRIPED_EXPONENTIALLY_DECAYING", "LOG_LINEAR",
+            "SLIDING_TIME_WINDOW", "INTERVAL"})
+    private Reservoir reservoir;
+
+    @Param({"1028", "8192"})
+    private int size;
+
+    private Sample sample;
+
+    @Setup
+    public void setUp() {
+        this.sample = reservoir.newSample(size);
+        for (int i = 0; i < size * 2; i++) {
+            sample.update(ThreadLocalRandom.current().nextLong(1000000));
+        }
+    }
+
+    @Benchmark
+    public void update() {
+        sample.update(ThreadLocalRandom.current().nextLong(1000000));
+    }
+
+    @Benchmark
+    public Snapshot getSnapshot() {
+        return sample.getSnapshot();
+    }
+}
@@ -0,0 +1,40 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.stats.Snapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a {@link Snapshot} from a sample's values, and reading quantiles from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotBenchmark {
+    @Param({"1028", "8192", "65536"})
+    private int size;
+
+    private double[] values;
+    private Snapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        this.values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = ThreadLocalRandom.current().nextLong(1000000);
+        }
+        this.snapshot = new Snapshot(values);
+    }
+
+    @Benchmark
+    public Snapshot construct() {
+        return new Snapshot(values);
+    }
+
+    @Benchmark
+    public double quantile() {
+        return snapshot.get99thPercentile();
+    }
+}
@@ -0,0 +1,80 @@
+package com.yammer.metrics.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs the benchmarks matching a pattern once for each power-of-two thread count from one up to
+ * the number of available processors, then prints each benchmark's throughput per thread count.
+ * If {@code gc} is given, each run is also profiled with JMH's GC profiler and the number of bytes
+ * allocated per operation is printed alongside the throughput; every hot path should show zero.
+ * <p/>
+ * Usage: {@code java -cp benchmarks.jar com.yammer.metrics.benchmarks.ThreadScaling [pattern] [gc]}
+ * <p/>
+ * Group benchmarks such as {@link ReadWhileWriteBenchmark} always run with at least their own
+ * number of threads.
+ */
+public final class ThreadScaling {
+    private static final String ALLOCATION_RATE = "\u00b7gc.alloc.rate.norm";
+
+    private ThreadScaling() { /* unused */ }
+
+    public static void main(String[] args) throws RunnerException {
+        final String pattern = (args.length > 0) ? args[0] : ".*Benchmark.*";
+        final boolean profileGc = args.length > 1 && "gc".equals(args[1]);
+        final int cores = Runtime.getRuntime().availableProcessors();
+
+        final List<String> lines = new ArrayList<String>();
+        for (int threads = 1; ; threads <<= 1) {
+            final int count = Math.min(threads, cores);
+            final ChainedOptionsBuilder options = new OptionsBuilder().include(pattern)
+                                                                      .threads(count)
+                                                                      .forks(1);
+            if (profileGc) {
+                options.addProfiler(GCProfiler.class);
+            }
+            final Collection<RunResult> results = new Runner(options.build()).run();
+            for (RunResult result : results) {
+                final StringBuilder line = new StringBuilder();
+                line.append(String.format("%3d  %-70s %16.3f %s",
+                                          count,
+                                          result.getParams().getBenchmark() + params(result),
+                                          result.getPrimaryResult().getScore(),
+                                          result.getPrimaryResult().getScoreUnit()));
+                final Result allocation = result.getSecondaryResults().get(ALLOCATION_RATE);
+                if (allocation != null) {
+                    line.append(String.format("  %10.1f %s",
+                                              allocation.getScore(),
+                                              allocation.getScoreUnit()));
+                }
+                lines.add(line.toString());
+            }
+            if (count >= cores) {
+                break;
+            }
+        }
+
+        System.out.println();
+        System.out.println("threads  benchmark / score");
+        for (String line : lines) {
+            System.out.println(line);
+        }
+    }
+
+    private static String params(RunResult result) {
+        final StringBuilder params = new StringBuilder();
+        for (String key : result.getParams().getParamsKeys()) {
+            params.append(':').append(result.getParams().getParam(key));
+        }
+        return params.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.history.TimeSeriesStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of appending a datapoint to a {@link TimeSeriesStore}, as a reporter does on
+ * each poll: one datapoint for each of a few thousand series, all with the same timestamp, with
+ * values which mostly change a little from one poll to the next.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimeSeriesStoreBenchmark {
+    private static final int SERIES = 5000;
+
+    private File directory;
+    private TimeSeriesStore store;
+    private int[] ids;
+    private double[] values;
+    private Random random;
+    private int next;
+    private long timestamp;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.directory = File.createTempFile("metrics-history", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.store = new TimeSeriesStore(directory);
+        this.ids = new int[SERIES];
+        this.values = new double[SERIES];
+        this.random = new Random(42);
+        for (int i = 0; i < SERIES; i++) {
+            ids[i] = store.seriesId("com.example.service.Resource" + (i / 16) + ".requests.value" + i % 16);
+            values[i] = random.nextInt(1000);
+        }
+        this.timestamp = 1400000000L;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        delete(directory);
+    }
+
+    @Benchmark
+    public TimeSeriesStore append() throws IOException {
+        if (++next == SERIES) {
+            next = 0;
+            timestamp += 10;
+        }
+        if ((next & 3) == 0) {
+            values[next] += random.nextGaussian();
+        }
+        store.append(ids[next], timestamp, values[next]);
+        return store;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.Histogram.SampleType;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording a duration with {@link Timer#update(long, TimeUnit)}, and timing an event
+ * with a {@link TimerContext} or with {@link Timer#start()} and {@link Timer#stop(long)}, for each
+ * sample type, both for every call and for a timer which samples one call in a hundred. Run with {@link ThreadScaling} to see how each scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimerBenchmark {
+    @Param({"UNIFORM", "BIASED", "STRIPED_BIASED", "LOG_LINEAR", "SLIDING_TIME_WINDOW",
+            "INTERVAL"})
+    private SampleType sampleType;
+
+    private MetricsRegistry registry;
+    private Timer timer;
+    private Timer sampledTimer;
+
+    @Setup
+    public void setUp() {
+        this.registry = new MetricsRegistry();
+        this.timer = registry.newTimer(TimerBenchmark.class, "timer", null,
+                                       TimeUnit.MILLISECONDS, TimeUnit.SECONDS, sampleType);
+        this.sampledTimer = registry.newTimer(TimerBenchmark.class, "sampled", null,
+                                              TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0.01);
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.shutdown();
+    }
+
+    @Benchmark
+    public void update() {
+        timer.update(ThreadLocalRandom.current().nextLong(1000000), TimeUnit.NANOSECONDS);
+    }
+
+    @Benchmark
+    public void timeContext() {
+        final TimerContext context = timer.time();
+        context.stop();
+    }
+
+    @Benchmark
+    public long startStop() {
+        return timer.stop(timer.start());
+    }
+
+    @Benchmark
+    public long sampledStartStop() {
+        return sampledTimer.stop(sampledTimer.start());
+    }
+}
@@ -1,7 +1,9 @@
 package com.yammer.metrics;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.core.Histogram.SampleType;
 import com.yammer.metrics.reporting.JmxReporter;
+import com.yammer.metrics.stats.Sample;
 
 import java.util.concurrent.TimeUnit;
 
@@ -191,6 +193,32 @@ public class Metrics {
         return newHistogram(metricName, false);
     }
 
+    /**
+     * Creates a new {@link com.yammer.metrics.core.Histogram} with the given sample type and
+     * registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should use
+     * @return a new {@link com.yammer.metrics.core.Histogram}
+     */
+    public static Histogram newHistogram(MetricName metricName,
+                                         SampleType sampleType) {
+        return DEFAULT_REGISTRY.newHistogram(metricName, sampleType);
+    }
+
+    /**
+     * Creates a new {@link com.yammer.metrics.core.Histogram} backed by the given sample and
+     * registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sample     the sample the histogram should use
+     * @return a new {@link com.yammer.metrics.core.Histogram}
+     */
+    public static Histogram newHistogram(MetricName metricName,
+                                         Sample sample) {
+        return DEFAULT_REGISTRY.newHistogram(metricName, sample);
+    }
+
     /**
      * Creates a new {@link com.yammer.metrics.core.Meter} and registers it under the given class
      * and name.
@@ -324,6 +352,57 @@ public class Metrics {
         return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit);
     }
 
+    /**
+     * Creates a new {@link com.yammer.metrics.core.Timer} which records durations with the given
+     * sample type and registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer should use for its durations
+     * @return a new {@link com.yammer.metrics.core.Timer}
+     */
+    public static Timer newTimer(MetricName metricName,
+                                 TimeUnit durationUnit,
+                                 TimeUnit rateUnit,
+                                 SampleType sampleType) {
+        return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit, sampleType);
+    }
+
+    /**
+     * Creates a new {@link com.yammer.metrics.core.Timer} which records durations into the given
+     * sample and registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sample       the sample the timer should record durations into
+     * @return a new {@link com.yammer.metrics.core.Timer}
+     */
+    public static Timer newTimer(MetricName metricName,
+                                 TimeUnit durationUnit,
+                                 TimeUnit rateUnit,
+                                 Sample sample) {
+        return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit, sample);
+    }
+
+    /**
+     * Creates a new {@link com.yammer.metrics.core.Timer} which only times a fraction of its calls
+     * and registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleRate   the fraction of calls to time, in {@code (0..1]}
+     * @return a new {@link com.yammer.metrics.core.Timer}
+     */
+    public static Timer newTimer(MetricName metricName,
+                                 TimeUnit durationUnit,
+                                 TimeUnit rateUnit,
+                                 double sampleRate) {
+        return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit, sampleRate);
+    }
+
     /**
      * Returns the (static) default registry.
      *
@@ -0,0 +1,47 @@
+package com.yammer.metrics.core;
+
+/**
+ * Decides which calls a sampled {@link Timer} should time. Each call is chosen independently with a
+ * fixed probability, using a per-thread xorshift generator, so that the decision neither allocates
+ * nor touches any state shared between threads.
+ */
+final class CallSampler {
+    private static final double RANGE = 1L << 31;
+
+    private static final ThreadLocal<int[]> SEED = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            final int seed = (int) (Thread.currentThread().getId() * 0x9E3779B9L) ^ (int) System.nanoTime();
+            return new int[]{ (seed == 0) ? 1 : seed };
+        }
+    };
+
+    private final long threshold;
+
+    /**
+     * Creates a new {@link CallSampler}.
+     *
+     * @param rate the fraction of calls to sample, in {@code (0..1]}
+     */
+    CallSampler(double rate) {
+        if (!(rate > 0.0 && rate <= 1.0)) {
+            throw new IllegalArgumentException(rate + " is not in (0..1]");
+        }
+        this.threshold = (long) Math.ceil(rate * RANGE);
+    }
+
+    /**
+     * Returns whether or not the current call should be sampled.
+     *
+     * @return {@code true} if the current call should be sampled
+     */
+    boolean sample() {
+        final int[] holder = SEED.get();
+        int x = holder[0];
+        x ^= x << 13;   // xorshift
+        x ^= x >>> 17;
+        x ^= x << 5;
+        holder[0] = x;
+        return (x & Integer.MAX_VALUE) < threshold;
+    }
+}
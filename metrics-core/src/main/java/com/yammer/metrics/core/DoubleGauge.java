@@ -0,0 +1,24 @@
+package com.yammer.metrics.core;
+
+/**
+ * A gauge whose value is a {@code double}. Reporters read it with {@link #doubleValue()}, so
+ * reporting it never boxes the value or inspects its type.
+ */
+public abstract class DoubleGauge extends Gauge<Double> {
+    /**
+     * Returns the metric's current value.
+     *
+     * @return the metric's current value
+     */
+    public abstract double doubleValue();
+
+    /**
+     * Returns the metric's current value, boxed.
+     *
+     * @return the metric's current value
+     */
+    @Override
+    public Double value() {
+        return doubleValue();
+    }
+}
@@ -1,17 +1,23 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.stats.ExponentiallyDecayingSample;
+import com.yammer.metrics.stats.IntervalSample;
+import com.yammer.metrics.stats.LogLinearSample;
 import com.yammer.metrics.stats.Sample;
+import com.yammer.metrics.stats.SlidingTimeWindowSample;
 import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.stats.StripedExponentiallyDecayingSample;
+import com.yammer.metrics.stats.StripedSummary;
 import com.yammer.metrics.stats.UniformSample;
 
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.Math.sqrt;
 
 /**
- * A metric which calculates the distribution of a value.
+ * A metric which calculates the distribution of a value. Counts, sums, extremes, and variance are
+ * kept in a {@link StripedSummary}, so recording a value allocates nothing and scales with the
+ * number of updating threads.
  *
  * @see <a href="http://www.johndcook.com/standard_deviation.html">Accurately computing running
  *      variance</a>
@@ -19,11 +25,13 @@ import static java.lang.Math.sqrt;
 public class Histogram implements Metric, Sampling, Summarizable {
     private static final int DEFAULT_SAMPLE_SIZE = 1028;
     private static final double DEFAULT_ALPHA = 0.015;
+    private static final long DEFAULT_WINDOW_SECONDS = 60;
+    private static final int DEFAULT_WINDOW_CAPACITY = 2048;
 
     /**
      * The type of sampling the histogram should be performing.
      */
-    enum SampleType {
+    public enum SampleType {
         /**
          * Uses a uniform sample of 1028 elements, which offers a 99.9% confidence level with a 5%
          * margin of error assuming a normal distribution.
@@ -45,20 +53,81 @@ public class Histogram implements Metric, Sampling, Summarizable {
             public Sample newSample() {
                 return new ExponentiallyDecayingSample(DEFAULT_SAMPLE_SIZE, DEFAULT_ALPHA);
             }
+        },
+
+        /**
+         * Uses the same exponentially decaying sample as {@link #BIASED}, but records into
+         * per-thread stripes which are only merged when a snapshot is taken, so that updates from
+         * many threads never contend on a shared lock.
+         */
+        STRIPED_BIASED {
+            @Override
+            public Sample newSample() {
+                return new StripedExponentiallyDecayingSample(DEFAULT_SAMPLE_SIZE, DEFAULT_ALPHA);
+            }
+        },
+
+        /**
+         * Records every value into log-linear buckets with two significant digits of precision,
+         * which gives accurate extreme quantiles for any number of values in a fixed amount of
+         * memory.
+         */
+        LOG_LINEAR {
+            @Override
+            public Sample newSample() {
+                return new LogLinearSample();
+            }
+        },
+
+        /**
+         * Uses a sample of the values recorded in the last 60 seconds, holding up to 2048 values.
+         * If more values arrive within the window, the oldest are overwritten first.
+         */
+        SLIDING_TIME_WINDOW {
+            @Override
+            public Sample newSample() {
+                return newSample(Clock.defaultClock());
+            }
+
+            @Override
+            public Sample newSample(Clock clock) {
+                return new SlidingTimeWindowSample(DEFAULT_WINDOW_SECONDS, TimeUnit.SECONDS,
+                                                   DEFAULT_WINDOW_CAPACITY, clock);
+            }
+        },
+
+        /**
+         * Records every value since the last snapshot into log-linear buckets with two significant
+         * digits of precision, and resets when a snapshot is taken, so that each snapshot is an
+         * {@link com.yammer.metrics.stats.IntervalSnapshot} with the exact count, extremes, mean,
+         * and quantiles of one reporting interval. Snapshots which reset the histogram should only
+         * be taken through {@link MetricsRegistry#snapshot()}, which shares each interval among
+         * the registry's polling reporters; {@link Histogram#peekSnapshot()} and
+         * {@link MetricsRegistry#peekSnapshot()} return the last completed interval instead.
+         */
+        INTERVAL {
+            @Override
+            public Sample newSample() {
+                return new IntervalSample();
+            }
         };
 
         public abstract Sample newSample();
+
+        /**
+         * Returns a new sample of this type which, if it is time-based, is driven by the given
+         * clock.
+         *
+         * @param clock the clock of the registry creating the sample
+         * @return a new sample
+         */
+        public Sample newSample(Clock clock) {
+            return newSample();
+        }
     }
 
     private final Sample sample;
-    private final AtomicLong min = new AtomicLong();
-    private final AtomicLong max = new AtomicLong();
-    private final AtomicLong sum = new AtomicLong();
-    // These are for the Welford algorithm for calculating running variance
-    // without floating-point doom.
-    private final AtomicReference<double[]> variance =
-            new AtomicReference<double[]>(new double[]{-1, 0}); // M, S
-    private final AtomicLong count = new AtomicLong();
+    private final StripedSummary summary = new StripedSummary();
 
     /**
      * Creates a new {@link Histogram} with the given sample type.
@@ -84,11 +153,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
      */
     public void clear() {
         sample.clear();
-        count.set(0);
-        max.set(Long.MIN_VALUE);
-        min.set(Long.MAX_VALUE);
-        sum.set(0);
-        variance.set(new double[]{-1, 0});
+        summary.clear();
     }
 
     /**
@@ -106,12 +171,8 @@ public class Histogram implements Metric, Sampling, Summarizable {
      * @param value the length of the value
      */
     public void update(long value) {
-        count.incrementAndGet();
+        summary.update(value);
         sample.update(value);
-        setMax(value);
-        setMin(value);
-        sum.getAndAdd(value);
-        updateVariance(value);
     }
 
     /**
@@ -120,7 +181,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
      * @return the number of values recorded
      */
     public long count() {
-        return count.get();
+        return summary.count();
     }
 
     /* (non-Javadoc)
@@ -129,7 +190,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
     @Override
     public double max() {
         if (count() > 0) {
-            return max.get();
+            return summary.max();
         }
         return 0.0;
     }
@@ -140,7 +201,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
     @Override
     public double min() {
         if (count() > 0) {
-            return min.get();
+            return summary.min();
         }
         return 0.0;
     }
@@ -150,8 +211,9 @@ public class Histogram implements Metric, Sampling, Summarizable {
      */
     @Override
     public double mean() {
-        if (count() > 0) {
-            return sum.get() / (double) count();
+        final long count = count();
+        if (count > 0) {
+            return summary.sum() / (double) count;
         }
         return 0.0;
     }
@@ -162,7 +224,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
     @Override
     public double stdDev() {
         if (count() > 0) {
-            return sqrt(variance());
+            return sqrt(summary.variance());
         }
         return 0.0;
     }
@@ -172,7 +234,7 @@ public class Histogram implements Metric, Sampling, Summarizable {
      */
     @Override
     public double sum() {
-        return (double) sum.get();
+        return (double) summary.sum();
     }
 
     @Override
@@ -180,50 +242,18 @@ public class Histogram implements Metric, Sampling, Summarizable {
         return sample.getSnapshot();
     }
 
-    private double variance() {
-        if (count() <= 1) {
-            return 0.0;
-        }
-        return variance.get()[1] / (count() - 1);
-    }
-
-    private void setMax(long potentialMax) {
-        boolean done = false;
-        while (!done) {
-            final long currentMax = max.get();
-            done = currentMax >= potentialMax || max.compareAndSet(currentMax, potentialMax);
-        }
-    }
-
-    private void setMin(long potentialMin) {
-        boolean done = false;
-        while (!done) {
-            final long currentMin = min.get();
-            done = currentMin <= potentialMin || min.compareAndSet(currentMin, potentialMin);
-        }
-    }
-
-    private void updateVariance(long value) {
-        while (true) {
-            final double[] oldValues = variance.get();
-            final double[] newValues = new double[2];
-            if (oldValues[0] == -1) {
-                newValues[0] = value;
-                newValues[1] = 0;
-            } else {
-                final double oldM = oldValues[0];
-                final double oldS = oldValues[1];
-
-                final double newM = oldM + ((value - oldM) / count());
-                final double newS = oldS + ((value - oldM) * (value - newM));
-
-                newValues[0] = newM;
-                newValues[1] = newS;
-            }
-            if (variance.compareAndSet(oldValues, newValues)) {
-                return;
-            }
+    /**
+     * Returns a snapshot of the values without starting a new interval. For an
+     * {@link SampleType#INTERVAL} histogram this is the snapshot of the last completed interval;
+     * for every other type it is the same as {@link #getSnapshot()}.
+     *
+     * @return a snapshot of the values
+     */
+    public Snapshot peekSnapshot() {
+        if (sample instanceof IntervalSample) {
+            return ((IntervalSample) sample).getLastSnapshot();
         }
+        return sample.getSnapshot();
     }
 
     @Override
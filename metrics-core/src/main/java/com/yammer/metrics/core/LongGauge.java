@@ -0,0 +1,32 @@
+package com.yammer.metrics.core;
+
+/**
+ * A gauge whose value is a {@code long}. Reporters read it with {@link #longValue()}, so reporting
+ * it never boxes the value or inspects its type:<br>
+ * <pre><code>
+ * final Queue&lt;String&gt; queue = new ConcurrentLinkedQueue&lt;String&gt;();
+ * final LongGauge queueDepth = new LongGauge() {
+ *     public long longValue() {
+ *         return queue.size();
+ *     }
+ * };
+ * </code></pre>
+ */
+public abstract class LongGauge extends Gauge<Long> {
+    /**
+     * Returns the metric's current value.
+     *
+     * @return the metric's current value
+     */
+    public abstract long longValue();
+
+    /**
+     * Returns the metric's current value, boxed.
+     *
+     * @return the metric's current value
+     */
+    @Override
+    public Long value() {
+        return longValue();
+    }
+}
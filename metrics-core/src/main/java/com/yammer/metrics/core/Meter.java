@@ -1,52 +1,60 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.stats.EWMA;
+import com.yammer.metrics.stats.LongAdder;
 
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A meter metric which measures mean throughput and one-, five-, and fifteen-minute
  * exponentially-weighted moving average throughputs.
+ * <p/>
+ * Marking an event is a single striped addition; the moving averages are brought up to date from
+ * the difference in the total count each time the meter ticks.
+ * <p/>
+ * A meter is either ticked every five seconds by its registry's {@link MeterTicker}, or ticked
+ * lazily: a lazily-ticked meter has no background work at all, and instead catches up on however
+ * many intervals have elapsed the next time it is marked or its rates are read. Both produce the
+ * same rates, but an idle lazily-ticked meter costs nothing.
  *
  * @see <a href="http://en.wikipedia.org/wiki/Moving_average#Exponential_moving_average">EMA</a>
  */
 public class Meter implements Metered, Stoppable {
-    private static final long INTERVAL = 5; // seconds
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
 
     private final EWMA m1Rate = EWMA.oneMinuteEWMA();
     private final EWMA m5Rate = EWMA.fiveMinuteEWMA();
     private final EWMA m15Rate = EWMA.fifteenMinuteEWMA();
 
-    private final AtomicLong count = new AtomicLong();
+    private final LongAdder count = new LongAdder();
+    private long lastTickCount;
     private final long startTime;
     private final TimeUnit rateUnit;
     private final String eventType;
-    private final ScheduledFuture<?> future;
+    private final MeterTicker ticker;
+    private final int tickerSlot;
     private final Clock clock;
+    private final AtomicLong lastTick;
 
     /**
      * Creates a new {@link Meter}.
      *
-     * @param tickThread background thread for updating the rates
-     * @param eventType  the plural name of the event the meter is measuring (e.g., {@code
-     *                   "requests"})
-     * @param rateUnit   the rate unit of the new meter
-     * @param clock      the clock to use for the meter ticks
+     * @param ticker    the registry's ticker, which updates the rates in the background, or
+     *                  {@code null} if the meter should be ticked lazily
+     * @param eventType the plural name of the event the meter is measuring (e.g., {@code
+     *                  "requests"})
+     * @param rateUnit  the rate unit of the new meter
+     * @param clock     the clock to use for the meter ticks
      */
-    Meter(ScheduledExecutorService tickThread, String eventType, TimeUnit rateUnit, Clock clock) {
+    Meter(MeterTicker ticker, String eventType, TimeUnit rateUnit, Clock clock) {
         this.rateUnit = rateUnit;
         this.eventType = eventType;
-        this.future = tickThread.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                tick();
-            }
-        }, INTERVAL, INTERVAL, TimeUnit.SECONDS);
         this.clock = clock;
         this.startTime = this.clock.tick();
+        this.lastTick = new AtomicLong(startTime);
+        this.ticker = ticker;
+        this.tickerSlot = (ticker == null) ? -1 : ticker.register(this);
     }
 
     @Override
@@ -63,9 +71,42 @@ public class Meter implements Metered, Stoppable {
      * Updates the moving averages.
      */
     void tick() {
-        m1Rate.tick();
-        m5Rate.tick();
-        m15Rate.tick();
+        tick(1);
+    }
+
+    /**
+     * Updates the moving averages for the given number of elapsed intervals, all but the first of
+     * which are treated as having seen no events.
+     *
+     * @param intervals the number of elapsed intervals
+     */
+    private synchronized void tick(long intervals) {
+        final long current = count.sum();
+        final long uncounted = current - lastTickCount;
+        this.lastTickCount = current;
+        m1Rate.update(uncounted);
+        m5Rate.update(uncounted);
+        m15Rate.update(uncounted);
+        m1Rate.tick(intervals);
+        m5Rate.tick(intervals);
+        m15Rate.tick(intervals);
+    }
+
+    /**
+     * If the meter is ticked lazily, applies any intervals which have elapsed since it was last
+     * ticked. Only the thread which advances the start of the current interval does the work.
+     */
+    private void tickIfNecessary() {
+        if (ticker == null) {
+            final long oldTick = lastTick.get();
+            final long age = clock.tick() - oldTick;
+            if (age >= TICK_INTERVAL) {
+                final long intervals = age / TICK_INTERVAL;
+                if (lastTick.compareAndSet(oldTick, oldTick + intervals * TICK_INTERVAL)) {
+                    tick(intervals);
+                }
+            }
+        }
     }
 
     /**
@@ -81,24 +122,24 @@ public class Meter implements Metered, Stoppable {
      * @param n the number of events
      */
     public void mark(long n) {
-        count.addAndGet(n);
-        m1Rate.update(n);
-        m5Rate.update(n);
-        m15Rate.update(n);
+        tickIfNecessary();
+        count.add(n);
     }
 
     @Override
     public long count() {
-        return count.get();
+        return count.sum();
     }
 
     @Override
     public double fifteenMinuteRate() {
+        tickIfNecessary();
         return m15Rate.rate(rateUnit);
     }
 
     @Override
     public double fiveMinuteRate() {
+        tickIfNecessary();
         return m5Rate.rate(rateUnit);
     }
 
@@ -114,6 +155,7 @@ public class Meter implements Metered, Stoppable {
 
     @Override
     public double oneMinuteRate() {
+        tickIfNecessary();
         return m1Rate.rate(rateUnit);
     }
 
@@ -123,7 +165,9 @@ public class Meter implements Metered, Stoppable {
 
     @Override
     public void stop() {
-        future.cancel(false);
+        if (ticker != null) {
+            ticker.unregister(tickerSlot, this);
+        }
     }
 
     @Override
@@ -0,0 +1,98 @@
+package com.yammer.metrics.core;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ticks every {@link Meter} in a registry from a single scheduled task, rather than scheduling a
+ * task per meter. Meters occupy slots in a compact array; a stopped meter's slot is cleared and
+ * reused by the next meter, so registering and unregistering are both constant-time and leave
+ * nothing behind in the scheduler's queue.
+ */
+class MeterTicker implements Runnable {
+    private static final long INTERVAL = 5; // seconds
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<Meter> slots =
+            new AtomicReferenceArray<Meter>(INITIAL_CAPACITY);
+    private int highWaterMark;
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> scheduled;
+
+    /**
+     * Schedules this ticker on the given executor, unless it is already scheduled on it. If it was
+     * scheduled on another executor, that task is cancelled so the meters are only ticked once.
+     *
+     * @param tickThread the executor which should tick the registered meters
+     * @return {@code this}
+     */
+    synchronized MeterTicker startOn(ScheduledExecutorService tickThread) {
+        if (executor != tickThread) {
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            this.executor = tickThread;
+            this.scheduled = tickThread.scheduleAtFixedRate(this, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a meter to the set of meters which are ticked.
+     *
+     * @param meter the meter
+     * @return the slot the meter occupies, to be passed to {@link #unregister(int, Meter)}
+     */
+    synchronized int register(Meter meter) {
+        final int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWaterMark == slots.length()) {
+                final AtomicReferenceArray<Meter> grown =
+                        new AtomicReferenceArray<Meter>(slots.length() * 2);
+                for (int i = 0; i < highWaterMark; i++) {
+                    grown.set(i, slots.get(i));
+                }
+                this.slots = grown;
+            }
+            slot = highWaterMark++;
+        }
+        slots.set(slot, meter);
+        return slot;
+    }
+
+    /**
+     * Removes a meter from the set of meters which are ticked. Does nothing if the meter no longer
+     * occupies the given slot.
+     *
+     * @param slot  the slot returned by {@link #register(Meter)}
+     * @param meter the meter
+     */
+    synchronized void unregister(int slot, Meter meter) {
+        if (slots.get(slot) == meter) {
+            slots.set(slot, null);
+            if (freeCount == freeSlots.length) {
+                final int[] grown = new int[freeSlots.length * 2];
+                System.arraycopy(freeSlots, 0, grown, 0, freeCount);
+                this.freeSlots = grown;
+            }
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    @Override
+    public void run() {
+        final AtomicReferenceArray<Meter> current = slots;
+        for (int i = 0; i < current.length(); i++) {
+            final Meter meter = current.get(i);
+            if (meter != null) {
+                meter.tick();
+            }
+        }
+    }
+}
@@ -47,7 +47,9 @@ public interface MetricProcessor<T> {
     void processTimer(MetricName name, Timer timer, T context) throws Exception;
 
     /**
-     * Process the given gauge.
+     * Process the given gauge. Numeric gauges which are {@link LongGauge}s or {@link DoubleGauge}s
+     * should be read with {@link LongGauge#longValue()} or {@link DoubleGauge#doubleValue()}, which
+     * neither box the value nor require its type to be inspected.
      *
      * @param name       the name of the gauge
      * @param gauge      the gauge
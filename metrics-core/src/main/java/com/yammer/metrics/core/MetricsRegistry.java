@@ -1,19 +1,31 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.core.Histogram.SampleType;
+import com.yammer.metrics.stats.Sample;
 
+import java.lang.ref.SoftReference;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A registry of metric instances.
  */
 public class MetricsRegistry {
     private static final int EXPECTED_METRIC_COUNT = 1024;
+    private static final long DEFAULT_SNAPSHOT_TTL = TimeUnit.SECONDS.toNanos(1);
     private final Clock clock;
     private final ConcurrentMap<MetricName, Metric> metrics;
     private final ThreadPools threadPools;
     private final List<MetricsRegistryListener> listeners;
+    private final MeterTicker meterTicker;
+    private final boolean lazyTicking;
+    private volatile long snapshotTtl = DEFAULT_SNAPSHOT_TTL;
+    // held softly, so an expired snapshot doesn't pin its metrics' values until the next poll
+    private final AtomicReference<SoftReference<RegistrySnapshot>> registrySnapshot =
+            new AtomicReference<SoftReference<RegistrySnapshot>>();
+    private final AtomicReference<SoftReference<RegistrySnapshot>> peekedSnapshot =
+            new AtomicReference<SoftReference<RegistrySnapshot>>();
 
     /**
      * Creates a new {@link MetricsRegistry}.
@@ -28,10 +40,27 @@ public class MetricsRegistry {
      * @param clock    a {@link Clock} instance
      */
     public MetricsRegistry(Clock clock) {
+        this(clock, false);
+    }
+
+    /**
+     * Creates a new {@link MetricsRegistry} with the given {@link Clock} instance.
+     * <p/>
+     * If {@code lazyTicking} is {@code true}, the registry's meters and timers do not update their
+     * moving averages in the background; instead each catches up on the elapsed intervals the next
+     * time it is marked or its rates are read. This produces the same rates while making idle
+     * meters free, which suits registries holding many rarely-updated meters.
+     *
+     * @param clock       a {@link Clock} instance
+     * @param lazyTicking whether meters should be ticked lazily instead of by a background thread
+     */
+    public MetricsRegistry(Clock clock, boolean lazyTicking) {
         this.clock = clock;
+        this.lazyTicking = lazyTicking;
         this.metrics = newMetricsMap();
         this.threadPools = new ThreadPools();
         this.listeners = new CopyOnWriteArrayList<MetricsRegistryListener>();
+        this.meterTicker = new MeterTicker();
     }
 
     /**
@@ -181,8 +210,51 @@ public class MetricsRegistry {
      */
     public Histogram newHistogram(MetricName metricName,
                                   boolean biased) {
-        return getOrAdd(metricName,
-                        new Histogram(biased ? SampleType.BIASED : SampleType.UNIFORM));
+        return newHistogram(metricName, biased ? SampleType.BIASED : SampleType.UNIFORM);
+    }
+
+    /**
+     * Creates a new {@link Histogram} with the given sample type and registers it under the given
+     * class, name, and scope.
+     *
+     * @param klass      the class which owns the metric
+     * @param name       the name of the metric
+     * @param scope      the scope of the metric
+     * @param sampleType the type of sample the histogram should use
+     * @return a new {@link Histogram}
+     */
+    public Histogram newHistogram(Class<?> klass,
+                                  String name,
+                                  String scope,
+                                  SampleType sampleType) {
+        return newHistogram(createName(klass, name, scope), sampleType);
+    }
+
+    /**
+     * Creates a new {@link Histogram} with the given sample type and registers it under the given
+     * metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should use
+     * @return a new {@link Histogram}
+     */
+    public Histogram newHistogram(MetricName metricName,
+                                  SampleType sampleType) {
+        return getOrAdd(metricName, new Histogram(sampleType.newSample(clock)));
+    }
+
+    /**
+     * Creates a new {@link Histogram} backed by the given sample and registers it under the given
+     * metric name. The sample must not be shared with any other metric.
+     *
+     * @param metricName the name of the metric
+     * @param sample     the sample the histogram should use (e.g., a configured
+     *                   {@link com.yammer.metrics.stats.LogLinearSample})
+     * @return a new {@link Histogram}
+     */
+    public Histogram newHistogram(MetricName metricName,
+                                  Sample sample) {
+        return getOrAdd(metricName, new Histogram(sample));
     }
 
     /**
@@ -237,7 +309,7 @@ public class MetricsRegistry {
         if (existingMetric != null) {
             return (Meter) existingMetric;
         }
-        return getOrAdd(metricName, new Meter(newMeterTickThreadPool(), eventType, unit, clock));
+        return getOrAdd(metricName, new Meter(startMeterTicker(), eventType, unit, clock));
     }
 
     /**
@@ -313,12 +385,119 @@ public class MetricsRegistry {
     public Timer newTimer(MetricName metricName,
                           TimeUnit durationUnit,
                           TimeUnit rateUnit) {
+        return newTimer(metricName, durationUnit, rateUnit, SampleType.BIASED);
+    }
+
+    /**
+     * Creates a new {@link Timer} which records durations with the given sample type and
+     * registers it under the given class, name, and scope.
+     *
+     * @param klass        the class which owns the metric
+     * @param name         the name of the metric
+     * @param scope        the scope of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer should use for its durations
+     * @return a new {@link Timer}
+     */
+    public Timer newTimer(Class<?> klass,
+                          String name,
+                          String scope,
+                          TimeUnit durationUnit,
+                          TimeUnit rateUnit,
+                          SampleType sampleType) {
+        return newTimer(createName(klass, name, scope), durationUnit, rateUnit, sampleType);
+    }
+
+    /**
+     * Creates a new {@link Timer} which records durations with the given sample type and
+     * registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer should use for its durations
+     * @return a new {@link Timer}
+     */
+    public Timer newTimer(MetricName metricName,
+                          TimeUnit durationUnit,
+                          TimeUnit rateUnit,
+                          SampleType sampleType) {
         final Metric existingMetric = metrics.get(metricName);
         if (existingMetric != null) {
             return (Timer) existingMetric;
         }
         return getOrAdd(metricName,
-                        new Timer(newMeterTickThreadPool(), durationUnit, rateUnit, clock));
+                        new Timer(startMeterTicker(), durationUnit, rateUnit, clock, sampleType));
+    }
+
+    /**
+     * Creates a new {@link Timer} which records durations into the given sample and registers it
+     * under the given metric name. The sample must not be shared with any other metric.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sample       the sample the timer should record durations into, in nanoseconds
+     *                     (e.g., a configured {@link com.yammer.metrics.stats.LogLinearSample})
+     * @return a new {@link Timer}
+     */
+    public Timer newTimer(MetricName metricName,
+                          TimeUnit durationUnit,
+                          TimeUnit rateUnit,
+                          Sample sample) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (Timer) existingMetric;
+        }
+        return getOrAdd(metricName,
+                        new Timer(startMeterTicker(), durationUnit, rateUnit, clock, sample));
+    }
+
+    /**
+     * Creates a new {@link Timer} which only times a fraction of its calls and registers it under
+     * the given class, name, and scope. Every call is still counted, so the timer's count and
+     * rates are exact; only the sampled calls read the clock and record a duration.
+     *
+     * @param klass        the class which owns the metric
+     * @param name         the name of the metric
+     * @param scope        the scope of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleRate   the fraction of calls to time, in {@code (0..1]}
+     * @return a new {@link Timer}
+     */
+    public Timer newTimer(Class<?> klass,
+                          String name,
+                          String scope,
+                          TimeUnit durationUnit,
+                          TimeUnit rateUnit,
+                          double sampleRate) {
+        return newTimer(createName(klass, name, scope), durationUnit, rateUnit, sampleRate);
+    }
+
+    /**
+     * Creates a new {@link Timer} which only times a fraction of its calls and registers it under
+     * the given metric name. Every call is still counted, so the timer's count and rates are
+     * exact; only the sampled calls read the clock and record a duration.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleRate   the fraction of calls to time, in {@code (0..1]}
+     * @return a new {@link Timer}
+     */
+    public Timer newTimer(MetricName metricName,
+                          TimeUnit durationUnit,
+                          TimeUnit rateUnit,
+                          double sampleRate) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (Timer) existingMetric;
+        }
+        return getOrAdd(metricName,
+                        new Timer(startMeterTicker(), durationUnit, rateUnit, clock,
+                                  SampleType.BIASED.newSample(clock), sampleRate));
     }
 
     /**
@@ -370,6 +549,68 @@ public class MetricsRegistry {
         return Collections.unmodifiableSortedMap(groups);
     }
 
+    /**
+     * Returns the current snapshot of the registry's sampling metrics, starting a new one if the
+     * current one is older than the snapshot TTL. Reporters which take the snapshots of histograms
+     * and timers through this share them, so a metric is only snapshotted once per TTL no matter
+     * how many reporters are attached.
+     * <p/>
+     * Taking a metric's snapshot through this starts a new interval of
+     * {@link SampleType#INTERVAL} histograms and timers, so it should only be used by reporters
+     * which poll on a schedule; other readers should use {@link #peekSnapshot()}.
+     *
+     * @return the current {@link RegistrySnapshot}
+     * @see #setSnapshotTtl(long, TimeUnit)
+     */
+    public RegistrySnapshot snapshot() {
+        return currentSnapshot(registrySnapshot, false);
+    }
+
+    /**
+     * Returns the current snapshot of the registry's sampling metrics for readers which don't
+     * poll on a schedule, such as JMX clients or the metrics servlet. It is shared and expires
+     * just like {@link #snapshot()}, but reads {@link SampleType#INTERVAL} histograms and timers
+     * without starting a new interval: their snapshots are those of the last interval completed
+     * by the polling reporters.
+     *
+     * @return the current {@link RegistrySnapshot} for ad hoc readers
+     */
+    public RegistrySnapshot peekSnapshot() {
+        return currentSnapshot(peekedSnapshot, true);
+    }
+
+    private RegistrySnapshot currentSnapshot(AtomicReference<SoftReference<RegistrySnapshot>> holder,
+                                             boolean peek) {
+        final long now = clock.tick();
+        final SoftReference<RegistrySnapshot> currentRef = holder.get();
+        final RegistrySnapshot current = (currentRef == null) ? null : currentRef.get();
+        if (current != null && now - current.tick() < snapshotTtl) {
+            return current;
+        }
+        final RegistrySnapshot fresh = new RegistrySnapshot(now, peek);
+        if (holder.compareAndSet(currentRef, new SoftReference<RegistrySnapshot>(fresh))) {
+            return fresh;
+        }
+        // another thread started a new snapshot at the same time, so share it
+        final SoftReference<RegistrySnapshot> latestRef = holder.get();
+        final RegistrySnapshot latest = (latestRef == null) ? null : latestRef.get();
+        return (latest == null) ? fresh : latest;
+    }
+
+    /**
+     * Sets the maximum age of the registry snapshot returned by {@link #snapshot()}, which is one
+     * second by default. This should be shorter than the period of the most frequent reporter, so
+     * that no reporter reads the same snapshot twice; zero disables sharing. The registry only
+     * holds its snapshots softly, so under memory pressure an expired snapshot, or rarely a live
+     * one, is collected rather than kept until the next call to {@link #snapshot()}.
+     *
+     * @param ttl  the maximum age of a registry snapshot
+     * @param unit the unit of {@code ttl}
+     */
+    public void setSnapshotTtl(long ttl, TimeUnit unit) {
+        this.snapshotTtl = unit.toNanos(ttl);
+    }
+
     /**
      * Shut down this registry's thread pools.
      */
@@ -501,8 +742,11 @@ public class MetricsRegistry {
         return (T) existingMetric;
     }
 
-    private ScheduledExecutorService newMeterTickThreadPool() {
-        return threadPools.newScheduledThreadPool(2, "meter-tick");
+    private MeterTicker startMeterTicker() {
+        if (lazyTicking) {
+            return null;
+        }
+        return meterTicker.startOn(threadPools.newScheduledThreadPool(1, "meter-tick"));
     }
 
     private void notifyMetricRemoved(MetricName name) {
@@ -0,0 +1,63 @@
+package com.yammer.metrics.core;
+
+import com.yammer.metrics.stats.Snapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The snapshots of a registry's sampling metrics as of a single point in time, shared by every
+ * reporter which reads them while it is current. Each metric's snapshot is taken the first time it
+ * is asked for and then reused, so however many reporters poll the same registry, a histogram or
+ * timer is only snapshotted once per {@link MetricsRegistry#snapshot() registry snapshot}.
+ * <p/>
+ * Registry snapshots returned by {@link MetricsRegistry#peekSnapshot()} take each metric's
+ * snapshot without starting a new interval of {@link Histogram.SampleType#INTERVAL} histograms
+ * and timers, and are used by readers which don't poll on a schedule.
+ */
+public class RegistrySnapshot {
+    private final long tick;
+    private final boolean peek;
+    private final ConcurrentMap<Sampling, Snapshot> snapshots;
+
+    RegistrySnapshot(long tick, boolean peek) {
+        this.tick = tick;
+        this.peek = peek;
+        this.snapshots = new ConcurrentHashMap<Sampling, Snapshot>();
+    }
+
+    /**
+     * Returns the {@link Clock#tick() tick} at which this registry snapshot was started.
+     *
+     * @return the tick at which this registry snapshot was started
+     */
+    public long tick() {
+        return tick;
+    }
+
+    /**
+     * Returns the snapshot of the given metric, taking it if no reporter has yet asked for it.
+     *
+     * @param metric a sampling metric
+     * @return the snapshot of {@code metric}
+     */
+    public Snapshot getSnapshot(Sampling metric) {
+        final Snapshot existing = snapshots.get(metric);
+        if (existing != null) {
+            return existing;
+        }
+        final Snapshot snapshot = peek ? peekSnapshotOf(metric) : metric.getSnapshot();
+        final Snapshot raced = snapshots.putIfAbsent(metric, snapshot);
+        return (raced == null) ? snapshot : raced;
+    }
+
+    private static Snapshot peekSnapshotOf(Sampling metric) {
+        if (metric instanceof Histogram) {
+            return ((Histogram) metric).peekSnapshot();
+        }
+        if (metric instanceof Timer) {
+            return ((Timer) metric).peekSnapshot();
+        }
+        return metric.getSnapshot();
+    }
+}
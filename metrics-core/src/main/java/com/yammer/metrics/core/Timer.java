@@ -1,47 +1,112 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.core.Histogram.SampleType;
+import com.yammer.metrics.stats.LongAdder;
+import com.yammer.metrics.stats.Sample;
 import com.yammer.metrics.stats.Snapshot;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A timer metric which aggregates timing durations and provides duration statistics, plus
  * throughput statistics via {@link Meter}.
+ * <p/>
+ * A timer for a very hot call site can be given a sample rate below {@code 1}. Every call is then
+ * still counted by the timer and its meter, so its count and rates stay exact, but only the sampled calls
+ * read the clock and record a duration. The duration statistics are estimated from the sampled
+ * calls, and {@link #sum()} is scaled up to cover every call.
  */
 public class Timer implements Metered, Stoppable, Sampling, Summarizable {
+    /**
+     * The value returned by {@link #start()} for a call which is not being sampled.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
 
     private final TimeUnit durationUnit, rateUnit;
     private final Meter meter;
-    private final Histogram histogram = new Histogram(SampleType.BIASED);
+    private final Histogram histogram;
     private final Clock clock;
+    private final CallSampler sampler;
+    // every call to a sampled timer since it was last cleared; null if every call is sampled
+    private final LongAdder calls;
+
+    /**
+     * Creates a new {@link Timer}.
+     *
+     * @param ticker       the registry's ticker, which updates the rates in the background, or
+     *                     {@code null} if the rates should be updated lazily
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     */
+    Timer(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit) {
+        this(ticker, durationUnit, rateUnit, Clock.defaultClock());
+    }
 
     /**
      * Creates a new {@link Timer}.
      *
-     * @param tickThread   background thread for updating the rates
+     * @param ticker       the registry's ticker, which updates the rates in the background, or
+     *                     {@code null} if the rates should be updated lazily
      * @param durationUnit the scale unit for this timer's duration metrics
      * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration
      */
-    Timer(ScheduledExecutorService tickThread, TimeUnit durationUnit, TimeUnit rateUnit) {
-        this(tickThread, durationUnit, rateUnit, Clock.defaultClock());
+    Timer(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock) {
+        this(ticker, durationUnit, rateUnit, clock, SampleType.BIASED);
     }
 
     /**
      * Creates a new {@link Timer}.
      *
-     * @param tickThread   background thread for updating the rates
+     * @param ticker       the registry's ticker, which updates the rates in the background, or
+     *                     {@code null} if the rates should be updated lazily
      * @param durationUnit the scale unit for this timer's duration metrics
      * @param rateUnit     the scale unit for this timer's rate metrics
      * @param clock        the clock used to calculate duration
+     * @param sampleType   the type of sample used to record durations
      */
-    Timer(ScheduledExecutorService tickThread, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock) {
+    Timer(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock,
+          SampleType sampleType) {
+        this(ticker, durationUnit, rateUnit, clock, sampleType.newSample(clock));
+    }
+
+    /**
+     * Creates a new {@link Timer}.
+     *
+     * @param ticker       the registry's ticker, which updates the rates in the background, or
+     *                     {@code null} if the rates should be updated lazily
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration
+     * @param sample       the sample used to record durations, in nanoseconds
+     */
+    Timer(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock,
+          Sample sample) {
+        this(ticker, durationUnit, rateUnit, clock, sample, 1.0);
+    }
+
+    /**
+     * Creates a new {@link Timer}.
+     *
+     * @param ticker       the registry's ticker, which updates the rates in the background, or
+     *                     {@code null} if the rates should be updated lazily
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration
+     * @param sample       the sample used to record durations, in nanoseconds
+     * @param sampleRate   the fraction of calls whose durations are recorded, in {@code (0..1]};
+     *                     e.g. {@code 0.01} times one call in a hundred
+     */
+    Timer(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock,
+          Sample sample, double sampleRate) {
         this.durationUnit = durationUnit;
         this.rateUnit = rateUnit;
-        this.meter = new Meter(tickThread, "calls", rateUnit, clock);
+        this.meter = new Meter(ticker, "calls", rateUnit, clock);
+        this.histogram = new Histogram(sample);
         this.clock = clock;
+        this.sampler = (sampleRate == 1.0) ? null : new CallSampler(sampleRate);
+        this.calls = (sampler == null) ? null : new LongAdder();
         clear();
     }
 
@@ -60,10 +125,13 @@ public class Timer implements Metered, Stoppable, Sampling, Summarizable {
     }
 
     /**
-     * Clears all recorded durations.
+     * Clears all recorded durations and, if the timer samples its calls, its count of calls.
      */
     public void clear() {
         histogram.clear();
+        if (calls != null) {
+            calls.reset();
+        }
     }
 
     /**
@@ -86,11 +154,11 @@ public class Timer implements Metered, Stoppable, Sampling, Summarizable {
      * @throws Exception if {@code event} throws an {@link Exception}
      */
     public <T> T time(Callable<T> event) throws Exception {
-        final long startTime = clock.tick();
+        final long startTime = start();
         try {
             return event.call();
         } finally {
-            update(clock.tick() - startTime);
+            stop(startTime);
         }
     }
 
@@ -98,14 +166,54 @@ public class Timer implements Metered, Stoppable, Sampling, Summarizable {
      * Returns a timing {@link TimerContext}, which measures an elapsed time in nanoseconds.
      *
      * @return a new {@link TimerContext}
+     * @see #start()
      */
     public TimerContext time() {
-        return new TimerContext(this, clock);
+        return new TimerContext(this);
+    }
+
+    /**
+     * Starts timing an event. Pass the returned value to {@link #stop(long)} when the event has
+     * finished; unlike {@link #time()}, this allocates nothing.
+     *
+     * @return the start time of the event, as a tick of the timer's clock, or
+     *         {@link #NOT_SAMPLED} if the event is not being sampled
+     */
+    public long start() {
+        if (sampler != null && !sampler.sample()) {
+            return NOT_SAMPLED;
+        }
+        return clock.tick();
+    }
+
+    /**
+     * Stops timing an event and records its duration.
+     *
+     * @param startTime the value returned by {@link #start()} when the event started
+     * @return the duration of the event, in nanoseconds, or {@code -1} if the event was not
+     *         sampled
+     */
+    public long stop(long startTime) {
+        if (startTime == NOT_SAMPLED) {
+            meter.mark();
+            if (calls != null) {
+                calls.increment();
+            }
+            return -1;
+        }
+        final long duration = clock.tick() - startTime;
+        update(duration);
+        return duration;
     }
 
+    /**
+     * Returns the number of events which have been timed, including those which were not sampled.
+     *
+     * @return the number of events which have been timed
+     */
     @Override
     public long count() {
-        return histogram.count();
+        return (calls == null) ? histogram.count() : calls.sum();
     }
 
     @Override
@@ -169,23 +277,34 @@ public class Timer implements Metered, Stoppable, Sampling, Summarizable {
     }
 
     /**
-     * Returns the sum of all recorded durations.
+     * Returns the sum of all recorded durations. If the timer samples its calls, this is an
+     * estimate of the sum of every call's duration.
      *
      * @return the sum of all recorded durations
      */
     @Override
     public double sum() {
-        return convertFromNS(histogram.sum());
+        final double sum = histogram.sum();
+        if (calls == null) {
+            return convertFromNS(sum);
+        }
+        final long sampled = histogram.count();
+        return (sampled == 0) ? 0.0 : convertFromNS(sum * calls.sum() / sampled);
     }
 
     @Override
     public Snapshot getSnapshot() {
-        final double[] values = histogram.getSnapshot().getValues();
-        final double[] converted = new double[values.length];
-        for (int i = 0; i < values.length; i++) {
-            converted[i] = convertFromNS(values[i]);
-        }
-        return new Snapshot(converted);
+        return histogram.getSnapshot().convert(TimeUnit.NANOSECONDS.convert(1, durationUnit));
+    }
+
+    /**
+     * Returns a snapshot of the durations without starting a new interval.
+     *
+     * @return a snapshot of the durations
+     * @see Histogram#peekSnapshot()
+     */
+    public Snapshot peekSnapshot() {
+        return histogram.peekSnapshot().convert(TimeUnit.NANOSECONDS.convert(1, durationUnit));
     }
 
     @Override
@@ -197,6 +316,9 @@ public class Timer implements Metered, Stoppable, Sampling, Summarizable {
         if (duration >= 0) {
             histogram.update(duration);
             meter.mark();
+            if (calls != null) {
+                calls.increment();
+            }
         }
     }
 
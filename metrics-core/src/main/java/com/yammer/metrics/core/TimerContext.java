@@ -1,7 +1,5 @@
 package com.yammer.metrics.core;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * A timing context.
  *
@@ -9,7 +7,6 @@ import java.util.concurrent.TimeUnit;
  */
 public class TimerContext {
     private final Timer timer;
-    private final Clock clock;
     private final long startTime;
 
     /**
@@ -18,16 +15,15 @@ public class TimerContext {
      *
      * @param timer the {@link Timer} to report the elapsed time to
      */
-    TimerContext(Timer timer, Clock clock) {
+    TimerContext(Timer timer) {
         this.timer = timer;
-        this.clock = clock;
-        this.startTime = clock.tick();
+        this.startTime = timer.start();
     }
 
     /**
      * Stops recording the elapsed time and updates the timer.
      */
     public void stop() {
-        timer.update(clock.tick() - startTime, TimeUnit.NANOSECONDS);
+        timer.stop(startTime);
     }
 }
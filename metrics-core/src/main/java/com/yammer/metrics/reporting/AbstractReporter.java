@@ -1,6 +1,11 @@
 package com.yammer.metrics.reporting;
 
+import com.yammer.metrics.core.Histogram;
 import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Sampling;
+import com.yammer.metrics.core.Summarizable;
+import com.yammer.metrics.stats.IntervalSnapshot;
+import com.yammer.metrics.stats.Snapshot;
 
 /**
  * The base class for all metric reporters.
@@ -33,4 +38,49 @@ public abstract class AbstractReporter {
     protected MetricsRegistry getMetricsRegistry() {
         return metricsRegistry;
     }
+
+    /**
+     * Returns a snapshot of the given metric from the registry's current
+     * {@link com.yammer.metrics.core.RegistrySnapshot}, which is shared with every other reporter
+     * of the registry.
+     *
+     * @param metric a sampling metric in the reporter's registry
+     * @return a snapshot of {@code metric}
+     */
+    protected Snapshot snapshotOf(Sampling metric) {
+        return metricsRegistry.snapshot().getSnapshot(metric);
+    }
+
+    /**
+     * Returns the summary to report alongside the given snapshot of a histogram or timer. For an
+     * {@link Histogram.SampleType#INTERVAL interval} histogram or timer, this is the snapshot's own
+     * summary of the interval, so that the extremes and mean describe the same values as the
+     * quantiles; otherwise it is the metric's running summary.
+     *
+     * @param metric   a histogram or timer
+     * @param snapshot a snapshot of {@code metric}
+     * @return the summary to report for {@code metric}
+     */
+    public static Summarizable summaryOf(Summarizable metric, Snapshot snapshot) {
+        if (snapshot instanceof IntervalSnapshot) {
+            return (IntervalSnapshot) snapshot;
+        }
+        return metric;
+    }
+
+    /**
+     * Returns the count to report alongside the given snapshot of a histogram: the number of values
+     * recorded during the interval for an {@link Histogram.SampleType#INTERVAL interval}
+     * histogram, and the number recorded since the histogram was created or cleared otherwise.
+     *
+     * @param histogram a histogram
+     * @param snapshot  a snapshot of {@code histogram}
+     * @return the count to report for {@code histogram}
+     */
+    public static long countOf(Histogram histogram, Snapshot snapshot) {
+        if (snapshot instanceof IntervalSnapshot) {
+            return ((IntervalSnapshot) snapshot).count();
+        }
+        return histogram.count();
+    }
 }
@@ -185,11 +185,12 @@ public class ConsoleReporter extends AbstractPollingReporter implements
 
     @Override
     public void processHistogram(MetricName name, Histogram histogram, PrintStream stream) {
-        final Snapshot snapshot = histogram.getSnapshot();
-        stream.printf(locale, "               min = %2.2f\n", histogram.min());
-        stream.printf(locale, "               max = %2.2f\n", histogram.max());
-        stream.printf(locale, "              mean = %2.2f\n", histogram.mean());
-        stream.printf(locale, "            stddev = %2.2f\n", histogram.stdDev());
+        final Snapshot snapshot = snapshotOf(histogram);
+        final Summarizable summary = summaryOf(histogram, snapshot);
+        stream.printf(locale, "               min = %2.2f\n", summary.min());
+        stream.printf(locale, "               max = %2.2f\n", summary.max());
+        stream.printf(locale, "              mean = %2.2f\n", summary.mean());
+        stream.printf(locale, "            stddev = %2.2f\n", summary.stdDev());
         stream.printf(locale, "            median = %2.2f\n", snapshot.getMedian());
         stream.printf(locale, "              75%% <= %2.2f\n", snapshot.get75thPercentile());
         stream.printf(locale, "              95%% <= %2.2f\n", snapshot.get95thPercentile());
@@ -202,11 +203,12 @@ public class ConsoleReporter extends AbstractPollingReporter implements
     public void processTimer(MetricName name, Timer timer, PrintStream stream) {
         processMeter(name, timer, stream);
         final String durationUnit = abbrev(timer.durationUnit());
-        final Snapshot snapshot = timer.getSnapshot();
-        stream.printf(locale, "               min = %2.2f%s\n", timer.min(), durationUnit);
-        stream.printf(locale, "               max = %2.2f%s\n", timer.max(), durationUnit);
-        stream.printf(locale, "              mean = %2.2f%s\n", timer.mean(), durationUnit);
-        stream.printf(locale, "            stddev = %2.2f%s\n", timer.stdDev(), durationUnit);
+        final Snapshot snapshot = snapshotOf(timer);
+        final Summarizable summary = summaryOf(timer, snapshot);
+        stream.printf(locale, "               min = %2.2f%s\n", summary.min(), durationUnit);
+        stream.printf(locale, "               max = %2.2f%s\n", summary.max(), durationUnit);
+        stream.printf(locale, "              mean = %2.2f%s\n", summary.mean(), durationUnit);
+        stream.printf(locale, "            stddev = %2.2f%s\n", summary.stdDev(), durationUnit);
         stream.printf(locale, "            median = %2.2f%s\n", snapshot.getMedian(), durationUnit);
         stream.printf(locale, "              75%% <= %2.2f%s\n", snapshot.get75thPercentile(), durationUnit);
         stream.printf(locale, "              95%% <= %2.2f%s\n", snapshot.get95thPercentile(), durationUnit);
@@ -0,0 +1,355 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A reporter which periodically appends the values of all of a registry's metrics to a single CSV
+ * archive file, as an alternative to {@link CsvReporter}'s file per metric.
+ * <p/>
+ * Each poll is built in memory and appended to the file in one sequential write, however many
+ * metrics the registry holds. Each row holds one metric's values at one poll:
+ * {@code time,id,value,...}, where {@code time} is in seconds since the epoch. The first time a
+ * metric appears in a file, its row is preceded by a dictionary line,
+ * {@code # id,name,column,...}, which maps its id to its name and names its columns, so every
+ * file can be read on its own.
+ * <p/>
+ * The reporter starts a new file, named after the time it was opened, once the current one is
+ * older than the rotation period or larger than the maximum file size, and can compress its files
+ * with gzip. A compressed file is only complete once the reporter has moved on to the next one.
+ */
+public class CsvArchiveReporter extends AbstractPollingReporter
+        implements MetricProcessor<StringBuilder> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvArchiveReporter.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The default period after which the reporter starts a new file: one hour.
+     */
+    public static final long DEFAULT_ROTATION_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The default size, in bytes, after which the reporter starts a new file: 64MB.
+     */
+    public static final long DEFAULT_MAX_FILE_SIZE = 64L * 1024 * 1024;
+
+    private static final String[] GAUGE_COLUMNS = {"value"};
+    private static final String[] COUNTER_COLUMNS = {"count"};
+    private static final String[] METER_COLUMNS = {
+            "count", "1 min rate", "mean rate", "5 min rate", "15 min rate"
+    };
+    private static final String[] SAMPLING_COLUMNS = {
+            "min", "max", "mean", "median", "stddev", "95%", "99%", "99.9%"
+    };
+
+    /**
+     * Enables the CSV archive reporter for the default metrics registry, and causes it to write to
+     * files in {@code outputDir} with the specified period.
+     *
+     * @param outputDir    the directory in which archive files will be created
+     * @param period       the period between successive outputs
+     * @param unit         the time unit of {@code period}
+     */
+    public static void enable(File outputDir, long period, TimeUnit unit) {
+        enable(Metrics.defaultRegistry(), outputDir, period, unit);
+    }
+
+    /**
+     * Enables the CSV archive reporter for the given metrics registry, and causes it to write to
+     * files in {@code outputDir} with the specified period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param outputDir       the directory in which archive files will be created
+     * @param period          the period between successive outputs
+     * @param unit            the time unit of {@code period}
+     */
+    public static void enable(MetricsRegistry metricsRegistry, File outputDir, long period, TimeUnit unit) {
+        final CsvArchiveReporter reporter = new CsvArchiveReporter(metricsRegistry, outputDir);
+        reporter.start(period, unit);
+    }
+
+    private final MetricPredicate predicate;
+    private final File outputDir;
+    private final long rotationPeriod;
+    private final long maxFileSize;
+    private final boolean gzip;
+    private final Clock clock;
+    private final SimpleDateFormat fileNameFormat;
+    private final Map<MetricName, Integer> ids;
+    private final StringBuilder buffer;
+    private OutputStream out;
+    private long openedAt;
+    private long written;
+    private long time;
+
+    /**
+     * Creates a new {@link CsvArchiveReporter} which will write all metrics from the given
+     * {@link MetricsRegistry} to uncompressed archive files in the given output directory, starting
+     * a new file every hour or every 64MB.
+     *
+     * @param metricsRegistry    the {@link MetricsRegistry} containing the metrics this reporter
+     *                           will report
+     * @param outputDir          the directory to which files will be written
+     */
+    public CsvArchiveReporter(MetricsRegistry metricsRegistry, File outputDir) {
+        this(metricsRegistry, MetricPredicate.ALL, outputDir, DEFAULT_ROTATION_PERIOD,
+             TimeUnit.MILLISECONDS, DEFAULT_MAX_FILE_SIZE, false, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link CsvArchiveReporter} which will write metrics from the given
+     * {@link MetricsRegistry} which match the given {@link MetricPredicate} to archive files in
+     * the given output directory.
+     *
+     * @param metricsRegistry    the {@link MetricsRegistry} containing the metrics this reporter
+     *                           will report
+     * @param predicate          the {@link MetricPredicate} which metrics are required to match
+     *                           before being written to files
+     * @param outputDir          the directory to which files will be written
+     * @param rotationPeriod     the age after which the reporter starts a new file
+     * @param rotationUnit       the unit of {@code rotationPeriod}
+     * @param maxFileSize        the size, in uncompressed bytes, after which the reporter starts a
+     *                           new file
+     * @param gzip               whether to compress the files with gzip
+     * @param clock              the clock used to measure time
+     */
+    public CsvArchiveReporter(MetricsRegistry metricsRegistry,
+                              MetricPredicate predicate,
+                              File outputDir,
+                              long rotationPeriod,
+                              TimeUnit rotationUnit,
+                              long maxFileSize,
+                              boolean gzip,
+                              Clock clock) {
+        super(metricsRegistry, "csv-archive-reporter");
+        if (outputDir.exists() && !outputDir.isDirectory()) {
+            throw new IllegalArgumentException(outputDir + " is not a directory");
+        }
+        this.outputDir = outputDir;
+        this.predicate = predicate;
+        this.rotationPeriod = rotationUnit.toMillis(rotationPeriod);
+        this.maxFileSize = maxFileSize;
+        this.gzip = gzip;
+        this.clock = clock;
+        this.fileNameFormat = new SimpleDateFormat("yyyyMMdd-HHmmss");
+        fileNameFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        this.ids = new HashMap<MetricName, Integer>();
+        this.buffer = new StringBuilder(64 * 1024);
+    }
+
+    @Override
+    public synchronized void run() {
+        final long now = clock.time();
+        this.time = TimeUnit.MILLISECONDS.toSeconds(now);
+        try {
+            if (out != null && now - openedAt >= rotationPeriod) {
+                close();
+            }
+            if (out == null) {
+                open(now);
+            }
+
+            buffer.setLength(0);
+            for (Map.Entry<MetricName, Metric> entry : getMetricsRegistry().allMetrics().entrySet()) {
+                if (predicate.matches(entry.getKey(), entry.getValue())) {
+                    final int length = buffer.length();
+                    final int known = ids.size();
+                    try {
+                        entry.getValue().processWith(this, entry.getKey(), buffer);
+                    } catch (Exception e) {
+                        // drop the partial row, along with the metric's dictionary line if it had
+                        // just been written
+                        buffer.setLength(length);
+                        if (ids.size() > known) {
+                            ids.remove(entry.getKey());
+                        }
+                        LOGGER.warn("Error writing {} to the metrics archive", entry.getKey(), e);
+                    }
+                }
+            }
+
+            final byte[] bytes = buffer.toString().getBytes(UTF_8);
+            out.write(bytes);
+            out.flush();
+            written += bytes.length;
+            if (written >= maxFileSize) {
+                close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error writing to the metrics archive", e);
+            closeQuietly();
+        }
+    }
+
+    @Override
+    public void processMeter(MetricName name, Metered meter, StringBuilder row) {
+        startRow(name, METER_COLUMNS, row);
+        row.append(meter.count()).append(',')
+           .append(meter.oneMinuteRate()).append(',')
+           .append(meter.meanRate()).append(',')
+           .append(meter.fiveMinuteRate()).append(',')
+           .append(meter.fifteenMinuteRate()).append('\n');
+    }
+
+    @Override
+    public void processCounter(MetricName name, Counter counter, StringBuilder row) {
+        startRow(name, COUNTER_COLUMNS, row);
+        row.append(counter.count()).append('\n');
+    }
+
+    @Override
+    public void processHistogram(MetricName name, Histogram histogram, StringBuilder row) {
+        startRow(name, SAMPLING_COLUMNS, row);
+        appendSampling(histogram, snapshotOf(histogram), row);
+    }
+
+    @Override
+    public void processTimer(MetricName name, Timer timer, StringBuilder row) {
+        startRow(name, SAMPLING_COLUMNS, row);
+        appendSampling(timer, snapshotOf(timer), row);
+    }
+
+    @Override
+    public void processGauge(MetricName name, Gauge<?> gauge, StringBuilder row) {
+        if (gauge instanceof LongGauge) {
+            final long value = ((LongGauge) gauge).longValue();
+            startRow(name, GAUGE_COLUMNS, row);
+            row.append(value);
+        } else if (gauge instanceof DoubleGauge) {
+            final double value = ((DoubleGauge) gauge).doubleValue();
+            startRow(name, GAUGE_COLUMNS, row);
+            row.append(value);
+        } else {
+            final Object value = gauge.value();
+            startRow(name, GAUGE_COLUMNS, row);
+            appendField(String.valueOf(value), row);
+        }
+        row.append('\n');
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            super.shutdown();
+        } finally {
+            synchronized (this) {
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Writes the dictionary line of the given metric, if this is the first time it appears in the
+     * current file, and the start of its row.
+     */
+    private void startRow(MetricName name, String[] columns, StringBuilder row) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = ids.size();
+            ids.put(name, id);
+            row.append("# ").append(id).append(',');
+            appendField(nameOf(name), row);
+            for (String column : columns) {
+                row.append(',').append(column);
+            }
+            row.append('\n');
+        }
+        row.append(time).append(',').append(id).append(',');
+    }
+
+    private static void appendSampling(Summarizable metric, Snapshot snapshot, StringBuilder row) {
+        final Summarizable summary = summaryOf(metric, snapshot);
+        row.append(summary.min()).append(',')
+           .append(summary.max()).append(',')
+           .append(summary.mean()).append(',')
+           .append(snapshot.getMedian()).append(',')
+           .append(summary.stdDev()).append(',')
+           .append(snapshot.get95thPercentile()).append(',')
+           .append(snapshot.get99thPercentile()).append(',')
+           .append(snapshot.get999thPercentile()).append('\n');
+    }
+
+    /**
+     * Appends a field, quoting it if it holds a comma, a quote or a line break.
+     */
+    private static void appendField(String value, StringBuilder row) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            final char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private static String nameOf(MetricName name) {
+        final StringBuilder sb = new StringBuilder()
+                .append(name.getGroup()).append('.')
+                .append(name.getType()).append('.');
+        if (name.hasScope()) {
+            sb.append(name.getScope()).append('.');
+        }
+        return sb.append(name.getName()).toString();
+    }
+
+    private void open(long now) throws IOException {
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create " + outputDir);
+        }
+        final String suffix = gzip ? ".csv.gz" : ".csv";
+        final String base = "metrics-" + fileNameFormat.format(new Date(now));
+        File file = new File(outputDir, base + suffix);
+        for (int i = 1; !file.createNewFile(); i++) {
+            file = new File(outputDir, base + '-' + i + suffix);
+        }
+        final FileOutputStream stream = new FileOutputStream(file);
+        this.out = gzip ? new GZIPOutputStream(stream, 64 * 1024) : stream;
+        this.openedAt = now;
+        this.written = 0;
+        ids.clear();
+    }
+
+    private void close() throws IOException {
+        final OutputStream stream = out;
+        this.out = null;
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing the metrics archive", e);
+        }
+    }
+}
@@ -192,13 +192,14 @@ public class CsvReporter extends AbstractPollingReporter implements
     @Override
     public void processHistogram(MetricName name, Histogram histogram, Context context) throws IOException {
         final PrintStream stream = context.getStream("# time,min,max,mean,median,stddev,95%,99%,99.9%");
-        final Snapshot snapshot = histogram.getSnapshot();
+        final Snapshot snapshot = snapshotOf(histogram);
+        final Summarizable summary = summaryOf(histogram, snapshot);
         stream.append(new StringBuilder()
-                              .append(histogram.min()).append(',')
-                              .append(histogram.max()).append(',')
-                              .append(histogram.mean()).append(',')
+                              .append(summary.min()).append(',')
+                              .append(summary.max()).append(',')
+                              .append(summary.mean()).append(',')
                               .append(snapshot.getMedian()).append(',')
-                              .append(histogram.stdDev()).append(',')
+                              .append(summary.stdDev()).append(',')
                               .append(snapshot.get95thPercentile()).append(',')
                               .append(snapshot.get99thPercentile()).append(',')
                               .append(snapshot.get999thPercentile()).toString())
@@ -210,13 +211,14 @@ public class CsvReporter extends AbstractPollingReporter implements
     @Override
     public void processTimer(MetricName name, Timer timer, Context context) throws IOException {
         final PrintStream stream = context.getStream("# time,min,max,mean,median,stddev,95%,99%,99.9%");
-        final Snapshot snapshot = timer.getSnapshot();
+        final Snapshot snapshot = snapshotOf(timer);
+        final Summarizable summary = summaryOf(timer, snapshot);
         stream.append(new StringBuilder()
-                              .append(timer.min()).append(',')
-                              .append(timer.max()).append(',')
-                              .append(timer.mean()).append(',')
+                              .append(summary.min()).append(',')
+                              .append(summary.max()).append(',')
+                              .append(summary.mean()).append(',')
                               .append(snapshot.getMedian()).append(',')
-                              .append(timer.stdDev()).append(',')
+                              .append(summary.stdDev()).append(',')
                               .append(snapshot.get95thPercentile()).append(',')
                               .append(snapshot.get99thPercentile()).append(',')
                               .append(snapshot.get999thPercentile()).toString())
@@ -227,7 +229,13 @@ public class CsvReporter extends AbstractPollingReporter implements
     @Override
     public void processGauge(MetricName name, Gauge<?> gauge, Context context) throws IOException {
         final PrintStream stream = context.getStream("# time,value");
-        stream.println(gauge.value());
+        if (gauge instanceof LongGauge) {
+            stream.println(((LongGauge) gauge).longValue());
+        } else if (gauge instanceof DoubleGauge) {
+            stream.println(((DoubleGauge) gauge).doubleValue());
+        } else {
+            stream.println(gauge.value());
+        }
         stream.flush();
     }
 
@@ -0,0 +1,497 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A reporter which exposes application metrics as JMX {@link DynamicMBean}s, as an alternative to
+ * the one-standard-MBean-per-metric layout of {@link JmxReporter}.
+ * <p/>
+ * Reading a bean's attributes in bulk, as collectors such as jmxtrans do with
+ * {@link MBeanServer#getAttributes(ObjectName, String[])}, takes the snapshot of each histogram or
+ * timer read only once per call, however many of its percentiles are asked for.
+ * <p/>
+ * If the reporter is grouped, all of the metrics with the same group and type share a single
+ * MBean, named {@code group:type=Type} with the unquoted group as its domain, whose attributes are
+ * prefixed with the scope and name of the metric they belong to (e.g.
+ * {@code requests.99thPercentile}). Dots and backslashes within a scope or name are escaped with a
+ * backslash, so that scope {@code a.b} and name {@code c} ({@code a\.b.c.Count}) don't share
+ * attributes with scope {@code a} and name {@code b.c} ({@code a.b\.c.Count}). This cuts the
+ * number of MBeans, and the memory the MBeanServer needs to hold them, by the number of metrics
+ * per type. Otherwise each metric has its own MBean, named as {@link JmxReporter} names it.
+ */
+public class GroupedJmxReporter extends AbstractReporter implements MetricsRegistryListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupedJmxReporter.class);
+
+    /**
+     * The attributes of a metric's MBean.
+     */
+    private enum Field {
+        VALUE("Value", Object.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Gauge<?>) metric).value();
+            }
+        },
+        COUNT("Count", long.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                if (metric instanceof Metered) {
+                    return ((Metered) metric).count();
+                }
+                if (metric instanceof Histogram) {
+                    return countOf((Histogram) metric, snapshot);
+                }
+                return ((Counter) metric).count();
+            }
+        },
+        EVENT_TYPE("EventType", String.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).eventType();
+            }
+        },
+        RATE_UNIT("RateUnit", String.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).rateUnit().toString();
+            }
+        },
+        MEAN_RATE("MeanRate", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).meanRate();
+            }
+        },
+        ONE_MINUTE_RATE("OneMinuteRate", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).oneMinuteRate();
+            }
+        },
+        FIVE_MINUTE_RATE("FiveMinuteRate", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).fiveMinuteRate();
+            }
+        },
+        FIFTEEN_MINUTE_RATE("FifteenMinuteRate", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Metered) metric).fifteenMinuteRate();
+            }
+        },
+        LATENCY_UNIT("LatencyUnit", String.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return ((Timer) metric).durationUnit().toString();
+            }
+        },
+        MIN("Min", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return summaryOf((Summarizable) metric, snapshot).min();
+            }
+        },
+        MAX("Max", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return summaryOf((Summarizable) metric, snapshot).max();
+            }
+        },
+        MEAN("Mean", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return summaryOf((Summarizable) metric, snapshot).mean();
+            }
+        },
+        STD_DEV("StdDev", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return summaryOf((Summarizable) metric, snapshot).stdDev();
+            }
+        },
+        P50("50thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.getMedian();
+            }
+        },
+        P75("75thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.get75thPercentile();
+            }
+        },
+        P95("95thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.get95thPercentile();
+            }
+        },
+        P98("98thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.get98thPercentile();
+            }
+        },
+        P99("99thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.get99thPercentile();
+            }
+        },
+        P999("999thPercentile", double.class) {
+            @Override
+            Object read(Metric metric, Snapshot snapshot) {
+                return snapshot.get999thPercentile();
+            }
+        };
+
+        private static final Field[] GAUGE = {VALUE};
+        private static final Field[] COUNTER = {COUNT};
+        private static final Field[] METER = {
+                COUNT, EVENT_TYPE, RATE_UNIT, MEAN_RATE, ONE_MINUTE_RATE, FIVE_MINUTE_RATE,
+                FIFTEEN_MINUTE_RATE
+        };
+        private static final Field[] HISTOGRAM = {
+                COUNT, MIN, MAX, MEAN, STD_DEV, P50, P75, P95, P98, P99, P999
+        };
+        private static final Field[] TIMER = {
+                COUNT, EVENT_TYPE, RATE_UNIT, MEAN_RATE, ONE_MINUTE_RATE, FIVE_MINUTE_RATE,
+                FIFTEEN_MINUTE_RATE, LATENCY_UNIT, MIN, MAX, MEAN, STD_DEV, P50, P75, P95, P98,
+                P99, P999
+        };
+
+        private final String attributeName;
+        private final String type;
+
+        Field(String attributeName, Class<?> type) {
+            this.attributeName = attributeName;
+            this.type = type.getName();
+        }
+
+        /**
+         * Reads the attribute's value.
+         *
+         * @param metric   the metric
+         * @param snapshot the metric's snapshot, if it is a sampling metric, or {@code null}
+         * @return the attribute's value
+         */
+        abstract Object read(Metric metric, Snapshot snapshot);
+
+        static Field[] of(Metric metric) {
+            if (metric instanceof Timer) {
+                return TIMER;
+            }
+            if (metric instanceof Metered) {
+                return METER;
+            }
+            if (metric instanceof Histogram) {
+                return HISTOGRAM;
+            }
+            if (metric instanceof Counter) {
+                return COUNTER;
+            }
+            if (metric instanceof Gauge) {
+                return GAUGE;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An attribute of an MBean: one field of one of its metrics.
+     */
+    private static final class MetricAttribute {
+        private final MetricName metricName;
+        private final Metric metric;
+        private final Field field;
+
+        private MetricAttribute(MetricName metricName, Metric metric, Field field) {
+            this.metricName = metricName;
+            this.metric = metric;
+            this.field = field;
+        }
+
+        Object read(RegistrySnapshot snapshot) {
+            if (metric instanceof Sampling) {
+                return field.read(metric, snapshot.getSnapshot((Sampling) metric));
+            }
+            return field.read(metric, null);
+        }
+    }
+
+    /**
+     * The MBean of a group of metrics. Its attributes are read from a single registry snapshot per
+     * call, so that each sampling metric is only snapshotted once per call.
+     */
+    private static final class MetricsBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+        private final ObjectName objectName;
+        private final ConcurrentSkipListMap<String, MetricAttribute> attributes;
+        private volatile MBeanInfo info;
+
+        private MetricsBean(MetricsRegistry registry, ObjectName objectName) {
+            this.registry = registry;
+            this.objectName = objectName;
+            this.attributes = new ConcurrentSkipListMap<String, MetricAttribute>();
+        }
+
+        boolean add(MetricName name, Metric metric, String prefix) {
+            final Field[] fields = Field.of(metric);
+            if (fields == null) {
+                return false;
+            }
+            remove(name);
+            for (Field field : fields) {
+                attributes.put(prefix + field.attributeName, new MetricAttribute(name, metric, field));
+            }
+            this.info = null;
+            return true;
+        }
+
+        void remove(MetricName name) {
+            for (Map.Entry<String, MetricAttribute> entry : attributes.entrySet()) {
+                if (entry.getValue().metricName.equals(name)) {
+                    attributes.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            this.info = null;
+        }
+
+        boolean isEmpty() {
+            return attributes.isEmpty();
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException,
+                                                            MBeanException, ReflectionException {
+            final MetricAttribute metricAttribute = attributes.get(attribute);
+            if (metricAttribute == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            try {
+                return metricAttribute.read(registry.peekSnapshot());
+            } catch (RuntimeException e) {
+                throw new RuntimeMBeanException(e, "Error reading " + attribute);
+            }
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            final RegistrySnapshot snapshot = registry.peekSnapshot();
+            final AttributeList list = new AttributeList(names.length);
+            for (String name : names) {
+                final MetricAttribute metricAttribute = attributes.get(name);
+                if (metricAttribute != null) {
+                    try {
+                        list.add(new Attribute(name, metricAttribute.read(snapshot)));
+                    } catch (RuntimeException e) {
+                        LOGGER.debug("Error reading {} of {}", name, objectName, e);
+                    }
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature)
+                throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final MBeanInfo current = info;
+            if (current != null) {
+                return current;
+            }
+            final List<MBeanAttributeInfo> infos = new ArrayList<MBeanAttributeInfo>(attributes.size());
+            for (Map.Entry<String, MetricAttribute> entry : attributes.entrySet()) {
+                final Field field = entry.getValue().field;
+                infos.add(new MBeanAttributeInfo(entry.getKey(), field.type,
+                                                 field.attributeName + " of " + entry.getValue().metricName,
+                                                 true, false, false));
+            }
+            final MBeanInfo fresh = new MBeanInfo(getClass().getName(),
+                                                  "Metrics of " + objectName,
+                                                  infos.toArray(new MBeanAttributeInfo[infos.size()]),
+                                                  null, null, null);
+            this.info = fresh;
+            return fresh;
+        }
+    }
+
+    private final boolean grouped;
+    private final MBeanServer server;
+    private final ConcurrentMap<ObjectName, MetricsBean> beans;
+
+    /**
+     * Creates a new {@link GroupedJmxReporter} for the given registry, which groups metrics into
+     * one MBean per group and type.
+     *
+     * @param registry    a {@link MetricsRegistry}
+     */
+    public GroupedJmxReporter(MetricsRegistry registry) {
+        this(registry, true);
+    }
+
+    /**
+     * Creates a new {@link GroupedJmxReporter} for the given registry.
+     *
+     * @param registry    a {@link MetricsRegistry}
+     * @param grouped     if true, all the metrics of the same group and type share one MBean;
+     *                    otherwise each metric has its own
+     */
+    public GroupedJmxReporter(MetricsRegistry registry, boolean grouped) {
+        super(registry);
+        this.grouped = grouped;
+        this.server = ManagementFactory.getPlatformMBeanServer();
+        this.beans = new ConcurrentHashMap<ObjectName, MetricsBean>();
+    }
+
+    /**
+     * Starts the reporter.
+     */
+    public final void start() {
+        getMetricsRegistry().addListener(this);
+    }
+
+    @Override
+    public synchronized void onMetricAdded(MetricName name, Metric metric) {
+        try {
+            final ObjectName objectName = objectNameOf(name);
+            final MetricsBean existing = beans.get(objectName);
+            if (existing != null) {
+                existing.add(name, metric, attributePrefixOf(name));
+                return;
+            }
+            final MetricsBean bean = new MetricsBean(getMetricsRegistry(), objectName);
+            if (bean.add(name, metric, attributePrefixOf(name))) {
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(bean, objectName);
+                beans.put(objectName, bean);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error processing {}", name, e);
+        }
+    }
+
+    @Override
+    public synchronized void onMetricRemoved(MetricName name) {
+        final ObjectName objectName;
+        try {
+            objectName = objectNameOf(name);
+        } catch (MalformedObjectNameException e) {
+            return;
+        }
+        final MetricsBean bean = beans.get(objectName);
+        if (bean != null) {
+            bean.remove(name);
+            if (bean.isEmpty()) {
+                beans.remove(objectName);
+                unregisterBean(objectName);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        getMetricsRegistry().removeListener(this);
+        for (ObjectName name : beans.keySet()) {
+            unregisterBean(name);
+        }
+        beans.clear();
+    }
+
+    private ObjectName objectNameOf(MetricName name) throws MalformedObjectNameException {
+        if (grouped) {
+            return new ObjectName(domainOf(name.getGroup()) + ":type=" + valueOf(name.getType()));
+        }
+        return new ObjectName(name.getMBeanName());
+    }
+
+    /**
+     * Returns the group as it is, since quotes in a domain are part of its name, unless it holds a
+     * character which a domain cannot.
+     */
+    private static String domainOf(String group) {
+        return containsAny(group, ":*?\n") ? ObjectName.quote(group) : group;
+    }
+
+    /**
+     * Returns the value as it is, unless it holds a character which an unquoted value cannot.
+     */
+    private static String valueOf(String value) {
+        return (value.length() == 0 || containsAny(value, ",=:\"*?\n")) ? ObjectName.quote(value) : value;
+    }
+
+    private static boolean containsAny(String s, String chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (s.indexOf(chars.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String attributePrefixOf(MetricName name) {
+        if (!grouped) {
+            return "";
+        }
+        final StringBuilder prefix = new StringBuilder();
+        if (name.hasScope()) {
+            appendEscaped(prefix, name.getScope()).append('.');
+        }
+        if (name.getName().length() > 0) {
+            appendEscaped(prefix, name.getName()).append('.');
+        }
+        return prefix.toString();
+    }
+
+    private static StringBuilder appendEscaped(StringBuilder prefix, String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            final char c = segment.charAt(i);
+            if (c == '.' || c == '\\') {
+                prefix.append('\\');
+            }
+            prefix.append(c);
+        }
+        return prefix;
+    }
+
+    private void unregisterBean(ObjectName name) {
+        try {
+            server.unregisterMBean(name);
+        } catch (InstanceNotFoundException e) {
+            // the MBeanServer may already have been cleared if the process is shutting down
+            LOGGER.trace("Error unregistering {}", name, e);
+        } catch (MBeanRegistrationException e) {
+            LOGGER.debug("Error unregistering {}", name, e);
+        }
+    }
+}
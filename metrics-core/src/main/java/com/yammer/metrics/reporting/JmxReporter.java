@@ -1,25 +1,56 @@
 package com.yammer.metrics.reporting;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.management.*;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A reporter which exposes application metric as JMX MBeans.
+ * <p/>
+ * By default, a metric's MBean is registered by the thread which adds the metric to the registry.
+ * Registering an MBean takes the MBeanServer's locks, so an application which creates many
+ * metrics at once can instead have the reporter register them asynchronously: metrics added and
+ * removed are queued, and a dedicated thread registers and unregisters their MBeans in batches,
+ * skipping those of metrics which were removed again before their turn came.
  */
 public class JmxReporter extends AbstractReporter implements MetricsRegistryListener,
                                                              MetricProcessor<JmxReporter.Context> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JmxReporter.class);
 
-    private final Map<MetricName, ObjectName> registeredBeans;
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final ConcurrentMap<MetricName, ObjectName> registeredBeans;
     private final MBeanServer server;
+    private final BlockingQueue<Registration> registrations;
+    private final Thread registrar;
+    private volatile boolean closed;
+
+    /**
+     * A metric to register, or, if {@code metric} is {@code null}, the name of one to unregister.
+     */
+    private static final class Registration {
+        private final MetricName name;
+        private final Metric metric;
+
+        private Registration(MetricName name, Metric metric) {
+            this.name = name;
+            this.metric = metric;
+        }
+    }
 
     // CHECKSTYLE:OFF
     @SuppressWarnings("UnusedDeclaration")
@@ -42,6 +73,35 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         }
     }
 
+    /**
+     * Takes the snapshots of a metric for the getters of its MBean from the registry's current
+     * {@link RegistrySnapshot}. JMX clients read each attribute separately, so without this a
+     * client reading every percentile would take a new snapshot, and sort the sample again, for
+     * each one.
+     */
+    private static final class SharedSnapshot {
+        private final MetricsRegistry registry;
+        private final Sampling metric;
+
+        private SharedSnapshot(MetricsRegistry registry, Sampling metric) {
+            this.registry = registry;
+            this.metric = metric;
+        }
+
+        Snapshot get() {
+            return registry.peekSnapshot().getSnapshot(metric);
+        }
+
+        /**
+         * Returns the summary which goes with the current snapshot.
+         *
+         * @see AbstractReporter#summaryOf(Summarizable, Snapshot)
+         */
+        Summarizable summary() {
+            return summaryOf((Summarizable) metric, get());
+        }
+    }
+
     // CHECKSTYLE:OFF
     @SuppressWarnings("UnusedDeclaration")
     public interface GaugeMBean extends MetricMBean {
@@ -64,6 +124,50 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         }
     }
 
+    // CHECKSTYLE:OFF
+    @SuppressWarnings("UnusedDeclaration")
+    public interface LongGaugeMBean extends MetricMBean {
+        long getValue();
+    }
+    // CHECKSTYLE:ON
+
+
+    private static class LongGauge extends AbstractBean implements LongGaugeMBean {
+        private final com.yammer.metrics.core.LongGauge metric;
+
+        private LongGauge(com.yammer.metrics.core.LongGauge metric, ObjectName objectName) {
+            super(objectName);
+            this.metric = metric;
+        }
+
+        @Override
+        public long getValue() {
+            return metric.longValue();
+        }
+    }
+
+    // CHECKSTYLE:OFF
+    @SuppressWarnings("UnusedDeclaration")
+    public interface DoubleGaugeMBean extends MetricMBean {
+        double getValue();
+    }
+    // CHECKSTYLE:ON
+
+
+    private static class DoubleGauge extends AbstractBean implements DoubleGaugeMBean {
+        private final com.yammer.metrics.core.DoubleGauge metric;
+
+        private DoubleGauge(com.yammer.metrics.core.DoubleGauge metric, ObjectName objectName) {
+            super(objectName);
+            this.metric = metric;
+        }
+
+        @Override
+        public double getValue() {
+            return metric.doubleValue();
+        }
+    }
+
     // CHECKSTYLE:OFF
     @SuppressWarnings("UnusedDeclaration")
     public interface CounterMBean extends MetricMBean {
@@ -181,10 +285,13 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
     private static class Histogram implements HistogramMBean {
         private final ObjectName objectName;
         private final com.yammer.metrics.core.Histogram metric;
+        private final SharedSnapshot snapshot;
 
-        private Histogram(com.yammer.metrics.core.Histogram metric, ObjectName objectName) {
+        private Histogram(com.yammer.metrics.core.Histogram metric, ObjectName objectName,
+                          MetricsRegistry registry) {
             this.metric = metric;
             this.objectName = objectName;
+            this.snapshot = new SharedSnapshot(registry, metric);
         }
 
         @Override
@@ -194,62 +301,62 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
         @Override
         public double get50thPercentile() {
-            return metric.getSnapshot().getMedian();
+            return snapshot.get().getMedian();
         }
 
         @Override
         public long getCount() {
-            return metric.count();
+            return countOf(metric, snapshot.get());
         }
 
         @Override
         public double getMin() {
-            return metric.min();
+            return snapshot.summary().min();
         }
 
         @Override
         public double getMax() {
-            return metric.max();
+            return snapshot.summary().max();
         }
 
         @Override
         public double getMean() {
-            return metric.mean();
+            return snapshot.summary().mean();
         }
 
         @Override
         public double getStdDev() {
-            return metric.stdDev();
+            return snapshot.summary().stdDev();
         }
 
         @Override
         public double get75thPercentile() {
-            return metric.getSnapshot().get75thPercentile();
+            return snapshot.get().get75thPercentile();
         }
 
         @Override
         public double get95thPercentile() {
-            return metric.getSnapshot().get95thPercentile();
+            return snapshot.get().get95thPercentile();
         }
 
         @Override
         public double get98thPercentile() {
-            return metric.getSnapshot().get98thPercentile();
+            return snapshot.get().get98thPercentile();
         }
 
         @Override
         public double get99thPercentile() {
-            return metric.getSnapshot().get99thPercentile();
+            return snapshot.get().get99thPercentile();
         }
 
         @Override
         public double get999thPercentile() {
-            return metric.getSnapshot().get999thPercentile();
+            return snapshot.get().get999thPercentile();
         }
 
         @Override
         public double[] values() {
-            return metric.getSnapshot().getValues();
+            return snapshot.get().getValues();
         }
     }
 
@@ -262,15 +369,18 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
     static class Timer extends Meter implements TimerMBean {
         private final com.yammer.metrics.core.Timer metric;
+        private final SharedSnapshot snapshot;
 
-        private Timer(com.yammer.metrics.core.Timer metric, ObjectName objectName) {
+        private Timer(com.yammer.metrics.core.Timer metric, ObjectName objectName,
+                      MetricsRegistry registry) {
             super(metric, objectName);
             this.metric = metric;
+            this.snapshot = new SharedSnapshot(registry, metric);
         }
 
         @Override
         public double get50thPercentile() {
-            return metric.getSnapshot().getMedian();
+            return snapshot.get().getMedian();
         }
 
         @Override
@@ -280,52 +390,52 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
         @Override
         public double getMin() {
-            return metric.min();
+            return snapshot.summary().min();
         }
 
         @Override
         public double getMax() {
-            return metric.max();
+            return snapshot.summary().max();
         }
 
         @Override
         public double getMean() {
-            return metric.mean();
+            return snapshot.summary().mean();
         }
 
         @Override
         public double getStdDev() {
-            return metric.stdDev();
+            return snapshot.summary().stdDev();
         }
 
         @Override
         public double get75thPercentile() {
-            return metric.getSnapshot().get75thPercentile();
+            return snapshot.get().get75thPercentile();
         }
 
         @Override
         public double get95thPercentile() {
-            return metric.getSnapshot().get95thPercentile();
+            return snapshot.get().get95thPercentile();
         }
 
         @Override
         public double get98thPercentile() {
-            return metric.getSnapshot().get98thPercentile();
+            return snapshot.get().get98thPercentile();
         }
 
         @Override
         public double get99thPercentile() {
-            return metric.getSnapshot().get99thPercentile();
+            return snapshot.get().get99thPercentile();
         }
 
         @Override
         public double get999thPercentile() {
-            return metric.getSnapshot().get999thPercentile();
+            return snapshot.get().get999thPercentile();
         }
 
         @Override
         public double[] values() {
-            return metric.getSnapshot().getValues();
+            return snapshot.get().getValues();
         }
     }
 
@@ -383,14 +493,91 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
      * @param registry    a {@link MetricsRegistry}
      */
     public JmxReporter(MetricsRegistry registry) {
+        this(registry, false);
+    }
+
+    /**
+     * Creates a new {@link JmxReporter} for the given registry.
+     *
+     * @param registry        a {@link MetricsRegistry}
+     * @param asynchronous    if true, MBeans are registered and unregistered in batches on a
+     *                        dedicated thread rather than by the threads which add and remove
+     *                        metrics
+     */
+    public JmxReporter(MetricsRegistry registry, boolean asynchronous) {
         super(registry);
         this.registeredBeans = new ConcurrentHashMap<MetricName, ObjectName>(100);
         this.server = ManagementFactory.getPlatformMBeanServer();
+        if (asynchronous) {
+            this.registrations = new LinkedBlockingQueue<Registration>();
+            this.registrar = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    registerInBatches();
+                }
+            }, "metrics-jmx-registrar");
+            registrar.setDaemon(true);
+        } else {
+            this.registrations = null;
+            this.registrar = null;
+        }
     }
 
     @Override
     public void onMetricAdded(MetricName name, Metric metric) {
-        if (metric != null) {
+        if (registrations != null) {
+            registrations.offer(new Registration(name, metric));
+        } else {
+            register(name, metric);
+        }
+    }
+
+    @Override
+    public void onMetricRemoved(MetricName name) {
+        if (registrations != null) {
+            registrations.offer(new Registration(name, null));
+        } else {
+            unregister(name);
+        }
+    }
+
+    private void registerInBatches() {
+        final List<Registration> batch = new ArrayList<Registration>();
+        final Map<MetricName, Metric> latest = new LinkedHashMap<MetricName, Metric>();
+        while (true) {
+            try {
+                batch.add(registrations.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            registrations.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            // only the last event for each metric matters, so a metric which was added and then
+            // removed again is never registered at all
+            for (Registration registration : batch) {
+                latest.put(registration.name, registration.metric);
+            }
+            for (Map.Entry<MetricName, Metric> entry : latest.entrySet()) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    if (entry.getValue() == null) {
+                        unregister(entry.getKey());
+                    } else {
+                        register(entry.getKey(), entry.getValue());
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Error registering {}", entry.getKey(), e);
+                }
+            }
+            batch.clear();
+            latest.clear();
+        }
+    }
+
+    private void register(MetricName name, Metric metric) {
+        if (metric != null && !closed) {
             try {
                 metric.processWith(this, name, new Context(name, new ObjectName(name.getMBeanName())));
             } catch (Exception e) {
@@ -399,8 +586,7 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         }
     }
 
-    @Override
-    public void onMetricRemoved(MetricName name) {
+    private void unregister(MetricName name) {
         final ObjectName objectName = registeredBeans.remove(name);
         if (objectName != null) {
             unregisterBean(objectName);
@@ -423,35 +609,59 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
     @Override
     public void processHistogram(MetricName name, com.yammer.metrics.core.Histogram histogram, Context context) throws Exception {
         registerBean(context.getMetricName(),
-                     new Histogram(histogram, context.getObjectName()),
+                     new Histogram(histogram, context.getObjectName(), getMetricsRegistry()),
                      context.getObjectName());
     }
 
     @Override
     public void processTimer(MetricName name, com.yammer.metrics.core.Timer timer, Context context) throws Exception {
-        registerBean(context.getMetricName(), new Timer(timer, context.getObjectName()),
+        registerBean(context.getMetricName(),
+                     new Timer(timer, context.getObjectName(), getMetricsRegistry()),
                      context.getObjectName());
     }
 
     @Override
     public void processGauge(MetricName name, com.yammer.metrics.core.Gauge<?> gauge, Context context) throws Exception {
-        registerBean(context.getMetricName(), new Gauge(gauge, context.getObjectName()),
-                     context.getObjectName());
+        final MetricMBean bean;
+        if (gauge instanceof com.yammer.metrics.core.LongGauge) {
+            bean = new LongGauge((com.yammer.metrics.core.LongGauge) gauge, context.getObjectName());
+        } else if (gauge instanceof com.yammer.metrics.core.DoubleGauge) {
+            bean = new DoubleGauge((com.yammer.metrics.core.DoubleGauge) gauge,
+                                   context.getObjectName());
+        } else {
+            bean = new Gauge(gauge, context.getObjectName());
+        }
+        registerBean(context.getMetricName(), bean, context.getObjectName());
     }
 
     @Override
     public void shutdown() {
+        this.closed = true;
         getMetricsRegistry().removeListener(this);
-        for (ObjectName name : registeredBeans.values()) {
-            unregisterBean(name);
+        if (registrar != null) {
+            registrar.interrupt();
+            try {
+                registrar.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // a registration which was already under way when the reporter was closed unregisters its
+        // own MBean if this misses it; removing each entry first means only one of them does
+        for (Map.Entry<MetricName, ObjectName> entry : registeredBeans.entrySet()) {
+            if (registeredBeans.remove(entry.getKey(), entry.getValue())) {
+                unregisterBean(entry.getValue());
+            }
         }
-        registeredBeans.clear();
     }
 
     /**
      * Starts the reporter.
      */
     public final void start() {
+        if (registrar != null) {
+            registrar.start();
+        }
         getMetricsRegistry().addListener(this);
     }
 
@@ -463,6 +673,10 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         }
         server.registerMBean(bean, objectName);
         registeredBeans.put(name, objectName);
+        if (closed && registeredBeans.remove(name, objectName)) {
+            // the reporter was shut down while the MBean was being registered
+            unregisterBean(objectName);
+        }
     }
 
     private void unregisterBean(ObjectName name) {
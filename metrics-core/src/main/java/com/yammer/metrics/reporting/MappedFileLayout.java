@@ -0,0 +1,67 @@
+package com.yammer.metrics.reporting;
+
+/**
+ * The layout of the file written by {@link MappedFileReporter} and read by
+ * {@link MappedFileReader}. All values are in the platform's native byte order.
+ * <p/>
+ * The file starts with a header:
+ * <pre>
+ *   0  int   magic number
+ *   4  int   layout version
+ *   8  int   number of slots
+ *  12  int   size of each slot, in bytes
+ *  16  long  time of the last update, in milliseconds since the epoch
+ * </pre>
+ * followed by fixed-size slots, one per metric:
+ * <pre>
+ *   0  long     sequence number, odd while the slot is being written
+ *   8  int      metric type, or {@code 0} if the slot is free
+ *  12  int      length of the metric's name, in bytes
+ *  16  byte[]   the metric's name, UTF-8 encoded
+ * 136  long     the metric's count
+ * 144  double[] the metric's values
+ * </pre>
+ */
+final class MappedFileLayout {
+    static final int MAGIC = 0x4D455452;    // "METR"
+    static final int VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int VERSION_OFFSET = 4;
+    static final int SLOT_COUNT_OFFSET = 8;
+    static final int SLOT_SIZE_OFFSET = 12;
+    static final int LAST_UPDATE_OFFSET = 16;
+    static final int HEADER_SIZE = 64;
+
+    static final int SEQUENCE_OFFSET = 0;
+    static final int TYPE_OFFSET = 8;
+    static final int NAME_LENGTH_OFFSET = 12;
+    static final int NAME_OFFSET = 16;
+    static final int NAME_CAPACITY = 120;
+    static final int COUNT_OFFSET = NAME_OFFSET + NAME_CAPACITY;
+    static final int VALUES_OFFSET = COUNT_OFFSET + 8;
+    static final int VALUE_CAPACITY = 14;
+    static final int SLOT_SIZE = VALUES_OFFSET + VALUE_CAPACITY * 8;
+
+    private MappedFileLayout() { /* unused */ }
+
+    /**
+     * Returns the offset of the given slot from the start of the file.
+     *
+     * @param slot the index of a slot
+     * @return the offset of {@code slot}
+     */
+    static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Returns the size of a file with the given number of slots.
+     *
+     * @param slotCount the number of slots
+     * @return the size of the file, in bytes
+     */
+    static long fileSize(int slotCount) {
+        return HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+    }
+}
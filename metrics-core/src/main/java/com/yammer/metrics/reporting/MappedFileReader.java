@@ -0,0 +1,279 @@
+package com.yammer.metrics.reporting;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import static com.yammer.metrics.reporting.MappedFileLayout.*;
+
+/**
+ * Reads the metrics which a {@link MappedFileReporter} in another process has written to a
+ * memory-mapped file. Reading a metric is a handful of loads from shared memory into a reusable
+ * {@link Entry}: it makes no system calls, and neither the reader nor the monitored process
+ * allocates anything to do it. Only {@link Entry#name()} allocates, to decode the name into a
+ * {@link String}; {@link Entry#name(byte[])} copies the encoded name instead.
+ * <p/>
+ * A reader is not thread-safe.
+ * <pre><code>
+ * final MappedFileReader reader = new MappedFileReader(new File("/tmp/app.metrics"));
+ * final MappedFileReader.Entry entry = new MappedFileReader.Entry();
+ * for (int slot = 0; slot &lt; reader.slotCount(); slot++) {
+ *     if (reader.read(slot, entry)) {
+ *         System.out.println(entry.name() + " = " + entry.count());
+ *     }
+ * }
+ * </code></pre>
+ */
+public class MappedFileReader implements Closeable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_ATTEMPTS = 10000;
+
+    /**
+     * The type of a metric.
+     */
+    public enum Type {
+        /**
+         * A counter; its count is the counter's value.
+         */
+        COUNTER(1, 0),
+
+        /**
+         * A numeric gauge; its only value is the gauge's value.
+         */
+        GAUGE(2, 1),
+
+        /**
+         * A meter; its values are its mean, 1-, 5-, and 15-minute rates.
+         */
+        METER(3, 4),
+
+        /**
+         * A histogram; its values are its minimum, maximum, mean, standard deviation, median, and
+         * 75th, 95th, 98th, 99th, and 99.9th percentiles.
+         */
+        HISTOGRAM(4, 10),
+
+        /**
+         * A timer; its values are its mean, 1-, 5-, and 15-minute rates, followed by the minimum,
+         * maximum, mean, standard deviation, median, and 75th, 95th, 98th, 99th, and 99.9th
+         * percentile durations.
+         */
+        TIMER(5, 14);
+
+        // codes are ordinal + 1, with 0 marking a free slot
+        private static final Type[] BY_CODE = values();
+
+        private final int code;
+        private final int valueCount;
+
+        Type(int code, int valueCount) {
+            this.code = code;
+            this.valueCount = valueCount;
+        }
+
+        int code() {
+            return code;
+        }
+
+        /**
+         * Returns the number of values a metric of this type has.
+         *
+         * @return the number of values a metric of this type has
+         */
+        public int valueCount() {
+            return valueCount;
+        }
+
+        static Type forCode(int code) {
+            return (code > 0 && code <= BY_CODE.length) ? BY_CODE[code - 1] : null;
+        }
+    }
+
+    /**
+     * A consistent copy of one slot of the file, which is reused from read to read.
+     */
+    public static class Entry {
+        /**
+         * The maximum length of a metric's name, in bytes.
+         */
+        public static final int MAX_NAME_LENGTH = NAME_CAPACITY;
+
+        private final byte[] nameBytes = new byte[NAME_CAPACITY];
+        private final double[] values = new double[VALUE_CAPACITY];
+        private int nameLength;
+        private String name;
+        private Type type;
+        private long count;
+
+        /**
+         * Returns the metric's name, as {@code group.type[.scope].name}.
+         *
+         * @return the metric's name
+         */
+        public String name() {
+            if (name == null) {
+                name = new String(nameBytes, 0, nameLength, UTF_8);
+            }
+            return name;
+        }
+
+        /**
+         * Copies the metric's name, as {@code group.type[.scope].name} encoded in UTF-8, into the
+         * given buffer without allocating anything.
+         *
+         * @param buffer the buffer into which to copy the name, which must be large enough to hold
+         *               it; no name is longer than {@link #MAX_NAME_LENGTH} bytes
+         * @return the length of the name, in bytes
+         */
+        public int name(byte[] buffer) {
+            System.arraycopy(nameBytes, 0, buffer, 0, nameLength);
+            return nameLength;
+        }
+
+        /**
+         * Returns the metric's type.
+         *
+         * @return the metric's type
+         */
+        public Type type() {
+            return type;
+        }
+
+        /**
+         * Returns the metric's count.
+         *
+         * @return the metric's count
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns one of the metric's values.
+         *
+         * @param index the index of the value, less than {@link Type#valueCount()}
+         * @return the value at {@code index}
+         * @see Type
+         */
+        public double value(int index) {
+            if (index < 0 || index >= type.valueCount()) {
+                throw new IndexOutOfBoundsException(index + " is not a value of a " + type);
+            }
+            return values[index];
+        }
+    }
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private volatile int fence;
+
+    /**
+     * Maps the given file, which must have been created by a {@link MappedFileReporter}.
+     *
+     * @param file the file to read
+     * @throws IOException if the file cannot be mapped or was not written by a
+     *                     {@link MappedFileReporter}
+     */
+    public MappedFileReader(File file) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = this.file.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException(file + " is not a metrics file");
+            }
+            if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IOException(file + " has an unsupported layout version: " +
+                                              buffer.getInt(VERSION_OFFSET));
+            }
+            if (buffer.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE ||
+                    buffer.capacity() < fileSize(buffer.getInt(SLOT_COUNT_OFFSET))) {
+                throw new IOException(file + " is truncated or corrupt");
+            }
+            this.slotCount = buffer.getInt(SLOT_COUNT_OFFSET);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of slots in the file.
+     *
+     * @return the number of slots in the file
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the time at which the reporter last finished updating the file.
+     *
+     * @return the time of the last update, in milliseconds since the epoch
+     */
+    public long lastUpdated() {
+        return buffer.getLong(LAST_UPDATE_OFFSET);
+    }
+
+    /**
+     * Copies the given slot into {@code entry}, retrying until it gets a copy which was not being
+     * written to at the same time.
+     *
+     * @param slot  the index of the slot, less than {@link #slotCount()}
+     * @param entry the entry into which the slot is copied
+     * @return {@code true} if the slot holds a metric, {@code false} if it is free or stayed
+     *         mid-update for too long (e.g. because the monitored process died while writing it)
+     */
+    public boolean read(int slot, Entry entry) {
+        if (slot < 0 || slot >= slotCount) {
+            throw new IndexOutOfBoundsException(slot + " is not a slot");
+        }
+        final int base = slotOffset(slot);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            final long before = buffer.getLong(base + SEQUENCE_OFFSET);
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            fence();
+
+            final int code = buffer.getInt(base + TYPE_OFFSET);
+            final int nameLength = Math.min(buffer.getInt(base + NAME_LENGTH_OFFSET), NAME_CAPACITY);
+            for (int i = 0; i < nameLength; i++) {
+                entry.nameBytes[i] = buffer.get(base + NAME_OFFSET + i);
+            }
+            entry.count = buffer.getLong(base + COUNT_OFFSET);
+            for (int i = 0; i < VALUE_CAPACITY; i++) {
+                entry.values[i] = buffer.getDouble(base + VALUES_OFFSET + i * 8);
+            }
+
+            fence();
+            if (buffer.getLong(base + SEQUENCE_OFFSET) == before) {
+                entry.type = Type.forCode(code);
+                entry.nameLength = Math.max(nameLength, 0);
+                entry.name = null;
+                return entry.type != null;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    // Keeps the loads of a slot's contents between the loads of its sequence number. The memory
+    // model says nothing about memory shared with another process; this relies on a volatile
+    // access being a full compiler and hardware barrier, as it is on HotSpot.
+    private void fence() {
+        fence = 0;
+    }
+}
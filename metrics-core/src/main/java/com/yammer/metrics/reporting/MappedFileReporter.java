@@ -0,0 +1,399 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.MappedFileReader.Type;
+import com.yammer.metrics.stats.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.yammer.metrics.reporting.MappedFileLayout.*;
+
+/**
+ * A reporter which periodically writes counters, meters, histograms, timers, and numeric gauges
+ * into a fixed-layout memory-mapped file, in the manner of the JVM's own {@code hsperfdata}
+ * files. Each metric is given a slot in the file when it is added to the registry, and its slot is
+ * freed when it is removed; each poll then overwrites every slot in place. A collector in another
+ * process reads the file with a {@link MappedFileReader}, which costs the monitored JVM nothing.
+ * <p/>
+ * Metrics whose names are longer than 120 bytes, and metrics added once every slot is taken, are
+ * not written.
+ */
+public class MappedFileReporter extends AbstractPollingReporter
+        implements MetricsRegistryListener, MetricProcessor<MappedFileReporter.Slot> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFileReporter.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The default number of slots in the file.
+     */
+    public static final int DEFAULT_SLOT_COUNT = 4096;
+
+    /**
+     * Enables the memory-mapped file reporter for the default metrics registry, and causes it to
+     * update the given file with the specified period.
+     *
+     * @param file   the file to write
+     * @param period the period between successive updates
+     * @param unit   the time unit of {@code period}
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static void enable(File file, long period, TimeUnit unit) throws IOException {
+        enable(Metrics.defaultRegistry(), file, period, unit);
+    }
+
+    /**
+     * Enables the memory-mapped file reporter for the given metrics registry, and causes it to
+     * update the given file with the specified period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param file            the file to write
+     * @param period          the period between successive updates
+     * @param unit            the time unit of {@code period}
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static void enable(MetricsRegistry metricsRegistry, File file, long period, TimeUnit unit)
+            throws IOException {
+        final MappedFileReporter reporter = new MappedFileReporter(metricsRegistry, file);
+        reporter.start(period, unit);
+    }
+
+    /**
+     * A metric and the slot it has been given.
+     */
+    static final class Slot {
+        private final MetricName name;
+        private final Metric metric;
+        private final int index;
+        private final int offset;
+
+        private Slot(MetricName name, Metric metric, int index) {
+            this.name = name;
+            this.metric = metric;
+            this.index = index;
+            this.offset = slotOffset(index);
+        }
+    }
+
+    private final MetricPredicate predicate;
+    private final Clock clock;
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final AtomicReferenceArray<Slot> slots;
+    private final Map<MetricName, Integer> indexes;
+    private final Queue<Integer> freeIndexes;
+    private volatile int fence;
+
+    /**
+     * Creates a new {@link MappedFileReporter} which will write all metrics from the given
+     * {@link MetricsRegistry} to a file with {@link #DEFAULT_SLOT_COUNT} slots.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} containing the metrics this reporter will
+     *                        report
+     * @param file            the file to write, which is created or replaced
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedFileReporter(MetricsRegistry metricsRegistry, File file) throws IOException {
+        this(metricsRegistry, MetricPredicate.ALL, file, DEFAULT_SLOT_COUNT, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link MappedFileReporter} which will write the metrics from the given
+     * {@link MetricsRegistry} which match the given {@link MetricPredicate} to a file with the
+     * given number of slots.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} containing the metrics this reporter will
+     *                        report
+     * @param predicate       the {@link MetricPredicate} which metrics are required to match
+     *                        before being written to the file
+     * @param file            the file to write, which is created or replaced
+     * @param slotCount       the maximum number of metrics the file can hold
+     * @param clock           the clock used to timestamp updates
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedFileReporter(MetricsRegistry metricsRegistry,
+                              MetricPredicate predicate,
+                              File file,
+                              int slotCount,
+                              Clock clock) throws IOException {
+        super(metricsRegistry, "mapped-file-reporter");
+        this.predicate = predicate;
+        this.clock = clock;
+        this.slots = new AtomicReferenceArray<Slot>(slotCount);
+        this.indexes = new ConcurrentHashMap<MetricName, Integer>();
+        this.freeIndexes = new ArrayDeque<Integer>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            freeIndexes.add(i);
+        }
+
+        // replace rather than truncate an old file, which a reader may still have mapped
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file);
+        }
+        this.file = new RandomAccessFile(file, "rw");
+        try {
+            final long size = fileSize(slotCount);
+            this.file.setLength(size);
+            this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+        buffer.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+        buffer.putLong(LAST_UPDATE_OFFSET, clock.time());
+        fence();
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    @Override
+    public void start(long period, TimeUnit unit) {
+        getMetricsRegistry().addListener(this);
+        super.start(period, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        getMetricsRegistry().removeListener(this);
+        super.shutdown();
+        try {
+            file.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing metrics file", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < slots.length(); i++) {
+            final Slot slot = slots.get(i);
+            if (slot != null) {
+                try {
+                    slot.metric.processWith(this, slot.name, slot);
+                } catch (Exception e) {
+                    LOGGER.error("Error writing metric to metrics file", e);
+                }
+            }
+        }
+        buffer.putLong(LAST_UPDATE_OFFSET, clock.time());
+    }
+
+    @Override
+    public synchronized void onMetricAdded(MetricName name, Metric metric) {
+        if (!predicate.matches(name, metric) || indexes.containsKey(name) || !isReported(metric)) {
+            return;
+        }
+
+        final byte[] nameBytes = encode(name);
+        if (nameBytes.length > NAME_CAPACITY) {
+            LOGGER.warn("Not writing {} to the metrics file: its name is too long", name);
+            return;
+        }
+
+        final Integer index = freeIndexes.poll();
+        if (index == null) {
+            LOGGER.warn("Not writing {} to the metrics file: every slot is taken", name);
+            return;
+        }
+
+        final Slot slot = new Slot(name, metric, index);
+        beginWrite(slot);
+        buffer.putInt(slot.offset + TYPE_OFFSET, typeOf(metric).code());
+        buffer.putInt(slot.offset + NAME_LENGTH_OFFSET, nameBytes.length);
+        for (int i = 0; i < nameBytes.length; i++) {
+            buffer.put(slot.offset + NAME_OFFSET + i, nameBytes[i]);
+        }
+        buffer.putLong(slot.offset + COUNT_OFFSET, 0);
+        for (int i = 0; i < VALUE_CAPACITY; i++) {
+            buffer.putDouble(slot.offset + VALUES_OFFSET + i * 8, 0.0);
+        }
+        endWrite(slot);
+
+        indexes.put(name, index);
+        slots.set(index, slot);
+    }
+
+    @Override
+    public synchronized void onMetricRemoved(MetricName name) {
+        final Integer index = indexes.remove(name);
+        if (index != null) {
+            final Slot slot = slots.getAndSet(index, null);
+            beginWrite(slot);
+            buffer.putInt(slot.offset + TYPE_OFFSET, 0);
+            buffer.putInt(slot.offset + NAME_LENGTH_OFFSET, 0);
+            endWrite(slot);
+            freeIndexes.add(index);
+        }
+    }
+
+    @Override
+    public void processCounter(MetricName name, Counter counter, Slot slot) {
+        synchronized (this) {
+            if (beginUpdate(slot)) {
+                buffer.putLong(slot.offset + COUNT_OFFSET, counter.count());
+                endWrite(slot);
+            }
+        }
+    }
+
+    @Override
+    public void processGauge(MetricName name, Gauge<?> gauge, Slot slot) {
+        final double value;
+        if (gauge instanceof LongGauge) {
+            value = ((LongGauge) gauge).longValue();
+        } else if (gauge instanceof DoubleGauge) {
+            value = ((DoubleGauge) gauge).doubleValue();
+        } else {
+            final Object boxed = gauge.value();
+            value = (boxed instanceof Number) ? ((Number) boxed).doubleValue() : Double.NaN;
+        }
+
+        synchronized (this) {
+            if (beginUpdate(slot)) {
+                putValue(slot, 0, value);
+                endWrite(slot);
+            }
+        }
+    }
+
+    @Override
+    public void processMeter(MetricName name, Metered meter, Slot slot) {
+        synchronized (this) {
+            if (beginUpdate(slot)) {
+                putMetered(slot, meter);
+                endWrite(slot);
+            }
+        }
+    }
+
+    @Override
+    public void processHistogram(MetricName name, Histogram histogram, Slot slot) {
+        final Snapshot snapshot = snapshotOf(histogram);
+        synchronized (this) {
+            if (beginUpdate(slot)) {
+                buffer.putLong(slot.offset + COUNT_OFFSET, countOf(histogram, snapshot));
+                putSummary(slot, 0, histogram, snapshot);
+                endWrite(slot);
+            }
+        }
+    }
+
+    @Override
+    public void processTimer(MetricName name, Timer timer, Slot slot) {
+        final Snapshot snapshot = snapshotOf(timer);
+        synchronized (this) {
+            if (beginUpdate(slot)) {
+                putMetered(slot, timer);
+                putSummary(slot, 4, timer, snapshot);
+                endWrite(slot);
+            }
+        }
+    }
+
+    private void putMetered(Slot slot, Metered meter) {
+        buffer.putLong(slot.offset + COUNT_OFFSET, meter.count());
+        putValue(slot, 0, meter.meanRate());
+        putValue(slot, 1, meter.oneMinuteRate());
+        putValue(slot, 2, meter.fiveMinuteRate());
+        putValue(slot, 3, meter.fifteenMinuteRate());
+    }
+
+    private void putSummary(Slot slot, int first, Summarizable metric, Snapshot snapshot) {
+        final Summarizable summary = summaryOf(metric, snapshot);
+        putValue(slot, first, summary.min());
+        putValue(slot, first + 1, summary.max());
+        putValue(slot, first + 2, summary.mean());
+        putValue(slot, first + 3, summary.stdDev());
+        putValue(slot, first + 4, snapshot.getMedian());
+        putValue(slot, first + 5, snapshot.get75thPercentile());
+        putValue(slot, first + 6, snapshot.get95thPercentile());
+        putValue(slot, first + 7, snapshot.get98thPercentile());
+        putValue(slot, first + 8, snapshot.get99thPercentile());
+        putValue(slot, first + 9, snapshot.get999thPercentile());
+    }
+
+    private void putValue(Slot slot, int index, double value) {
+        buffer.putDouble(slot.offset + VALUES_OFFSET + index * 8, value);
+    }
+
+    /**
+     * Starts writing a metric's values, unless the metric has lost its slot since the poll began.
+     * Must be called while holding the reporter's lock.
+     */
+    private boolean beginUpdate(Slot slot) {
+        if (slots.get(slot.index) != slot) {
+            return false;
+        }
+        beginWrite(slot);
+        return true;
+    }
+
+    private void beginWrite(Slot slot) {
+        final int offset = slot.offset + SEQUENCE_OFFSET;
+        buffer.putLong(offset, buffer.getLong(offset) + 1);
+        fence();
+    }
+
+    private void endWrite(Slot slot) {
+        fence();
+        final int offset = slot.offset + SEQUENCE_OFFSET;
+        buffer.putLong(offset, buffer.getLong(offset) + 1);
+    }
+
+    // Keeps the stores to a slot's contents between the stores to its sequence number. The memory
+    // model says nothing about memory shared with another process; this relies on a volatile
+    // access being a full compiler and hardware barrier, as it is on HotSpot.
+    private void fence() {
+        fence = 0;
+    }
+
+    private static boolean isReported(Metric metric) {
+        return metric instanceof Counter || metric instanceof Gauge || metric instanceof Metered ||
+                metric instanceof Histogram;
+    }
+
+    private static Type typeOf(Metric metric) {
+        if (metric instanceof Counter) {
+            return Type.COUNTER;
+        }
+        if (metric instanceof Gauge) {
+            return Type.GAUGE;
+        }
+        if (metric instanceof Timer) {
+            return Type.TIMER;
+        }
+        if (metric instanceof Histogram) {
+            return Type.HISTOGRAM;
+        }
+        return Type.METER;
+    }
+
+    private static byte[] encode(MetricName name) {
+        final StringBuilder sb = new StringBuilder()
+                .append(name.getGroup())
+                .append('.')
+                .append(name.getType())
+                .append('.');
+        if (name.hasScope()) {
+            sb.append(name.getScope())
+              .append('.');
+        }
+        return sb.append(name.getName()).toString().getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.MetricsRegistryListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of what a reporter derives from each {@link MetricName}, such as the sanitized name it
+ * reports a metric under, so that it is derived once per metric rather than on every poll.
+ * <p/>
+ * Once added as a listener to a {@link MetricsRegistry}, the cache derives an entry for each
+ * metric as it is added to the registry, and evicts it as it is removed. Entries for names the
+ * cache hasn't heard of are derived on first use.
+ *
+ * @param <T> the type of the cached entries
+ */
+public abstract class MetricNameCache<T> implements MetricsRegistryListener {
+    private final ConcurrentMap<MetricName, T> entries = new ConcurrentHashMap<MetricName, T>();
+
+    /**
+     * Returns the entry for the given name, deriving it if it isn't cached.
+     *
+     * @param name the name of a metric
+     * @return the entry for {@code name}
+     */
+    public T get(MetricName name) {
+        final T entry = entries.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        final T loaded = load(name);
+        final T existing = entries.putIfAbsent(name, loaded);
+        return (existing == null) ? loaded : existing;
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of cached entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Derives the entry for the given name.
+     *
+     * @param name the name of a metric
+     * @return the entry for {@code name}
+     */
+    protected abstract T load(MetricName name);
+
+    @Override
+    public void onMetricAdded(MetricName name, Metric metric) {
+        get(name);
+    }
+
+    @Override
+    public void onMetricRemoved(MetricName name) {
+        entries.remove(name);
+    }
+}
@@ -1,7 +1,6 @@
 package com.yammer.metrics.stats;
 
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.Math.exp;
 
@@ -26,7 +25,7 @@ public class EWMA {
     private volatile boolean initialized = false;
     private volatile double rate = 0.0;
 
-    private final AtomicLong uncounted = new AtomicLong();
+    private final LongAdder uncounted = new LongAdder();
     private final double alpha, interval;
 
     /**
@@ -77,14 +76,14 @@ public class EWMA {
      * @param n the new value
      */
     public void update(long n) {
-        uncounted.addAndGet(n);
+        uncounted.add(n);
     }
 
     /**
      * Mark the passage of time and decay the current rate accordingly.
      */
     public void tick() {
-        final long count = uncounted.getAndSet(0);
+        final long count = uncounted.sumThenReset();
         final double instantRate = count / interval;
         if (initialized) {
             rate += (alpha * (instantRate - rate));
@@ -94,6 +93,22 @@ public class EWMA {
         }
     }
 
+    /**
+     * Mark the passage of several intervals at once. This is equivalent to calling {@link #tick()}
+     * {@code intervals} times, but the intervals after the first, which saw no new values, are
+     * applied in closed form as a single decay of {@code (1 - alpha)^(intervals - 1)}.
+     *
+     * @param intervals the number of intervals which have passed
+     */
+    public void tick(long intervals) {
+        if (intervals > 0) {
+            tick();
+            if (intervals > 1) {
+                rate *= Math.pow(1 - alpha, intervals - 1);
+            }
+        }
+    }
+
     /**
      * Returns the rate in the given units of time.
      *
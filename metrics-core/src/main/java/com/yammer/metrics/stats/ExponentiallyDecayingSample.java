@@ -128,7 +128,12 @@ public class ExponentiallyDecayingSample implements Sample {
     public Snapshot getSnapshot() {
         lockForRegularUsage();
         try {
-            return new Snapshot(values.values());
+            final Object[] current = values.values().toArray();
+            final long[] copy = new long[current.length];
+            for (int i = 0; i < current.length; i++) {
+                copy[i] = (Long) current[i];
+            }
+            return new LongSnapshot(copy);
         } finally {
             unlockForRegularUsage();
         }
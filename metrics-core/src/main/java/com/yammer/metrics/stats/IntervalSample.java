@@ -0,0 +1,151 @@
+package com.yammer.metrics.stats;
+
+/**
+ * A record of every value in a stream of {@code long}s since the last snapshot was taken. Values
+ * are recorded into the active one of a pair of intervals, each a {@link LogLinearSample} and a
+ * {@link StripedSummary}; taking a snapshot swaps in the other, empty, interval for writers, waits
+ * for writers still using the old one to finish, and then snapshots and clears it. Each snapshot
+ * is therefore an {@link IntervalSnapshot} of exactly the values recorded during one interval,
+ * with their exact count, extremes, mean, and standard deviation, and recording never takes a
+ * lock.
+ * <p/>
+ * Because {@link #getSnapshot()} resets the sample, only polling reporters should call it, through
+ * {@link com.yammer.metrics.core.MetricsRegistry#snapshot()}, which shares each interval among all
+ * the reporters that poll within its TTL. Anything which reads the sample ad hoc, such as JMX or
+ * the metrics servlet, should read {@link #getLastSnapshot()} instead, through
+ * {@link com.yammer.metrics.core.MetricsRegistry#peekSnapshot()}, which returns the last completed
+ * interval without starting a new one.
+ */
+public class IntervalSample implements Sample {
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private volatile Interval active;
+    private Interval inactive;
+    private volatile IntervalSnapshot last;
+
+    /**
+     * Creates a new {@link IntervalSample} which can track any non-negative {@code long} with two
+     * significant digits of precision.
+     */
+    public IntervalSample() {
+        this(2, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new {@link IntervalSample}.
+     *
+     * @param significantDigits the number of significant decimal digits to which values are
+     *                          preserved, in {@code [1..5]}
+     * @param maxTrackableValue the largest value which can be recorded without being clamped
+     */
+    public IntervalSample(int significantDigits, long maxTrackableValue) {
+        this.active = new Interval(significantDigits, maxTrackableValue);
+        this.inactive = new Interval(significantDigits, maxTrackableValue);
+        this.last = inactive.snapshot();
+    }
+
+    /**
+     * Discards the values recorded during the current interval.
+     */
+    @Override
+    public void clear() {
+        phaser.readerLock();
+        try {
+            flip().clear();
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded during the current interval.
+     *
+     * @return the number of values recorded during the current interval
+     */
+    @Override
+    public int size() {
+        return active.values.size();
+    }
+
+    @Override
+    public void update(long value) {
+        final long token = phaser.writerCriticalSectionEnter();
+        try {
+            final Interval interval = active;
+            interval.values.update(value);
+            interval.summary.update(value);
+        } finally {
+            phaser.writerCriticalSectionExit(token);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the previous snapshot, and starts a new
+     * interval.
+     *
+     * @return an {@link IntervalSnapshot} of the values recorded during the interval which has
+     *         just ended
+     */
+    @Override
+    public Snapshot getSnapshot() {
+        phaser.readerLock();
+        try {
+            final Interval finished = flip();
+            final IntervalSnapshot snapshot = finished.snapshot();
+            finished.clear();
+            this.last = snapshot;
+            return snapshot;
+        } finally {
+            phaser.readerUnlock();
+        }
+    }
+
+    /**
+     * Returns the snapshot of the last completed interval, without starting a new one. Before the
+     * first snapshot is taken this is empty.
+     *
+     * @return an {@link IntervalSnapshot} of the last completed interval
+     */
+    public IntervalSnapshot getLastSnapshot() {
+        return last;
+    }
+
+    /**
+     * Swaps the active and inactive intervals. Must be called with the reader lock held.
+     *
+     * @return the interval which was active, and which no writer is now using
+     */
+    private Interval flip() {
+        final Interval finished = active;
+        this.active = inactive;
+        this.inactive = finished;
+        phaser.flipPhase();
+        return finished;
+    }
+
+    /**
+     * The values and running statistics of one interval.
+     */
+    private static final class Interval {
+        private final LogLinearSample values;
+        private final StripedSummary summary;
+
+        Interval(int significantDigits, long maxTrackableValue) {
+            this.values = new LogLinearSample(significantDigits, maxTrackableValue);
+            this.summary = new StripedSummary();
+        }
+
+        IntervalSnapshot snapshot() {
+            return new IntervalSnapshot(values.getSnapshot(),
+                                        summary.count(),
+                                        summary.min(),
+                                        summary.max(),
+                                        summary.sum(),
+                                        Math.sqrt(summary.variance()));
+        }
+
+        void clear() {
+            values.clear();
+            summary.clear();
+        }
+    }
+}
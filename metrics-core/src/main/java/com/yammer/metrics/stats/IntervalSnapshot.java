@@ -0,0 +1,100 @@
+package com.yammer.metrics.stats;
+
+import com.yammer.metrics.core.Summarizable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A snapshot of the values recorded by an {@link IntervalSample} during one interval, along with
+ * the exact count, extremes, mean, and standard deviation of those values. Reporters use these in
+ * place of the histogram's running totals, so that everything reported for an interval histogram
+ * describes the same interval.
+ */
+public class IntervalSnapshot extends Snapshot implements Summarizable {
+    private final Snapshot values;
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double sum;
+    private final double stdDev;
+
+    /**
+     * Creates a new {@link IntervalSnapshot}.
+     *
+     * @param values the snapshot of the interval's values
+     * @param count  the number of values recorded during the interval
+     * @param min    the smallest value recorded during the interval
+     * @param max    the largest value recorded during the interval
+     * @param sum    the sum of the values recorded during the interval
+     * @param stdDev the standard deviation of the values recorded during the interval
+     */
+    public IntervalSnapshot(Snapshot values, long count, double min, double max, double sum, double stdDev) {
+        this.values = values;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.stdDev = stdDev;
+    }
+
+    /**
+     * Returns the number of values recorded during the interval.
+     *
+     * @return the number of values recorded during the interval
+     */
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public double min() {
+        return count > 0 ? min : 0.0;
+    }
+
+    @Override
+    public double max() {
+        return count > 0 ? max : 0.0;
+    }
+
+    @Override
+    public double mean() {
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    @Override
+    public double stdDev() {
+        return count > 0 ? stdDev : 0.0;
+    }
+
+    @Override
+    public double sum() {
+        return sum;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        return values.getValue(quantile);
+    }
+
+    @Override
+    public int size() {
+        return values.size();
+    }
+
+    @Override
+    public double[] getValues() {
+        return values.getValues();
+    }
+
+    @Override
+    public Snapshot convert(double divisor) {
+        return new IntervalSnapshot(values.convert(divisor), count, min / divisor, max / divisor,
+                                    sum / divisor, stdDev / divisor);
+    }
+
+    @Override
+    public void dump(File output) throws IOException {
+        values.dump(output);
+    }
+}
@@ -0,0 +1,271 @@
+package com.yammer.metrics.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-memory record of every value in a stream of {@code long}s, kept as counts in
+ * log-linear buckets in the style of Gil Tene's HdrHistogram. Values are grouped into
+ * power-of-two ranges, each of which is split into enough linear sub-buckets to preserve the
+ * requested number of significant decimal digits, so every recorded value is represented to
+ * within that relative precision regardless of its magnitude.
+ * <p/>
+ * Unlike the reservoir samples this does not discard values, so the extreme quantiles of a stream
+ * of millions of values are accurate, and snapshots compute quantiles by walking the bucket counts
+ * instead of sorting. The smallest and largest values are also tracked exactly, so the lowest and
+ * highest quantiles are the recorded extremes rather than bucket bounds. Recording a value is a
+ * single index computation and an atomic increment, plus a compare-and-set on the rare occasions
+ * that it is a new extreme.
+ * Values below zero are recorded as zero and values above the maximum trackable value are
+ * recorded as the maximum trackable value.
+ *
+ * @see <a href="http://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a>
+ */
+public class LogLinearSample implements Sample {
+    private static final int MAX_SIGNIFICANT_DIGITS = 5;
+    private static final int REPRESENTATIVE_VALUES = 1028;
+
+    private final long maxTrackableValue;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final AtomicLongArray counts;
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new {@link LogLinearSample} which can track any non-negative {@code long} with two
+     * significant digits of precision.
+     */
+    public LogLinearSample() {
+        this(2, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new {@link LogLinearSample}.
+     *
+     * @param significantDigits the number of significant decimal digits to which values are
+     *                          preserved, in {@code [1..5]}
+     * @param maxTrackableValue the largest value which can be recorded without being clamped
+     */
+    public LogLinearSample(int significantDigits, long maxTrackableValue) {
+        if (significantDigits < 1 || significantDigits > MAX_SIGNIFICANT_DIGITS) {
+            throw new IllegalArgumentException(significantDigits + " is not in [1.." +
+                                                       MAX_SIGNIFICANT_DIGITS + "]");
+        }
+        if (maxTrackableValue < 2) {
+            throw new IllegalArgumentException("maxTrackableValue must be at least 2");
+        }
+        this.maxTrackableValue = maxTrackableValue;
+
+        final long largestSingleUnitValue = 2 * (long) Math.pow(10, significantDigits);
+        this.subBucketHalfCountMagnitude = 63 - Long.numberOfLeadingZeros(largestSingleUnitValue - 1);
+        this.subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+        final int subBucketCount = subBucketHalfCount << 1;
+        this.subBucketMask = subBucketCount - 1;
+        this.leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        // one bucket covers [0, subBucketCount); each further bucket doubles the range
+        long smallestUntrackableValue = subBucketCount;
+        int bucketCount = 1;
+        while (smallestUntrackableValue <= maxTrackableValue && smallestUntrackableValue > 0) {
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+        this.counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        min.set(Long.MAX_VALUE);
+        max.set(Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the number of values recorded, or {@link Integer#MAX_VALUE} if more than that have
+     * been recorded.
+     *
+     * @return the number of values recorded
+     */
+    @Override
+    public int size() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public void update(long value) {
+        final long clamped = (value < 0) ? 0 : Math.min(value, maxTrackableValue);
+        // extremes first, so that a snapshot which sees a value's count also sees it as an extreme
+        long current;
+        while (clamped < (current = min.get()) && !min.compareAndSet(current, clamped)) {
+            // retry
+        }
+        while (clamped > (current = max.get()) && !max.compareAndSet(current, clamped)) {
+            // retry
+        }
+        counts.incrementAndGet(indexOf(clamped));
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        final long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new BucketSnapshot(copy, total, min.get(), max.get(), 1.0);
+    }
+
+    private int indexOf(long value) {
+        final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        final int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long lowestValueAt(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    private long highestValueAt(int index) {
+        final int bucketIndex = Math.max(0, (index >> subBucketHalfCountMagnitude) - 1);
+        final long lowest = lowestValueAt(index);
+        return Math.min(maxTrackableValue, lowest + (1L << bucketIndex) - 1);
+    }
+
+    /**
+     * A snapshot of the bucket counts, which computes quantiles by walking the counts in order.
+     */
+    private class BucketSnapshot extends Snapshot {
+        private final long[] bucketCounts;
+        private final long total;
+        private final long min;
+        private final long max;
+        private final double divisor;
+
+        BucketSnapshot(long[] bucketCounts, long total, long min, long max, double divisor) {
+            this.bucketCounts = bucketCounts;
+            this.total = total;
+            this.min = min;
+            this.max = max;
+            this.divisor = divisor;
+        }
+
+        /**
+         * Returns the highest value equivalent to those in the given bucket, bounded by the
+         * recorded extremes.
+         */
+        private double valueAt(int index) {
+            return Math.max(min, Math.min(max, highestValueAt(index))) / divisor;
+        }
+
+        /**
+         * Returns the highest value equivalent to the value at the given quantile, which is within
+         * the sample's precision of the recorded value.
+         *
+         * @param quantile    a given quantile, in {@code [0..1]}
+         * @return the value in the distribution at {@code quantile}
+         */
+        @Override
+        public double getValue(double quantile) {
+            if (quantile < 0.0 || quantile > 1.0) {
+                throw new IllegalArgumentException(quantile + " is not in [0..1]");
+            }
+
+            if (total == 0) {
+                return 0.0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            if (rank == 1) {
+                return min / divisor;
+            }
+            if (rank >= total) {
+                return max / divisor;
+            }
+            long seen = 0;
+            for (int i = 0; i < bucketCounts.length; i++) {
+                seen += bucketCounts[i];
+                if (seen >= rank) {
+                    return valueAt(i);
+                }
+            }
+            return max / divisor;
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        /**
+         * Returns up to 1028 values which are representative of the distribution, taken at evenly
+         * spaced ranks. If no more than 1028 values have been recorded, these are the recorded
+         * values to within the sample's precision.
+         *
+         * @return a representative set of values in the snapshot
+         */
+        @Override
+        public double[] getValues() {
+            final int n = (int) Math.min(REPRESENTATIVE_VALUES, total);
+            final double[] values = new double[n];
+            int bucket = 0;
+            long seen = bucketCounts.length == 0 ? 0 : bucketCounts[0];
+            for (int i = 0; i < n; i++) {
+                final long rank = (long) ((i + 0.5) * total / n) + 1;
+                while (seen < rank && bucket < bucketCounts.length - 1) {
+                    bucket++;
+                    seen += bucketCounts[bucket];
+                }
+                values[i] = valueAt(bucket);
+            }
+            return values;
+        }
+
+        @Override
+        public Snapshot convert(double divisor) {
+            return new BucketSnapshot(bucketCounts, total, min, max, this.divisor * divisor);
+        }
+
+        /**
+         * Writes the lowest value, highest value, and count of each non-empty bucket to the given
+         * file.
+         *
+         * @param output the file to which the buckets will be written
+         * @throws IOException if there is an error writing the buckets
+         */
+        @Override
+        public void dump(File output) throws IOException {
+            final PrintWriter writer = new PrintWriter(output);
+            try {
+                for (int i = 0; i < bucketCounts.length; i++) {
+                    if (bucketCounts[i] > 0) {
+                        writer.printf("%f,%f,%d\n",
+                                      lowestValueAt(i) / divisor,
+                                      highestValueAt(i) / divisor,
+                                      bucketCounts[i]);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
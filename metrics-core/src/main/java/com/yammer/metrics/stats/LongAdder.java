@@ -0,0 +1,144 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A sum of {@code long}s which is designed for heavily contended updates, modelled on JSR-166's
+ * {@code LongAdder}. Updates go to a single base value until two threads collide on it, after
+ * which each thread adds into one of a set of padded cells, added lazily up to one per available
+ * processor. The sum is only folded together when it is read.
+ */
+public class LongAdder {
+    private final AtomicLong base = new AtomicLong();
+    private final AtomicReference<Cell[]> cells = new AtomicReference<Cell[]>();
+
+    /**
+     * Adds the given value.
+     *
+     * @param x the value to add
+     */
+    public void add(long x) {
+        Cell[] current = cells.get();
+        if (current == null) {
+            final long b = base.get();
+            if (base.compareAndSet(b, b + x)) {
+                return;
+            }
+            current = expand(null);
+        }
+        Cell cell = current[Striping.probe() & (current.length - 1)];
+        final long v = cell.value;
+        if (!cell.compareAndSet(v, v + x)) {
+            current = expand(current);
+            cell = current[Striping.advanceProbe() & (current.length - 1)];
+            cell.getAndAdd(x);
+        }
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Subtracts one.
+     */
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * Returns the current sum. Additions which happen concurrently with this call may or may not
+     * be included.
+     *
+     * @return the current sum
+     */
+    public long sum() {
+        long sum = base.get();
+        final Cell[] current = cells.get();
+        if (current != null) {
+            for (Cell cell : current) {
+                sum += cell.value;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Resets the sum to zero.
+     */
+    public void reset() {
+        sumThenReset();
+    }
+
+    /**
+     * Returns the current sum and resets it to zero. Each part of the sum is read and cleared
+     * atomically, so concurrent additions are counted either in the returned sum or in the next
+     * one, but never lost.
+     *
+     * @return the sum before it was reset
+     */
+    public long sumThenReset() {
+        long sum = base.getAndSet(0);
+        final Cell[] current = cells.get();
+        if (current != null) {
+            for (Cell cell : current) {
+                sum += cell.getAndSet(0);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+    private Cell[] expand(Cell[] current) {
+        final int length = (current == null) ? 0 : current.length;
+        if (length >= Striping.MAX_STRIPES && current != null) {
+            return current;
+        }
+        final Cell[] expanded = new Cell[Math.max(2, length << 1)];
+        if (current != null) {
+            System.arraycopy(current, 0, expanded, 0, length);
+        }
+        for (int i = length; i < expanded.length; i++) {
+            expanded[i] = new Cell();
+        }
+        if (cells.compareAndSet(current, expanded)) {
+            return expanded;
+        }
+        return cells.get();
+    }
+
+    /**
+     * A padded cell holding part of the sum.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    private static final class Cell {
+        private static final AtomicLongFieldUpdater<Cell> VALUE =
+                AtomicLongFieldUpdater.newUpdater(Cell.class, "value");
+
+        private volatile long value;
+
+        // Padding to keep neighbouring cells off each other's cache lines.
+        private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+
+        boolean compareAndSet(long expect, long update) {
+            return VALUE.compareAndSet(this, expect, update);
+        }
+
+        long getAndAdd(long x) {
+            return VALUE.getAndAdd(this, x);
+        }
+
+        long getAndSet(long x) {
+            return VALUE.getAndSet(this, x);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.yammer.metrics.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+import static java.lang.Math.floor;
+
+/**
+ * A {@link Snapshot} of {@code long} values, kept sorted in a primitive array along with a divisor
+ * which converts them into the snapshot's units. The values are sorted once, when the snapshot is
+ * created; quantiles are read straight from the sorted array, and {@link #convert(double)} shares
+ * the array instead of copying it. A snapshot can therefore be taken once and then read by any
+ * number of getters.
+ */
+public class LongSnapshot extends Snapshot {
+    private final long[] values;
+    private final double divisor;
+
+    /**
+     * Create a new {@link LongSnapshot} with the given values. The snapshot takes ownership of the
+     * array and sorts it in place.
+     *
+     * @param values    an unordered set of values in the sample
+     */
+    public LongSnapshot(long[] values) {
+        this(sort(values), 1.0);
+    }
+
+    private LongSnapshot(long[] sortedValues, double divisor) {
+        this.values = sortedValues;
+        this.divisor = divisor;
+    }
+
+    private static long[] sort(long[] values) {
+        Arrays.sort(values);
+        return values;
+    }
+
+    @Override
+    public double getValue(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException(quantile + " is not in [0..1]");
+        }
+
+        if (values.length == 0) {
+            return 0.0;
+        }
+
+        final double pos = quantile * (values.length + 1);
+
+        if (pos < 1) {
+            return values[0] / divisor;
+        }
+
+        if (pos >= values.length) {
+            return values[values.length - 1] / divisor;
+        }
+
+        final double lower = values[(int) pos - 1];
+        final double upper = values[(int) pos];
+        return (lower + (pos - floor(pos)) * (upper - lower)) / divisor;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public double[] getValues() {
+        final double[] converted = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = values[i] / divisor;
+        }
+        return converted;
+    }
+
+    /**
+     * Returns a view of this snapshot with every value divided by {@code divisor}. The values are
+     * neither copied nor re-sorted.
+     *
+     * @param divisor a positive number by which to divide each value
+     * @return a converted view of this snapshot
+     */
+    @Override
+    public Snapshot convert(double divisor) {
+        return new LongSnapshot(values, this.divisor * divisor);
+    }
+
+    @Override
+    public void dump(File output) throws IOException {
+        final PrintWriter writer = new PrintWriter(output);
+        try {
+            for (long value : values) {
+                writer.printf("%f\n", value / divisor);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.yammer.metrics.stats;
+
+import com.yammer.metrics.core.Clock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sample of the {@code long}s recorded within a sliding window of time, e.g. the last 60
+ * seconds. Values and their {@link Clock#tick()} timestamps are written into a preallocated ring
+ * of primitives, so recording a value allocates nothing and memory use is fixed regardless of the
+ * update rate. If more values arrive within the window than the ring can hold, the oldest are
+ * overwritten first and counted as {@link #dropped() dropped}. Snapshots skip values which are
+ * being written as they are read, so a value is never paired with another value's timestamp.
+ */
+public class SlidingTimeWindowSample implements Sample {
+    private static final int DEFAULT_CAPACITY = 2048;
+    private static final int SLOT_LENGTH = 3;
+
+    private final Clock clock;
+    private final long window;
+    private final int mask;
+    // (stamp, timestamp, value) slots. The stamp is the number of writes once the slot's value was
+    // written, or its negation while an update is writing it, so a reader which sees the same
+    // positive stamp before and after reading a pair read a pair which was written whole.
+    private final AtomicLongArray ring;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    // the number of writes when the sample was last cleared; values written before are ignored
+    private volatile long cleared;
+
+    /**
+     * Creates a new {@link SlidingTimeWindowSample} which holds up to 2048 values.
+     *
+     * @param window     the length of the window
+     * @param windowUnit the unit of {@code window}
+     */
+    public SlidingTimeWindowSample(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, DEFAULT_CAPACITY, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link SlidingTimeWindowSample}.
+     *
+     * @param window     the length of the window
+     * @param windowUnit the unit of {@code window}
+     * @param capacity   the maximum number of values to hold, rounded up to a power of two
+     * @param clock      the clock used to timestamp values
+     */
+    public SlidingTimeWindowSample(long window, TimeUnit windowUnit, int capacity, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        final int size = Striping.nextPowerOfTwo(capacity);
+        this.clock = clock;
+        this.window = windowUnit.toNanos(window);
+        this.mask = size - 1;
+        this.ring = new AtomicLongArray(size * SLOT_LENGTH);
+    }
+
+    @Override
+    public void clear() {
+        this.cleared = writes.get();
+        dropped.set(0);
+    }
+
+    @Override
+    public int size() {
+        final long now = clock.tick();
+        final long since = cleared;
+        final long written = writes.get();
+        int size = 0;
+        for (long i = firstReadable(since, written); i < written; i++) {
+            final int slot = slotIndex(i);
+            if (ring.get(slot) > since && now - ring.get(slot + 1) <= window) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void update(long value) {
+        final long now = clock.tick();
+        final long i = writes.getAndIncrement();
+        final int slot = slotIndex(i);
+        final long stamp = ring.get(slot);
+        if (stamp < 0 || !ring.compareAndSet(slot, stamp, -(i + 1))) {
+            // an update a whole ring of values ago is still writing this slot
+            dropped.incrementAndGet();
+            return;
+        }
+        if (stamp > cleared && now - ring.get(slot + 1) <= window) {
+            dropped.incrementAndGet();
+        }
+        ring.set(slot + 1, now);
+        ring.set(slot + 2, value);
+        ring.set(slot, i + 1);
+    }
+
+    /**
+     * Returns the number of values which were overwritten while still inside the window because
+     * the ring was full.
+     *
+     * @return the number of values dropped since the sample was created or last cleared
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        final long now = clock.tick();
+        final long since = cleared;
+        final long written = writes.get();
+        final long first = firstReadable(since, written);
+        final long[] values = new long[(int) (written - first)];
+        int size = 0;
+        for (long i = first; i < written; i++) {
+            final int slot = slotIndex(i);
+            final long stamp = ring.get(slot);
+            if (stamp <= since) {
+                // being written, or written before the sample was last cleared
+                continue;
+            }
+            final long timestamp = ring.get(slot + 1);
+            final long value = ring.get(slot + 2);
+            // skip pairs which were overwritten while being read
+            if (ring.get(slot) == stamp && now - timestamp <= window) {
+                values[size++] = value;
+            }
+        }
+        return new LongSnapshot(Arrays.copyOf(values, size));
+    }
+
+    private long firstReadable(long since, long written) {
+        return Math.max(since, written - (mask + 1));
+    }
+
+    private int slotIndex(long i) {
+        return ((int) i & mask) * SLOT_LENGTH;
+    }
+}
@@ -8,7 +8,9 @@ import java.util.*;
 import static java.lang.Math.floor;
 
 /**
- * A statistical snapshot of a {@link Snapshot}.
+ * A statistical snapshot of a {@link Sample}.
+ *
+ * @see LongSnapshot
  */
 public class Snapshot {
     private static final double MEDIAN_Q = 0.5;
@@ -20,6 +22,15 @@ public class Snapshot {
 
     private final double[] values;
 
+    /**
+     * Create a new, empty {@link Snapshot}. Subclasses which do not keep every value in an array
+     * must override {@link #getValue(double)}, {@link #size()}, {@link #getValues()},
+     * {@link #convert(double)}, and {@link #dump(File)}.
+     */
+    protected Snapshot() {
+        this.values = new double[0];
+    }
+
     /**
      * Create a new {@link Snapshot} with the given values.
      *
@@ -40,9 +51,25 @@ public class Snapshot {
      * @param values    an unordered set of values in the sample
      */
     public Snapshot(double[] values) {
-        this.values = new double[values.length];
-        System.arraycopy(values, 0, this.values, 0, values.length);
-        Arrays.sort(this.values);
+        this(values, true);
+    }
+
+    private Snapshot(double[] values, boolean copyAndSort) {
+        if (copyAndSort) {
+            this.values = new double[values.length];
+            System.arraycopy(values, 0, this.values, 0, values.length);
+            Arrays.sort(this.values);
+        } else {
+            this.values = values;
+        }
+    }
+
+    /**
+     * Returns a snapshot which holds the given array, which must already be sorted, without
+     * copying or sorting it.
+     */
+    private static Snapshot ofSorted(double[] sortedValues) {
+        return new Snapshot(sortedValues, false);
     }
 
     /**
@@ -147,6 +174,21 @@ public class Snapshot {
         return Arrays.copyOf(values, values.length);
     }
 
+    /**
+     * Returns a copy of this snapshot with every value divided by {@code divisor}, e.g. to convert
+     * nanosecond durations into another unit. The values are not re-sorted.
+     *
+     * @param divisor a positive number by which to divide each value
+     * @return a converted copy of this snapshot
+     */
+    public Snapshot convert(double divisor) {
+        final double[] converted = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            converted[i] = values[i] / divisor;
+        }
+        return ofSorted(converted);
+    }
+
     /**
      * Writes the values of the sample to the given file.
      *
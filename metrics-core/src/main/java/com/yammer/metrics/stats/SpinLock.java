@@ -0,0 +1,49 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A minimal test-and-test-and-set lock guarding a single stripe. Stripes are only ever held for a
+ * handful of instructions, and a thread which fails to acquire one is expected to move to another
+ * stripe rather than wait, so this never parks.
+ * <p/>
+ * Stripes extend this class so that the lock's state lives in the stripe itself rather than in a
+ * separate object. The JVM lays out a superclass's fields before its subclass's, so the padding
+ * here keeps the lock and the stripe's fields off the cache line of whatever precedes the stripe
+ * on the heap; stripes pad after their own fields to protect the other side.
+ */
+@SuppressWarnings("UnusedDeclaration")
+class SpinLock {
+    private static final AtomicIntegerFieldUpdater<SpinLock> LOCKED =
+            AtomicIntegerFieldUpdater.newUpdater(SpinLock.class, "locked");
+
+    // Padding to keep the lock off the cache line of the preceding object.
+    private long lockPad0, lockPad1, lockPad2, lockPad3, lockPad4, lockPad5, lockPad6, lockPad7;
+
+    private volatile int locked;
+
+    /**
+     * Acquires the lock if it is free.
+     *
+     * @return {@code true} if the lock was acquired
+     */
+    boolean tryLock() {
+        return locked == 0 && LOCKED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Acquires the lock, yielding until it is free.
+     */
+    void lock() {
+        while (!tryLock()) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Releases the lock.
+     */
+    void unlock() {
+        locked = 0;
+    }
+}
@@ -0,0 +1,282 @@
+package com.yammer.metrics.stats;
+
+import com.yammer.metrics.core.Clock;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.min;
+
+/**
+ * An exponentially-decaying random sample of {@code long}s which is designed for heavily
+ * contended updates. Uses the same forward-decaying priority reservoir sampling method as
+ * {@link ExponentiallyDecayingSample}, but rather than sharing a single locked map between all
+ * threads, each thread records into one of a set of stripes, each of which is a primitive min-heap
+ * of priorities and values. Stripes are added lazily as contention is observed, up to one per
+ * available processor, and are only merged when a snapshot is taken.
+ * <p/>
+ * Because the {@code n} highest-priority values of a stream are always among the union of the
+ * {@code n} highest-priority values of each of its sub-streams, each stripe keeps a full reservoir
+ * and the merged snapshot is equivalent to that of a single reservoir. Memory use is therefore
+ * bounded by {@code reservoirSize * maxStripes} entries.
+ *
+ * @see ExponentiallyDecayingSample
+ */
+public class StripedExponentiallyDecayingSample implements Sample {
+    private static final long RESCALE_THRESHOLD = TimeUnit.HOURS.toNanos(1);
+    private final AtomicReference<Stripe[]> stripes;
+    private final double alpha;
+    private final int reservoirSize;
+    private final int maxStripes;
+    private volatile long startTime;
+    private final AtomicLong nextScaleTime = new AtomicLong(0);
+    private final Clock clock;
+
+    /**
+     * Creates a new {@link StripedExponentiallyDecayingSample}.
+     *
+     * @param reservoirSize the number of samples to keep in the sampling reservoir
+     * @param alpha         the exponential decay factor; the higher this is, the more biased the
+     *                      sample will be towards newer values
+     */
+    public StripedExponentiallyDecayingSample(int reservoirSize, double alpha) {
+        this(reservoirSize, alpha, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link StripedExponentiallyDecayingSample}.
+     *
+     * @param reservoirSize the number of samples to keep in the sampling reservoir
+     * @param alpha         the exponential decay factor; the higher this is, the more biased the
+     *                      sample will be towards newer values
+     * @param clock         the clock used to timestamp values and schedule rescaling
+     */
+    public StripedExponentiallyDecayingSample(int reservoirSize, double alpha, Clock clock) {
+        this(reservoirSize, alpha, clock, Striping.MAX_STRIPES);
+    }
+
+    /**
+     * Creates a new {@link StripedExponentiallyDecayingSample}.
+     *
+     * @param reservoirSize the number of samples to keep in the sampling reservoir
+     * @param alpha         the exponential decay factor; the higher this is, the more biased the
+     *                      sample will be towards newer values
+     * @param clock         the clock used to timestamp values and schedule rescaling
+     * @param maxStripes    the maximum number of stripes to create under contention
+     */
+    public StripedExponentiallyDecayingSample(int reservoirSize, double alpha, Clock clock, int maxStripes) {
+        if (maxStripes < 1) {
+            throw new IllegalArgumentException("maxStripes must be at least 1");
+        }
+        this.alpha = alpha;
+        this.reservoirSize = reservoirSize;
+        this.maxStripes = Striping.nextPowerOfTwo(maxStripes);
+        this.clock = clock;
+        this.stripes = new AtomicReference<Stripe[]>(new Stripe[]{ new Stripe(reservoirSize) });
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        final Stripe[] current = stripes.get();
+        this.startTime = currentTimeInSeconds();
+        nextScaleTime.set(clock.tick() + RESCALE_THRESHOLD);
+        for (Stripe stripe : current) {
+            stripe.lock();
+            try {
+                stripe.clear(startTime);
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (Stripe stripe : stripes.get()) {
+            total += stripe.size;
+        }
+        return (int) min(reservoirSize, total);
+    }
+
+    @Override
+    public void update(long value) {
+        update(value, currentTimeInSeconds());
+    }
+
+    /**
+     * Adds an old value with a fixed timestamp to the sample.
+     *
+     * @param value     the value to be added
+     * @param timestamp the epoch timestamp of {@code value} in seconds
+     */
+    public void update(long value, long timestamp) {
+        rescaleIfNeeded();
+
+        final long landmark = startTime;
+        final double priority = weight(timestamp - landmark) / ThreadLocalRandom.current()
+                                                                                .nextDouble();
+        Stripe[] current = stripes.get();
+        Stripe stripe = current[Striping.probe() & (current.length - 1)];
+        if (!stripe.tryLock()) {
+            // another thread is recording into this stripe; spread out before waiting on it
+            current = expand(current);
+            stripe = current[Striping.advanceProbe() & (current.length - 1)];
+            stripe.lock();
+        }
+        try {
+            stripe.offer(priority, value, landmark, alpha);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        final long landmark = startTime;
+        final Stripe merged = new Stripe(reservoirSize);
+        merged.landmark = landmark;
+        for (Stripe stripe : stripes.get()) {
+            stripe.lock();
+            try {
+                stripe.rescale(landmark, alpha);
+                // a concurrent rescale may have moved the stripe past the landmark read above, so
+                // its priorities are relative to its own landmark
+                for (int i = 0; i < stripe.size; i++) {
+                    merged.offer(stripe.priorities[i], stripe.values[i], stripe.landmark, alpha);
+                }
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return new LongSnapshot(Arrays.copyOf(merged.values, merged.size));
+    }
+
+    private Stripe[] expand(Stripe[] current) {
+        if (current.length >= maxStripes) {
+            return current;
+        }
+        final Stripe[] expanded = new Stripe[current.length << 1];
+        System.arraycopy(current, 0, expanded, 0, current.length);
+        for (int i = current.length; i < expanded.length; i++) {
+            expanded[i] = new Stripe(reservoirSize);
+            expanded[i].landmark = startTime;
+        }
+        if (stripes.compareAndSet(current, expanded)) {
+            return expanded;
+        }
+        return stripes.get();
+    }
+
+    private void rescaleIfNeeded() {
+        final long now = clock.tick();
+        final long next = nextScaleTime.get();
+        if (now >= next && nextScaleTime.compareAndSet(next, now + RESCALE_THRESHOLD)) {
+            // Only the landmark moves here; each stripe rescales its own priorities relative to
+            // the new landmark the next time it is written to or merged into a snapshot.
+            this.startTime = currentTimeInSeconds();
+        }
+    }
+
+    private long currentTimeInSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(clock.time());
+    }
+
+    private double weight(long t) {
+        return exp(alpha * t);
+    }
+
+    /**
+     * A bounded min-heap of priorities and their values, guarded by a spin lock.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    private static final class Stripe extends SpinLock {
+        private final double[] priorities;
+        private final long[] values;
+        private volatile int size;
+        private long landmark;
+
+        // Padding to keep the following object off this stripe's cache lines; SpinLock pads the
+        // other side.
+        private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+
+        Stripe(int capacity) {
+            this.priorities = new double[capacity];
+            this.values = new long[capacity];
+        }
+
+        void clear(long newLandmark) {
+            this.size = 0;
+            this.landmark = newLandmark;
+        }
+
+        void offer(double priority, long value, long valueLandmark, double alpha) {
+            double p = priority;
+            if (valueLandmark > landmark) {
+                rescale(valueLandmark, alpha);
+            } else if (valueLandmark < landmark) {
+                p *= exp(-alpha * (landmark - valueLandmark));
+            }
+
+            final int n = size;
+            if (n < priorities.length) {
+                siftUp(n, p, value);
+                this.size = n + 1;
+            } else if (n > 0 && priorities[0] < p) {
+                siftDown(0, p, value, n);
+            }
+        }
+
+        /* See ExponentiallyDecayingSample#rescale: multiplying every priority by the same
+         * factor preserves their order, so the heap does not need to be rebuilt.
+         */
+        void rescale(long newLandmark, double alpha) {
+            if (newLandmark > landmark) {
+                final double factor = exp(-alpha * (newLandmark - landmark));
+                for (int i = 0; i < size; i++) {
+                    priorities[i] *= factor;
+                }
+                this.landmark = newLandmark;
+            }
+        }
+
+        private void siftUp(int index, double priority, long value) {
+            int i = index;
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (priorities[parent] <= priority) {
+                    break;
+                }
+                priorities[i] = priorities[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            priorities[i] = priority;
+            values[i] = value;
+        }
+
+        private void siftDown(int index, double priority, long value, int n) {
+            int i = index;
+            final int half = n >>> 1;
+            while (i < half) {
+                int child = (i << 1) + 1;
+                final int right = child + 1;
+                if (right < n && priorities[right] < priorities[child]) {
+                    child = right;
+                }
+                if (priority <= priorities[child]) {
+                    break;
+                }
+                priorities[i] = priorities[child];
+                values[i] = values[child];
+                i = child;
+            }
+            priorities[i] = priority;
+            values[i] = value;
+        }
+    }
+}
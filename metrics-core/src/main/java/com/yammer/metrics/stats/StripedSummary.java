@@ -0,0 +1,234 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A running count, sum, minimum, maximum, and variance of a stream of {@code long}s which is
+ * designed for heavily contended updates. Each thread records into one of a set of padded cells,
+ * each keeping its own Welford mean and sum of squared differences; cells are added lazily as
+ * contention is observed and are only folded together when a value is read. Recording a value
+ * allocates nothing.
+ *
+ * @see <a href="http://www.johndcook.com/standard_deviation.html">Accurately computing running
+ *      variance</a>
+ * @see <a href="http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Parallel_algorithm">
+ *      Chan et al.'s parallel variance algorithm</a>
+ */
+public class StripedSummary {
+    private final AtomicReference<Cell[]> cells;
+    private final int maxCells;
+
+    /**
+     * Creates a new {@link StripedSummary} with up to one cell per available processor.
+     */
+    public StripedSummary() {
+        this(Striping.MAX_STRIPES);
+    }
+
+    /**
+     * Creates a new {@link StripedSummary}.
+     *
+     * @param maxCells the maximum number of cells to create under contention
+     */
+    public StripedSummary(int maxCells) {
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("maxCells must be at least 1");
+        }
+        this.maxCells = Striping.nextPowerOfTwo(maxCells);
+        this.cells = new AtomicReference<Cell[]>(new Cell[]{ new Cell() });
+    }
+
+    /**
+     * Adds a recorded value.
+     *
+     * @param value the value
+     */
+    public void update(long value) {
+        Cell[] current = cells.get();
+        Cell cell = current[Striping.probe() & (current.length - 1)];
+        if (!cell.tryLock()) {
+            current = expand(current);
+            cell = current[Striping.advanceProbe() & (current.length - 1)];
+            cell.lock();
+        }
+        try {
+            cell.update(value);
+        } finally {
+            cell.unlock();
+        }
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void clear() {
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                cell.clear();
+            } finally {
+                cell.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values recorded
+     */
+    public long count() {
+        long count = 0;
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                count += cell.count;
+            } finally {
+                cell.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of all recorded values
+     */
+    public long sum() {
+        long sum = 0;
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                sum += cell.sum;
+            } finally {
+                cell.unlock();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the smallest recorded value, or {@link Long#MAX_VALUE} if no values have been
+     * recorded.
+     *
+     * @return the smallest recorded value
+     */
+    public long min() {
+        long min = Long.MAX_VALUE;
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                min = Math.min(min, cell.min);
+            } finally {
+                cell.unlock();
+            }
+        }
+        return min;
+    }
+
+    /**
+     * Returns the largest recorded value, or {@link Long#MIN_VALUE} if no values have been
+     * recorded.
+     *
+     * @return the largest recorded value
+     */
+    public long max() {
+        long max = Long.MIN_VALUE;
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                max = Math.max(max, cell.max);
+            } finally {
+                cell.unlock();
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the sample variance of all recorded values, or {@code 0.0} if fewer than two values
+     * have been recorded.
+     *
+     * @return the sample variance of all recorded values
+     */
+    public double variance() {
+        long count = 0;
+        double mean = 0;
+        double m2 = 0;
+        for (Cell cell : cells.get()) {
+            cell.lock();
+            try {
+                if (cell.count > 0) {
+                    final long total = count + cell.count;
+                    final double delta = cell.mean - mean;
+                    mean += delta * cell.count / total;
+                    m2 += cell.m2 + delta * delta * ((double) count * cell.count / total);
+                    count = total;
+                }
+            } finally {
+                cell.unlock();
+            }
+        }
+        if (count <= 1) {
+            return 0.0;
+        }
+        return m2 / (count - 1);
+    }
+
+    private Cell[] expand(Cell[] current) {
+        if (current.length >= maxCells) {
+            return current;
+        }
+        final Cell[] expanded = new Cell[current.length << 1];
+        System.arraycopy(current, 0, expanded, 0, current.length);
+        for (int i = current.length; i < expanded.length; i++) {
+            expanded[i] = new Cell();
+        }
+        if (cells.compareAndSet(current, expanded)) {
+            return expanded;
+        }
+        return cells.get();
+    }
+
+    /**
+     * A single stripe of running statistics.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    private static final class Cell extends SpinLock {
+        private long count;
+        private long sum;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+        // Welford's running mean and sum of squared differences from it
+        private double mean;
+        private double m2;
+
+        // Padding to keep the following object off this cell's cache lines; SpinLock pads the
+        // other side.
+        private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
+
+        void update(long value) {
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            final double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        void clear() {
+            count = 0;
+            sum = 0;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            mean = 0;
+            m2 = 0;
+        }
+    }
+}
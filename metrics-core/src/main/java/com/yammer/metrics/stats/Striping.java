@@ -0,0 +1,60 @@
+package com.yammer.metrics.stats;
+
+/**
+ * Per-thread probes used to spread concurrent updates across a set of stripes. A thread keeps the
+ * same probe until it runs into contention, at which point it moves on to a different stripe.
+ */
+final class Striping {
+    /**
+     * The maximum number of stripes worth creating: the number of available processors, rounded up
+     * to a power of two.
+     */
+    static final int MAX_STRIPES = nextPowerOfTwo(Runtime.getRuntime().availableProcessors());
+
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            final int seed = ThreadLocalRandom.current().nextInt();
+            return new int[]{ (seed == 0) ? 1 : seed };
+        }
+    };
+
+    private Striping() { /* unused */ }
+
+    /**
+     * Returns the current thread's probe.
+     *
+     * @return the current thread's probe
+     */
+    static int probe() {
+        return PROBE.get()[0];
+    }
+
+    /**
+     * Moves the current thread to a new pseudo-random probe and returns it.
+     *
+     * @return the current thread's new probe
+     */
+    static int advanceProbe() {
+        final int[] holder = PROBE.get();
+        int h = holder[0];
+        h ^= h << 13;   // xorshift
+        h ^= h >>> 17;
+        h ^= h << 5;
+        holder[0] = h;
+        return h;
+    }
+
+    /**
+     * Returns the smallest power of two greater than or equal to {@code n}.
+     *
+     * @param n a positive number
+     * @return the smallest power of two which is at least {@code n}
+     */
+    static int nextPowerOfTwo(int n) {
+        if (n <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+}
@@ -1,7 +1,5 @@
 package com.yammer.metrics.stats;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
 
@@ -75,10 +73,10 @@ public class UniformSample implements Sample {
     @Override
     public Snapshot getSnapshot() {
         final int s = size();
-        final List<Long> copy = new ArrayList<Long>(s);
+        final long[] copy = new long[s];
         for (int i = 0; i < s; i++) {
-            copy.add(values.get(i));
+            copy[i] = values.get(i);
         }
-        return new Snapshot(copy);
+        return new LongSnapshot(copy);
     }
 }
@@ -0,0 +1,90 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets a reader wait until every writer which might still be using a data structure has left it,
+ * without writers ever waiting on the reader or on each other. Writers bracket each update with
+ * {@link #writerCriticalSectionEnter()} and {@link #writerCriticalSectionExit(long)}, which are
+ * a single atomic increment each; a reader swaps in a new structure for writers to use and then
+ * calls {@link #flipPhase()}, which returns once no writer remains in the old one.
+ *
+ * @see <a href="http://stuff-gil-says.blogspot.com/2014/11/writerreaderphaser-story-about-new.html">
+ *      WriterReaderPhaser: A story about a new (?) synchronization primitive</a>
+ */
+class WriterReaderPhaser {
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> START_EPOCH =
+            AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "startEpoch");
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> EVEN_END_EPOCH =
+            AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "evenEndEpoch");
+    private static final AtomicLongFieldUpdater<WriterReaderPhaser> ODD_END_EPOCH =
+            AtomicLongFieldUpdater.newUpdater(WriterReaderPhaser.class, "oddEndEpoch");
+
+    // the sign of startEpoch is the current phase: even phases count up from zero, odd phases
+    // from Long.MIN_VALUE
+    private volatile long startEpoch = 0;
+    private volatile long evenEndEpoch = 0;
+    private volatile long oddEndEpoch = Long.MIN_VALUE;
+
+    private final ReentrantLock readerLock = new ReentrantLock();
+
+    /**
+     * Enters a writer critical section.
+     *
+     * @return a token to be passed to {@link #writerCriticalSectionExit(long)}
+     */
+    long writerCriticalSectionEnter() {
+        return START_EPOCH.getAndIncrement(this);
+    }
+
+    /**
+     * Exits a writer critical section.
+     *
+     * @param criticalValueAtEnter the token returned by {@link #writerCriticalSectionEnter()}
+     */
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        if (criticalValueAtEnter < 0) {
+            ODD_END_EPOCH.getAndIncrement(this);
+        } else {
+            EVEN_END_EPOCH.getAndIncrement(this);
+        }
+    }
+
+    /**
+     * Excludes other readers. Must be held while calling {@link #flipPhase()}.
+     */
+    void readerLock() {
+        readerLock.lock();
+    }
+
+    /**
+     * Releases the reader lock.
+     */
+    void readerUnlock() {
+        readerLock.unlock();
+    }
+
+    /**
+     * Starts a new phase and waits until every writer which entered during the previous phase has
+     * exited.
+     */
+    void flipPhase() {
+        if (!readerLock.isHeldByCurrentThread()) {
+            throw new IllegalStateException("flipPhase() requires the reader lock");
+        }
+
+        final boolean nextPhaseIsEven = startEpoch < 0;
+        final long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        if (nextPhaseIsEven) {
+            EVEN_END_EPOCH.set(this, initialStartValue);
+        } else {
+            ODD_END_EPOCH.set(this, initialStartValue);
+        }
+
+        final long startValueAtFlip = START_EPOCH.getAndSet(this, initialStartValue);
+        while ((nextPhaseIsEven ? oddEndEpoch : evenEndEpoch) != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.yammer.metrics.util;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A gauge whose value is expensive or slow to calculate, and so is recalculated in the background.
+ * Reading the gauge always returns the cached value straight away; once the value is older than
+ * the timeout, the read also submits a refresh to the given executor, so that a reporter thread
+ * never waits on {@link #loadValue()}. Only the very first read, when there is no cached value
+ * yet, calculates the value itself.
+ * <p/>
+ * At most one refresh is in flight at a time, and the timeout is counted from the moment the last
+ * refresh finished. If a refresh fails, the previous value is kept and the failure is logged.
+ *
+ * @param <T> the type of the gauge's value
+ * @see CachedGauge
+ */
+public abstract class AsyncCachedGauge<T> extends Gauge<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCachedGauge.class);
+
+    private final Executor executor;
+    private final Clock clock;
+    private final long timeoutNS;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Runnable refresher = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error refreshing gauge", e);
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    };
+
+    private volatile T value;
+    private volatile long reloadAt;
+
+    /**
+     * Creates a new {@link AsyncCachedGauge} with the given timeout.
+     *
+     * @param executor    the executor on which the value is recalculated
+     * @param timeout     the amount of time for which a value is cached
+     * @param timeoutUnit the unit of {@code timeout}
+     */
+    protected AsyncCachedGauge(Executor executor, long timeout, TimeUnit timeoutUnit) {
+        this(executor, Clock.defaultClock(), timeout, timeoutUnit);
+    }
+
+    /**
+     * Creates a new {@link AsyncCachedGauge} with the given clock and timeout.
+     *
+     * @param executor    the executor on which the value is recalculated
+     * @param clock       the clock used to calculate the timeout
+     * @param timeout     the amount of time for which a value is cached
+     * @param timeoutUnit the unit of {@code timeout}
+     */
+    protected AsyncCachedGauge(Executor executor, Clock clock, long timeout, TimeUnit timeoutUnit) {
+        this.executor = executor;
+        this.clock = clock;
+        this.timeoutNS = timeoutUnit.toNanos(timeout);
+    }
+
+    /**
+     * Calculates the gauge's current value. This is called on the executor, except for the first
+     * read of the gauge.
+     *
+     * @return the gauge's current value
+     */
+    protected abstract T loadValue();
+
+    @Override
+    public T value() {
+        final T current = value;
+        if (current == null) {
+            return refresh();
+        }
+
+        if (clock.tick() >= reloadAt && refreshing.compareAndSet(false, true)) {
+            try {
+                executor.execute(refresher);
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false);
+                LOGGER.debug("Unable to schedule a gauge refresh", e);
+            }
+        }
+        return current;
+    }
+
+    private T refresh() {
+        final T loaded = loadValue();
+        this.value = loaded;
+        this.reloadAt = clock.tick() + timeoutNS;
+        return loaded;
+    }
+}
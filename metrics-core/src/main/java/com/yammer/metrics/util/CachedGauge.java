@@ -0,0 +1,75 @@
+package com.yammer.metrics.util;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A gauge whose value is expensive to calculate, and so is recalculated at most once per timeout.
+ * However many reporters poll it, {@link #loadValue()} is called at most once per timeout; the
+ * rest of the time they read the cached value. The thread whose read falls after the timeout
+ * recalculates the value while other threads keep reading the previous one.
+ *
+ * @param <T> the type of the gauge's value
+ * @see AsyncCachedGauge
+ */
+public abstract class CachedGauge<T> extends Gauge<T> {
+    private final Clock clock;
+    private final AtomicLong reloadAt;
+    private final long timeoutNS;
+
+    private volatile T value;
+
+    /**
+     * Creates a new {@link CachedGauge} with the given timeout.
+     *
+     * @param timeout     the amount of time for which a value is cached
+     * @param timeoutUnit the unit of {@code timeout}
+     */
+    protected CachedGauge(long timeout, TimeUnit timeoutUnit) {
+        this(Clock.defaultClock(), timeout, timeoutUnit);
+    }
+
+    /**
+     * Creates a new {@link CachedGauge} with the given clock and timeout.
+     *
+     * @param clock       the clock used to calculate the timeout
+     * @param timeout     the amount of time for which a value is cached
+     * @param timeoutUnit the unit of {@code timeout}
+     */
+    protected CachedGauge(Clock clock, long timeout, TimeUnit timeoutUnit) {
+        this.clock = clock;
+        this.reloadAt = new AtomicLong(clock.tick());
+        this.timeoutNS = timeoutUnit.toNanos(timeout);
+    }
+
+    /**
+     * Calculates the gauge's current value.
+     *
+     * @return the gauge's current value
+     */
+    protected abstract T loadValue();
+
+    @Override
+    public T value() {
+        if (shouldLoad() || value == null) {
+            this.value = loadValue();
+        }
+        return value;
+    }
+
+    private boolean shouldLoad() {
+        for (; ; ) {
+            final long time = clock.tick();
+            final long current = reloadAt.get();
+            if (current > time) {
+                return false;
+            }
+            if (reloadAt.compareAndSet(current, time + timeoutNS)) {
+                return true;
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.yammer.metrics.util;
 
-import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.DoubleGauge;
 
 import static java.lang.Double.isInfinite;
 import static java.lang.Double.isNaN;
@@ -10,7 +10,7 @@ import static java.lang.Double.isNaN;
  * <p/>
  * If the denominator is zero, not a number, or infinite, the resulting ratio is not a number.
  */
-public abstract class RatioGauge extends Gauge<Double> {
+public abstract class RatioGauge extends DoubleGauge {
     /**
      * Returns the numerator (the value on the top half of the fraction or the left-hand side of the
      * ratio).
@@ -28,7 +28,7 @@ public abstract class RatioGauge extends Gauge<Double> {
     protected abstract double getDenominator();
 
     @Override
-    public Double value() {
+    public double doubleValue() {
         final double d = getDenominator();
         if (isNaN(d) || isInfinite(d) || d == 0.0) {
             return Double.NaN;
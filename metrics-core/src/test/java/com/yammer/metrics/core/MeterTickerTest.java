@@ -0,0 +1,104 @@
+package com.yammer.metrics.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MeterTickerTest {
+    private final MeterTicker ticker = new MeterTicker();
+
+    @Test
+    public void ticksEveryRegisteredMeter() throws Exception {
+        final Meter one = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        final Meter two = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        one.mark(5);
+        two.mark(10);
+
+        ticker.run();
+
+        assertThat("the first meter has a one-minute rate of 1/sec",
+                   one.oneMinuteRate(),
+                   is(closeTo(1.0, 0.000001)));
+
+        assertThat("the second meter has a one-minute rate of 2/sec",
+                   two.oneMinuteRate(),
+                   is(closeTo(2.0, 0.000001)));
+    }
+
+    @Test
+    public void doesNotTickStoppedMeters() throws Exception {
+        final Meter meter = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        meter.mark(5);
+        meter.stop();
+
+        ticker.run();
+
+        assertThat("the meter was not ticked",
+                   meter.oneMinuteRate(),
+                   is(closeTo(0.0, 0.000001)));
+    }
+
+    @Test
+    public void reusesTheSlotsOfStoppedMeters() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock()).stop();
+        }
+        final Meter meter = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        meter.mark(5);
+
+        ticker.run();
+
+        assertThat("the new meter was ticked",
+                   meter.oneMinuteRate(),
+                   is(greaterThan(0.0)));
+    }
+
+    @Test
+    public void stoppingAMeterTwiceIsHarmless() throws Exception {
+        final Meter meter = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        meter.stop();
+        meter.stop();
+        final Meter one = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        final Meter two = new Meter(ticker, "things", TimeUnit.SECONDS, Clock.defaultClock());
+        one.mark(5);
+        two.mark(5);
+
+        ticker.run();
+
+        assertThat("the first meter was ticked",
+                   one.oneMinuteRate(),
+                   is(greaterThan(0.0)));
+
+        assertThat("the second meter was ticked",
+                   two.oneMinuteRate(),
+                   is(greaterThan(0.0)));
+    }
+
+    @Test
+    public void cancelsItsTaskOnThePreviousExecutorWhenMoved() throws Exception {
+        final ScheduledThreadPoolExecutor first = new ScheduledThreadPoolExecutor(1);
+        final ScheduledExecutorService second = Executors.newSingleThreadScheduledExecutor();
+        try {
+            assertThat("the ticker is returned",
+                       ticker.startOn(first).startOn(second),
+                       is(sameInstance(ticker)));
+
+            assertThat("the task on the first executor was cancelled",
+                       ((ScheduledFuture<?>) first.getQueue().peek()).isCancelled(),
+                       is(true));
+        } finally {
+            first.shutdownNow();
+            second.shutdownNow();
+        }
+    }
+}
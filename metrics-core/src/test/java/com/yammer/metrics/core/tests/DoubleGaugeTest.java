@@ -0,0 +1,46 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.DoubleGauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricProcessor;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class DoubleGaugeTest {
+    final DoubleGauge gauge = new DoubleGauge() {
+        @Override
+        public double doubleValue() {
+            return 0.5;
+        }
+    };
+
+    @Test
+    public void returnsAPrimitiveValue() throws Exception {
+        assertThat("a double gauge returns a double value",
+                   gauge.doubleValue(),
+                   is(0.5));
+    }
+
+    @Test
+    public void returnsTheSameValueBoxed() throws Exception {
+        assertThat("a double gauge returns the same value boxed",
+                   gauge.value(),
+                   is(0.5));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void isProcessedAsAGauge() throws Exception {
+        final MetricName name = new MetricName(DoubleGaugeTest.class, "gauge");
+        final Object context = new Object();
+        final MetricProcessor<Object> processor = mock(MetricProcessor.class);
+
+        gauge.processWith(processor, name, context);
+
+        verify(processor).processGauge(name, gauge, context);
+    }
+}
@@ -0,0 +1,46 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.LongGauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricProcessor;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class LongGaugeTest {
+    final LongGauge gauge = new LongGauge() {
+        @Override
+        public long longValue() {
+            return 42;
+        }
+    };
+
+    @Test
+    public void returnsAPrimitiveValue() throws Exception {
+        assertThat("a long gauge returns a long value",
+                   gauge.longValue(),
+                   is(42L));
+    }
+
+    @Test
+    public void returnsTheSameValueBoxed() throws Exception {
+        assertThat("a long gauge returns the same value boxed",
+                   gauge.value(),
+                   is(42L));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void isProcessedAsAGauge() throws Exception {
+        final MetricName name = new MetricName(LongGaugeTest.class, "gauge");
+        final Object context = new Object();
+        final MetricProcessor<Object> processor = mock(MetricProcessor.class);
+
+        gauge.processWith(processor, name, context);
+
+        verify(processor).processGauge(name, gauge, context);
+    }
+}
@@ -1,5 +1,6 @@
 package com.yammer.metrics.core.tests;
 
+import com.yammer.metrics.core.Clock;
 import com.yammer.metrics.core.Meter;
 import com.yammer.metrics.core.MetricsRegistry;
 import org.junit.After;
@@ -46,4 +47,52 @@ public class MeterTest {
                    meter.count(),
                    is(3L));
     }
+
+    @Test
+    public void aLazilyTickedMeterCatchesUpOnElapsedIntervals() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final MetricsRegistry lazyRegistry = new MetricsRegistry(clock, true);
+        try {
+            final Meter lazyMeter = lazyRegistry.newMeter(MeterTest.class, "lazy", "thing",
+                                                          TimeUnit.SECONDS);
+            lazyMeter.mark(3);
+            clock.addSeconds(5);
+
+            assertThat("the meter has a one-minute rate of 0.6 events/sec after the first tick",
+                       lazyMeter.oneMinuteRate(),
+                       is(closeTo(0.6, 0.000001)));
+
+            clock.addSeconds(60);
+
+            assertThat("the meter has a one-minute rate of 0.22072766 events/sec after 1 minute",
+                       lazyMeter.oneMinuteRate(),
+                       is(closeTo(0.22072766, 0.000001)));
+
+            clock.addSeconds(4);
+            lazyMeter.mark(6);
+
+            assertThat("events in the current interval are not yet in the rate",
+                       lazyMeter.oneMinuteRate(),
+                       is(closeTo(0.22072766, 0.000001)));
+
+            assertThat("the meter has a count of nine",
+                       lazyMeter.count(),
+                       is(9L));
+        } finally {
+            lazyRegistry.shutdown();
+        }
+    }
+
+    private static class ManualClock extends Clock {
+        private long ticksInNanos = 0;
+
+        void addSeconds(long seconds) {
+            ticksInNanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long tick() {
+            return ticksInNanos;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.yammer.metrics.core.tests;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -12,6 +13,8 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.*;
 
@@ -118,4 +121,63 @@ public class MetricsRegistryTest {
         assertThat(service.isShutdown(),
                    is(true));
     }
+
+    @Test
+    public void registrySnapshotsShareEachMetricsSnapshot() throws Exception {
+        final Histogram histogram = registry.newHistogram(MetricsRegistryTest.class, "histogram");
+        histogram.update(1);
+
+        final RegistrySnapshot snapshot = registry.snapshot();
+        histogram.update(2);
+
+        assertThat(registry.snapshot(),
+                   is(sameInstance(snapshot)));
+
+        assertThat(registry.snapshot().getSnapshot(histogram),
+                   is(sameInstance(snapshot.getSnapshot(histogram))));
+
+        assertThat(snapshot.getSnapshot(histogram).size(),
+                   is(2));
+    }
+
+    @Test
+    public void registrySnapshotsExpireAfterTheirTtl() throws Exception {
+        final Clock clock = mock(Clock.class);
+        when(clock.tick()).thenReturn(0L);
+        final MetricsRegistry timedRegistry = new MetricsRegistry(clock);
+        try {
+            timedRegistry.setSnapshotTtl(10, TimeUnit.SECONDS);
+            final RegistrySnapshot snapshot = timedRegistry.snapshot();
+
+            when(clock.tick()).thenReturn(TimeUnit.SECONDS.toNanos(9));
+            assertThat(timedRegistry.snapshot(),
+                       is(sameInstance(snapshot)));
+
+            when(clock.tick()).thenReturn(TimeUnit.SECONDS.toNanos(10));
+            assertThat(timedRegistry.snapshot(),
+                       is(not(sameInstance(snapshot))));
+        } finally {
+            timedRegistry.shutdown();
+        }
+    }
+
+    @Test
+    public void peekedSnapshotsDoNotStartANewInterval() throws Exception {
+        final Histogram histogram = registry.newHistogram(
+                new MetricName(MetricsRegistryTest.class, "interval"), Histogram.SampleType.INTERVAL);
+        histogram.update(1);
+        registry.setSnapshotTtl(0, TimeUnit.SECONDS);
+
+        final Snapshot completed = registry.snapshot().getSnapshot(histogram);
+        histogram.update(2);
+        histogram.update(3);
+
+        assertThat("an ad hoc reader sees the last completed interval",
+                   registry.peekSnapshot().getSnapshot(histogram),
+                   is(sameInstance(completed)));
+
+        assertThat("the polling reporters still see every value of the current interval",
+                   registry.snapshot().getSnapshot(histogram).size(),
+                   is(2));
+    }
 }
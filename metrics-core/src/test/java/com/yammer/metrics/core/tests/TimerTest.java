@@ -199,4 +199,88 @@ public class TimerTest {
                    timer.max(),
                    is(closeTo(50.0, 0.001)));
     }
+
+    @Test
+    public void timingWithStartAndStop() throws Exception {
+        final long startTime = timer.start();
+
+        assertThat("stopping returns the duration in nanoseconds",
+                   timer.stop(startTime),
+                   is(50000000L));
+
+        assertThat("the timer has a count of 1",
+                   timer.count(),
+                   is(1L));
+
+        assertThat("records the duration of the event",
+                   timer.max(),
+                   is(closeTo(50.0, 0.001)));
+    }
+
+    @Test
+    public void aSampledTimerCountsEveryCallButOnlyTimesSomeOfThem() throws Exception {
+        final Timer sampled = registry.newTimer(TimerTest.class, "sampled", null,
+                                                TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0.1);
+        int unsampled = 0;
+        for (int i = 0; i < 10000; i++) {
+            final long startTime = sampled.start();
+            if (startTime == Timer.NOT_SAMPLED) {
+                unsampled++;
+            }
+            sampled.stop(startTime);
+        }
+
+        assertThat("most calls were not sampled",
+                   unsampled,
+                   is(allOf(greaterThan(5000), lessThan(10000))));
+
+        assertThat("every call was counted",
+                   sampled.count(),
+                   is(10000L));
+
+        assertThat("the sum is scaled up to cover every call",
+                   sampled.sum(),
+                   is(closeTo(500000.0, 0.001)));
+
+        assertThat("the sampled durations are recorded",
+                   sampled.max(),
+                   is(closeTo(50.0, 0.001)));
+    }
+
+    @Test
+    public void clearingASampledTimerResetsItsCount() throws Exception {
+        final Timer sampled = registry.newTimer(TimerTest.class, "sampled", null,
+                                                TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0.1);
+        for (int i = 0; i < 1000; i++) {
+            sampled.stop(sampled.start());
+        }
+
+        sampled.clear();
+
+        assertThat("the count was reset",
+                   sampled.count(),
+                   is(0L));
+
+        assertThat("the sum was reset",
+                   sampled.sum(),
+                   is(0.0));
+
+        for (int i = 0; i < 1000; i++) {
+            sampled.stop(sampled.start());
+        }
+
+        assertThat("only the calls since the timer was cleared are counted",
+                   sampled.count(),
+                   is(1000L));
+
+        assertThat("the sum only covers the calls since the timer was cleared",
+                   sampled.sum(),
+                   is(closeTo(50000.0, 0.001)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampleRatesMustBeInTheUnitInterval() throws Exception {
+        registry.newTimer(TimerTest.class, "invalid", null,
+                          TimeUnit.MILLISECONDS, TimeUnit.SECONDS, 0.0);
+    }
 }
@@ -0,0 +1,142 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.CsvArchiveReporter;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CsvArchiveReporterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Clock clock = mock(Clock.class);
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private CsvArchiveReporter reporter;
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        registry.shutdown();
+    }
+
+    @Test
+    public void appendsEveryMetricToOneFileWithADictionary() throws Exception {
+        this.reporter = new CsvArchiveReporter(registry, MetricPredicate.ALL, folder.getRoot(),
+                                               1, TimeUnit.HOURS, Long.MAX_VALUE, false, clock);
+        registry.newCounter(CsvArchiveReporterTest.class, "requests").inc(3);
+        registry.newGauge(CsvArchiveReporterTest.class, "name, with comma", new com.yammer.metrics.core.Gauge<String>() {
+            @Override
+            public String value() {
+                return "ok";
+            }
+        });
+
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+        when(clock.time()).thenReturn(1400000005000L);
+        reporter.run();
+        reporter.shutdown();
+
+        final File[] files = folder.getRoot().listFiles();
+        assertThat("one file was written",
+                   files.length,
+                   is(1));
+
+        assertThat("the file is named after the time it was opened",
+                   files[0].getName(),
+                   is("metrics-20140513-165320.csv"));
+
+        // the registry's metrics are in no particular order, so neither are their ids
+        final List<String> lines = read(new FileInputStream(files[0]));
+        final String counterId = lines.get(0).contains("requests") ? "0" : "1";
+        final String gaugeId = counterId.equals("0") ? "1" : "0";
+
+        assertThat("each metric is described once and then written once per poll",
+                   lines,
+                   containsInAnyOrder(
+                           "# " + counterId + ",com.yammer.metrics.reporting.tests.CsvArchiveReporterTest.requests,count",
+                           "1400000000," + counterId + ",3",
+                           "# " + gaugeId + ",\"com.yammer.metrics.reporting.tests.CsvArchiveReporterTest.name, with comma\",value",
+                           "1400000000," + gaugeId + ",ok",
+                           "1400000005," + counterId + ",3",
+                           "1400000005," + gaugeId + ",ok"));
+
+        assertThat("the first poll is written before the second",
+                   lines.indexOf("1400000000," + counterId + ",3") < lines.indexOf("1400000005," + gaugeId + ",ok"),
+                   is(true));
+    }
+
+    @Test
+    public void startsANewSelfDescribingFileOnceTheCurrentOneIsTooOld() throws Exception {
+        this.reporter = new CsvArchiveReporter(registry, MetricPredicate.ALL, folder.getRoot(),
+                                               1, TimeUnit.MINUTES, Long.MAX_VALUE, true, clock);
+        registry.newCounter(CsvArchiveReporterTest.class, "requests").inc();
+
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+        when(clock.time()).thenReturn(1400000030000L);
+        reporter.run();
+        when(clock.time()).thenReturn(1400000060000L);
+        reporter.run();
+        reporter.shutdown();
+
+        assertThat("the first file holds the first two polls",
+                   read(new GZIPInputStream(new FileInputStream(new File(folder.getRoot(), "metrics-20140513-165320.csv.gz")))),
+                   is(Arrays.asList(
+                           "# 0,com.yammer.metrics.reporting.tests.CsvArchiveReporterTest.requests,count",
+                           "1400000000,0,1",
+                           "1400000030,0,1")));
+
+        assertThat("the second file describes the metric again",
+                   read(new GZIPInputStream(new FileInputStream(new File(folder.getRoot(), "metrics-20140513-165420.csv.gz")))),
+                   is(Arrays.asList(
+                           "# 0,com.yammer.metrics.reporting.tests.CsvArchiveReporterTest.requests,count",
+                           "1400000060,0,1")));
+    }
+
+    @Test
+    public void startsANewFileOnceTheCurrentOneIsTooLarge() throws Exception {
+        this.reporter = new CsvArchiveReporter(registry, MetricPredicate.ALL, folder.getRoot(),
+                                               1, TimeUnit.HOURS, 1, false, clock);
+        registry.newCounter(CsvArchiveReporterTest.class, "requests").inc();
+
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+        reporter.run();
+
+        assertThat("a second file is opened in the same second under another name",
+                   new File(folder.getRoot(), "metrics-20140513-165320-1.csv").exists(),
+                   is(true));
+    }
+
+    private static List<String> read(InputStream in) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            final List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.GroupedJmxReporter;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class GroupedJmxReporterTest {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final TestMetricsRegistry registry = new TestMetricsRegistry();
+    private GroupedJmxReporter reporter;
+
+    private static class TestMetricsRegistry extends MetricsRegistry {
+        public <T extends Metric> T add(MetricName name, T metric) {
+            return getOrAdd(name, metric);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        registry.shutdown();
+    }
+
+    @Test
+    public void keepsTheAttributesOfDottedScopesAndNamesApart() throws Exception {
+        this.reporter = new GroupedJmxReporter(registry);
+        reporter.start();
+        registry.newCounter(GroupedJmxReporterTest.class, "c", "a.b").inc(1);
+        registry.newCounter(GroupedJmxReporterTest.class, "b.c", "a").inc(2);
+
+        final ObjectName objectName = new ObjectName("com.yammer.metrics.reporting.tests:type=GroupedJmxReporterTest");
+
+        assertThat("the dot in the first counter's scope is escaped",
+                   server.getAttribute(objectName, "a\\.b.c.Count"),
+                   is((Object) 1L));
+
+        assertThat("the dot in the second counter's name is escaped",
+                   server.getAttribute(objectName, "a.b\\.c.Count"),
+                   is((Object) 2L));
+    }
+
+    @Test
+    public void groupsTheMetricsOfATypeIntoOneMBean() throws Exception {
+        this.reporter = new GroupedJmxReporter(registry);
+        reporter.start();
+        registry.newCounter(GroupedJmxReporterTest.class, "counter").inc(3);
+        registry.newHistogram(GroupedJmxReporterTest.class, "histogram", "scope").update(42);
+
+        final ObjectName objectName = new ObjectName("com.yammer.metrics.reporting.tests:type=GroupedJmxReporterTest");
+
+        assertThat("one MBean is registered for the type",
+                   server.queryNames(new ObjectName("com.yammer.metrics.reporting.tests:*"), null).size(),
+                   is(1));
+
+        assertThat("the counter's attributes are prefixed with its name",
+                   server.getAttribute(objectName, "counter.Count"),
+                   is((Object) 3L));
+
+        assertThat("the histogram's attributes are prefixed with its scope and name",
+                   server.getAttribute(objectName, "scope.histogram.Max"),
+                   is((Object) 42.0));
+
+        registry.removeMetric(GroupedJmxReporterTest.class, "counter");
+
+        assertThat("the removed metric's attributes are gone",
+                   server.getMBeanInfo(objectName).getAttributes().length,
+                   is(11));
+
+        registry.removeMetric(GroupedJmxReporterTest.class, "histogram", "scope");
+
+        assertThat("the MBean is unregistered with its last metric",
+                   server.isRegistered(objectName),
+                   is(false));
+    }
+
+    @Test
+    public void registersAnMBeanPerMetricIfNotGrouped() throws Exception {
+        this.reporter = new GroupedJmxReporter(registry, false);
+        reporter.start();
+        registry.newMeter(GroupedJmxReporterTest.class, "meter", "requests", TimeUnit.SECONDS).mark();
+
+        final ObjectName objectName = new ObjectName(new MetricName(GroupedJmxReporterTest.class, "meter").getMBeanName());
+
+        assertThat("the meter's attributes are not prefixed",
+                   server.getAttribute(objectName, "Count"),
+                   is((Object) 1L));
+
+        assertThat("the meter's units are strings",
+                   server.getAttribute(objectName, "RateUnit"),
+                   is((Object) "SECONDS"));
+    }
+
+    @Test
+    public void takesOneSnapshotPerTimerForAllOfItsAttributes() throws Exception {
+        registry.setSnapshotTtl(0, TimeUnit.SECONDS);
+        final Timer timer = mock(Timer.class);
+        when(timer.peekSnapshot()).thenReturn(new Snapshot(new double[]{ 1, 2, 3, 4, 5 }));
+        when(timer.durationUnit()).thenReturn(TimeUnit.MILLISECONDS);
+        when(timer.rateUnit()).thenReturn(TimeUnit.SECONDS);
+        this.reporter = new GroupedJmxReporter(registry);
+        reporter.start();
+        registry.add(new MetricName(GroupedJmxReporterTest.class, "timer"), timer);
+
+        final ObjectName objectName = new ObjectName("com.yammer.metrics.reporting.tests:type=GroupedJmxReporterTest");
+        final AttributeList attributes = server.getAttributes(objectName, new String[]{
+                "timer.50thPercentile", "timer.75thPercentile", "timer.95thPercentile",
+                "timer.98thPercentile", "timer.99thPercentile", "timer.999thPercentile",
+                "timer.LatencyUnit", "timer.Missing"
+        });
+
+        assertThat("every attribute which exists is read",
+                   attributes.size(),
+                   is(7));
+
+        assertThat("the median is read from the snapshot",
+                   ((Attribute) attributes.get(0)).getValue(),
+                   is((Object) 3.0));
+
+        verify(timer, times(1)).peekSnapshot();
+    }
+}
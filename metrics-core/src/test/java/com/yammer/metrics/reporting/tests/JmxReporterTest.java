@@ -0,0 +1,123 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.JmxReporter;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class JmxReporterTest {
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private JmxReporter reporter;
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        registry.shutdown();
+    }
+
+    @Test
+    public void registersMBeansAsMetricsAreAdded() throws Exception {
+        this.reporter = new JmxReporter(registry);
+        reporter.start();
+        registry.newCounter(JmxReporterTest.class, "sync-counter");
+
+        assertThat("the metric's MBean is registered by the thread which added it",
+                   server.isRegistered(objectName("sync-counter")),
+                   is(true));
+
+        registry.removeMetric(JmxReporterTest.class, "sync-counter");
+
+        assertThat("the metric's MBean is unregistered by the thread which removed it",
+                   server.isRegistered(objectName("sync-counter")),
+                   is(false));
+    }
+
+    @Test
+    public void registersMBeansAsynchronously() throws Exception {
+        this.reporter = new JmxReporter(registry, true);
+        reporter.start();
+        registry.newCounter(JmxReporterTest.class, "async-counter");
+
+        assertThat("the metric's MBean is registered by the reporter's thread",
+                   awaitRegistration("async-counter"),
+                   is(true));
+
+        registry.removeMetric(JmxReporterTest.class, "async-counter");
+
+        assertThat("the metric's MBean is unregistered by the reporter's thread",
+                   awaitUnregistration("async-counter"),
+                   is(false));
+    }
+
+    @Test
+    public void neverRegistersMetricsWhichWereRemovedBeforeTheirTurn() throws Exception {
+        this.reporter = new JmxReporter(registry, true);
+        for (int i = 0; i < 100; i++) {
+            registry.newCounter(JmxReporterTest.class, "removed-" + i);
+            registry.removeMetric(JmxReporterTest.class, "removed-" + i);
+        }
+        registry.newCounter(JmxReporterTest.class, "kept");
+
+        // all of the events are queued before the reporter's thread starts, so they form a batch
+        reporter.start();
+
+        assertThat("the remaining metric's MBean is registered",
+                   awaitRegistration("kept"),
+                   is(true));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat("the removed metric's MBean was never registered",
+                       server.isRegistered(objectName("removed-" + i)),
+                       is(false));
+        }
+    }
+
+    @Test
+    public void registersNothingOnceShutDown() throws Exception {
+        this.reporter = new JmxReporter(registry);
+        reporter.start();
+        registry.newCounter(JmxReporterTest.class, "before-shutdown");
+
+        reporter.shutdown();
+        // as by a thread which was already telling the reporter about a new metric
+        reporter.onMetricAdded(new MetricName(JmxReporterTest.class, "after-shutdown"),
+                               registry.newCounter(JmxReporterTest.class, "after-shutdown"));
+
+        assertThat("the MBeans registered before the reporter was shut down are unregistered",
+                   server.isRegistered(objectName("before-shutdown")),
+                   is(false));
+
+        assertThat("a metric added after the reporter was shut down is never registered",
+                   server.isRegistered(objectName("after-shutdown")),
+                   is(false));
+    }
+
+    private boolean awaitRegistration(String name) throws Exception {
+        final ObjectName objectName = objectName(name);
+        for (int i = 0; i < 500 && !server.isRegistered(objectName); i++) {
+            Thread.sleep(10);
+        }
+        return server.isRegistered(objectName);
+    }
+
+    private boolean awaitUnregistration(String name) throws Exception {
+        final ObjectName objectName = objectName(name);
+        for (int i = 0; i < 500 && server.isRegistered(objectName); i++) {
+            Thread.sleep(10);
+        }
+        return server.isRegistered(objectName);
+    }
+
+    private static ObjectName objectName(String name) throws Exception {
+        return new ObjectName(new MetricName(JmxReporterTest.class, name).getMBeanName());
+    }
+}
@@ -0,0 +1,150 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.MappedFileReader;
+import com.yammer.metrics.reporting.MappedFileReporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MappedFileReporterTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private File file;
+    private MappedFileReporter reporter;
+    private MappedFileReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        this.file = File.createTempFile("metrics", ".mmap");
+        this.reporter = new MappedFileReporter(registry, MetricPredicate.ALL, file, 16,
+                                               Clock.defaultClock());
+        registry.addListener(reporter);
+        this.reader = new MappedFileReader(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reader.close();
+        reporter.shutdown();
+        registry.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void writesEachMetricIntoItsOwnSlot() throws Exception {
+        registry.newCounter(MappedFileReporterTest.class, "counter").inc(12);
+        registry.newGauge(MappedFileReporterTest.class, "gauge", new LongGauge() {
+            @Override
+            public long longValue() {
+                return 7;
+            }
+        });
+        final Timer timer = registry.newTimer(MappedFileReporterTest.class, "timer");
+        timer.update(10, TimeUnit.MILLISECONDS);
+        timer.update(20, TimeUnit.MILLISECONDS);
+
+        reporter.run();
+
+        final Map<String, MappedFileReader.Entry> entries = readAll();
+
+        assertThat("the file holds every metric",
+                   entries.keySet(),
+                   containsInAnyOrder("com.yammer.metrics.reporting.tests.MappedFileReporterTest.counter",
+                                      "com.yammer.metrics.reporting.tests.MappedFileReporterTest.gauge",
+                                      "com.yammer.metrics.reporting.tests.MappedFileReporterTest.timer"));
+
+        final MappedFileReader.Entry counter =
+                entries.get("com.yammer.metrics.reporting.tests.MappedFileReporterTest.counter");
+        assertThat("the counter's count is written",
+                   counter.count(),
+                   is(12L));
+
+        final MappedFileReader.Entry gauge =
+                entries.get("com.yammer.metrics.reporting.tests.MappedFileReporterTest.gauge");
+        assertThat("the gauge's value is written",
+                   gauge.value(0),
+                   is(7.0));
+
+        final MappedFileReader.Entry timerEntry =
+                entries.get("com.yammer.metrics.reporting.tests.MappedFileReporterTest.timer");
+        assertThat("the timer's type is written",
+                   timerEntry.type(),
+                   is(MappedFileReader.Type.TIMER));
+
+        assertThat("the timer's count is written",
+                   timerEntry.count(),
+                   is(2L));
+
+        assertThat("the timer's minimum is written",
+                   timerEntry.value(4),
+                   is(closeTo(10.0, 0.001)));
+
+        assertThat("the timer's maximum is written",
+                   timerEntry.value(5),
+                   is(closeTo(20.0, 0.001)));
+    }
+
+    @Test
+    public void freesTheSlotsOfRemovedMetrics() throws Exception {
+        registry.newCounter(MappedFileReporterTest.class, "counter");
+        reporter.run();
+
+        registry.removeMetric(MappedFileReporterTest.class, "counter");
+
+        assertThat("the removed metric is no longer in the file",
+                   readAll().size(),
+                   is(0));
+
+        registry.newCounter(MappedFileReporterTest.class, "other").inc();
+        reporter.run();
+
+        assertThat("the freed slot is reused",
+                   readAll().keySet(),
+                   contains("com.yammer.metrics.reporting.tests.MappedFileReporterTest.other"));
+    }
+
+    @Test
+    public void skipsMetricsOnceEverySlotIsTaken() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            registry.newCounter(MappedFileReporterTest.class, "counter-" + i);
+        }
+        reporter.run();
+
+        assertThat("only as many metrics as there are slots are written",
+                   readAll().size(),
+                   is(16));
+    }
+
+    @Test
+    public void copiesNamesIntoTheCallersBuffer() throws Exception {
+        registry.newCounter(MappedFileReporterTest.class, "counter");
+        reporter.run();
+
+        final MappedFileReader.Entry entry = readAll().values().iterator().next();
+        final byte[] buffer = new byte[MappedFileReader.Entry.MAX_NAME_LENGTH];
+        final int length = entry.name(buffer);
+
+        assertThat("the encoded name is copied",
+                   new String(buffer, 0, length, "UTF-8"),
+                   is(entry.name()));
+    }
+
+    private Map<String, MappedFileReader.Entry> readAll() {
+        final Map<String, MappedFileReader.Entry> entries = new HashMap<String, MappedFileReader.Entry>();
+        for (int slot = 0; slot < reader.slotCount(); slot++) {
+            final MappedFileReader.Entry entry = new MappedFileReader.Entry();
+            if (reader.read(slot, entry)) {
+                entries.put(entry.name(), entry);
+            }
+        }
+        return entries;
+    }
+}
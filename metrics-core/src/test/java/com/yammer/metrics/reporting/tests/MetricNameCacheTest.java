@@ -0,0 +1,73 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.MetricNameCache;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MetricNameCacheTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final MetricNameCache<String> cache = new MetricNameCache<String>() {
+        @Override
+        protected String load(MetricName name) {
+            loads.incrementAndGet();
+            return name.getName().toUpperCase();
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        registry.shutdown();
+    }
+
+    @Test
+    public void derivesEachEntryOnce() throws Exception {
+        final MetricName name = new MetricName(MetricNameCacheTest.class, "counter");
+
+        assertThat("the entry is derived from the name",
+                   cache.get(name),
+                   is("COUNTER"));
+
+        assertThat(cache.get(name),
+                   is("COUNTER"));
+
+        assertThat("the entry is only derived once",
+                   loads.get(),
+                   is(1));
+    }
+
+    @Test
+    public void derivesEntriesForExistingAndAddedMetrics() throws Exception {
+        registry.newCounter(MetricNameCacheTest.class, "existing");
+        registry.addListener(cache);
+        registry.newCounter(MetricNameCacheTest.class, "added");
+
+        assertThat("an entry is derived for each metric in the registry",
+                   cache.size(),
+                   is(2));
+
+        cache.get(new MetricName(MetricNameCacheTest.class, "added"));
+
+        assertThat("cached entries are not derived again",
+                   loads.get(),
+                   is(2));
+    }
+
+    @Test
+    public void evictsTheEntriesOfRemovedMetrics() throws Exception {
+        registry.addListener(cache);
+        registry.newCounter(MetricNameCacheTest.class, "counter");
+        registry.removeMetric(MetricNameCacheTest.class, "counter");
+
+        assertThat("the removed metric's entry is evicted",
+                   cache.size(),
+                   is(0));
+    }
+}
@@ -314,6 +314,24 @@ public class EWMATest {
     }
 
 
+    @Test
+    public void tickingSeveralIntervalsAtOnceIsTheSameAsTickingEachInterval() throws Exception {
+        final EWMA stepped = EWMA.fiveMinuteEWMA();
+        final EWMA skipped = EWMA.fiveMinuteEWMA();
+        stepped.update(3);
+        skipped.update(3);
+
+        for (int i = 0; i < 37; i++) {
+            stepped.tick();
+        }
+        skipped.tick(37);
+
+        assertThat("the EWMA has the same rate after 37 intervals",
+                   skipped.rate(TimeUnit.SECONDS),
+                   is(closeTo(stepped.rate(TimeUnit.SECONDS), 0.000001)));
+    }
+
+
     private void elapseMinute(EWMA ewma) {
         for (int i = 1; i <= 12; i++) {
             ewma.tick();
@@ -0,0 +1,173 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.IntervalSample;
+import com.yammer.metrics.stats.IntervalSnapshot;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class IntervalSampleTest {
+    @Test
+    public void eachSnapshotHoldsTheValuesRecordedSinceThePreviousOne() throws Exception {
+        final IntervalSample sample = new IntervalSample();
+        for (int i = 1; i <= 100; i++) {
+            sample.update(i);
+        }
+
+        final Snapshot first = sample.getSnapshot();
+
+        assertThat("the first interval has 100 values",
+                   first.size(),
+                   is(100));
+
+        assertThat("the first interval has an exact minimum",
+                   first.getValue(0.0),
+                   is(closeTo(1.0, 0.0001)));
+
+        assertThat("the first interval has an exact maximum",
+                   first.getValue(1.0),
+                   is(closeTo(100.0, 0.0001)));
+
+        assertThat("the sample is empty after a snapshot",
+                   sample.size(),
+                   is(0));
+
+        sample.update(5000);
+        sample.update(7000);
+
+        final Snapshot second = sample.getSnapshot();
+
+        assertThat("the second interval has two values",
+                   second.size(),
+                   is(2));
+
+        assertThat("the second interval has an exact minimum",
+                   second.getValue(0.0),
+                   is(closeTo(5000.0, 0.0001)));
+
+        assertThat("the second interval has an exact maximum",
+                   second.getValue(1.0),
+                   is(closeTo(7000.0, 0.0001)));
+
+        assertThat("the first snapshot is unchanged",
+                   first.size(),
+                   is(100));
+    }
+
+    @Test
+    public void eachSnapshotSummarizesItsOwnInterval() throws Exception {
+        final IntervalSample sample = new IntervalSample();
+        for (int i = 1; i <= 100; i++) {
+            sample.update(i);
+        }
+        sample.getSnapshot();
+        sample.update(10);
+        sample.update(30);
+
+        final IntervalSnapshot snapshot = (IntervalSnapshot) sample.getSnapshot();
+
+        assertThat("the count is that of the interval",
+                   snapshot.count(),
+                   is(2L));
+
+        assertThat("the minimum is that of the interval",
+                   snapshot.min(),
+                   is(10.0));
+
+        assertThat("the maximum is that of the interval",
+                   snapshot.max(),
+                   is(30.0));
+
+        assertThat("the mean is that of the interval",
+                   snapshot.mean(),
+                   is(20.0));
+
+        assertThat("the standard deviation is that of the interval",
+                   snapshot.stdDev(),
+                   is(closeTo(14.1421, 0.0001)));
+
+        assertThat("converting the snapshot converts its summary",
+                   ((IntervalSnapshot) snapshot.convert(10)).max(),
+                   is(3.0));
+    }
+
+    @Test
+    public void theLastSnapshotCanBeReadWithoutStartingANewInterval() throws Exception {
+        final IntervalSample sample = new IntervalSample();
+
+        assertThat("there is no last interval before the first snapshot",
+                   sample.getLastSnapshot().count(),
+                   is(0L));
+
+        sample.update(1);
+        final Snapshot snapshot = sample.getSnapshot();
+        sample.update(2);
+        sample.update(3);
+
+        assertThat("the last snapshot is that of the last completed interval",
+                   sample.getLastSnapshot(),
+                   is(sameInstance(snapshot)));
+
+        assertThat("reading it doesn't reset the current interval",
+                   sample.size(),
+                   is(2));
+    }
+
+    @Test
+    public void clearingDiscardsTheCurrentInterval() throws Exception {
+        final IntervalSample sample = new IntervalSample();
+        sample.update(1);
+        sample.clear();
+        sample.update(2);
+
+        assertThat("only the value recorded after clearing is in the next snapshot",
+                   sample.getSnapshot().size(),
+                   is(1));
+    }
+
+    @Test
+    public void noValuesAreLostWhileSnapshotsAreTaken() throws Exception {
+        final IntervalSample sample = new IntervalSample();
+        final int threads = 4;
+        final int updates = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < updates; i++) {
+                            sample.update(i);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long seen = 0;
+        while (done.getCount() > 0) {
+            seen += sample.getSnapshot().size();
+        }
+        seen += sample.getSnapshot().size();
+
+        assertThat("every value is in exactly one interval",
+                   seen,
+                   is((long) threads * updates));
+
+        assertThat(failed.get(),
+                   is(false));
+    }
+}
@@ -0,0 +1,155 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.LogLinearSample;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LogLinearSampleTest {
+    @Test
+    public void anEmptySample() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the sample is empty",
+                   sample.size(),
+                   is(0));
+
+        assertThat("the snapshot has a median of zero",
+                   snapshot.getMedian(),
+                   is(closeTo(0.0, 0.0001)));
+
+        assertThat("the snapshot has no values",
+                   snapshot.getValues().length,
+                   is(0));
+    }
+
+    @Test
+    public void smallValuesAreRecordedExactly() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(2, 1000000);
+        for (int i = 1; i <= 100; i++) {
+            sample.update(i);
+        }
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the sample has 100 values",
+                   snapshot.size(),
+                   is(100));
+
+        assertThat("the snapshot has a median of 50",
+                   snapshot.getMedian(),
+                   is(closeTo(50.0, 0.0001)));
+
+        assertThat("the snapshot has a 99th percentile of 99",
+                   snapshot.get99thPercentile(),
+                   is(closeTo(99.0, 0.0001)));
+
+        assertThat("the snapshot has its smallest value at the 0th quantile",
+                   snapshot.getValue(0.0),
+                   is(closeTo(1.0, 0.0001)));
+
+        assertThat("the snapshot returns every value",
+                   snapshot.getValues()[99],
+                   is(closeTo(100.0, 0.0001)));
+    }
+
+    @Test
+    public void extremeQuantilesOfALargeStreamAreAccurate() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(3, 3600000000000L);
+        for (int i = 1; i <= 1000000; i++) {
+            sample.update(i * 1000L);
+        }
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the sample has a million values",
+                   snapshot.size(),
+                   is(1000000));
+
+        assertThat("the 99.9th percentile is within 0.1% of 999,000,000",
+                   snapshot.get999thPercentile(),
+                   is(closeTo(999000000.0, 999000.0)));
+
+        assertThat("the median is within 0.1% of 500,000,000",
+                   snapshot.getMedian(),
+                   is(closeTo(500000000.0, 500000.0)));
+
+        assertThat("the snapshot returns a bounded set of representative values",
+                   snapshot.getValues().length,
+                   is(1028));
+    }
+
+    @Test
+    public void valuesOutsideTheTrackableRangeAreClamped() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(2, 1000);
+        sample.update(-5);
+        sample.update(1000000);
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("negative values are recorded as zero",
+                   snapshot.getValue(0.0),
+                   is(closeTo(0.0, 0.0001)));
+
+        assertThat("large values are recorded as the maximum trackable value",
+                   snapshot.getValue(1.0),
+                   is(closeTo(1000.0, 0.0001)));
+    }
+
+    @Test
+    public void snapshotsCanBeConvertedWithoutLosingPrecision() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(2, Long.MAX_VALUE);
+        for (int i = 1; i <= 100; i++) {
+            sample.update(i);
+        }
+
+        final Snapshot converted = sample.getSnapshot().convert(10);
+
+        assertThat("the converted snapshot has a median of 5",
+                   converted.getMedian(),
+                   is(closeTo(5.0, 0.0001)));
+
+        assertThat("the converted snapshot still has 100 values",
+                   converted.size(),
+                   is(100));
+    }
+
+    @Test
+    public void clearingTheSampleEmptiesIt() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        sample.update(10);
+
+        sample.clear();
+
+        assertThat("the sample is empty",
+                   sample.size(),
+                   is(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void significantDigitsMustBeInRange() throws Exception {
+        new LogLinearSample(6, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void theExtremesAreExact() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(1, Long.MAX_VALUE);
+        sample.update(1234);
+        sample.update(5000);
+        sample.update(98765);
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the 0th quantile is the smallest value",
+                   snapshot.getValue(0.0),
+                   is(closeTo(1234.0, 0.0001)));
+
+        assertThat("the 100th quantile is the largest value",
+                   snapshot.getValue(1.0),
+                   is(closeTo(98765.0, 0.0001)));
+    }
+}
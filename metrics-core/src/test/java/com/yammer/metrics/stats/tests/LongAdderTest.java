@@ -0,0 +1,76 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.LongAdder;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongAdderTest {
+    private final LongAdder adder = new LongAdder();
+
+    @Test
+    public void startsAtZero() throws Exception {
+        assertThat("the adder has a sum of zero",
+                   adder.sum(),
+                   is(0L));
+    }
+
+    @Test
+    public void addsAndSubtracts() throws Exception {
+        adder.add(12);
+        adder.increment();
+        adder.decrement();
+        adder.add(-2);
+
+        assertThat("the adder has a sum of ten",
+                   adder.sum(),
+                   is(10L));
+    }
+
+    @Test
+    public void sumsConcurrentAdditions() throws Exception {
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 100000; i++) {
+                        adder.increment();
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat("the adder has counted every addition",
+                   adder.sum(),
+                   is(800000L));
+    }
+
+    @Test
+    public void sumThenResetReturnsTheSumAndClearsIt() throws Exception {
+        adder.add(5);
+
+        assertThat("the sum is returned",
+                   adder.sumThenReset(),
+                   is(5L));
+
+        assertThat("the adder has been reset",
+                   adder.sum(),
+                   is(0L));
+    }
+}
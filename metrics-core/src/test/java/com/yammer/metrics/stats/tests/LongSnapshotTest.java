@@ -0,0 +1,69 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.LongSnapshot;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongSnapshotTest {
+    private final Snapshot snapshot = new LongSnapshot(new long[]{ 5, 1, 2, 3, 4 });
+
+    @Test
+    public void smallQuantilesAreTheFirstValue() throws Exception {
+        assertThat(snapshot.getValue(0.0),
+                   is(closeTo(1, 0.1)));
+    }
+
+    @Test
+    public void bigQuantilesAreTheLastValue() throws Exception {
+        assertThat(snapshot.getValue(1.0),
+                   is(closeTo(5, 0.1)));
+    }
+
+    @Test
+    public void hasAMedian() throws Exception {
+        assertThat(snapshot.getMedian(),
+                   is(closeTo(3, 0.1)));
+    }
+
+    @Test
+    public void hasAp75() throws Exception {
+        assertThat(snapshot.get75thPercentile(),
+                   is(closeTo(4.5, 0.1)));
+    }
+
+    @Test
+    public void hasValues() throws Exception {
+        assertThat(snapshot.getValues(),
+                   is(new double[]{ 1, 2, 3, 4, 5 }));
+    }
+
+    @Test
+    public void hasASize() throws Exception {
+        assertThat(snapshot.size(),
+                   is(5));
+    }
+
+    @Test
+    public void anEmptySnapshotHasZeroQuantiles() throws Exception {
+        assertThat(new LongSnapshot(new long[0]).get99thPercentile(),
+                   is(0.0));
+    }
+
+    @Test
+    public void convertsValuesWithoutChangingTheOriginal() throws Exception {
+        final Snapshot converted = snapshot.convert(2).convert(5);
+
+        assertThat(converted.getValues(),
+                   is(new double[]{ 0.1, 0.2, 0.3, 0.4, 0.5 }));
+
+        assertThat(converted.get75thPercentile(),
+                   is(closeTo(0.45, 0.001)));
+
+        assertThat(snapshot.getValues(),
+                   is(new double[]{ 1, 2, 3, 4, 5 }));
+    }
+}
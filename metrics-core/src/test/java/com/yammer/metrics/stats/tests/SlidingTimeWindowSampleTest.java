@@ -0,0 +1,167 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.stats.SlidingTimeWindowSample;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SlidingTimeWindowSampleTest {
+    private final ManualClock clock = new ManualClock();
+    private final SlidingTimeWindowSample sample =
+            new SlidingTimeWindowSample(10, TimeUnit.SECONDS, 16, clock);
+
+    @Test
+    public void storesValuesWithinTheWindow() throws Exception {
+        sample.update(1);
+        clock.addSeconds(5);
+        sample.update(2);
+
+        assertThat("the sample has 2 elements",
+                   sample.size(),
+                   is(2));
+
+        assertThat("the snapshot contains both values",
+                   sample.getSnapshot().getValues(),
+                   is(new double[]{1, 2}));
+    }
+
+    @Test
+    public void discardsValuesOlderThanTheWindow() throws Exception {
+        sample.update(1);
+        clock.addSeconds(6);
+        sample.update(2);
+        clock.addSeconds(6);
+        sample.update(3);
+
+        assertThat("the sample has 2 elements",
+                   sample.size(),
+                   is(2));
+
+        assertThat("the snapshot only contains the recent values",
+                   sample.getSnapshot().getValues(),
+                   is(new double[]{2, 3}));
+    }
+
+    @Test
+    public void overwritesTheOldestValuesWhenFull() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            sample.update(i);
+        }
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the sample holds as many values as it has room for",
+                   snapshot.size(),
+                   is(16));
+
+        assertThat("the oldest values were overwritten",
+                   snapshot.getValue(0.0),
+                   is(4.0));
+
+        assertThat("the overwritten values were counted as dropped",
+                   sample.dropped(),
+                   is(4L));
+    }
+
+    @Test
+    public void valuesOutsideTheWindowAreNotCountedAsDropped() throws Exception {
+        for (int i = 0; i < 16; i++) {
+            sample.update(i);
+        }
+        clock.addSeconds(11);
+        sample.update(100);
+
+        assertThat("no values were dropped",
+                   sample.dropped(),
+                   is(0L));
+
+        assertThat("the snapshot only contains the recent value",
+                   sample.getSnapshot().getValues(),
+                   is(new double[]{100}));
+    }
+
+    @Test
+    public void clearingTheSampleEmptiesIt() throws Exception {
+        sample.update(1);
+
+        sample.clear();
+
+        assertThat("the sample is empty",
+                   sample.size(),
+                   is(0));
+    }
+
+    @Test
+    public void neverPairsAValueWithAnotherValuesTimestamp() throws Exception {
+        // each writer alternates between values stamped inside the window and values stamped
+        // long before it, so a value read with the wrong timestamp shows up in a snapshot
+        final long now = TimeUnit.MINUTES.toNanos(1);
+        final ThreadLocal<Long> writerTime = new ThreadLocal<Long>() {
+            @Override
+            protected Long initialValue() {
+                return now;
+            }
+        };
+        final Clock clock = new Clock() {
+            @Override
+            public long tick() {
+                return writerTime.get();
+            }
+        };
+        final SlidingTimeWindowSample sample = new SlidingTimeWindowSample(10, TimeUnit.SECONDS, 16, clock);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<Thread> writers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            writers.add(new Thread() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        writerTime.set(now);
+                        sample.update(1);
+                        writerTime.set(0L);
+                        sample.update(2);
+                    }
+                }
+            });
+        }
+        for (Thread writer : writers) {
+            writer.start();
+        }
+
+        try {
+            for (int i = 0; i < 100000; i++) {
+                for (double value : sample.getSnapshot().getValues()) {
+                    assertThat("only values stamped inside the window are read",
+                               value,
+                               is(1.0));
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+    }
+
+    private static class ManualClock extends Clock {
+        private long ticksInNanos = 0;
+
+        void addSeconds(long seconds) {
+            ticksInNanos += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long tick() {
+            return ticksInNanos;
+        }
+    }
+}
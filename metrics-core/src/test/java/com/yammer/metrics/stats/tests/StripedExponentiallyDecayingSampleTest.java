@@ -0,0 +1,166 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.stats.StripedExponentiallyDecayingSample;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class StripedExponentiallyDecayingSampleTest {
+    @Test
+    @SuppressWarnings("unchecked")
+    public void aSampleOf100OutOf1000Elements() throws Exception {
+        final StripedExponentiallyDecayingSample sample = new StripedExponentiallyDecayingSample(100, 0.99);
+        for (int i = 0; i < 1000; i++) {
+            sample.update(i);
+        }
+
+        assertThat("the sample has a size of 100",
+                   sample.size(),
+                   is(100));
+
+        final Snapshot snapshot = sample.getSnapshot();
+
+        assertThat("the sample has 100 elements",
+                   snapshot.size(),
+                   is(100));
+
+        assertAllValuesBetween(sample, 0, 1000);
+    }
+
+    @Test
+    public void aSampleOf100OutOf10Elements() throws Exception {
+        final StripedExponentiallyDecayingSample sample = new StripedExponentiallyDecayingSample(100, 0.99);
+        for (int i = 0; i < 10; i++) {
+            sample.update(i);
+        }
+
+        assertThat("the sample has 10 elements",
+                   sample.getSnapshot().size(),
+                   is(10));
+
+        assertAllValuesBetween(sample, 0, 10);
+    }
+
+    @Test
+    public void concurrentUpdatesAreMergedIntoASingleReservoir() throws Exception {
+        final StripedExponentiallyDecayingSample sample =
+                new StripedExponentiallyDecayingSample(100, 0.015, Clock.defaultClock(), 8);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 10000; i++) {
+                        sample.update(i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat("the sample has a size of 100",
+                   sample.size(),
+                   is(100));
+
+        assertThat("the snapshot has 100 elements",
+                   sample.getSnapshot().size(),
+                   is(100));
+
+        assertAllValuesBetween(sample, 0, 10000);
+    }
+
+    @Test
+    public void longPeriodsOfInactivityShouldNotCorruptSamplingState() {
+        final ManualClock clock = new ManualClock();
+        final StripedExponentiallyDecayingSample sample =
+                new StripedExponentiallyDecayingSample(10, 0.015, clock);
+
+        // add 1000 values at a rate of 10 values/second
+        for (int i = 0; i < 1000; i++) {
+            sample.update(1000 + i);
+            clock.addMillis(100);
+        }
+        assertThat("the sample has 10 elements", sample.getSnapshot().size(), is(10));
+        assertAllValuesBetween(sample, 1000, 2000);
+
+        // wait for 15 hours and add another value, triggering a rescale
+        clock.addHours(15);
+        sample.update(2000);
+        assertThat("the sample has 10 elements", sample.getSnapshot().size(), is(10));
+        assertAllValuesBetween(sample, 1000, 3000);
+
+        // add 1000 values at a rate of 10 values/second
+        for (int i = 0; i < 1000; i++) {
+            sample.update(3000 + i);
+            clock.addMillis(100);
+        }
+        assertThat("the sample has 10 elements", sample.getSnapshot().size(), is(10));
+        assertAllValuesBetween(sample, 3000, 4000);
+    }
+
+    @Test
+    public void clearingTheSampleEmptiesIt() throws Exception {
+        final StripedExponentiallyDecayingSample sample = new StripedExponentiallyDecayingSample(100, 0.99);
+        for (int i = 0; i < 10; i++) {
+            sample.update(i);
+        }
+
+        sample.clear();
+
+        assertThat("the sample is empty",
+                   sample.getSnapshot().size(),
+                   is(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void assertAllValuesBetween(StripedExponentiallyDecayingSample sample,
+                                        double min, double max) {
+        for (double i : sample.getSnapshot().getValues()) {
+            assertThat("the sample only contains elements from the population",
+                       i,
+                       is(allOf(
+                               lessThan(max),
+                               greaterThanOrEqualTo(min)
+                       )));
+        }
+    }
+
+    class ManualClock extends Clock {
+        long ticksInNanos = 0;
+
+        public void addMillis(long millis) {
+            ticksInNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        public void addHours(long hours) {
+            ticksInNanos += TimeUnit.HOURS.toNanos(hours);
+        }
+
+        @Override
+        public long tick() {
+            return ticksInNanos;
+        }
+
+        @Override
+        public long time() {
+            return TimeUnit.NANOSECONDS.toMillis(ticksInNanos);
+        }
+    }
+}
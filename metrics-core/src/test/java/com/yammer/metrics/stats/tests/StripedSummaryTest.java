@@ -0,0 +1,123 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.StripedSummary;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StripedSummaryTest {
+    @Test
+    public void anEmptySummary() throws Exception {
+        final StripedSummary summary = new StripedSummary();
+
+        assertThat("the summary has a count of zero",
+                   summary.count(),
+                   is(0L));
+
+        assertThat("the summary has a sum of zero",
+                   summary.sum(),
+                   is(0L));
+
+        assertThat("the summary has a variance of zero",
+                   summary.variance(),
+                   is(closeTo(0.0, 0.0001)));
+    }
+
+    @Test
+    public void aSummaryOf1000Elements() throws Exception {
+        final StripedSummary summary = new StripedSummary();
+        for (int i = 1; i <= 1000; i++) {
+            summary.update(i);
+        }
+
+        assertThat("the summary has a count of 1000",
+                   summary.count(),
+                   is(1000L));
+
+        assertThat("the summary has a sum of 500500",
+                   summary.sum(),
+                   is(500500L));
+
+        assertThat("the summary has a min of 1",
+                   summary.min(),
+                   is(1L));
+
+        assertThat("the summary has a max of 1000",
+                   summary.max(),
+                   is(1000L));
+
+        assertThat("the summary has a variance of 83416.67",
+                   summary.variance(),
+                   is(closeTo(83416.6667, 0.001)));
+    }
+
+    @Test
+    public void concurrentUpdatesAreFoldedTogether() throws Exception {
+        final StripedSummary summary = new StripedSummary(8);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 1; i <= 1000; i++) {
+                        summary.update(i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat("the summary has a count of 8000",
+                   summary.count(),
+                   is(8000L));
+
+        assertThat("the summary has a sum of 8 * 500500",
+                   summary.sum(),
+                   is(8 * 500500L));
+
+        assertThat("the summary has a min of 1",
+                   summary.min(),
+                   is(1L));
+
+        assertThat("the summary has a max of 1000",
+                   summary.max(),
+                   is(1000L));
+
+        // the population variance of 1..1000 is 83333.25, repeated 8 times
+        assertThat("the summary has the variance of the combined stream",
+                   summary.variance(),
+                   is(closeTo(83333.25 * 8000 / 7999, 0.001)));
+    }
+
+    @Test
+    public void clearingTheSummaryResetsIt() throws Exception {
+        final StripedSummary summary = new StripedSummary();
+        summary.update(10);
+        summary.update(20);
+
+        summary.clear();
+
+        assertThat("the summary has a count of zero",
+                   summary.count(),
+                   is(0L));
+
+        assertThat("the summary has a max of Long.MIN_VALUE",
+                   summary.max(),
+                   is(Long.MIN_VALUE));
+    }
+}
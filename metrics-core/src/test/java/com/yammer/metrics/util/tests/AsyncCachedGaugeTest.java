@@ -0,0 +1,97 @@
+package com.yammer.metrics.util.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.util.AsyncCachedGauge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AsyncCachedGaugeTest {
+    private final Clock clock = mock(Clock.class);
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+    };
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AsyncCachedGauge<Integer> gauge =
+            new AsyncCachedGauge<Integer>(executor, clock, 100, TimeUnit.MILLISECONDS) {
+                @Override
+                protected Integer loadValue() {
+                    if (loads.get() == 2) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return loads.incrementAndGet();
+                }
+            };
+
+    @Test
+    public void loadsTheFirstValueOnTheCallingThread() throws Exception {
+        when(clock.tick()).thenReturn(0L);
+
+        assertThat("the first read loads the value",
+                   gauge.value(),
+                   is(1));
+
+        assertThat("no refresh was scheduled",
+                   tasks.size(),
+                   is(0));
+    }
+
+    @Test
+    public void refreshesStaleValuesInTheBackground() throws Exception {
+        when(clock.tick()).thenReturn(0L);
+        gauge.value();
+
+        when(clock.tick()).thenReturn(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat("a stale read returns the cached value",
+                   gauge.value(),
+                   is(1));
+
+        assertThat("a stale read doesn't schedule a second refresh while one is pending",
+                   gauge.value(),
+                   is(1));
+
+        assertThat("one refresh was scheduled",
+                   tasks.size(),
+                   is(1));
+
+        tasks.remove(0).run();
+
+        assertThat("the refreshed value is returned",
+                   gauge.value(),
+                   is(2));
+    }
+
+    @Test
+    public void keepsThePreviousValueIfARefreshFails() throws Exception {
+        when(clock.tick()).thenReturn(0L);
+        gauge.value();
+        when(clock.tick()).thenReturn(TimeUnit.MILLISECONDS.toNanos(100));
+        gauge.value();
+        tasks.remove(0).run();
+        when(clock.tick()).thenReturn(TimeUnit.MILLISECONDS.toNanos(200));
+        gauge.value();
+        tasks.remove(0).run();
+
+        assertThat("the previous value is kept",
+                   gauge.value(),
+                   is(2));
+
+        assertThat("another refresh can be scheduled",
+                   tasks.size(),
+                   is(1));
+    }
+}
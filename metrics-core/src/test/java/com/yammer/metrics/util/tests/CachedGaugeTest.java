@@ -0,0 +1,49 @@
+package com.yammer.metrics.util.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.util.CachedGauge;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachedGaugeTest {
+    private final Clock clock = mock(Clock.class);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CachedGauge<Integer> gauge = new CachedGauge<Integer>(clock, 100, TimeUnit.MILLISECONDS) {
+        @Override
+        protected Integer loadValue() {
+            return loads.incrementAndGet();
+        }
+    };
+
+    @Test
+    public void cachesTheValueUntilTheTimeoutExpires() throws Exception {
+        when(clock.tick()).thenReturn(0L);
+
+        assertThat("the first read loads the value",
+                   gauge.value(),
+                   is(1));
+
+        when(clock.tick()).thenReturn(TimeUnit.MILLISECONDS.toNanos(99));
+
+        assertThat("reads within the timeout return the cached value",
+                   gauge.value(),
+                   is(1));
+
+        when(clock.tick()).thenReturn(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat("the first read after the timeout reloads the value",
+                   gauge.value(),
+                   is(2));
+
+        assertThat("the value was loaded twice",
+                   loads.get(),
+                   is(2));
+    }
+}
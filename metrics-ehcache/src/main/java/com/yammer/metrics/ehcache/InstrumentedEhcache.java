@@ -1,9 +1,11 @@
 package com.yammer.metrics.ehcache;
 
 import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.DoubleGauge;
 import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.LongGauge;
 import com.yammer.metrics.core.Timer;
-import com.yammer.metrics.core.TimerContext;
+import com.yammer.metrics.util.CachedGauge;
 import net.sf.ehcache.CacheException;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
@@ -107,7 +109,8 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
      * </table>
      *
      * <b>N.B.: This enables Ehcache's sampling statistics with an accuracy
-     * level of "none."</b>
+     * level of "none."</b> The gauges share one {@link Statistics} object,
+     * which is recalculated at most once a second.
      *
      * @param cache an {@link Ehcache} instance
      * @return an instrumented decorator for {@code cache}
@@ -117,129 +120,136 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
         cache.setSampledStatisticsEnabled(true);
         cache.setStatisticsAccuracy(Statistics.STATISTICS_ACCURACY_NONE);
 
-        Metrics.newGauge(cache.getClass(), "hits", cache.getName(), new Gauge<Long>() {
+        final CachedGauge<Statistics> statistics = new CachedGauge<Statistics>(1, TimeUnit.SECONDS) {
             @Override
-            public Long value() {
-                return cache.getStatistics().getCacheHits();
+            protected Statistics loadValue() {
+                return cache.getStatistics();
+            }
+        };
+
+        Metrics.newGauge(cache.getClass(), "hits", cache.getName(), new LongGauge() {
+            @Override
+            public long longValue() {
+                return statistics.value().getCacheHits();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "in-memory-hits", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "in-memory-hits", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getInMemoryHits();
+            public long longValue() {
+                return statistics.value().getInMemoryHits();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "off-heap-hits", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "off-heap-hits", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getOffHeapHits();
+            public long longValue() {
+                return statistics.value().getOffHeapHits();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "on-disk-hits", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "on-disk-hits", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getOnDiskHits();
+            public long longValue() {
+                return statistics.value().getOnDiskHits();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "misses", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "misses", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getCacheMisses();
+            public long longValue() {
+                return statistics.value().getCacheMisses();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "in-memory-misses", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "in-memory-misses", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getInMemoryMisses();
+            public long longValue() {
+                return statistics.value().getInMemoryMisses();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "off-heap-misses", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "off-heap-misses", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getOffHeapMisses();
+            public long longValue() {
+                return statistics.value().getOffHeapMisses();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "on-disk-misses", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "on-disk-misses", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getOnDiskMisses();
+            public long longValue() {
+                return statistics.value().getOnDiskMisses();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "objects", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "objects", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getObjectCount();
+            public long longValue() {
+                return statistics.value().getObjectCount();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "in-memory-objects", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "in-memory-objects", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getMemoryStoreObjectCount();
+            public long longValue() {
+                return statistics.value().getMemoryStoreObjectCount();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "off-heap-objects", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "off-heap-objects", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getOffHeapStoreObjectCount();
+            public long longValue() {
+                return statistics.value().getOffHeapStoreObjectCount();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "on-disk-objects", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "on-disk-objects", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getDiskStoreObjectCount();
+            public long longValue() {
+                return statistics.value().getDiskStoreObjectCount();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "mean-get-time", cache.getName(), new Gauge<Float>() {
+        Metrics.newGauge(cache.getClass(), "mean-get-time", cache.getName(), new DoubleGauge() {
             @Override
-            public Float value() {
-                return cache.getStatistics().getAverageGetTime();
+            public double doubleValue() {
+                return statistics.value().getAverageGetTime();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "mean-search-time", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "mean-search-time", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getAverageSearchTime();
+            public long longValue() {
+                return statistics.value().getAverageSearchTime();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "eviction-count", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "eviction-count", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getEvictionCount();
+            public long longValue() {
+                return statistics.value().getEvictionCount();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "searches-per-second", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "searches-per-second", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getSearchesPerSecond();
+            public long longValue() {
+                return statistics.value().getSearchesPerSecond();
             }
         });
 
-        Metrics.newGauge(cache.getClass(), "writer-queue-size", cache.getName(), new Gauge<Long>() {
+        Metrics.newGauge(cache.getClass(), "writer-queue-size", cache.getName(), new LongGauge() {
             @Override
-            public Long value() {
-                return cache.getStatistics().getWriterQueueSize();
+            public long longValue() {
+                return statistics.value().getWriterQueueSize();
             }
         });
 
         Metrics.newGauge(cache.getClass(), "accuracy", cache.getName(), new Gauge<String>() {
             @Override
             public String value() {
-                return cache.getStatistics().getStatisticsAccuracyDescription();
+                return statistics.value().getStatisticsAccuracyDescription();
             }
         });
 
@@ -256,51 +266,51 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
 
     @Override
     public Element get(Object key) throws IllegalStateException, CacheException {
-        final TimerContext ctx = getTimer.time();
+        final long startTime = getTimer.start();
         try {
             return underlyingCache.get(key);
         } finally {
-            ctx.stop();
+            getTimer.stop(startTime);
         }
     }
 
     @Override
     public Element get(Serializable key) throws IllegalStateException, CacheException {
-        final TimerContext ctx = getTimer.time();
+        final long startTime = getTimer.start();
         try {
             return underlyingCache.get(key);
         } finally {
-            ctx.stop();
+            getTimer.stop(startTime);
         }
     }
 
     @Override
     public void put(Element element) throws IllegalArgumentException, IllegalStateException, CacheException {
-        final TimerContext ctx = putTimer.time();
+        final long startTime = putTimer.start();
         try {
             underlyingCache.put(element);
         } finally {
-            ctx.stop();
+            putTimer.stop(startTime);
         }
     }
 
     @Override
     public void put(Element element, boolean doNotNotifyCacheReplicators) throws IllegalArgumentException, IllegalStateException, CacheException {
-        final TimerContext ctx = putTimer.time();
+        final long startTime = putTimer.start();
         try {
             underlyingCache.put(element, doNotNotifyCacheReplicators);
         } finally {
-            ctx.stop();
+            putTimer.stop(startTime);
         }
     }
 
     @Override
     public Element putIfAbsent(Element element) throws NullPointerException {
-        final TimerContext ctx = putTimer.time();
+        final long startTime = putTimer.start();
         try {
             return underlyingCache.putIfAbsent(element);
         } finally {
-            ctx.stop();
+            putTimer.stop(startTime);
         }
     }
 }
@@ -1,34 +1,47 @@
 package com.yammer.metrics.reporting;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 /**
- * Encapsulates logic for creating and sending a Ganglia message
+ * Encapsulates logic for creating and sending a Ganglia message. Messages are written into a
+ * buffer which is reused from one message to the next, and sent as a datagram through a channel,
+ * so that building and sending a message allocates nothing.
  */
 class GangliaMessage {
+    private static final int MAX_NUMBER_LENGTH = 32;
 
-    private final byte[] buffer;
-    private int offset = 0;
-    private final DatagramSocket datagramSocket;
+    private final ByteBuffer buffer;
+    private final DatagramChannel channel;
     private final InetSocketAddress inetSocketAddress;
+    private final byte[] digits = new byte[MAX_NUMBER_LENGTH];
 
-    GangliaMessage(InetSocketAddress inetSocketAddress, byte[] buffer, DatagramSocket datagramSocket) {
+    GangliaMessage(InetSocketAddress inetSocketAddress, ByteBuffer buffer, DatagramChannel channel) {
         this.inetSocketAddress = inetSocketAddress;
         this.buffer = buffer;
-        this.datagramSocket = datagramSocket;
+        this.channel = channel;
     }
 
     /**
-     * Creates and sends a new {@link DatagramPacket}
+     * Starts a new message, discarding anything in the buffer.
      *
-     * @throws IOException if there is an error sending the packet
+     * @return {@code this}
+     */
+    GangliaMessage reset() {
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * Sends the message as a single datagram.
+     *
+     * @throws IOException if there is an error sending the datagram
      */
     public void send() throws IOException {
-        this.datagramSocket
-                .send(new DatagramPacket(this.buffer, this.offset, this.inetSocketAddress));
+        buffer.flip();
+        channel.send(buffer, inetSocketAddress);
     }
 
     /**
@@ -38,10 +51,10 @@ class GangliaMessage {
      * @return {@code this}
      */
     public GangliaMessage addInt(int value) {
-        this.buffer[this.offset++] = (byte) ((value >> 24) & 0xff);
-        this.buffer[this.offset++] = (byte) ((value >> 16) & 0xff);
-        this.buffer[this.offset++] = (byte) ((value >> 8) & 0xff);
-        this.buffer[this.offset++] = (byte) (value & 0xff);
+        buffer.put((byte) ((value >> 24) & 0xff));
+        buffer.put((byte) ((value >> 16) & 0xff));
+        buffer.put((byte) ((value >> 8) & 0xff));
+        buffer.put((byte) (value & 0xff));
 
         return this;
     }
@@ -54,27 +67,99 @@ class GangliaMessage {
      * @return {@code this}
      */
     public GangliaMessage addString(String value) {
-        final byte[] bytes = value.getBytes();
-        final int len = bytes.length;
-        addInt(len);
-        System.arraycopy(bytes, 0, this.buffer, this.offset, len);
-        this.offset += len;
+        return addString(value.getBytes());
+    }
+
+    /**
+     * Puts an already encoded string into the buffer by first writing its size as an int, followed
+     * by its bytes, padded if necessary to a multiple of 4.
+     *
+     * @param bytes the encoded message to write to the buffer
+     * @return {@code this}
+     */
+    public GangliaMessage addString(byte[] bytes) {
+        return addString(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Puts part of an already encoded string into the buffer by first writing its size as an int,
+     * followed by its bytes, padded if necessary to a multiple of 4.
+     *
+     * @param bytes  an array holding the encoded message
+     * @param offset the offset of the message in {@code bytes}
+     * @param length the length of the message
+     * @return {@code this}
+     */
+    public GangliaMessage addString(byte[] bytes, int offset, int length) {
+        addInt(length);
+        buffer.put(bytes, offset, length);
         pad();
 
         return this;
     }
 
+    /**
+     * Puts an integral value into the buffer as a decimal string.
+     *
+     * @param value the value to write to the buffer
+     * @return {@code this}
+     */
+    public GangliaMessage addValue(long value) {
+        if (value == Long.MIN_VALUE) {
+            return addString(Long.toString(value));
+        }
+        final boolean negative = value < 0;
+        long remaining = negative ? -value : value;
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            digits[--pos] = '-';
+        }
+        return addString(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Puts a floating-point value into the buffer as a decimal string with two decimal places.
+     * Values which are not finite, or too large to be written without formatting them, are written
+     * in Java's own notation.
+     *
+     * @param value the value to write to the buffer
+     * @return {@code this}
+     */
+    public GangliaMessage addValue(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+            return addString(Double.toString(value));
+        }
+        long hundredths = Math.round(Math.abs(value) * 100);
+        int pos = digits.length;
+        digits[--pos] = (byte) ('0' + (hundredths % 10));
+        hundredths /= 10;
+        digits[--pos] = (byte) ('0' + (hundredths % 10));
+        hundredths /= 10;
+        digits[--pos] = '.';
+        do {
+            digits[--pos] = (byte) ('0' + (hundredths % 10));
+            hundredths /= 10;
+        } while (hundredths != 0);
+        if (value < 0) {
+            digits[--pos] = '-';
+        }
+        return addString(digits, pos, digits.length - pos);
+    }
+
     /**
      * Pads the buffer with zero bytes up to the nearest multiple of 4.
      */
     private void pad() {
-        final int newOffset = ((this.offset + 3) / 4) * 4;
-        while (this.offset < newOffset) {
-            this.buffer[this.offset++] = 0;
+        while (buffer.position() % 4 != 0) {
+            buffer.put((byte) 0);
         }
     }
 
     int getOffset() {
-        return this.offset;
+        return buffer.position();
     }
 }
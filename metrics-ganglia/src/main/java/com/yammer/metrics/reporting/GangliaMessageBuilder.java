@@ -1,30 +1,41 @@
 package com.yammer.metrics.reporting;
 
-import java.net.DatagramSocket;
+import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 
 /**
- * Builder for creating Ganglia messages. Note, this builder is not thread safe (the message buffer
- * is reused between messages)
+ * Builder for creating Ganglia messages. Note, this builder is not thread safe (the message and
+ * its buffer are reused between messages)
  */
 class GangliaMessageBuilder {
     private final InetSocketAddress inetSocketAddress;
-    private final byte[] buffer = new byte[1500];
-    private final DatagramSocket datagramSocket;
+    private final DatagramChannel channel;
+    private final GangliaMessage message;
 
-    GangliaMessageBuilder(String hostName, int port) throws SocketException {
+    GangliaMessageBuilder(String hostName, int port) throws IOException {
         this.inetSocketAddress = new InetSocketAddress(hostName, port);
-        this.datagramSocket = new DatagramSocket();
+        this.channel = DatagramChannel.open();
+        this.message = new GangliaMessage(inetSocketAddress, ByteBuffer.allocateDirect(1500), channel);
     }
 
     /**
-     * Create a new Ganglia message
+     * Starts a new Ganglia message, reusing the builder's message and buffer
      *
      * @return a new Ganglia message
      */
     public GangliaMessage newMessage() {
-        return new GangliaMessage(this.inetSocketAddress, this.buffer, this.datagramSocket);
+        return message.reset();
+    }
+
+    /**
+     * Closes the channel through which messages are sent.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
     }
 
     public String getHostName() {
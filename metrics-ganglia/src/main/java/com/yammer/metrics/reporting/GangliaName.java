@@ -0,0 +1,103 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.charset.Charset;
+
+/**
+ * A metric's name as a {@link GangliaReporter} reports it: sanitized and, if the reporter
+ * compresses package names, compressed, along with the encoded name of each of the metric's
+ * values, encoded the first time it is reported, and when the metric's metadata was last sent.
+ * Only used by the reporter's polling thread.
+ */
+class GangliaName {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FIELD_COUNT = Field.values().length;
+
+    /**
+     * The values a {@link GangliaReporter} reports for a metered, histogram or timer metric.
+     */
+    enum Field {
+        COUNT("count"),
+        MEAN_RATE("meanRate"),
+        ONE_MINUTE_RATE("1MinuteRate"),
+        FIVE_MINUTE_RATE("5MinuteRate"),
+        FIFTEEN_MINUTE_RATE("15MinuteRate"),
+        MIN("min"),
+        MAX("max"),
+        MEAN("mean"),
+        STDDEV("stddev"),
+        MEDIAN("median"),
+        P75("75percentile"),
+        P95("95percentile"),
+        P98("98percentile"),
+        P99("99percentile"),
+        P999("999percentile");
+
+        private final String suffix;
+
+        Field(String suffix) {
+            this.suffix = suffix;
+        }
+    }
+
+    private final String name;
+    private final byte[] encoded;
+    private final byte[][] fields = new byte[FIELD_COUNT][];
+    private String announcedType;
+    private long announcedAt;
+
+    GangliaName(String name) {
+        this.name = name;
+        this.encoded = encode(name);
+    }
+
+    /**
+     * Returns the encoded name of the metric itself, under which gauges and counters are reported.
+     */
+    byte[] encoded() {
+        return encoded;
+    }
+
+    /**
+     * Returns the encoded name of one of the metric's values.
+     */
+    byte[] field(Field field) {
+        final byte[] bytes = fields[field.ordinal()];
+        if (bytes != null) {
+            return bytes;
+        }
+        final byte[] encodedField = encode(name + '.' + field.suffix);
+        fields[field.ordinal()] = encodedField;
+        return encodedField;
+    }
+
+    /**
+     * Returns whether the metric's metadata should be sent in the given cycle: the first time the
+     * metric is reported, whenever the type of its values changes, and once every
+     * {@code interval} cycles after that.
+     *
+     * @param cycle    the reporter's current cycle
+     * @param interval the number of cycles between sending the metric's metadata
+     * @param type     the Ganglia type of the metric's values
+     * @return {@code true} if the metadata should be sent
+     */
+    boolean announce(long cycle, int interval, String type) {
+        if (type.equals(announcedType) && cycle - announcedAt < interval) {
+            return false;
+        }
+        this.announcedType = type;
+        this.announcedAt = cycle;
+        return true;
+    }
+
+    /**
+     * Forgets that the metric's metadata was sent, because sending it failed, so that it is sent
+     * again the next time the metric is reported.
+     */
+    void announceFailed() {
+        this.announcedType = null;
+    }
+
+    static byte[] encode(String name) {
+        return name.getBytes(UTF_8);
+    }
+}
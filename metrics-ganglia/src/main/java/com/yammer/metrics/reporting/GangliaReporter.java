@@ -4,16 +4,19 @@ import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
 import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.reporting.GangliaName.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A simple reporter which sends out application metrics to a <a href="http://ganglia.sourceforge.net/">Ganglia</a>
@@ -25,6 +28,11 @@ import java.util.concurrent.TimeUnit;
  * This code heavily borrows from GangliaWriter in <a href="http://code.google.com/p/jmxtrans/source/browse/trunk/src/com/googlecode/jmxtrans/model/output/GangliaWriter.java">JMXTrans</a>
  * which is based on <a href="http://search-hadoop.com/c/Hadoop:/hadoop-common-project/hadoop-common/src/main/java/org/apache/hadoop/metrics/ganglia/GangliaContext31.java">GangliaContext31</a>
  * from Hadoop.
+ * <p/>
+ * Each metric's metadata is only sent the first time it is reported and then once every
+ * {@code metadataInterval} polls, as gmond does with {@code send_metadata_interval}, so that a
+ * restarted gmond learns it again. Values are written into a single reused buffer and sent
+ * through a {@link java.nio.channels.DatagramChannel}, one message per datagram as gmond expects.
  */
 public class GangliaReporter extends AbstractPollingReporter implements MetricProcessor<String> {
     private static final Logger LOG = LoggerFactory.getLogger(GangliaReporter.class);
@@ -33,13 +41,26 @@ public class GangliaReporter extends AbstractPollingReporter implements MetricPr
     private static final String GANGLIA_INT_TYPE = "int32";
     private static final String GANGLIA_DOUBLE_TYPE = "double";
     private static final String GANGLIA_STRING_TYPE = "string";
+    private static final byte[] FORMAT = GangliaName.encode("%s");
+
+    /**
+     * The default number of polls between sending each metric's metadata.
+     */
+    public static final int DEFAULT_METADATA_INTERVAL = 10;
+
     private final MetricPredicate predicate;
     private final VirtualMachineMetrics vm;
     private final Locale locale = Locale.US;
-    private String hostLabel;
+    private final byte[] hostLabel;
+    private final int metadataInterval;
+    private final Map<String, GangliaName> vmNames = new HashMap<String, GangliaName>();
+    private long cycle;
     private String groupPrefix = "";
     private boolean compressPackageNames;
     private final GangliaMessageBuilder gangliaMessageBuilder;
+    private final MetricNameCache<GangliaName> names;
+    // set once the name cache listens to the registry, or once the reporter is shut down
+    private final AtomicBoolean namesListening = new AtomicBoolean();
     public boolean printVMMetrics = true;
 
     /**
@@ -241,21 +262,68 @@ public class GangliaReporter extends AbstractPollingReporter implements MetricPr
     public GangliaReporter(MetricsRegistry metricsRegistry, String groupPrefix,
                            MetricPredicate predicate, boolean compressPackageNames,
                            GangliaMessageBuilder gangliaMessageBuilder, VirtualMachineMetrics vm) throws IOException {
+        this(metricsRegistry, groupPrefix, predicate, compressPackageNames, gangliaMessageBuilder, vm,
+             DEFAULT_METADATA_INTERVAL);
+    }
+
+    /**
+     * Creates a new {@link GangliaReporter}.
+     *
+     * @param metricsRegistry          the metrics registry
+     * @param groupPrefix              prefix to the ganglia group name (such as myapp_counter)
+     * @param predicate                filters metrics to be reported
+     * @param compressPackageNames     if true reporter will compress package names e.g.
+     *                                 com.foo.MetricName becomes c.f.MetricName
+     * @param gangliaMessageBuilder    a {@link GangliaMessageBuilder} instance
+     * @param vm                       a {@link VirtualMachineMetrics} isntance
+     * @param metadataInterval         the number of polls between sending each metric's metadata,
+     *                                 like gmond's {@code send_metadata_interval}
+     * @throws java.io.IOException if there is an error connecting to the ganglia server
+     */
+    public GangliaReporter(MetricsRegistry metricsRegistry, String groupPrefix,
+                           MetricPredicate predicate, boolean compressPackageNames,
+                           GangliaMessageBuilder gangliaMessageBuilder, VirtualMachineMetrics vm,
+                           int metadataInterval) throws IOException {
         super(metricsRegistry, "ganglia-reporter");
         this.gangliaMessageBuilder = gangliaMessageBuilder;
         this.groupPrefix = groupPrefix + "_";
-        this.hostLabel = getHostLabel();
+        this.hostLabel = GangliaName.encode(getHostLabel());
         this.predicate = predicate;
         this.compressPackageNames = compressPackageNames;
         this.vm = vm;
+        this.metadataInterval = metadataInterval;
+        this.names = new MetricNameCache<GangliaName>() {
+            @Override
+            protected GangliaName load(MetricName name) {
+                return new GangliaName(sanitizeName(name));
+            }
+        };
     }
 
     @Override
     public void run() {
+        // the cache only listens once a poll runs, so that constructing a reporter neither
+        // sanitizes names before a subclass is initialised nor leaves a listener behind
+        if (namesListening.compareAndSet(false, true)) {
+            getMetricsRegistry().addListener(names);
+        }
         if (this.printVMMetrics) {
             printVmMetrics();
         }
         printRegularMetrics();
+        cycle++;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        namesListening.set(true);
+        getMetricsRegistry().removeListener(names);
+        try {
+            gangliaMessageBuilder.close();
+        } catch (IOException e) {
+            LOG.error("Error closing ganglia channel:", e);
+        }
     }
 
     private void printRegularMetrics() {
@@ -274,53 +342,87 @@ public class GangliaReporter extends AbstractPollingReporter implements MetricPr
         }
     }
 
-    private void sendToGanglia(String metricName, String metricType, String metricValue, String groupName, String units) {
+    private void sendMetadata(GangliaName owner, byte[] metricName, String metricType, String groupName,
+                              String units) {
         try {
-            sendMetricData(metricType, metricName, metricValue, groupPrefix + groupName, units);
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Emitting metric " + metricName + ", type " + metricType + ", value " + metricValue + " for gangliaHost: " + this
-                        .gangliaMessageBuilder
-                        .getHostName() + ":" + this.gangliaMessageBuilder.getPort());
-            }
+            this.gangliaMessageBuilder.newMessage()
+                    .addInt(128)// metric_id = metadata_msg
+                    .addString(this.hostLabel)// hostname
+                    .addString(metricName)// metric name
+                    .addInt(0)// spoof = True
+                    .addString(metricType)// metric type
+                    .addString(metricName)// metric name
+                    .addString(units)// units
+                    .addInt(3)// slope see gmetric.c
+                    .addInt(GANGLIA_TMAX)// tmax, the maximum time between metrics
+                    .addInt(GANGLIA_DMAX)// dmax, the maximum data value
+                    .addInt(1)
+                    .addString("GROUP")// Group attribute
+                    .addString(groupPrefix + groupName)// Group value
+                    .send();
         } catch (IOException e) {
+            // so that the metadata isn't left unsent until the next metadata interval
+            owner.announceFailed();
             LOG.error("Error sending to ganglia:", e);
         }
     }
 
-    private void sendToGanglia(String metricName, String metricType, String metricValue, String groupName) {
-        sendToGanglia(metricName, metricType, metricValue, groupName, "");
-    }
-
-    private void sendMetricData(String metricType, String metricName, String metricValue, String groupName, String units) throws IOException {
-
-        this.gangliaMessageBuilder.newMessage()
-                .addInt(128)// metric_id = metadata_msg
-                .addString(this.hostLabel)// hostname
-                .addString(metricName)// metric name
-                .addInt(0)// spoof = True
-                .addString(metricType)// metric type
-                .addString(metricName)// metric name
-                .addString(units)// units
-                .addInt(3)// slope see gmetric.c
-                .addInt(GANGLIA_TMAX)// tmax, the maximum time between metrics
-                .addInt(GANGLIA_DMAX)// dmax, the maximum data value
-                .addInt(1)
-                .addString("GROUP")// Group attribute
-                .addString(groupName)// Group value
-                .send();
-
-        this.gangliaMessageBuilder.newMessage()
+    private GangliaMessage startValue(byte[] metricName) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Emitting metric " + new String(metricName) + " for gangliaHost: " + this
+                    .gangliaMessageBuilder
+                    .getHostName() + ":" + this.gangliaMessageBuilder.getPort());
+        }
+        return this.gangliaMessageBuilder.newMessage()
                 .addInt(133)// we are sending a string value
                 .addString(this.hostLabel)// hostLabel
                 .addString(metricName)// metric name
                 .addInt(0)// spoof = True
-                .addString("%s")// format field
-                .addString(metricValue) // metric value
-                .send();
+                .addString(FORMAT);// format field
+    }
+
+    private void sendValue(byte[] metricName, long value) {
+        try {
+            startValue(metricName).addValue(value).send();
+        } catch (IOException e) {
+            LOG.error("Error sending to ganglia:", e);
+        }
+    }
+
+    private void sendValue(byte[] metricName, double value) {
+        try {
+            startValue(metricName).addValue(value).send();
+        } catch (IOException e) {
+            LOG.error("Error sending to ganglia:", e);
+        }
+    }
+
+    private void sendValue(byte[] metricName, String value) {
+        try {
+            startValue(metricName).addString(value).send();
+        } catch (IOException e) {
+            LOG.error("Error sending to ganglia:", e);
+        }
     }
 
     @Override
     public void processGauge(MetricName name, Gauge<?> gauge, String x) throws IOException {
+        final GangliaName gangliaName = names.get(name);
+        if (gauge instanceof LongGauge) {
+            if (gangliaName.announce(cycle, metadataInterval, GANGLIA_INT_TYPE)) {
+                sendMetadata(gangliaName, gangliaName.encoded(), GANGLIA_INT_TYPE, "gauge", "");
+            }
+            sendValue(gangliaName.encoded(), ((LongGauge) gauge).longValue());
+            return;
+        }
+        if (gauge instanceof DoubleGauge) {
+            if (gangliaName.announce(cycle, metadataInterval, GANGLIA_DOUBLE_TYPE)) {
+                sendMetadata(gangliaName, gangliaName.encoded(), GANGLIA_DOUBLE_TYPE, "gauge", "");
+            }
+            sendValue(gangliaName.encoded(), String.valueOf(((DoubleGauge) gauge).doubleValue()));
+            return;
+        }
+
         final Object value = gauge.value();
         final Class<?> klass = value.getClass();
 
@@ -333,87 +435,117 @@ public class GangliaReporter extends AbstractPollingReporter implements MetricPr
             type = GANGLIA_STRING_TYPE;
         }
 
-        sendToGanglia(sanitizeName(name),
-                      type,
-                      String.format(locale, "%s", gauge.value()),
-                      "gauge");
+        if (gangliaName.announce(cycle, metadataInterval, type)) {
+            sendMetadata(gangliaName, gangliaName.encoded(), type, "gauge", "");
+        }
+        sendValue(gangliaName.encoded(), String.format(locale, "%s", value));
     }
 
     @Override
     public void processCounter(MetricName name, Counter counter, String x) throws IOException {
-        sendToGanglia(sanitizeName(name),
-                      GANGLIA_INT_TYPE,
-                      String.format(locale, "%d", counter.count()),
-                      "counter");
+        final GangliaName gangliaName = names.get(name);
+        if (gangliaName.announce(cycle, metadataInterval, GANGLIA_INT_TYPE)) {
+            sendMetadata(gangliaName, gangliaName.encoded(), GANGLIA_INT_TYPE, "counter", "");
+        }
+        sendValue(gangliaName.encoded(), counter.count());
     }
 
     @Override
     public void processMeter(MetricName name, Metered meter, String x) throws IOException {
-        final String sanitizedName = sanitizeName(name);
-        final String rateUnits = meter.rateUnit().name();
-        final String rateUnit = rateUnits.substring(0, rateUnits.length() - 1).toLowerCase(Locale.US);
-        final String unit = meter.eventType() + '/' + rateUnit;
-        printLongField(sanitizedName + ".count", meter.count(), "metered", meter.eventType());
-        printDoubleField(sanitizedName + ".meanRate", meter.meanRate(), "metered", unit);
-        printDoubleField(sanitizedName + ".1MinuteRate", meter.oneMinuteRate(), "metered", unit);
-        printDoubleField(sanitizedName + ".5MinuteRate", meter.fiveMinuteRate(), "metered", unit);
-        printDoubleField(sanitizedName + ".15MinuteRate", meter.fifteenMinuteRate(), "metered", unit);
+        final GangliaName gangliaName = names.get(name);
+        printMeter(gangliaName, meter, gangliaName.announce(cycle, metadataInterval, GANGLIA_DOUBLE_TYPE));
+    }
+
+    private void printMeter(GangliaName gangliaName, Metered meter, boolean announce) {
+        // the units are only needed for the metadata
+        final String unit = announce ? meter.eventType() + '/' + rateUnit(meter.rateUnit()) : "";
+        printLongField(gangliaName, gangliaName.field(Field.COUNT), meter.count(), announce, "metered", meter.eventType());
+        printDoubleField(gangliaName, gangliaName.field(Field.MEAN_RATE), meter.meanRate(), announce, "metered", unit);
+        printDoubleField(gangliaName, gangliaName.field(Field.ONE_MINUTE_RATE), meter.oneMinuteRate(), announce, "metered", unit);
+        printDoubleField(gangliaName, gangliaName.field(Field.FIVE_MINUTE_RATE), meter.fiveMinuteRate(), announce, "metered", unit);
+        printDoubleField(gangliaName, gangliaName.field(Field.FIFTEEN_MINUTE_RATE), meter.fifteenMinuteRate(), announce, "metered", unit);
+    }
+
+    private static String rateUnit(TimeUnit unit) {
+        final String rateUnits = unit.name();
+        return rateUnits.substring(0, rateUnits.length() - 1).toLowerCase(Locale.US);
     }
 
     @Override
     public void processHistogram(MetricName name, Histogram histogram, String x) throws IOException {
-        final String sanitizedName = sanitizeName(name);
-        final Snapshot snapshot = histogram.getSnapshot();
+        final GangliaName gangliaName = names.get(name);
+        final boolean announce = gangliaName.announce(cycle, metadataInterval, GANGLIA_DOUBLE_TYPE);
+        final Snapshot snapshot = snapshotOf(histogram);
+        final Summarizable summary = summaryOf(histogram, snapshot);
         // TODO:  what units make sense for histograms?  should we add event type to the Histogram metric?
-        printDoubleField(sanitizedName + ".min", histogram.min(), "histo");
-        printDoubleField(sanitizedName + ".max", histogram.max(), "histo");
-        printDoubleField(sanitizedName + ".mean", histogram.mean(), "histo");
-        printDoubleField(sanitizedName + ".stddev", histogram.stdDev(), "histo");
-        printDoubleField(sanitizedName + ".median", snapshot.getMedian(), "histo");
-        printDoubleField(sanitizedName + ".75percentile", snapshot.get75thPercentile(), "histo");
-        printDoubleField(sanitizedName + ".95percentile", snapshot.get95thPercentile(), "histo");
-        printDoubleField(sanitizedName + ".98percentile", snapshot.get98thPercentile(), "histo");
-        printDoubleField(sanitizedName + ".99percentile", snapshot.get99thPercentile(), "histo");
-        printDoubleField(sanitizedName + ".999percentile", snapshot.get999thPercentile(), "histo");
+        printDoubleField(gangliaName, gangliaName.field(Field.MIN), summary.min(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.MAX), summary.max(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.MEAN), summary.mean(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.STDDEV), summary.stdDev(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.MEDIAN), snapshot.getMedian(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.P75), snapshot.get75thPercentile(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.P95), snapshot.get95thPercentile(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.P98), snapshot.get98thPercentile(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.P99), snapshot.get99thPercentile(), announce, "histo", "");
+        printDoubleField(gangliaName, gangliaName.field(Field.P999), snapshot.get999thPercentile(), announce, "histo", "");
     }
 
     @Override
     public void processTimer(MetricName name, Timer timer, String x) throws IOException {
-        processMeter(name, timer, x);
-        final String sanitizedName = sanitizeName(name);
-        final Snapshot snapshot = timer.getSnapshot();
+        final GangliaName gangliaName = names.get(name);
+        final boolean announce = gangliaName.announce(cycle, metadataInterval, GANGLIA_DOUBLE_TYPE);
+        printMeter(gangliaName, timer, announce);
+        final Snapshot snapshot = snapshotOf(timer);
+        final Summarizable summary = summaryOf(timer, snapshot);
         final String durationUnit = timer.durationUnit().name();
-        printDoubleField(sanitizedName + ".min", timer.min(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".max", timer.max(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".mean", timer.mean(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".stddev", timer.stdDev(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".median", snapshot.getMedian(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".75percentile", snapshot.get75thPercentile(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".95percentile", snapshot.get95thPercentile(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".98percentile", snapshot.get98thPercentile(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".99percentile", snapshot.get99thPercentile(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".999percentile", snapshot.get999thPercentile(), "timer", durationUnit);
-    }
-
-    private void printDoubleField(String name, double value, String groupName, String units) {
-        sendToGanglia(name,
-                      GANGLIA_DOUBLE_TYPE,
-                      String.format(locale, "%2.2f", value),
-                      groupName,
-                      units);
+        printDoubleField(gangliaName, gangliaName.field(Field.MIN), summary.min(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.MAX), summary.max(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.MEAN), summary.mean(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.STDDEV), summary.stdDev(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.MEDIAN), snapshot.getMedian(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.P75), snapshot.get75thPercentile(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.P95), snapshot.get95thPercentile(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.P98), snapshot.get98thPercentile(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.P99), snapshot.get99thPercentile(), announce, "timer", durationUnit);
+        printDoubleField(gangliaName, gangliaName.field(Field.P999), snapshot.get999thPercentile(), announce, "timer", durationUnit);
+    }
+
+    private void printDoubleField(GangliaName owner, byte[] name, double value, boolean announce,
+                                  String groupName, String units) {
+        if (announce) {
+            sendMetadata(owner, name, GANGLIA_DOUBLE_TYPE, groupName, units);
+        }
+        sendValue(name, value);
+    }
+
+    private void printLongField(GangliaName owner, byte[] name, long value, boolean announce,
+                                String groupName, String units) {
+        // TODO:  ganglia does not support int64, what should we do here?
+        if (announce) {
+            sendMetadata(owner, name, GANGLIA_INT_TYPE, groupName, units);
+        }
+        sendValue(name, value);
     }
 
     private void printDoubleField(String name, double value, String groupName) {
-        printDoubleField(name, value, groupName, "");
+        final GangliaName gangliaName = vmName(name);
+        printDoubleField(gangliaName, gangliaName.encoded(), value,
+                         gangliaName.announce(cycle, metadataInterval, GANGLIA_DOUBLE_TYPE), groupName, "");
     }
 
     private void printLongField(String name, long value, String groupName) {
-        printLongField(name, value, groupName, "");
+        final GangliaName gangliaName = vmName(name);
+        printLongField(gangliaName, gangliaName.encoded(), value,
+                       gangliaName.announce(cycle, metadataInterval, GANGLIA_INT_TYPE), groupName, "");
     }
 
-    private void printLongField(String name, long value, String groupName, String units) {
-        // TODO:  ganglia does not support int64, what should we do here?
-        sendToGanglia(name, GANGLIA_INT_TYPE, String.format(locale, "%d", value), groupName, units);
+    private GangliaName vmName(String name) {
+        GangliaName gangliaName = vmNames.get(name);
+        if (gangliaName == null) {
+            gangliaName = new GangliaName(name);
+            vmNames.put(name, gangliaName);
+        }
+        return gangliaName;
     }
 
     private void printVmMetrics() {
@@ -2,13 +2,17 @@ package com.yammer.metrics.reporting;
 
 import org.junit.Test;
 
-import java.net.SocketException;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class GangliaMessageBuilderTest {
     @Test
-    public void providesCorrectHostAndPort() throws SocketException {
+    public void providesCorrectHostAndPort() throws IOException {
         final String hostName = "hostName";
         final int port = 12345;
 
@@ -17,4 +21,25 @@ public class GangliaMessageBuilderTest {
         assertEquals(hostName, builder.getHostName());
         assertEquals(port, builder.getPort());
     }
+
+    @Test
+    public void sendsEachMessageAsADatagram() throws IOException {
+        final DatagramSocket server = new DatagramSocket(0);
+        server.setSoTimeout(5000);
+        final GangliaMessageBuilder builder = new GangliaMessageBuilder("localhost", server.getLocalPort());
+
+        builder.newMessage().addInt(1).send();
+        builder.newMessage().addString("ab").send();
+
+        final DatagramPacket packet = new DatagramPacket(new byte[64], 64);
+        server.receive(packet);
+        assertEquals(4, packet.getLength());
+
+        server.receive(packet);
+        assertArrayEquals(new byte[]{0, 0, 0, 2, 'a', 'b', 0, 0},
+                          Arrays.copyOf(packet.getData(), packet.getLength()));
+
+        builder.close();
+        server.close();
+    }
 }
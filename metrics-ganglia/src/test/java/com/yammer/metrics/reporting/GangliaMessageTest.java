@@ -2,6 +2,8 @@ package com.yammer.metrics.reporting;
 
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
@@ -12,7 +14,7 @@ public class GangliaMessageTest {
         final byte[] buffer = new byte[bytesToWrite];
         final byte[] expecteds = new byte[]{0, 0, 2, (byte) 166};
 
-        final GangliaMessage message = new GangliaMessage(null, buffer, null);
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
 
         message.addInt(678);
 
@@ -26,7 +28,7 @@ public class GangliaMessageTest {
         final byte[] buffer = new byte[bytesToWrite];
         final byte[] expecteds = new byte[]{0, 0, 0, 4, 't', 'e', 's', 't'};
 
-        final GangliaMessage message = new GangliaMessage(null, buffer, null);
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
 
         message.addString("test");
 
@@ -40,11 +42,51 @@ public class GangliaMessageTest {
         final byte[] buffer = new byte[bytesToWrite];
         final byte[] expecteds = new byte[]{0, 0, 0, 5, 't', 'e', 's', 't', 's', 0, 0, 0};
 
-        final GangliaMessage message = new GangliaMessage(null, buffer, null);
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
 
         message.addString("tests");
 
         assertArrayEquals(expecteds, buffer);
         assertEquals(bytesToWrite, message.getOffset());
     }
+
+    @Test
+    public void canAddIntegralValue() {
+        final int bytesToWrite = 4 + 4; //integer + message
+        final byte[] buffer = new byte[bytesToWrite];
+        final byte[] expecteds = new byte[]{0, 0, 0, 4, '-', '1', '2', '3'};
+
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
+
+        message.addValue(-123L);
+
+        assertArrayEquals(expecteds, buffer);
+        assertEquals(bytesToWrite, message.getOffset());
+    }
+
+    @Test
+    public void canAddFloatingPointValue() {
+        final int bytesToWrite = 4 + 5 + 3; //integer + message + padding
+        final byte[] buffer = new byte[bytesToWrite];
+        final byte[] expecteds = new byte[]{0, 0, 0, 5, '1', '2', '.', '3', '5', 0, 0, 0};
+
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
+
+        message.addValue(12.345678);
+
+        assertArrayEquals(expecteds, buffer);
+        assertEquals(bytesToWrite, message.getOffset());
+    }
+
+    @Test
+    public void startsEachMessageAtTheStartOfTheBuffer() {
+        final byte[] buffer = new byte[8];
+        final GangliaMessage message = new GangliaMessage(null, ByteBuffer.wrap(buffer), null);
+
+        message.addInt(1);
+        message.reset().addInt(2);
+
+        assertEquals(4, message.getOffset());
+        assertArrayEquals(new byte[]{0, 0, 0, 2, 0, 0, 0, 0}, buffer);
+    }
 }
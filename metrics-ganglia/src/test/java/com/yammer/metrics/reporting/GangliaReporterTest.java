@@ -44,6 +44,11 @@ public class GangliaReporterTest extends AbstractPollingReporterTest {
                 return this;
             }
 
+            @Override
+            public GangliaMessage addString(byte[] bytes, int offset, int length) {
+                return addString(new String(bytes, offset, length));
+            }
+
             @Override
             public void send() throws SocketException, IOException {
                 output.append("send()\n").flush();
@@ -78,6 +83,106 @@ public class GangliaReporterTest extends AbstractPollingReporterTest {
         return reporter;
     }
 
+    @Test
+    public void sendsMetadataOnlyOnFirstSightAndEveryIntervalAfterThat() throws Exception {
+        final StringBuilder sent = new StringBuilder();
+        final GangliaMessage message = new GangliaMessage(null, null, null) {
+            @Override
+            public GangliaMessage addInt(int value) {
+                sent.append(value == 128 ? "metadata " : (value == 133 ? "value " : ""));
+                return this;
+            }
+
+            @Override
+            public GangliaMessage addString(byte[] bytes, int offset, int length) {
+                return this;
+            }
+
+            @Override
+            public void send() {
+            }
+        };
+        final GangliaMessageBuilder messageBuilder = mock(GangliaMessageBuilder.class);
+        when(messageBuilder.newMessage()).thenReturn(message);
+
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        final GangliaReporter gangliaReporter = new GangliaReporter(metricsRegistry,
+                                                                    "group-prefix",
+                                                                    MetricPredicate.ALL,
+                                                                    false,
+                                                                    messageBuilder,
+                                                                    VirtualMachineMetrics.getInstance(),
+                                                                    2);
+        gangliaReporter.printVMMetrics = false;
+        metricsRegistry.newCounter(GangliaReporterTest.class, "counter");
+
+        for (int i = 0; i < 4; i++) {
+            gangliaReporter.run();
+        }
+
+        assertEquals("metadata is sent in the first poll and every second poll after that",
+                     "metadata value value metadata value value ",
+                     sent.toString());
+
+        gangliaReporter.shutdown();
+        metricsRegistry.shutdown();
+    }
+
+    @Test
+    public void resendsMetadataInTheNextPollIfSendingItFailed() throws Exception {
+        final StringBuilder sent = new StringBuilder();
+        final GangliaMessage message = new GangliaMessage(null, null, null) {
+            private boolean metadata;
+            private boolean failed;
+
+            @Override
+            public GangliaMessage addInt(int value) {
+                if (value == 128 || value == 133) {
+                    this.metadata = (value == 128);
+                }
+                return this;
+            }
+
+            @Override
+            public GangliaMessage addString(byte[] bytes, int offset, int length) {
+                return this;
+            }
+
+            @Override
+            public void send() throws IOException {
+                if (metadata && !failed) {
+                    this.failed = true;
+                    throw new IOException("unreachable");
+                }
+                sent.append(metadata ? "metadata " : "value ");
+            }
+        };
+        final GangliaMessageBuilder messageBuilder = mock(GangliaMessageBuilder.class);
+        when(messageBuilder.newMessage()).thenReturn(message);
+
+        final MetricsRegistry metricsRegistry = new MetricsRegistry();
+        final GangliaReporter gangliaReporter = new GangliaReporter(metricsRegistry,
+                                                                    "group-prefix",
+                                                                    MetricPredicate.ALL,
+                                                                    false,
+                                                                    messageBuilder,
+                                                                    VirtualMachineMetrics.getInstance(),
+                                                                    10);
+        gangliaReporter.printVMMetrics = false;
+        metricsRegistry.newCounter(GangliaReporterTest.class, "counter");
+
+        for (int i = 0; i < 3; i++) {
+            gangliaReporter.run();
+        }
+
+        assertEquals("metadata which failed to send is sent again in the next poll",
+                     "value metadata value value ",
+                     sent.toString());
+
+        gangliaReporter.shutdown();
+        metricsRegistry.shutdown();
+    }
+
     @Test
     public void testSanitizeName_noBadCharacters() throws IOException {
         final MetricName metricName = new MetricName("thisIs", "AClean", "MetricName");
@@ -0,0 +1,129 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints in one of the protocols Graphite accepts, directly into a {@link ByteBuffer}.
+ * A buffer's datapoints are encoded between a call to {@link #begin(ByteBuffer)} and a call to
+ * {@link #finish(ByteBuffer)}, after which the buffer holds a single message which can be written
+ * to Graphite as it is. Encoders keep scratch space, so they are not thread-safe.
+ *
+ * @see PlaintextEncoder
+ * @see PickleEncoder
+ */
+public abstract class GraphiteEncoder {
+    /**
+     * Returns the most bytes a datapoint with the given name can take, including anything
+     * {@link #begin(ByteBuffer)} and {@link #finish(ByteBuffer)} may write, which is the space
+     * {@code buffer} must have for an {@code encode} call to succeed.
+     *
+     * @param name      the metric's name
+     * @param valueName the value's name
+     * @return the most bytes the datapoint can take
+     */
+    public abstract int maxLength(String name, String valueName);
+
+    /**
+     * Returns the most bytes a datapoint with the given path can take, including anything
+     * {@link #begin(ByteBuffer)} and {@link #finish(ByteBuffer)} may write.
+     *
+     * @param path the UTF-8 encoded name of the value, including the metric's name
+     * @return the most bytes the datapoint can take
+     */
+    public abstract int maxLength(byte[] path);
+
+    /**
+     * Starts a message at the buffer's position.
+     *
+     * @param buffer the buffer to encode into
+     */
+    public void begin(ByteBuffer buffer) {
+    }
+
+    /**
+     * Encodes a datapoint with an integral value.
+     *
+     * @param buffer    the buffer to encode into
+     * @param name      the metric's name
+     * @param valueName the value's name
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     */
+    public abstract void encode(ByteBuffer buffer, String name, String valueName, long value, long timestamp);
+
+    /**
+     * Encodes a datapoint with a floating-point value.
+     *
+     * @param buffer    the buffer to encode into
+     * @param name      the metric's name
+     * @param valueName the value's name
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     */
+    public abstract void encode(ByteBuffer buffer, String name, String valueName, double value, long timestamp);
+
+    /**
+     * Encodes a datapoint with an integral value under a pre-encoded path.
+     *
+     * @param buffer    the buffer to encode into
+     * @param path      the UTF-8 encoded name of the value, including the metric's name
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     */
+    public abstract void encode(ByteBuffer buffer, byte[] path, long value, long timestamp);
+
+    /**
+     * Encodes a datapoint with a floating-point value under a pre-encoded path.
+     *
+     * @param buffer    the buffer to encode into
+     * @param path      the UTF-8 encoded name of the value, including the metric's name
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     */
+    public abstract void encode(ByteBuffer buffer, byte[] path, double value, long timestamp);
+
+    /**
+     * Finishes the message started by the last call to {@link #begin(ByteBuffer)}.
+     *
+     * @param buffer the buffer to encode into
+     */
+    public void finish(ByteBuffer buffer) {
+    }
+
+    /**
+     * Returns the position from which a finished message should be written again on a new
+     * connection, after the connection it was being written to failed once the bytes up to
+     * {@code written} had been written. By default this is the start of the message, which suits
+     * protocols, like pickle, whose receivers discard a message which is cut off. This is called
+     * from the transport's sender thread, so it must only read the buffer.
+     *
+     * @param buffer  the buffer holding the message
+     * @param start   the position of the start of the message
+     * @param written the position up to which the message was written
+     * @return the position from which to write the message again
+     */
+    public int resumePosition(ByteBuffer buffer, int start, int written) {
+        return start;
+    }
+
+    /**
+     * Writes a string as UTF-8.
+     */
+    static void putString(ByteBuffer buffer, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
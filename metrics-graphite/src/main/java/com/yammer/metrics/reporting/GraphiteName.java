@@ -0,0 +1,80 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.charset.Charset;
+
+/**
+ * A metric's name as a {@link GraphiteReporter} reports it: the name its overridable methods are
+ * given, and the UTF-8 encoded path of each of the metric's values, prefixed and sanitized,
+ * encoded the first time it is reported. Only used by the reporter's polling thread.
+ */
+class GraphiteName {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int FIELD_COUNT = Field.values().length;
+
+    /**
+     * The values a {@link GraphiteReporter} reports for a metric.
+     */
+    enum Field {
+        VALUE("value"),
+        COUNT("count"),
+        MEAN_RATE("meanRate"),
+        ONE_MINUTE_RATE("1MinuteRate"),
+        FIVE_MINUTE_RATE("5MinuteRate"),
+        FIFTEEN_MINUTE_RATE("15MinuteRate"),
+        MIN("min"),
+        MAX("max"),
+        MEAN("mean"),
+        STDDEV("stddev"),
+        MEDIAN("median"),
+        P75("75percentile"),
+        P95("95percentile"),
+        P98("98percentile"),
+        P99("99percentile"),
+        P999("999percentile");
+
+        private final String valueName;
+
+        Field(String valueName) {
+            this.valueName = valueName;
+        }
+
+        String valueName() {
+            return valueName;
+        }
+    }
+
+    private final String name;
+    private final String pathName;
+    private final byte[][] paths = new byte[FIELD_COUNT][];
+
+    /**
+     * @param name     the name as {@link GraphiteReporter#sanitizeName} returns it
+     * @param pathName the prefixed name as it is sent, which {@link GraphiteReporter#sanitizeString}
+     *                 has already been applied to
+     */
+    GraphiteName(String name, String pathName) {
+        this.name = name;
+        this.pathName = pathName;
+    }
+
+    /**
+     * Returns the name without the prefix, which {@link GraphiteReporter#sendToGraphite} sanitizes
+     * as it writes it.
+     */
+    String name() {
+        return name;
+    }
+
+    /**
+     * Returns the encoded path of one of the metric's values.
+     */
+    byte[] path(Field field) {
+        final byte[] path = paths[field.ordinal()];
+        if (path != null) {
+            return path;
+        }
+        final byte[] encoded = (pathName + '.' + field.valueName()).getBytes(UTF_8);
+        paths[field.ordinal()] = encoded;
+        return encoded;
+    }
+}
@@ -0,0 +1,53 @@
+package com.yammer.metrics.reporting;
+
+/**
+ * The ways in which a {@link GraphiteReporter} can send datapoints to Graphite.
+ *
+ * @see GraphiteReporter#enable(com.yammer.metrics.core.MetricsRegistry, long, java.util.concurrent.TimeUnit, String, int, String, com.yammer.metrics.core.MetricPredicate, GraphiteProtocol)
+ */
+public enum GraphiteProtocol {
+    /**
+     * Plaintext lines over a persistent TCP connection, to carbon's line receiver (port 2003 by
+     * default).
+     */
+    PLAINTEXT {
+        @Override
+        public GraphiteTransport newTransport(String host, int port) {
+            return new NioGraphiteTransport(host, port);
+        }
+    },
+
+    /**
+     * Pickled batches of datapoints over a persistent TCP connection, to carbon's pickle receiver
+     * (port 2004 by default).
+     */
+    PICKLE {
+        @Override
+        public GraphiteTransport newTransport(String host, int port) {
+            return new NioGraphiteTransport(host, port, new PickleEncoder(),
+                                            NioGraphiteTransport.DEFAULT_BATCH_SIZE,
+                                            NioGraphiteTransport.DEFAULT_QUEUE_SIZE);
+        }
+    },
+
+    /**
+     * Plaintext lines in UDP datagrams, to carbon's UDP listener (port 2003 by default, once
+     * enabled).
+     */
+    UDP {
+        @Override
+        public GraphiteTransport newTransport(String host, int port) {
+            return new UdpGraphiteTransport(host, port);
+        }
+    };
+
+    /**
+     * Creates a new transport which sends datapoints to the given Graphite server in this
+     * protocol.
+     *
+     * @param host the host name of the Graphite server (carbon-cache or relay)
+     * @param port the port on which the Graphite server accepts this protocol
+     * @return a new {@link GraphiteTransport}
+     */
+    public abstract GraphiteTransport newTransport(String host, int port);
+}
@@ -4,6 +4,7 @@ import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
 import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.reporting.GraphiteName.Field;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,22 +17,53 @@ import java.net.Socket;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 /**
  * A simple reporter which sends out application metrics to a <a href="http://graphite.wikidot.com/faq">Graphite</a>
  * server periodically.
+ * <p/>
+ * By default, each poll opens a new connection from its {@link SocketProvider} and writes to it
+ * on the reporter's thread. Given a {@link GraphiteTransport} instead, such as a
+ * {@link NioGraphiteTransport}, the reporter hands its datapoints to the transport, which can keep
+ * its connection open and send them without holding up the reporter. {@link GraphiteProtocol}
+ * creates transports for the plaintext, pickle and UDP protocols.
+ * <p/>
+ * Only the transport path is cheap per value: it hands the transport each value's path, prefixed,
+ * sanitized and encoded the first time the metric is reported, and the transport's encoder writes
+ * the number without formatting it. The socket path writes every value through
+ * {@link #sendInt(long, String, String, long)}, {@link #sendFloat(long, String, String, double)} and
+ * {@link #sendToGraphite(long, String, String)}, which subclasses may override, so each value is
+ * still sanitized, concatenated and, for floating-point values, formatted with
+ * {@link String#format} as it always has been.
  */
 public class GraphiteReporter extends AbstractPollingReporter implements MetricProcessor<Long> {
     private static final Logger LOG = LoggerFactory.getLogger(GraphiteReporter.class);
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final int MAX_TRANSPORT_NAMES = 1024;
     protected final String prefix;
     protected final MetricPredicate predicate;
     protected final Locale locale = Locale.US;
     protected final Clock clock;
     protected final SocketProvider socketProvider;
+    protected final GraphiteTransport transport;
     protected final VirtualMachineMetrics vm;
+    private final MetricNameCache<GraphiteName> names;
+    // set once the name cache listens to the registry, or once the reporter is shut down
+    private final AtomicBoolean namesListening = new AtomicBoolean();
+    // the prefixed, sanitized names given to the protected send methods on the transport path,
+    // which are mostly the virtual machine's; bounded in case a subclass sends ever-changing names
+    private final ConcurrentMap<String, String> transportNames = new ConcurrentHashMap<String, String>();
+    // the histogram or timer being reported on the socket path and its snapshot, so that both of
+    // its protected send methods report the same snapshot; only used by the polling thread
+    private Sampling sampledMetric;
+    private Snapshot sampledSnapshot;
     protected Writer writer;
+    private boolean closed;
     public boolean printVMMetrics = true;
 
     /**
@@ -113,6 +145,44 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
         }
     }
 
+    /**
+     * Enables the graphite reporter to send data to graphite server in the given protocol with the
+     * specified period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param period          the period between successive outputs
+     * @param unit            the time unit of {@code period}
+     * @param host            the host name of graphite server (carbon-cache agent)
+     * @param port            the port number on which the graphite server accepts {@code protocol}
+     * @param prefix          the string which is prepended to all metric names
+     * @param predicate       filters metrics to be reported
+     * @param protocol        the protocol in which datapoints are sent
+     */
+    public static void enable(MetricsRegistry metricsRegistry, long period, TimeUnit unit, String host, int port, String prefix, MetricPredicate predicate, GraphiteProtocol protocol) {
+        enable(metricsRegistry, period, unit, protocol.newTransport(host, port), prefix, predicate);
+    }
+
+    /**
+     * Enables the graphite reporter to send data through the given transport with the specified
+     * period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param period          the period between successive outputs
+     * @param unit            the time unit of {@code period}
+     * @param transport       the transport which sends datapoints to the graphite server (e.g., a
+     *                        {@link NioGraphiteTransport})
+     * @param prefix          the string which is prepended to all metric names
+     * @param predicate       filters metrics to be reported
+     */
+    public static void enable(MetricsRegistry metricsRegistry, long period, TimeUnit unit, GraphiteTransport transport, String prefix, MetricPredicate predicate) {
+        final GraphiteReporter reporter = new GraphiteReporter(metricsRegistry,
+                                                               prefix,
+                                                               predicate,
+                                                               transport,
+                                                               Clock.defaultClock());
+        reporter.start(period, unit);
+    }
+
     /**
      * Creates a new {@link GraphiteReporter}.
      *
@@ -184,8 +254,28 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
      * @throws IOException if there is an error connecting to the Graphite server
      */
     public GraphiteReporter(MetricsRegistry metricsRegistry, String prefix, MetricPredicate predicate, SocketProvider socketProvider, Clock clock, VirtualMachineMetrics vm, String name) throws IOException {    
+        this(metricsRegistry, prefix, predicate, socketProvider, null, clock, vm, name);
+    }
+
+    /**
+     * Creates a new {@link GraphiteReporter} which sends datapoints through the given transport,
+     * which it closes when it is shut down.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     * @param transport       a {@link GraphiteTransport} instance
+     * @param clock           a {@link Clock} instance
+     */
+    public GraphiteReporter(MetricsRegistry metricsRegistry, String prefix, MetricPredicate predicate, GraphiteTransport transport, Clock clock) {
+        this(metricsRegistry, prefix, predicate, null, transport, clock,
+             VirtualMachineMetrics.getInstance(), "graphite-reporter");
+    }
+
+    private GraphiteReporter(MetricsRegistry metricsRegistry, String prefix, MetricPredicate predicate, SocketProvider socketProvider, GraphiteTransport transport, Clock clock, VirtualMachineMetrics vm, String name) {
         super(metricsRegistry, name);
         this.socketProvider = socketProvider;
+        this.transport = transport;
         this.vm = vm;
 
         this.clock = clock;
@@ -197,10 +287,28 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
             this.prefix = "";
         }
         this.predicate = predicate;
+        this.names = new MetricNameCache<GraphiteName>() {
+            @Override
+            protected GraphiteName load(MetricName name) {
+                final String sanitizedName = sanitizeName(name);
+                return new GraphiteName(sanitizedName,
+                                        GraphiteReporter.this.prefix + sanitizeString(sanitizedName));
+            }
+        };
     }
 
     @Override
     public void run() {
+        // the cache only listens once a poll runs, so that constructing a reporter neither
+        // sanitizes names before a subclass is initialised nor leaves a listener behind
+        if (namesListening.compareAndSet(false, true)) {
+            getMetricsRegistry().addListener(names);
+        }
+        if (transport != null) {
+            sendThroughTransport();
+            return;
+        }
+
         Socket socket = null;
         try {
             socket = this.socketProvider.get();
@@ -237,6 +345,77 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
         }
     }
 
+    private void sendThroughTransport() {
+        // the transport's batches aren't thread safe, so a poll and closing the transport exclude
+        // each other
+        synchronized (transport) {
+            if (closed) {
+                return;
+            }
+            sendThroughTransportLocked();
+        }
+    }
+
+    private void sendThroughTransportLocked() {
+        try {
+            final long epoch = clock.time() / 1000;
+            if (this.printVMMetrics) {
+                printVmMetrics(epoch);
+            }
+            printRegularMetrics(epoch);
+            transport.flush();
+        } catch (Exception e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Error sending to Graphite", e);
+            } else {
+                LOG.warn("Error sending to Graphite: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the reporter, waiting up to five seconds for a poll in progress to finish, and closes
+     * its transport, if it has one.
+     */
+    @Override
+    public void shutdown() {
+        try {
+            shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the reporter, waiting the given amount of time for a poll in progress to finish, and
+     * closes its transport, if it has one. The transport is only closed once no poll is using it.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit for {@code timeout}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            super.shutdown(timeout, unit);
+        } finally {
+            namesListening.set(true);
+            getMetricsRegistry().removeListener(names);
+            if (transport != null) {
+                synchronized (transport) {
+                    if (!closed) {
+                        this.closed = true;
+                        try {
+                            transport.close();
+                        } catch (IOException e) {
+                            LOG.error("Error closing Graphite transport:", e);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     protected void printRegularMetrics(final Long epoch) {
         for (Entry<String,SortedMap<MetricName,Metric>> entry : getMetricsRegistry().groupedMetrics(
                 predicate).entrySet()) {
@@ -254,18 +433,64 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
     }
 
     protected void sendInt(long timestamp, String name, String valueName, long value) {
-        sendToGraphite(timestamp, name, valueName + " " + String.format(locale, "%d", value));
+        if (transport != null) {
+            try {
+                transport.send(transportName(name), valueName, value, timestamp);
+            } catch (IOException e) {
+                LOG.error("Error sending to Graphite:", e);
+            }
+            return;
+        }
+        sendToGraphite(timestamp, name, valueName + " " + Long.toString(value));
     }
 
     protected void sendFloat(long timestamp, String name, String valueName, double value) {
+        if (transport != null) {
+            try {
+                transport.send(transportName(name), valueName, value, timestamp);
+            } catch (IOException e) {
+                LOG.error("Error sending to Graphite:", e);
+            }
+            return;
+        }
         sendToGraphite(timestamp, name, valueName + " " + String.format(locale, "%2.2f", value));
     }
 
+    private String transportName(String name) {
+        final String cached = transportNames.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        final String transportName = prefix + sanitizeString(name);
+        if (transportNames.size() < MAX_TRANSPORT_NAMES) {
+            transportNames.putIfAbsent(name, transportName);
+        }
+        return transportName;
+    }
+
     protected void sendObjToGraphite(long timestamp, String name, String valueName, Object value) {
+        if (transport != null) {
+            // a transport only carries numbers, which is all Graphite can store anyway
+            if (value instanceof Number) {
+                sendFloat(timestamp, name, valueName, ((Number) value).doubleValue());
+            }
+            return;
+        }
         sendToGraphite(timestamp, name, valueName + " " + String.format(locale, "%s", value));
     }
 
     protected void sendToGraphite(long timestamp, String name, String value) {
+        if (transport != null) {
+            // value is "valueName value", as formatted by the methods above
+            final int space = value.indexOf(' ');
+            try {
+                sendFloat(timestamp, name, value.substring(0, space),
+                          Double.parseDouble(value.substring(space + 1)));
+            } catch (RuntimeException e) {
+                LOG.debug("Not sending non-numeric value {} to Graphite", value);
+            }
+            return;
+        }
         try {
             if (!prefix.isEmpty()) {
                 writer.write(prefix);
@@ -282,6 +507,30 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
         }
     }
 
+    private void sendInt(long timestamp, GraphiteName name, Field field, long value) {
+        if (transport != null) {
+            try {
+                transport.send(name.path(field), value, timestamp);
+            } catch (IOException e) {
+                LOG.error("Error sending to Graphite:", e);
+            }
+            return;
+        }
+        sendInt(timestamp, name.name(), field.valueName(), value);
+    }
+
+    private void sendFloat(long timestamp, GraphiteName name, Field field, double value) {
+        if (transport != null) {
+            try {
+                transport.send(name.path(field), value, timestamp);
+            } catch (IOException e) {
+                LOG.error("Error sending to Graphite:", e);
+            }
+            return;
+        }
+        sendFloat(timestamp, name.name(), field.valueName(), value);
+    }
+
     protected String sanitizeName(MetricName name) {
         final StringBuilder sb = new StringBuilder()
                 .append(name.getGroup())
@@ -301,48 +550,100 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
 
     @Override
     public void processGauge(MetricName name, Gauge<?> gauge, Long epoch) throws IOException {
-        sendObjToGraphite(epoch, sanitizeName(name), "value", gauge.value());
+        if (gauge instanceof LongGauge) {
+            sendInt(epoch, names.get(name), Field.VALUE, ((LongGauge) gauge).longValue());
+        } else if (gauge instanceof DoubleGauge) {
+            sendFloat(epoch, names.get(name), Field.VALUE, ((DoubleGauge) gauge).doubleValue());
+        } else {
+            final Object value = gauge.value();
+            if (transport != null && value instanceof Number) {
+                sendFloat(epoch, names.get(name), Field.VALUE, ((Number) value).doubleValue());
+            } else {
+                sendObjToGraphite(epoch, names.get(name).name(), "value", value);
+            }
+        }
     }
 
     @Override
     public void processCounter(MetricName name, Counter counter, Long epoch) throws IOException {
-        sendInt(epoch, sanitizeName(name), "count", counter.count());
+        sendInt(epoch, names.get(name), Field.COUNT, counter.count());
     }
 
     @Override
     public void processMeter(MetricName name, Metered meter, Long epoch) throws IOException {
-        final String sanitizedName = sanitizeName(name);
-        sendInt(epoch, sanitizedName, "count", meter.count());
-        sendFloat(epoch, sanitizedName, "meanRate", meter.meanRate());
-        sendFloat(epoch, sanitizedName, "1MinuteRate", meter.oneMinuteRate());
-        sendFloat(epoch, sanitizedName, "5MinuteRate", meter.fiveMinuteRate());
-        sendFloat(epoch, sanitizedName, "15MinuteRate", meter.fifteenMinuteRate());
+        final GraphiteName graphiteName = names.get(name);
+        sendInt(epoch, graphiteName, Field.COUNT, meter.count());
+        sendFloat(epoch, graphiteName, Field.MEAN_RATE, meter.meanRate());
+        sendFloat(epoch, graphiteName, Field.ONE_MINUTE_RATE, meter.oneMinuteRate());
+        sendFloat(epoch, graphiteName, Field.FIVE_MINUTE_RATE, meter.fiveMinuteRate());
+        sendFloat(epoch, graphiteName, Field.FIFTEEN_MINUTE_RATE, meter.fifteenMinuteRate());
     }
 
     @Override
     public void processHistogram(MetricName name, Histogram histogram, Long epoch) throws IOException {
-        final String sanitizedName = sanitizeName(name);
-        sendSummarizable(epoch, sanitizedName, histogram);
-        sendSampling(epoch, sanitizedName, histogram);
+        final GraphiteName graphiteName = names.get(name);
+        final Snapshot snapshot = snapshotOf(histogram);
+        if (transport == null) {
+            // the socket path reports through the protected methods, which subclasses may override
+            sendSampled(epoch, graphiteName.name(), histogram, snapshot);
+            return;
+        }
+        sendSummarizable(epoch, graphiteName, summaryOf(histogram, snapshot));
+        sendSampling(epoch, graphiteName, snapshot);
     }
 
     @Override
     public void processTimer(MetricName name, Timer timer, Long epoch) throws IOException {
         processMeter(name, timer, epoch);
-        final String sanitizedName = sanitizeName(name);
-        sendSummarizable(epoch, sanitizedName, timer);
-        sendSampling(epoch, sanitizedName, timer);
+        final GraphiteName graphiteName = names.get(name);
+        final Snapshot snapshot = snapshotOf(timer);
+        if (transport == null) {
+            sendSampled(epoch, graphiteName.name(), timer, snapshot);
+            return;
+        }
+        sendSummarizable(epoch, graphiteName, summaryOf(timer, snapshot));
+        sendSampling(epoch, graphiteName, snapshot);
+    }
+
+    /**
+     * Returns the snapshot already taken of the histogram or timer being reported, so that
+     * {@link #sendSummarizable(long, String, Summarizable)} and
+     * {@link #sendSampling(long, String, Sampling)} don't take another one, which for an
+     * {@link Histogram.SampleType#INTERVAL interval} histogram or timer could start another interval.
+     */
+    @Override
+    protected Snapshot snapshotOf(Sampling metric) {
+        if (metric == sampledMetric) {
+            return sampledSnapshot;
+        }
+        return super.snapshotOf(metric);
+    }
+
+    private <T extends Summarizable & Sampling> void sendSampled(long epoch, String sanitizedName,
+                                                                 T metric, Snapshot snapshot) throws IOException {
+        this.sampledMetric = metric;
+        this.sampledSnapshot = snapshot;
+        try {
+            sendSummarizable(epoch, sanitizedName, metric);
+            sendSampling(epoch, sanitizedName, metric);
+        } finally {
+            this.sampledMetric = null;
+            this.sampledSnapshot = null;
+        }
     }
 
     protected void sendSummarizable(long epoch, String sanitizedName, Summarizable metric) throws IOException {
-        sendFloat(epoch, sanitizedName, "min", metric.min());
-        sendFloat(epoch, sanitizedName, "max", metric.max());
-        sendFloat(epoch, sanitizedName, "mean", metric.mean());
-        sendFloat(epoch, sanitizedName, "stddev", metric.stdDev());
+        final Summarizable summary = (metric instanceof Sampling)
+                ? summaryOf(metric, snapshotOf((Sampling) metric))
+                : metric;
+        sendFloat(epoch, sanitizedName, "min", summary.min());
+        sendFloat(epoch, sanitizedName, "max", summary.max());
+        sendFloat(epoch, sanitizedName, "mean", summary.mean());
+        sendFloat(epoch, sanitizedName, "stddev", summary.stdDev());
     }
 
     protected void sendSampling(long epoch, String sanitizedName, Sampling metric) throws IOException {
-        final Snapshot snapshot = metric.getSnapshot();
+        final Snapshot snapshot = snapshotOf(metric);
         sendFloat(epoch, sanitizedName, "median", snapshot.getMedian());
         sendFloat(epoch, sanitizedName, "75percentile", snapshot.get75thPercentile());
         sendFloat(epoch, sanitizedName, "95percentile", snapshot.get95thPercentile());
@@ -351,6 +652,22 @@ public class GraphiteReporter extends AbstractPollingReporter implements MetricP
         sendFloat(epoch, sanitizedName, "999percentile", snapshot.get999thPercentile());
     }
 
+    private void sendSummarizable(long epoch, GraphiteName name, Summarizable summary) {
+        sendFloat(epoch, name, Field.MIN, summary.min());
+        sendFloat(epoch, name, Field.MAX, summary.max());
+        sendFloat(epoch, name, Field.MEAN, summary.mean());
+        sendFloat(epoch, name, Field.STDDEV, summary.stdDev());
+    }
+
+    private void sendSampling(long epoch, GraphiteName name, Snapshot snapshot) {
+        sendFloat(epoch, name, Field.MEDIAN, snapshot.getMedian());
+        sendFloat(epoch, name, Field.P75, snapshot.get75thPercentile());
+        sendFloat(epoch, name, Field.P95, snapshot.get95thPercentile());
+        sendFloat(epoch, name, Field.P98, snapshot.get98thPercentile());
+        sendFloat(epoch, name, Field.P99, snapshot.get99thPercentile());
+        sendFloat(epoch, name, Field.P999, snapshot.get999thPercentile());
+    }
+
     protected void printVmMetrics(long epoch) {
         sendFloat(epoch, "jvm.memory", "heap_usage", vm.heapUsage());
         sendFloat(epoch, "jvm.memory", "non_heap_usage", vm.nonHeapUsage());
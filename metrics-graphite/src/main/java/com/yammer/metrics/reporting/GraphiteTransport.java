@@ -0,0 +1,67 @@
+package com.yammer.metrics.reporting;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A way of getting datapoints to Graphite which, unlike a {@link SocketProvider}, owns its
+ * connection and its encoding, so that it can keep a connection open between polls and send
+ * datapoints in batches.
+ * <p/>
+ * A transport is only used by the reporter's polling thread.
+ *
+ * @see NioGraphiteTransport
+ */
+public interface GraphiteTransport extends Closeable {
+    /**
+     * Sends a datapoint with an integral value.
+     *
+     * @param name      the sanitized name of the metric, including any prefix
+     * @param valueName the name of the metric's value, which is appended to {@code name}
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @throws IOException if the datapoint could not be sent
+     */
+    void send(String name, String valueName, long value, long timestamp) throws IOException;
+
+    /**
+     * Sends a datapoint with a floating-point value.
+     *
+     * @param name      the sanitized name of the metric, including any prefix
+     * @param valueName the name of the metric's value, which is appended to {@code name}
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @throws IOException if the datapoint could not be sent
+     */
+    void send(String name, String valueName, double value, long timestamp) throws IOException;
+
+    /**
+     * Sends a datapoint with an integral value under a pre-encoded path.
+     *
+     * @param path      the UTF-8 encoded, sanitized name of the value, including any prefix and
+     *                  the name of the metric's value
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @throws IOException if the datapoint could not be sent
+     */
+    void send(byte[] path, long value, long timestamp) throws IOException;
+
+    /**
+     * Sends a datapoint with a floating-point value under a pre-encoded path.
+     *
+     * @param path      the UTF-8 encoded, sanitized name of the value, including any prefix and
+     *                  the name of the metric's value
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @throws IOException if the datapoint could not be sent
+     */
+    void send(byte[] path, double value, long timestamp) throws IOException;
+
+    /**
+     * Sends, or hands off for sending, any datapoints which have been buffered. Called at the end
+     * of every poll.
+     *
+     * @throws IOException if the datapoints could not be sent
+     */
+    void flush() throws IOException;
+}
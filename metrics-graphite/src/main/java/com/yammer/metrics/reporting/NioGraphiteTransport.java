@@ -0,0 +1,304 @@
+package com.yammer.metrics.reporting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GraphiteTransport} which never makes the reporter wait on Graphite. Datapoints are
+ * encoded straight into reusable direct buffers, as plaintext lines or, given a
+ * {@link PickleEncoder}, as one pickle frame per buffer; each full buffer, and the last one of
+ * each poll, is handed to a bounded queue, from which a sender thread writes it to a persistent
+ * connection. If the connection fails, the sender reconnects with exponential backoff.
+ * <p/>
+ * A batch whose connection fails partway through is written again on the next connection from its
+ * first datapoint which wasn't completely written (for pickle, from the start of its frame, which
+ * carbon discards when it is cut off), so no datapoint is sent twice. Datapoints which were
+ * written to a connection just before it failed may still be lost with it, so delivery is at most
+ * once.
+ * <p/>
+ * While Graphite is slow or unreachable the queue fills up; once it is full, further batches are
+ * dropped rather than queued, and their datapoints are counted in {@link #droppedDatapoints()}.
+ */
+public class NioGraphiteTransport implements GraphiteTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(NioGraphiteTransport.class);
+
+    /**
+     * The default size of each batch, in bytes.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+    /**
+     * The default number of batches which can wait to be sent.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    private static final long MIN_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final int CONNECT_TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * A buffer of encoded datapoints.
+     */
+    private static final class Batch {
+        private final ByteBuffer buffer;
+        private int datapoints;
+
+        private Batch(int size) {
+            this.buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        private void clear() {
+            buffer.clear();
+            datapoints = 0;
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final int batchSize;
+    private final GraphiteEncoder encoder;
+    private final BlockingQueue<Batch> queue;
+    private final ConcurrentLinkedQueue<Batch> pool = new ConcurrentLinkedQueue<Batch>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread sender;
+
+    private Batch batch;
+    private boolean dropping;
+    private volatile boolean closed;
+    private SocketChannel channel;
+
+    /**
+     * Creates a new {@link NioGraphiteTransport} which sends plaintext datapoints with the default
+     * batch and queue sizes.
+     *
+     * @param host the host name of the Graphite server (carbon-cache or relay)
+     * @param port the port on which the Graphite server accepts plaintext datapoints
+     */
+    public NioGraphiteTransport(String host, int port) {
+        this(host, port, DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Creates a new {@link NioGraphiteTransport} which sends plaintext datapoints.
+     *
+     * @param host      the host name of the Graphite server (carbon-cache or relay)
+     * @param port      the port on which the Graphite server accepts plaintext datapoints
+     * @param batchSize the size of each batch, in bytes
+     * @param queueSize the number of batches which can wait to be sent before batches are dropped
+     */
+    public NioGraphiteTransport(String host, int port, int batchSize, int queueSize) {
+        this(host, port, new PlaintextEncoder(), batchSize, queueSize);
+    }
+
+    /**
+     * Creates a new {@link NioGraphiteTransport}.
+     *
+     * @param host      the host name of the Graphite server (carbon-cache or relay)
+     * @param port      the port on which the Graphite server accepts the encoder's protocol
+     * @param encoder   the encoder of each batch (e.g., a {@link PickleEncoder}), which the
+     *                  transport must not share
+     * @param batchSize the size of each batch, in bytes
+     * @param queueSize the number of batches which can wait to be sent before batches are dropped
+     */
+    public NioGraphiteTransport(String host, int port, GraphiteEncoder encoder, int batchSize, int queueSize) {
+        this.host = host;
+        this.port = port;
+        this.encoder = encoder;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<Batch>(queueSize);
+        this.batch = new Batch(batchSize);
+        this.sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendBatches();
+            }
+        }, "graphite-sender-" + host + ":" + port);
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    /**
+     * Returns the number of datapoints which have been dropped because the queue was full.
+     *
+     * @return the number of datapoints which have been dropped
+     */
+    public long droppedDatapoints() {
+        return dropped.get();
+    }
+
+    @Override
+    public void send(String name, String valueName, long value, long timestamp) {
+        if (reserve(encoder.maxLength(name, valueName))) {
+            if (batch.datapoints == 0) {
+                encoder.begin(batch.buffer);
+            }
+            encoder.encode(batch.buffer, name, valueName, value, timestamp);
+            batch.datapoints++;
+        }
+    }
+
+    @Override
+    public void send(String name, String valueName, double value, long timestamp) {
+        if (reserve(encoder.maxLength(name, valueName))) {
+            if (batch.datapoints == 0) {
+                encoder.begin(batch.buffer);
+            }
+            encoder.encode(batch.buffer, name, valueName, value, timestamp);
+            batch.datapoints++;
+        }
+    }
+
+    @Override
+    public void send(byte[] path, long value, long timestamp) {
+        if (reserve(encoder.maxLength(path))) {
+            if (batch.datapoints == 0) {
+                encoder.begin(batch.buffer);
+            }
+            encoder.encode(batch.buffer, path, value, timestamp);
+            batch.datapoints++;
+        }
+    }
+
+    @Override
+    public void send(byte[] path, double value, long timestamp) {
+        if (reserve(encoder.maxLength(path))) {
+            if (batch.datapoints == 0) {
+                encoder.begin(batch.buffer);
+            }
+            encoder.encode(batch.buffer, path, value, timestamp);
+            batch.datapoints++;
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (batch.datapoints > 0) {
+            handOff();
+        }
+    }
+
+    /**
+     * Flushes any buffered datapoints and stops the sender once it has sent everything queued, or
+     * after waiting a second for it to do so.
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        closed = true;
+        try {
+            sender.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sender.interrupt();
+    }
+
+    /**
+     * Makes sure the current batch has room for a datapoint, handing it off if it doesn't.
+     */
+    private boolean reserve(int length) {
+        if (length > batchSize) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (batch.buffer.remaining() < length) {
+            handOff();
+        }
+        return true;
+    }
+
+    private void handOff() {
+        encoder.finish(batch.buffer);
+        if (queue.offer(batch)) {
+            dropping = false;
+            final Batch free = pool.poll();
+            this.batch = (free == null) ? new Batch(batchSize) : free;
+        } else {
+            dropped.addAndGet(batch.datapoints);
+            if (!dropping) {
+                LOG.warn("Graphite is not keeping up; dropping datapoints");
+                dropping = true;
+            }
+            batch.clear();
+        }
+    }
+
+    private void sendBatches() {
+        long backoff = MIN_BACKOFF_MS;
+        while (!closed || !queue.isEmpty()) {
+            final Batch next;
+            try {
+                next = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (next == null) {
+                continue;
+            }
+
+            next.buffer.flip();
+            final int start = next.buffer.position();
+            while (next.buffer.hasRemaining()) {
+                try {
+                    if (channel == null) {
+                        connect();
+                    }
+                    channel.write(next.buffer);
+                    backoff = MIN_BACKOFF_MS;
+                } catch (IOException e) {
+                    LOG.warn("Error writing to Graphite at {}:{}: {}", new Object[]{host, port, e.getMessage()});
+                    disconnect();
+                    if (closed) {
+                        break;
+                    }
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                    // resend from the datapoint which may have been cut off
+                    next.buffer.position(encoder.resumePosition(next.buffer, start, next.buffer.position()));
+                }
+            }
+            next.clear();
+            pool.offer(next);
+        }
+        disconnect();
+    }
+
+    private void connect() throws IOException {
+        final SocketChannel newChannel = SocketChannel.open();
+        try {
+            newChannel.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            newChannel.close();
+            throw e;
+        }
+        this.channel = newChannel;
+    }
+
+    private void disconnect() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing connection to Graphite", e);
+            }
+            channel = null;
+        }
+    }
+}
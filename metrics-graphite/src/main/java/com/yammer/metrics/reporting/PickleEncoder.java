@@ -0,0 +1,137 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints in Graphite's pickle protocol: each message is a four-byte, big-endian length
+ * followed by a pickled list of {@code (name, (timestamp, value))} tuples, so a whole batch of
+ * datapoints goes to carbon as a single frame. Values are written in binary rather than as text,
+ * which makes them cheaper to encode and to parse, and exact.
+ * <p/>
+ * Only the opcodes of pickle protocol 2 needed to build lists, tuples, strings and numbers are
+ * written, all of which carbon's restricted unpickler accepts.
+ */
+public class PickleEncoder extends GraphiteEncoder {
+    private static final byte PROTO = (byte) 0x80;
+    private static final byte EMPTY_LIST = ']';
+    private static final byte MARK = '(';
+    private static final byte APPENDS = 'e';
+    private static final byte STOP = '.';
+    private static final byte BINUNICODE = 'X';
+    private static final byte BININT = 'J';
+    private static final byte LONG1 = (byte) 0x8a;
+    private static final byte BINFLOAT = 'G';
+    private static final byte TUPLE2 = (byte) 0x86;
+
+    // the frame's length and header, and the list's trailer
+    private static final int FRAMING_LENGTH = 4 + 4 + 2;
+    // a string's opcode and length, the largest number twice, and two tuple opcodes
+    private static final int DATAPOINT_OVERHEAD = 5 + 2 * 10 + 2;
+
+    private int frameStart;
+
+    @Override
+    public int maxLength(String name, String valueName) {
+        return 3 * (name.length() + 1 + valueName.length()) + DATAPOINT_OVERHEAD + FRAMING_LENGTH;
+    }
+
+    @Override
+    public int maxLength(byte[] path) {
+        return path.length + DATAPOINT_OVERHEAD + FRAMING_LENGTH;
+    }
+
+    @Override
+    public void begin(ByteBuffer buffer) {
+        this.frameStart = buffer.position();
+        buffer.putInt(0);
+        buffer.put(PROTO);
+        buffer.put((byte) 2);
+        buffer.put(EMPTY_LIST);
+        buffer.put(MARK);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, String name, String valueName, long value, long timestamp) {
+        putName(buffer, name, valueName);
+        putInteger(buffer, timestamp);
+        putInteger(buffer, value);
+        buffer.put(TUPLE2);
+        buffer.put(TUPLE2);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, String name, String valueName, double value, long timestamp) {
+        putName(buffer, name, valueName);
+        putInteger(buffer, timestamp);
+        buffer.put(BINFLOAT);
+        buffer.putDouble(value);
+        buffer.put(TUPLE2);
+        buffer.put(TUPLE2);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, byte[] path, long value, long timestamp) {
+        putPath(buffer, path);
+        putInteger(buffer, timestamp);
+        putInteger(buffer, value);
+        buffer.put(TUPLE2);
+        buffer.put(TUPLE2);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, byte[] path, double value, long timestamp) {
+        putPath(buffer, path);
+        putInteger(buffer, timestamp);
+        buffer.put(BINFLOAT);
+        buffer.putDouble(value);
+        buffer.put(TUPLE2);
+        buffer.put(TUPLE2);
+    }
+
+    @Override
+    public void finish(ByteBuffer buffer) {
+        buffer.put(APPENDS);
+        buffer.put(STOP);
+        buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+    }
+
+    private void putName(ByteBuffer buffer, String name, String valueName) {
+        buffer.put(BINUNICODE);
+        final int lengthAt = buffer.position();
+        buffer.position(lengthAt + 4);
+        putString(buffer, name);
+        buffer.put((byte) '.');
+        putString(buffer, valueName);
+        putIntLittleEndian(buffer, lengthAt, buffer.position() - lengthAt - 4);
+    }
+
+    private static void putPath(ByteBuffer buffer, byte[] path) {
+        buffer.put(BINUNICODE);
+        final int lengthAt = buffer.position();
+        buffer.position(lengthAt + 4);
+        putIntLittleEndian(buffer, lengthAt, path.length);
+        buffer.put(path);
+    }
+
+    private static void putInteger(ByteBuffer buffer, long value) {
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            buffer.put(BININT);
+            final int position = buffer.position();
+            buffer.position(position + 4);
+            putIntLittleEndian(buffer, position, (int) value);
+        } else {
+            buffer.put(LONG1);
+            buffer.put((byte) 8);
+            for (int i = 0; i < 8; i++) {
+                buffer.put((byte) (value >>> (8 * i)));
+            }
+        }
+    }
+
+    private static void putIntLittleEndian(ByteBuffer buffer, int index, int value) {
+        buffer.put(index, (byte) value);
+        buffer.put(index + 1, (byte) (value >>> 8));
+        buffer.put(index + 2, (byte) (value >>> 16));
+        buffer.put(index + 3, (byte) (value >>> 24));
+    }
+}
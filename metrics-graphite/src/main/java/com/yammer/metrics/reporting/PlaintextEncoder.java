@@ -0,0 +1,115 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints in Graphite's plaintext protocol, one {@code name value timestamp} line per
+ * datapoint. Floating-point values are written with two decimal places, as
+ * {@link GraphiteReporter} has always written them; values which are not finite or too large for
+ * that are written in Java's own notation.
+ */
+public class PlaintextEncoder extends GraphiteEncoder {
+    private static final int MAX_NUMBER_LENGTH = 32;
+
+    private final byte[] digits = new byte[MAX_NUMBER_LENGTH];
+
+    @Override
+    public int maxLength(String name, String valueName) {
+        return 3 * (name.length() + valueName.length()) + 3 * MAX_NUMBER_LENGTH;
+    }
+
+    @Override
+    public int maxLength(byte[] path) {
+        return path.length + 3 * MAX_NUMBER_LENGTH;
+    }
+
+    /**
+     * Returns the start of the first line which wasn't completely written, so that lines which
+     * were written are not sent twice and the line which was cut off is sent whole.
+     */
+    @Override
+    public int resumePosition(ByteBuffer buffer, int start, int written) {
+        for (int i = written - 1; i >= start; i--) {
+            if (buffer.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return start;
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, String name, String valueName, long value, long timestamp) {
+        putName(buffer, name, valueName);
+        putLong(buffer, value);
+        putTimestamp(buffer, timestamp);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, String name, String valueName, double value, long timestamp) {
+        putName(buffer, name, valueName);
+        putDouble(buffer, value);
+        putTimestamp(buffer, timestamp);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, byte[] path, long value, long timestamp) {
+        buffer.put(path);
+        buffer.put((byte) ' ');
+        putLong(buffer, value);
+        putTimestamp(buffer, timestamp);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer, byte[] path, double value, long timestamp) {
+        buffer.put(path);
+        buffer.put((byte) ' ');
+        putDouble(buffer, value);
+        putTimestamp(buffer, timestamp);
+    }
+
+    private void putName(ByteBuffer buffer, String name, String valueName) {
+        putString(buffer, name);
+        buffer.put((byte) '.');
+        putString(buffer, valueName);
+        buffer.put((byte) ' ');
+    }
+
+    private void putTimestamp(ByteBuffer buffer, long timestamp) {
+        buffer.put((byte) ' ');
+        putLong(buffer, timestamp);
+        buffer.put((byte) '\n');
+    }
+
+    void putLong(ByteBuffer buffer, long value) {
+        if (value == Long.MIN_VALUE) {
+            putString(buffer, Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    void putDouble(ByteBuffer buffer, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+            putString(buffer, Double.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        final long hundredths = Math.round(Math.abs(value) * 100);
+        putLong(buffer, hundredths / 100);
+        buffer.put((byte) '.');
+        final int fraction = (int) (hundredths % 100);
+        buffer.put((byte) ('0' + fraction / 10));
+        buffer.put((byte) ('0' + fraction % 10));
+    }
+}
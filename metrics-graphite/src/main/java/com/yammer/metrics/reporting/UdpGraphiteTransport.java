@@ -0,0 +1,161 @@
+package com.yammer.metrics.reporting;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link GraphiteTransport} which sends plaintext datapoints to carbon's UDP listener, packing
+ * as many lines into each datagram as fit. There is no connection to keep up and nothing to wait
+ * on, but datagrams which are lost are gone for good; datapoints which could not be handed to the
+ * network at all are counted in {@link #droppedDatapoints()}.
+ * <p/>
+ * Carbon's UDP listener only accepts the plaintext protocol, and is disabled by default.
+ */
+public class UdpGraphiteTransport implements GraphiteTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(UdpGraphiteTransport.class);
+
+    /**
+     * The default size of each datagram, in bytes, which fits in an Ethernet frame.
+     */
+    public static final int DEFAULT_DATAGRAM_SIZE = 1400;
+
+    private final String host;
+    private final int port;
+    private final int datagramSize;
+    private final PlaintextEncoder encoder = new PlaintextEncoder();
+    private final ByteBuffer buffer;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private int datapoints;
+    private DatagramChannel channel;
+
+    /**
+     * Creates a new {@link UdpGraphiteTransport} with the default datagram size.
+     *
+     * @param host the host name of the Graphite server (carbon-cache or relay)
+     * @param port the port on which the Graphite server accepts UDP datagrams
+     */
+    public UdpGraphiteTransport(String host, int port) {
+        this(host, port, DEFAULT_DATAGRAM_SIZE);
+    }
+
+    /**
+     * Creates a new {@link UdpGraphiteTransport}.
+     *
+     * @param host         the host name of the Graphite server (carbon-cache or relay)
+     * @param port         the port on which the Graphite server accepts UDP datagrams
+     * @param datagramSize the largest datagram to send, in bytes
+     */
+    public UdpGraphiteTransport(String host, int port, int datagramSize) {
+        this.host = host;
+        this.port = port;
+        this.datagramSize = datagramSize;
+        this.buffer = ByteBuffer.allocateDirect(datagramSize);
+    }
+
+    /**
+     * Returns the number of datapoints which have been dropped because they could not be sent.
+     *
+     * @return the number of datapoints which have been dropped
+     */
+    public long droppedDatapoints() {
+        return dropped.get();
+    }
+
+    @Override
+    public void send(String name, String valueName, long value, long timestamp) {
+        if (reserve(encoder.maxLength(name, valueName))) {
+            encoder.encode(buffer, name, valueName, value, timestamp);
+            datapoints++;
+        }
+    }
+
+    @Override
+    public void send(String name, String valueName, double value, long timestamp) {
+        if (reserve(encoder.maxLength(name, valueName))) {
+            encoder.encode(buffer, name, valueName, value, timestamp);
+            datapoints++;
+        }
+    }
+
+    @Override
+    public void send(byte[] path, long value, long timestamp) {
+        if (reserve(encoder.maxLength(path))) {
+            encoder.encode(buffer, path, value, timestamp);
+            datapoints++;
+        }
+    }
+
+    @Override
+    public void send(byte[] path, double value, long timestamp) {
+        if (reserve(encoder.maxLength(path))) {
+            encoder.encode(buffer, path, value, timestamp);
+            datapoints++;
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (datapoints > 0) {
+            sendDatagram();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Makes sure the datagram has room for a datapoint, sending it if it doesn't.
+     */
+    private boolean reserve(int length) {
+        if (length > datagramSize) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (buffer.remaining() < length) {
+            sendDatagram();
+        }
+        return true;
+    }
+
+    private void sendDatagram() {
+        buffer.flip();
+        try {
+            if (channel == null) {
+                final DatagramChannel newChannel = DatagramChannel.open();
+                newChannel.configureBlocking(false);
+                newChannel.connect(new InetSocketAddress(host, port));
+                this.channel = newChannel;
+            }
+            // a non-blocking channel sends nothing rather than wait for room in the socket buffer
+            if (channel.write(buffer) == 0) {
+                dropped.addAndGet(datapoints);
+            }
+        } catch (IOException e) {
+            LOG.warn("Error sending to Graphite at {}:{}: {}", new Object[]{host, port, e.getMessage()});
+            dropped.addAndGet(datapoints);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // we're dropping it anyway
+                }
+                channel = null;
+            }
+        }
+        buffer.clear();
+        datapoints = 0;
+    }
+}
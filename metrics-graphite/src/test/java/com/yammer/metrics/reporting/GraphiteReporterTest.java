@@ -1,32 +1,191 @@
 package com.yammer.metrics.reporting;
 
 import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricPredicate;
 import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.MetricsRegistryListener;
+import com.yammer.metrics.core.Sampling;
 import com.yammer.metrics.reporting.tests.AbstractPollingReporterTest;
+import org.junit.Test;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GraphiteReporterTest extends AbstractPollingReporterTest {
     @Override
     protected AbstractPollingReporter createReporter(MetricsRegistry registry, OutputStream out, Clock clock) throws Exception {
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               socketProvider(out),
+                                                               clock);
+        reporter.printVMMetrics = false;
+        return reporter;
+    }
+
+    private static SocketProvider socketProvider(OutputStream out) throws Exception {
         final Socket socket = mock(Socket.class);
         when(socket.getOutputStream()).thenReturn(out);
 
         final SocketProvider provider = mock(SocketProvider.class);
         when(provider.get()).thenReturn(socket);
+        return provider;
+    }
 
+    @Test
+    public void sanitizesNamesOnlyOnceTheSubclassIsInitialised() throws Exception {
+        registry.newCounter(Object.class, "counter").inc();
         final GraphiteReporter reporter = new GraphiteReporter(registry,
                                                                "prefix",
                                                                MetricPredicate.ALL,
-                                                               provider,
+                                                               socketProvider(out),
+                                                               clock) {
+            private final String replacement = "renamed";
+
+            @Override
+            protected String sanitizeString(String s) {
+                return s.replace("counter", replacement);
+            }
+        };
+        reporter.printVMMetrics = false;
+
+        try {
+            reporter.run();
+        } finally {
+            reporter.shutdown();
+        }
+
+        assertThat(out.toString(),
+                   containsString("prefix.java.lang.Object.renamed.count 1 5"));
+    }
+
+    @Test
+    public void sanitizesEachNameOnce() throws Exception {
+        registry.newCounter(Object.class, "counter").inc();
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               socketProvider(out),
+                                                               clock) {
+            @Override
+            protected String sanitizeString(String s) {
+                return s + "-sanitized";
+            }
+        };
+        reporter.printVMMetrics = false;
+
+        try {
+            reporter.run();
+        } finally {
+            reporter.shutdown();
+        }
+
+        assertThat(out.toString(),
+                   is("prefix.java.lang.Object.counter-sanitized.count 1 5\n"));
+    }
+
+    @Test
+    public void onlyListensToTheRegistryWhileRunning() throws Exception {
+        final MetricsRegistry registry = mock(MetricsRegistry.class);
+        when(registry.newScheduledThreadPool(anyInt(), anyString()))
+                .thenReturn(Executors.newSingleThreadScheduledExecutor());
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               socketProvider(out),
                                                                clock);
+
+        verify(registry, never()).addListener(any(MetricsRegistryListener.class));
+
         reporter.printVMMetrics = false;
-        return reporter;
+        reporter.run();
+        reporter.shutdown();
+
+        verify(registry).addListener(any(MetricsRegistryListener.class));
+        verify(registry).removeListener(any(MetricsRegistryListener.class));
+    }
+
+    @Test
+    public void reportsHistogramsThroughMethodsWhichSubclassesCanOverride() throws Exception {
+        final List<String> sampled = new ArrayList<String>();
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               socketProvider(out),
+                                                               clock) {
+            @Override
+            protected void sendSampling(long epoch, String sanitizedName, Sampling metric) throws IOException {
+                sampled.add(sanitizedName);
+            }
+        };
+        reporter.printVMMetrics = false;
+        registry.newHistogram(Object.class, "histogram").update(1);
+        registry.newTimer(Object.class, "timer").update(1, TimeUnit.MILLISECONDS);
+
+        try {
+            reporter.run();
+        } finally {
+            reporter.shutdown();
+        }
+
+        assertThat("the overriding method is called for each histogram and timer",
+                   sampled,
+                   contains("java.lang.Object.histogram", "java.lang.Object.timer"));
+
+        assertThat("the overridden method's values are not sent",
+                   out.toString(),
+                   not(containsString("percentile")));
+
+        assertThat("the values of the methods which weren't overridden are sent",
+                   out.toString(),
+                   containsString("prefix.java.lang.Object.histogram.min 1.00 5"));
+    }
+
+    @Test
+    public void reportsOneIntervalOfAnIntervalHistogramWhenSnapshotsAreNotShared() throws Exception {
+        registry.setSnapshotTtl(0, TimeUnit.SECONDS);
+        final Histogram histogram = registry.newHistogram(new MetricName(Object.class, "interval"),
+                                                          Histogram.SampleType.INTERVAL);
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               socketProvider(out),
+                                                               clock);
+        reporter.printVMMetrics = false;
+        histogram.update(10);
+        histogram.update(20);
+        histogram.update(30);
+
+        try {
+            reporter.run();
+        } finally {
+            reporter.shutdown();
+        }
+
+        assertThat("the summary is that of the interval",
+                   out.toString(),
+                   containsString("prefix.java.lang.Object.interval.max 30.00 5"));
+
+        assertThat("the percentiles are of the same interval",
+                   out.toString(),
+                   containsString("prefix.java.lang.Object.interval.median 20.00 5"));
     }
 
     @Override
@@ -0,0 +1,127 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.tests.AbstractPollingReporterTest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+public class GraphiteReporterTransportTest extends AbstractPollingReporterTest {
+    /**
+     * Encodes each poll's datapoints as plaintext and writes them out when the poll flushes them.
+     */
+    private static class OutputStreamTransport implements GraphiteTransport {
+        private final GraphiteEncoder encoder = new PlaintextEncoder();
+        private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private final OutputStream out;
+
+        OutputStreamTransport(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void send(String name, String valueName, long value, long timestamp) {
+            encoder.encode(buffer, name, valueName, value, timestamp);
+        }
+
+        @Override
+        public void send(String name, String valueName, double value, long timestamp) {
+            encoder.encode(buffer, name, valueName, value, timestamp);
+        }
+
+        @Override
+        public void send(byte[] path, long value, long timestamp) {
+            encoder.encode(buffer, path, value, timestamp);
+        }
+
+        @Override
+        public void send(byte[] path, double value, long timestamp) {
+            encoder.encode(buffer, path, value, timestamp);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Override
+    protected AbstractPollingReporter createReporter(MetricsRegistry registry, OutputStream out, Clock clock) throws Exception {
+        final GraphiteReporter reporter = new GraphiteReporter(registry,
+                                                               "prefix",
+                                                               MetricPredicate.ALL,
+                                                               new OutputStreamTransport(out),
+                                                               clock);
+        reporter.printVMMetrics = false;
+        return reporter;
+    }
+
+    @Override
+    public String[] expectedGaugeResult(String value) {
+        // a transport only carries numbers, so a gauge of a string isn't sent at all
+        return new String[]{""};
+    }
+
+    @Override
+    public String[] expectedTimerResult() {
+        return new String[]{
+                "prefix.java.lang.Object.metric.count 1 5",
+                "prefix.java.lang.Object.metric.meanRate 2.00 5",
+                "prefix.java.lang.Object.metric.1MinuteRate 1.00 5",
+                "prefix.java.lang.Object.metric.5MinuteRate 5.00 5",
+                "prefix.java.lang.Object.metric.15MinuteRate 15.00 5",
+                "prefix.java.lang.Object.metric.min 1.00 5",
+                "prefix.java.lang.Object.metric.max 3.00 5",
+                "prefix.java.lang.Object.metric.mean 2.00 5",
+                "prefix.java.lang.Object.metric.stddev 1.50 5",
+                "prefix.java.lang.Object.metric.median 0.50 5",
+                "prefix.java.lang.Object.metric.75percentile 0.75 5",
+                "prefix.java.lang.Object.metric.95percentile 0.95 5",
+                "prefix.java.lang.Object.metric.98percentile 0.98 5",
+                "prefix.java.lang.Object.metric.99percentile 0.99 5",
+                "prefix.java.lang.Object.metric.999percentile 1.00 5"
+        };
+    }
+
+    @Override
+    public String[] expectedMeterResult() {
+        return new String[]{
+                "prefix.java.lang.Object.metric.count 1 5",
+                "prefix.java.lang.Object.metric.meanRate 2.00 5",
+                "prefix.java.lang.Object.metric.1MinuteRate 1.00 5",
+                "prefix.java.lang.Object.metric.5MinuteRate 5.00 5",
+                "prefix.java.lang.Object.metric.15MinuteRate 15.00 5",
+        };
+    }
+
+    @Override
+    public String[] expectedHistogramResult() {
+        return new String[]{
+                "prefix.java.lang.Object.metric.min 1.00 5",
+                "prefix.java.lang.Object.metric.max 3.00 5",
+                "prefix.java.lang.Object.metric.mean 2.00 5",
+                "prefix.java.lang.Object.metric.stddev 1.50 5",
+                "prefix.java.lang.Object.metric.median 0.50 5",
+                "prefix.java.lang.Object.metric.75percentile 0.75 5",
+                "prefix.java.lang.Object.metric.95percentile 0.95 5",
+                "prefix.java.lang.Object.metric.98percentile 0.98 5",
+                "prefix.java.lang.Object.metric.99percentile 0.99 5",
+                "prefix.java.lang.Object.metric.999percentile 1.00 5"
+        };
+    }
+
+    @Override
+    public String[] expectedCounterResult(long count) {
+        return new String[]{
+                String.format("prefix.java.lang.Object.metric.count %d 5", count)
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.*;
+
+public class NioGraphiteTransportTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private ServerSocket server;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new ServerSocket(0);
+        server.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        registry.shutdown();
+    }
+
+    @Test
+    public void sendsEachPollsDatapointsOverOneConnection() throws Exception {
+        final Clock clock = mock(Clock.class);
+        when(clock.time()).thenReturn(5000L);
+
+        final NioGraphiteTransport transport = new NioGraphiteTransport("localhost", server.getLocalPort());
+        final GraphiteReporter reporter = new GraphiteReporter(registry, "prefix", MetricPredicate.ALL,
+                                                               transport, clock);
+        reporter.printVMMetrics = false;
+        registry.newCounter(Object.class, "counter").inc(3);
+
+        reporter.run();
+        final Socket socket = server.accept();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+        assertThat("the first poll's datapoints are sent",
+                   in.readLine(),
+                   is("prefix.java.lang.Object.counter.count 3 5"));
+
+        registry.newCounter(Object.class, "counter").inc();
+        reporter.run();
+
+        assertThat("the second poll's datapoints are sent over the same connection",
+                   in.readLine(),
+                   is("prefix.java.lang.Object.counter.count 4 5"));
+
+        reporter.shutdown();
+        socket.close();
+    }
+
+    @Test
+    public void encodesFloatingPointValuesWithTwoDecimalPlaces() throws Exception {
+        final NioGraphiteTransport transport = new NioGraphiteTransport("localhost", server.getLocalPort());
+        transport.send("a", "b", 1.005, 1);
+        transport.send("a", "c", -2.5, 2);
+        transport.send("a", "d", Double.NaN, 3);
+        transport.flush();
+
+        final Socket socket = server.accept();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+        assertThat(in.readLine(), is("a.b 1.00 1"));
+        assertThat(in.readLine(), is("a.c -2.50 2"));
+        assertThat(in.readLine(), is("a.d NaN 3"));
+
+        transport.close();
+        socket.close();
+    }
+
+    @Test
+    public void sendsEachBatchAsOnePickleFrame() throws Exception {
+        final NioGraphiteTransport transport = new NioGraphiteTransport("localhost", server.getLocalPort(),
+                                                                        new PickleEncoder(), 1024, 4);
+        transport.send("a", "b", 1, 5);
+        transport.send("a", "c", 2.5, 5);
+        transport.flush();
+
+        final Socket socket = server.accept();
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+        final byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+
+        assertThat("the frame is a pickle",
+                   frame[0],
+                   is((byte) 0x80));
+
+        assertThat("the frame holds both datapoints",
+                   frame.length,
+                   is(4 + (8 + 5 + 5 + 2) + (8 + 5 + 9 + 2) + 2));
+
+        transport.close();
+        socket.close();
+    }
+
+    @Test
+    public void dropsAndCountsDatapointsOnceTheQueueIsFull() throws Exception {
+        final int port = server.getLocalPort();
+        server.close();
+
+        final NioGraphiteTransport transport = new NioGraphiteTransport("localhost", port, 1024, 1);
+        for (int i = 0; i < 1000; i++) {
+            transport.send("metric", "value", i, 1);
+        }
+        transport.flush();
+
+        assertThat("datapoints were dropped",
+                   transport.droppedDatapoints(),
+                   is(greaterThan(0L)));
+
+        assertThat("no more datapoints were dropped than were sent",
+                   transport.droppedDatapoints(),
+                   is(lessThanOrEqualTo(1000L)));
+
+        transport.close();
+    }
+
+    @Test
+    public void resumesAPlaintextBatchFromTheFirstLineWhichWasCutOff() throws Exception {
+        final PlaintextEncoder encoder = new PlaintextEncoder();
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        encoder.encode(buffer, "a", "b", 1, 5);
+        final int secondLine = buffer.position();
+        encoder.encode(buffer, "a", "c", 2, 5);
+
+        assertThat("a batch cut off in its second line is resent from the second line",
+                   encoder.resumePosition(buffer, 0, secondLine + 3),
+                   is(secondLine));
+
+        assertThat("a batch cut off in its first line is resent whole",
+                   encoder.resumePosition(buffer, 0, 3),
+                   is(0));
+
+        assertThat("a pickle frame is always resent whole",
+                   new PickleEncoder().resumePosition(buffer, 0, secondLine + 3),
+                   is(0));
+    }
+
+    @Test
+    public void closesTheTransportWhicheverWayTheReporterIsShutDown() throws Exception {
+        final GraphiteTransport transport = mock(GraphiteTransport.class);
+        final GraphiteReporter reporter = new GraphiteReporter(registry, "prefix", MetricPredicate.ALL,
+                                                               transport, Clock.defaultClock());
+
+        reporter.shutdown(1, TimeUnit.SECONDS);
+        reporter.shutdown();
+        reporter.run();
+
+        verify(transport, times(1)).close();
+        verify(transport, never()).flush();
+    }
+}
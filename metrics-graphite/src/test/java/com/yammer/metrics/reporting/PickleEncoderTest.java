@@ -0,0 +1,81 @@
+package com.yammer.metrics.reporting;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PickleEncoderTest {
+    private final PickleEncoder encoder = new PickleEncoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @Test
+    public void encodesAFrameOfDatapointTuples() throws Exception {
+        encoder.begin(buffer);
+        encoder.encode(buffer, "a", "b", 3, 5);
+        encoder.finish(buffer);
+
+        // pickle.dumps([(u'a.b', (5, 3))], 2), as carbon's pickle receiver reads it
+        final byte[] pickle = {
+                (byte) 0x80, 2, ']', '(',
+                'X', 3, 0, 0, 0, 'a', '.', 'b',
+                'J', 5, 0, 0, 0,
+                'J', 3, 0, 0, 0,
+                (byte) 0x86, (byte) 0x86,
+                'e', '.'
+        };
+
+        assertThat("the frame starts with the pickle's length",
+                   buffer.getInt(0),
+                   is(pickle.length));
+
+        assertThat("the frame holds the pickled list",
+                   Arrays.copyOfRange(buffer.array(), 4, buffer.position()),
+                   is(pickle));
+    }
+
+    @Test
+    public void encodesFloatingPointAndLargeValuesExactly() throws Exception {
+        encoder.begin(buffer);
+        encoder.encode(buffer, "a", "b", 1.5, 5);
+        encoder.encode(buffer, "a", "c", 1L << 40, 5);
+        encoder.finish(buffer);
+
+        final ByteBuffer frame = ByteBuffer.wrap(buffer.array(), 0, buffer.position());
+        frame.position(4 + 4 + 8 + 5);
+
+        assertThat("a float is written as a big-endian double",
+                   frame.get(),
+                   is((byte) 'G'));
+
+        assertThat(frame.getDouble(),
+                   is(1.5));
+
+        frame.position(frame.position() + 2 + 8 + 5);
+
+        assertThat("a value beyond an int is written as an eight-byte long",
+                   frame.get(),
+                   is((byte) 0x8a));
+
+        assertThat(frame.get(),
+                   is((byte) 8));
+
+        assertThat(Long.reverseBytes(frame.getLong()),
+                   is(1L << 40));
+    }
+
+    @Test
+    public void neverWritesMoreThanItsMaximumLength() throws Exception {
+        final String name = "prefix.caf\u00e9.\u2603";
+        encoder.begin(buffer);
+        encoder.encode(buffer, name, "value", Long.MAX_VALUE, Long.MAX_VALUE);
+        encoder.finish(buffer);
+
+        assertThat("the frame fits in the space reserved for it",
+                   buffer.position() <= encoder.maxLength(name, "value"),
+                   is(true));
+    }
+}
@@ -0,0 +1,64 @@
+package com.yammer.metrics.reporting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class UdpGraphiteTransportTest {
+    private DatagramSocket server;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new DatagramSocket(0);
+        server.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void packsDatapointsIntoDatagrams() throws Exception {
+        final UdpGraphiteTransport transport = new UdpGraphiteTransport("localhost", server.getLocalPort());
+        transport.send("a", "b", 1, 5);
+        transport.send("a", "c", 2.5, 5);
+        transport.flush();
+
+        assertThat("one datagram holds both datapoints",
+                   receive(),
+                   is("a.b 1 5\na.c 2.50 5\n"));
+
+        transport.close();
+    }
+
+    @Test
+    public void sendsADatagramWhenTheNextDatapointWouldNotFit() throws Exception {
+        final UdpGraphiteTransport transport = new UdpGraphiteTransport("localhost", server.getLocalPort(), 105);
+        transport.send("a", "b", 1, 5);
+        transport.send("a", "c", 2, 5);
+        transport.flush();
+
+        assertThat("the first datapoint is sent on its own",
+                   receive(),
+                   is("a.b 1 5\n"));
+
+        assertThat("the second datapoint is sent in the next datagram",
+                   receive(),
+                   is("a.c 2 5\n"));
+
+        transport.close();
+    }
+
+    private String receive() throws Exception {
+        final DatagramPacket packet = new DatagramPacket(new byte[2048], 2048);
+        server.receive(packet);
+        return new String(packet.getData(), 0, packet.getLength(), "UTF-8");
+    }
+}
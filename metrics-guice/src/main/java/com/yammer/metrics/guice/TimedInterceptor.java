@@ -4,7 +4,6 @@ import com.yammer.metrics.annotation.Timed;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.Timer;
-import com.yammer.metrics.core.TimerContext;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
@@ -25,7 +24,8 @@ class TimedInterceptor implements MethodInterceptor {
             final MetricName metricName = new MetricName(group, type, name);
             final Timer timer = metricsRegistry.newTimer(metricName,
                                                                annotation.durationUnit(),
-                                                               annotation.rateUnit());
+                                                               annotation.rateUnit(),
+                                                               annotation.sampleRate());
             return new TimedInterceptor(timer);
         }
         return null;
@@ -40,11 +40,11 @@ class TimedInterceptor implements MethodInterceptor {
 
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
-        final TimerContext ctx = timer.time();
+        final long startTime = timer.start();
         try {
             return invocation.proceed();
         } finally {
-            ctx.stop();
+            timer.stop(startTime);
         }
     }
 }
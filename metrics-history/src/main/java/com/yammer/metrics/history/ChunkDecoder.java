@@ -0,0 +1,116 @@
+package com.yammer.metrics.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads back the datapoints a {@link ChunkEncoder} wrote to a chunk.
+ */
+final class ChunkDecoder {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int bitLength;
+    private int position;
+    private long timestamp;
+    private long delta;
+    private long value;
+    private int leading;
+    private int trailing;
+
+    /**
+     * Starts reading a chunk.
+     *
+     * @param buffer the segment's buffer
+     * @param offset the offset of the chunk in {@code buffer}
+     * @param length the length of the chunk in bytes, header included
+     */
+    ChunkDecoder(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.bitLength = Math.min(buffer.getInt(offset + 4), (length - ChunkEncoder.HEADER_LENGTH) * 8);
+    }
+
+    /**
+     * Returns the id of the series whose datapoints the chunk holds.
+     *
+     * @param buffer the segment's buffer
+     * @param offset the offset of the chunk in {@code buffer}
+     * @return the id of the chunk's series
+     */
+    static int seriesId(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset);
+    }
+
+    /**
+     * Reads the next datapoint, if there is one.
+     *
+     * @return {@code false} if every datapoint in the chunk has been read
+     */
+    boolean next() {
+        if (position >= bitLength) {
+            return false;
+        }
+        if (position == 0) {
+            this.timestamp = read(64);
+            this.value = read(64);
+            return true;
+        }
+
+        final long deltaOfDelta;
+        if (read(1) == 0) {
+            deltaOfDelta = 0;
+        } else if (read(1) == 0) {
+            deltaOfDelta = read(7) - 63;
+        } else if (read(1) == 0) {
+            deltaOfDelta = read(9) - 255;
+        } else if (read(1) == 0) {
+            deltaOfDelta = read(12) - 2047;
+        } else {
+            deltaOfDelta = (int) read(32);
+        }
+        this.delta += deltaOfDelta;
+        this.timestamp += delta;
+
+        if (read(1) == 1) {
+            if (read(1) == 1) {
+                this.leading = (int) read(5);
+                int significant = (int) read(6);
+                if (significant == 0) {
+                    significant = 64;
+                }
+                this.trailing = 64 - leading - significant;
+            }
+            final int significant = 64 - leading - trailing;
+            this.value ^= read(significant) << trailing;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the timestamp of the datapoint last read, in seconds.
+     */
+    long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the value of the datapoint last read.
+     */
+    double value() {
+        return Double.longBitsToDouble(value);
+    }
+
+    private long read(int length) {
+        long result = 0;
+        int remaining = length;
+        while (remaining > 0) {
+            final int index = offset + ChunkEncoder.HEADER_LENGTH + (position >>> 3);
+            final int available = 8 - (position & 7);
+            final int taken = Math.min(available, remaining);
+            final int bits = ((buffer.get(index) & 0xff) >>> (available - taken)) & ((1 << taken) - 1);
+            result = (result << taken) | bits;
+            position += taken;
+            remaining -= taken;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,171 @@
+package com.yammer.metrics.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Appends the datapoints of one series to a chunk of a segment, compressed as in Facebook's
+ * Gorilla: each timestamp as the difference between its delta from the previous one and the
+ * previous delta, and each value as its XOR with the previous value, which for regularly reported,
+ * slowly changing metrics takes a bit or two per timestamp and a few bits per value.
+ * <p/>
+ * A chunk is a fixed-size region of the segment's buffer: a header holding the series' id and the
+ * number of bits written, which is updated after each datapoint so that a reader never sees half a
+ * datapoint, followed by the compressed datapoints. The first datapoint of a chunk is written in
+ * full, so each chunk can be decoded on its own.
+ */
+final class ChunkEncoder {
+    static final int HEADER_LENGTH = 8;
+
+    private static final int FIRST_DATAPOINT_BITS = 128;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int capacity;
+    private int bitLength;
+    private long previousTimestamp;
+    private long previousDelta;
+    private long previousValue;
+    private int previousLeading = -1;
+    private int previousTrailing;
+
+    /**
+     * Starts a new chunk.
+     *
+     * @param buffer    the segment's buffer
+     * @param offset    the offset of the chunk in {@code buffer}
+     * @param length    the length of the chunk in bytes, header included
+     * @param seriesId  the id of the series whose datapoints the chunk holds
+     */
+    ChunkEncoder(ByteBuffer buffer, int offset, int length, int seriesId) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.capacity = (length - HEADER_LENGTH) * 8;
+        buffer.putInt(offset, seriesId);
+        buffer.putInt(offset + 4, 0);
+    }
+
+    /**
+     * Appends a datapoint to the chunk, if it fits.
+     *
+     * @param timestamp the datapoint's timestamp, in seconds
+     * @param value     the datapoint's value
+     * @return {@code false} if the chunk is full, or the datapoint's timestamp is too far from the
+     *         previous one to be encoded, in which case it must go in a new chunk
+     */
+    boolean append(long timestamp, double value) {
+        final long bits = Double.doubleToLongBits(value);
+        if (bitLength == 0) {
+            if (capacity < FIRST_DATAPOINT_BITS) {
+                return false;
+            }
+            write(timestamp, 64);
+            write(bits, 64);
+            this.previousTimestamp = timestamp;
+            this.previousValue = bits;
+            commit();
+            return true;
+        }
+
+        final long delta = timestamp - previousTimestamp;
+        final long deltaOfDelta = delta - previousDelta;
+        if (delta < 0 || deltaOfDelta < Integer.MIN_VALUE || deltaOfDelta > Integer.MAX_VALUE) {
+            return false;
+        }
+        final long xor = bits ^ previousValue;
+        final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        final int trailing = Long.numberOfTrailingZeros(xor);
+        final boolean reuseWindow = previousLeading >= 0 && leading >= previousLeading &&
+                trailing >= previousTrailing;
+        if (capacity - bitLength < timestampLength(deltaOfDelta) +
+                valueLength(xor, reuseWindow, leading, trailing)) {
+            return false;
+        }
+
+        writeTimestamp(deltaOfDelta);
+        if (xor == 0) {
+            write(0, 1);
+        } else if (reuseWindow) {
+            write(2, 2);
+            write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            final int significant = 64 - leading - trailing;
+            write(3, 2);
+            write(leading, 5);
+            // 64 significant bits don't fit in 6 bits, but 0 significant bits never happen
+            write(significant & 63, 6);
+            write(xor >>> trailing, significant);
+            this.previousLeading = leading;
+            this.previousTrailing = trailing;
+        }
+        this.previousTimestamp = timestamp;
+        this.previousDelta = delta;
+        this.previousValue = bits;
+        commit();
+        return true;
+    }
+
+    private int valueLength(long xor, boolean reuseWindow, int leading, int trailing) {
+        if (xor == 0) {
+            return 1;
+        }
+        if (reuseWindow) {
+            return 2 + 64 - previousLeading - previousTrailing;
+        }
+        return 2 + 5 + 6 + 64 - leading - trailing;
+    }
+
+    private static int timestampLength(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            return 1;
+        }
+        if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            return 2 + 7;
+        }
+        if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            return 3 + 9;
+        }
+        if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            return 4 + 12;
+        }
+        return 4 + 32;
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            write(0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            write(2, 2);
+            write(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            write(6, 3);
+            write(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            write(14, 4);
+            write(deltaOfDelta + 2047, 12);
+        } else {
+            write(15, 4);
+            write(deltaOfDelta, 32);
+        }
+    }
+
+    /**
+     * Writes the lowest {@code length} bits of {@code value}, most significant first, a byte at a
+     * time. The chunk's bytes start out zeroed, so bits are only ever OR'd in.
+     */
+    private void write(long value, int length) {
+        int remaining = length;
+        while (remaining > 0) {
+            final int index = offset + HEADER_LENGTH + (bitLength >>> 3);
+            final int free = 8 - (bitLength & 7);
+            final int taken = Math.min(free, remaining);
+            final int bits = (int) ((value >>> (remaining - taken)) & ((1 << taken) - 1));
+            buffer.put(index, (byte) (buffer.get(index) | (bits << (free - taken))));
+            bitLength += taken;
+            remaining -= taken;
+        }
+    }
+
+    private void commit() {
+        buffer.putInt(offset + 4, bitLength);
+    }
+}
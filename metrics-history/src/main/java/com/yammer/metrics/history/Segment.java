@@ -0,0 +1,349 @@
+package com.yammer.metrics.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped file of fixed-size chunks, each holding datapoints of a single series. Chunks are
+ * handed out in order as series fill them up, so the chunks of a series are in time order within
+ * the file, and a segment is full once it has no chunks left.
+ * <p/>
+ * The file starts with a header:
+ * <pre>
+ *   0  int   magic
+ *   4  int   format version
+ *   8  long  start time, in seconds
+ *  16  int   chunk length, in bytes
+ *  20  int   number of chunks handed out
+ * </pre>
+ * followed by the chunks, from byte 64 on. The file is created at its full length, which on most
+ * filesystems takes no space until chunks are written.
+ * <p/>
+ * A segment's file stays mapped until the segment is closed and no view of it is being read, at
+ * which point it is unmapped straight away rather than whenever the collector gets to it.
+ * <p/>
+ * Not thread safe; {@link TimeSeriesStore} serializes access.
+ */
+final class Segment {
+    static final String SUFFIX = ".seg";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Segment.class);
+    private static final int MAGIC = 0x4d545344;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 64;
+    private static final int CHUNK_COUNT_OFFSET = 20;
+
+    /**
+     * Receives the datapoints read from a segment.
+     */
+    interface Visitor {
+        /**
+         * Returns whether the datapoints of the given series should be read.
+         *
+         * @param seriesId the id of a series
+         * @return {@code true} if the series' datapoints should be read
+         */
+        boolean accepts(int seriesId);
+
+        /**
+         * Receives a datapoint.
+         *
+         * @param seriesId  the id of the datapoint's series
+         * @param timestamp the datapoint's timestamp, in seconds
+         * @param value     the datapoint's value
+         */
+        void visit(int seriesId, long timestamp, double value);
+    }
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final long start;
+    private final int chunkLength;
+    private final int capacity;
+    private int chunkCount;
+    private ChunkEncoder[] encoders;
+    private int readers;
+    private boolean closed;
+    private boolean deleteOnClose;
+
+    private Segment(File file, MappedByteBuffer buffer, boolean writable) {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException(file + " is not a segment");
+        }
+        this.start = buffer.getLong(8);
+        this.chunkLength = buffer.getInt(16);
+        if (chunkLength <= ChunkEncoder.HEADER_LENGTH) {
+            throw new IllegalArgumentException(file + " has chunks of " + chunkLength + " bytes");
+        }
+        this.capacity = (buffer.capacity() - HEADER_LENGTH) / chunkLength;
+        // a segment which wasn't closed cleanly may claim more chunks than were written, but never
+        // more than it has room for
+        this.chunkCount = Math.min(buffer.getInt(CHUNK_COUNT_OFFSET), capacity);
+        this.encoders = writable ? new ChunkEncoder[16] : null;
+    }
+
+    /**
+     * Creates a new, empty segment.
+     *
+     * @param file        the segment's file, which must not exist
+     * @param start       the segment's start time, in seconds
+     * @param length      the length of the file in bytes
+     * @param chunkLength the length of each chunk in bytes
+     * @return the new segment, open for writing
+     * @throws IOException if the file cannot be created
+     */
+    static Segment create(File file, long start, int length, int chunkLength) throws IOException {
+        if (!file.createNewFile()) {
+            throw new IOException(file + " already exists");
+        }
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, start);
+            buffer.putInt(16, chunkLength);
+            buffer.putInt(CHUNK_COUNT_OFFSET, 0);
+            return new Segment(file, buffer, true);
+        } finally {
+            // the mapping outlives the file
+            raf.close();
+        }
+    }
+
+    /**
+     * Opens an existing segment for reading.
+     *
+     * @param file the segment's file
+     * @return the segment, which cannot be written to
+     * @throws IOException if the file cannot be read
+     */
+    static Segment open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            if (raf.length() < HEADER_LENGTH) {
+                throw new IOException(file + " is too short to be a segment");
+            }
+            final MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            return new Segment(file, buffer, false);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the segment's start time, in seconds.
+     */
+    long start() {
+        return start;
+    }
+
+    File file() {
+        return file;
+    }
+
+    /**
+     * Appends a datapoint to the series' current chunk, or to a new chunk if it doesn't fit.
+     *
+     * @param seriesId  the id of the series
+     * @param timestamp the datapoint's timestamp, in seconds
+     * @param value     the datapoint's value
+     * @return {@code false} if the segment is full
+     */
+    boolean append(int seriesId, long timestamp, double value) {
+        if (seriesId >= encoders.length) {
+            final ChunkEncoder[] grown = new ChunkEncoder[Math.max(seriesId + 1, encoders.length * 2)];
+            System.arraycopy(encoders, 0, grown, 0, encoders.length);
+            this.encoders = grown;
+        }
+        final ChunkEncoder encoder = encoders[seriesId];
+        if (encoder != null && encoder.append(timestamp, value)) {
+            return true;
+        }
+        if (chunkCount == capacity) {
+            return false;
+        }
+        final ChunkEncoder fresh = new ChunkEncoder(buffer, offsetOf(chunkCount), chunkLength, seriesId);
+        buffer.putInt(CHUNK_COUNT_OFFSET, ++chunkCount);
+        encoders[seriesId] = fresh;
+        return fresh.append(timestamp, value);
+    }
+
+    /**
+     * Stops writing to the segment, releasing the state kept for each series. The segment can
+     * still be read.
+     */
+    void seal() {
+        this.encoders = null;
+    }
+
+    /**
+     * Returns a view of the chunks handed out so far, which can be scanned without holding the
+     * store's lock while datapoints go on being appended. A sealed segment no longer changes, so
+     * its view reads the mapped file; the chunks of a segment which is still being written to are
+     * copied, but only those of the series the visitor accepts.
+     *
+     * @param visitor the visitor which will scan the view
+     * @return a view of the segment's chunks
+     */
+    View view(Visitor visitor) {
+        if (encoders == null) {
+            readers++;
+            return new View(this, buffer.duplicate(), true, HEADER_LENGTH, chunkCount, chunkLength);
+        }
+        int accepted = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            if (visitor.accepts(ChunkDecoder.seriesId(buffer, offsetOf(i)))) {
+                accepted++;
+            }
+        }
+        final ByteBuffer copy = ByteBuffer.allocate(accepted * chunkLength);
+        for (int i = 0; i < chunkCount; i++) {
+            final int offset = offsetOf(i);
+            if (visitor.accepts(ChunkDecoder.seriesId(buffer, offset))) {
+                final ByteBuffer chunk = buffer.duplicate();
+                chunk.limit(offset + chunkLength);
+                chunk.position(offset);
+                copy.put(chunk);
+            }
+        }
+        return new View(this, copy, false, 0, accepted, chunkLength);
+    }
+
+    /**
+     * Closes the segment, unmapping its file as soon as no view of it is being read. The segment
+     * must not be written to or viewed afterwards.
+     *
+     * @param delete whether to delete the segment's file once it is unmapped
+     */
+    void close(boolean delete) {
+        this.closed = true;
+        this.deleteOnClose = delete;
+        this.encoders = null;
+        if (readers == 0) {
+            unmap();
+        }
+    }
+
+    private void release() {
+        readers--;
+        if (closed && readers == 0) {
+            unmap();
+        }
+    }
+
+    private void unmap() {
+        unmap(buffer);
+        if (deleteOnClose && !file.delete()) {
+            LOGGER.warn("Unable to delete expired segment {}", file);
+        }
+    }
+
+    /**
+     * Unmaps a buffer through the JVM's internal API, if it can be reached: the public API only
+     * unmaps a buffer once it is collected, which for a buffer that outlives a few collections may
+     * be never. Any access to the buffer afterwards crashes the JVM.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            try {
+                // Java 9 and later
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                // Java 6 to 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Unable to unmap a segment; leaving it to the garbage collector", e);
+        }
+    }
+
+    /**
+     * Writes the segment's changes out to its file.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    private int offsetOf(int chunk) {
+        return HEADER_LENGTH + chunk * chunkLength;
+    }
+
+    /**
+     * A fixed set of a segment's chunks, as returned by {@link Segment#view(Visitor)}.
+     */
+    static final class View {
+        private final Segment segment;
+        private final ByteBuffer buffer;
+        private final boolean mapped;
+        private final int firstChunk;
+        private final int chunkCount;
+        private final int chunkLength;
+
+        private View(Segment segment, ByteBuffer buffer, boolean mapped, int firstChunk,
+                     int chunkCount, int chunkLength) {
+            this.segment = segment;
+            this.buffer = buffer;
+            this.mapped = mapped;
+            this.firstChunk = firstChunk;
+            this.chunkCount = chunkCount;
+            this.chunkLength = chunkLength;
+        }
+
+        File file() {
+            return segment.file;
+        }
+
+        /**
+         * Stops reading the view, letting its segment be unmapped once it is closed. Must be
+         * called once for each view, under the store's lock.
+         */
+        void release() {
+            if (mapped) {
+                segment.release();
+            }
+        }
+
+        /**
+         * Reads every datapoint in the view, chunk by chunk in the order the chunks were handed
+         * out, so the datapoints of each series are read in the order they were written.
+         *
+         * @param visitor the visitor which receives the datapoints
+         */
+        void scan(Visitor visitor) {
+            for (int i = 0; i < chunkCount; i++) {
+                final int offset = firstChunk + i * chunkLength;
+                final int seriesId = ChunkDecoder.seriesId(buffer, offset);
+                if (visitor.accepts(seriesId)) {
+                    final ChunkDecoder decoder = new ChunkDecoder(buffer, offset, chunkLength);
+                    while (decoder.next()) {
+                        visitor.visit(seriesId, decoder.timestamp(), decoder.value());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.yammer.metrics.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A directory of segments covering consecutive periods of time. Datapoints are appended to the
+ * newest segment, and a new one is started once the datapoints' timestamps pass the end of its
+ * period or it is full. Each time a segment is started, the segments which only hold datapoints
+ * older than the retention period are closed and deleted.
+ * <p/>
+ * Segments are named after their start time and a sequence number, so that a segment started
+ * because the previous one filled up doesn't clash with it.
+ * <p/>
+ * Not thread safe; {@link TimeSeriesStore} serializes access.
+ */
+final class Tier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Tier.class);
+    private static final int CHUNK_LENGTH = 256;
+
+    private final File directory;
+    private final int segmentLength;
+    private final long segmentDuration;
+    private final long retention;
+    private final List<Segment> segments;
+    private long sequence;
+    private Segment active;
+    private long activeEnd;
+
+    /**
+     * Opens the tier in the given directory, creating the directory if it doesn't exist. Existing
+     * segments can be read, but new datapoints always go into a new segment.
+     *
+     * @param directory       the directory of the tier's segments
+     * @param segmentLength   the length of each segment file, in bytes
+     * @param segmentDuration the period each segment covers, in seconds
+     * @param retention       how long datapoints are kept for, in seconds
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    Tier(File directory, int segmentLength, long segmentDuration, long retention) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.directory = directory;
+        this.segmentLength = segmentLength;
+        this.segmentDuration = segmentDuration;
+        this.retention = retention;
+        this.segments = new ArrayList<Segment>();
+
+        final String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(Segment.SUFFIX);
+            }
+        });
+        // the names are zero-padded, so they sort in the order the segments were started
+        Arrays.sort(names);
+        for (String name : names) {
+            try {
+                segments.add(Segment.open(new File(directory, name)));
+                this.sequence = Math.max(sequence, sequenceOf(name) + 1);
+            } catch (IOException e) {
+                LOGGER.warn("Skipping unreadable segment {}", name, e);
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Skipping segment with an unexpected name: {}", name);
+            }
+        }
+    }
+
+    /**
+     * Appends a datapoint. Datapoints older than the start of the newest segment are dropped.
+     *
+     * @param seriesId  the id of the datapoint's series
+     * @param timestamp the datapoint's timestamp, in seconds
+     * @param value     the datapoint's value
+     * @return {@code false} if the datapoint was dropped
+     * @throws IOException if a new segment cannot be created
+     */
+    boolean append(int seriesId, long timestamp, double value) throws IOException {
+        if (active == null || timestamp >= activeEnd) {
+            startSegment(timestamp);
+        } else if (timestamp < active.start()) {
+            return false;
+        }
+        if (!active.append(seriesId, timestamp, value)) {
+            startSegment(timestamp);
+            return active.append(seriesId, timestamp, value);
+        }
+        return true;
+    }
+
+    /**
+     * Adds views of the segments which may hold datapoints in the given range to {@code views},
+     * oldest first. The visitor receives every datapoint of those segments, so it must check their
+     * timestamps itself.
+     *
+     * @param from    the start of the range, in seconds, inclusive
+     * @param until   the end of the range, in seconds, inclusive
+     * @param visitor the visitor which will scan the views
+     * @param views   the list to add the views to
+     */
+    void views(long from, long until, Segment.Visitor visitor, List<Segment.View> views) {
+        for (int i = 0; i < segments.size(); i++) {
+            final Segment segment = segments.get(i);
+            final boolean startsInTime = segment.start() <= until;
+            // a segment which filled up may hold datapoints from the same second its successor
+            // starts at
+            final boolean endsInTime = i == segments.size() - 1 || segments.get(i + 1).start() >= from;
+            if (startsInTime && endsInTime) {
+                views.add(segment.view(visitor));
+            }
+        }
+    }
+
+    /**
+     * Reads the datapoints of the given views, which needn't be done while holding the store's
+     * lock.
+     *
+     * @param views   the views returned by {@link #views(long, long, Segment.Visitor, List)}
+     * @param visitor the visitor which receives the datapoints
+     */
+    static void scan(List<Segment.View> views, Segment.Visitor visitor) {
+        for (Segment.View view : views) {
+            try {
+                view.scan(visitor);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error reading segment {}", view.file(), e);
+            }
+        }
+    }
+
+    /**
+     * Stops reading the given views, letting their segments be unmapped once they are closed.
+     *
+     * @param views the views returned by {@link #views(long, long, Segment.Visitor, List)}
+     */
+    static void release(List<Segment.View> views) {
+        for (Segment.View view : views) {
+            view.release();
+        }
+    }
+
+    /**
+     * Returns the start time of the oldest segment, or {@link Long#MAX_VALUE} if there are none.
+     */
+    long oldest() {
+        return segments.isEmpty() ? Long.MAX_VALUE : segments.get(0).start();
+    }
+
+    /**
+     * Writes the newest segment's changes out to its file.
+     */
+    void force() {
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    /**
+     * Closes every segment, unmapping their files once no view of them is being read. The tier
+     * must not be used afterwards.
+     */
+    void close() {
+        for (Segment segment : segments) {
+            segment.close(false);
+        }
+        segments.clear();
+        this.active = null;
+    }
+
+    private void startSegment(long timestamp) throws IOException {
+        if (active != null) {
+            active.force();
+            active.seal();
+        }
+        final String name = String.format("%020d-%010d%s", timestamp, sequence++, Segment.SUFFIX);
+        this.active = Segment.create(new File(directory, name), timestamp, segmentLength, CHUNK_LENGTH);
+        this.activeEnd = (timestamp / segmentDuration + 1) * segmentDuration;
+        segments.add(active);
+        expire(timestamp - retention);
+    }
+
+    /**
+     * Deletes the segments whose successors start before the given time, since all their
+     * datapoints are older than it. A segment which is being read is only deleted once it has been
+     * read.
+     */
+    private void expire(long horizon) {
+        while (segments.size() > 1 && segments.get(1).start() <= horizon) {
+            segments.remove(0).close(true);
+        }
+    }
+
+    private static long sequenceOf(String name) {
+        final int dash = name.indexOf('-');
+        return Long.parseLong(name.substring(dash + 1, name.length() - Segment.SUFFIX.length()));
+    }
+}
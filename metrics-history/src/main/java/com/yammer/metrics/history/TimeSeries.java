@@ -0,0 +1,72 @@
+package com.yammer.metrics.history;
+
+import java.util.Arrays;
+
+/**
+ * The datapoints of a series over a range of time, as returned by
+ * {@link TimeSeriesStore#query(String, long, long)}, in the order they were written.
+ */
+public class TimeSeries {
+    private final String name;
+    private long[] timestamps = new long[16];
+    private double[] values = new double[16];
+    private int size;
+
+    TimeSeries(String name) {
+        this.name = name;
+    }
+
+    void add(long timestamp, double value) {
+        if (size == timestamps.length) {
+            this.timestamps = Arrays.copyOf(timestamps, size * 2);
+            this.values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Returns the name of the series.
+     *
+     * @return the name of the series
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of datapoints.
+     *
+     * @return the number of datapoints
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the timestamp of a datapoint.
+     *
+     * @param index the index of the datapoint
+     * @return the datapoint's timestamp, in seconds since the epoch
+     */
+    public long getTimestamp(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+        return timestamps[index];
+    }
+
+    /**
+     * Returns the value of a datapoint.
+     *
+     * @param index the index of the datapoint
+     * @return the datapoint's value
+     */
+    public double getValue(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index + " >= " + size);
+        }
+        return values[index];
+    }
+}
@@ -0,0 +1,372 @@
+package com.yammer.metrics.history;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An embedded, append-only store of numeric time series, kept in memory-mapped segment files in a
+ * local directory, for keeping a process's metric history when nothing else does.
+ * <p/>
+ * Datapoints are compressed as in Facebook's Gorilla: timestamps as deltas of deltas and values
+ * as XORs with their predecessors, which takes a couple of bytes per datapoint for metrics reported
+ * at a regular interval. Each series writes to its own fixed-size chunk of the current segment,
+ * so appending a datapoint only touches the mapped file, and the heap holds no more than a little
+ * state per series, however many datapoints are stored.
+ * <p/>
+ * Raw datapoints are kept for the retention period. If downsampling is enabled, every series is
+ * also averaged over buckets of the downsampling resolution into a second tier of segments, which
+ * is kept for the longer downsampled retention period; queries read downsampled datapoints for
+ * the part of their range which is older than the oldest raw segment.
+ * <p/>
+ * Timestamps are in seconds since the epoch, and should be written in increasing order: a
+ * datapoint older than the start of the current segment is dropped. Series are named by strings,
+ * such as a metric's name followed by the name of one of its values, and are queried by prefix.
+ * <p/>
+ * The store is thread safe. Appends are serialized, but queries only hold the store's lock while
+ * they pick the chunks to read, and decode them afterwards, so they don't hold up appends.
+ */
+public class TimeSeriesStore implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimeSeriesStore.class);
+    private static final String NAMES_FILE = "series.names";
+
+    /**
+     * The default length of each segment file: 16MB.
+     */
+    public static final int DEFAULT_SEGMENT_LENGTH = 16 * 1024 * 1024;
+
+    private final Tier raw;
+    private final Tier downsampled;
+    private final long resolution;
+    private final DataOutputStream namesOut;
+    private final Map<String, Integer> ids;
+    private final List<String> names;
+    private long[] buckets = new long[16];
+    private double[] sums = new double[16];
+    private int[] counts = new int[16];
+    private boolean closed;
+
+    /**
+     * Opens a store in the given directory, with hourly segments whose datapoints are kept for a
+     * day, downsampled to five minute averages kept for thirty days.
+     *
+     * @param directory the store's directory, which is created if it doesn't exist
+     * @throws IOException if the store cannot be opened
+     */
+    public TimeSeriesStore(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_LENGTH, 1, 24, 5 * 60, 30 * 24, TimeUnit.HOURS);
+    }
+
+    /**
+     * Opens a store in the given directory.
+     *
+     * @param directory              the store's directory, which is created if it doesn't exist
+     * @param segmentLength          the length of each segment file, in bytes
+     * @param segmentDuration        the period each segment covers
+     * @param retention              how long raw datapoints are kept for
+     * @param resolution             the length of the buckets over which datapoints are averaged
+     *                               for the downsampled tier, or zero not to downsample
+     * @param downsampledRetention   how long downsampled datapoints are kept for
+     * @param unit                   the unit of the durations
+     * @throws IOException if the store cannot be opened
+     */
+    public TimeSeriesStore(File directory,
+                           int segmentLength,
+                           long segmentDuration,
+                           long retention,
+                           long resolution,
+                           long downsampledRetention,
+                           TimeUnit unit) throws IOException {
+        if (segmentLength < 4096) {
+            throw new IllegalArgumentException("Segments must be at least 4KB long");
+        }
+        if (unit.toSeconds(segmentDuration) < 1) {
+            throw new IllegalArgumentException("Segments must cover at least a second");
+        }
+        this.raw = new Tier(new File(directory, "raw"), segmentLength,
+                            unit.toSeconds(segmentDuration), unit.toSeconds(retention));
+        this.resolution = unit.toSeconds(resolution);
+        if (this.resolution > 0) {
+            // downsampled datapoints are sparser, so each downsampled segment covers a day, or as
+            // long as a raw segment if that is longer
+            final long downsampledDuration = Math.max(unit.toSeconds(segmentDuration),
+                                                      TimeUnit.DAYS.toSeconds(1));
+            this.downsampled = new Tier(new File(directory, "downsampled"), segmentLength,
+                                        downsampledDuration, unit.toSeconds(downsampledRetention));
+        } else {
+            this.downsampled = null;
+        }
+
+        this.ids = new HashMap<String, Integer>();
+        this.names = new ArrayList<String>();
+        final File namesFile = new File(directory, NAMES_FILE);
+        readNames(namesFile);
+        this.namesOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(namesFile, true)));
+    }
+
+    /**
+     * Returns the id of the series with the given name, which can be passed to
+     * {@link #append(int, long, double)} to save looking the series up by name for each datapoint.
+     * The series is created if it doesn't exist.
+     *
+     * @param name the name of the series
+     * @return the id of the series
+     * @throws IOException if a new series' name cannot be written to disk
+     */
+    public synchronized int seriesId(String name) throws IOException {
+        final Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        final int fresh = names.size();
+        namesOut.writeInt(fresh);
+        namesOut.writeUTF(name);
+        namesOut.flush();
+        ids.put(name, fresh);
+        names.add(name);
+        return fresh;
+    }
+
+    /**
+     * Appends a datapoint to the series with the given name.
+     *
+     * @param name      the name of the series
+     * @param timestamp the datapoint's timestamp, in seconds since the epoch
+     * @param value     the datapoint's value
+     * @throws IOException if the datapoint cannot be stored
+     */
+    public synchronized void append(String name, long timestamp, double value) throws IOException {
+        append(seriesId(name), timestamp, value);
+    }
+
+    /**
+     * Appends a datapoint to the series with the given id.
+     *
+     * @param seriesId  the id of the series, as returned by {@link #seriesId(String)}
+     * @param timestamp the datapoint's timestamp, in seconds since the epoch
+     * @param value     the datapoint's value
+     * @throws IOException if the datapoint cannot be stored
+     */
+    public synchronized void append(int seriesId, long timestamp, double value) throws IOException {
+        if (closed) {
+            throw new IOException("The store is closed");
+        }
+        if (seriesId < 0 || seriesId >= names.size()) {
+            throw new IllegalArgumentException("Unknown series " + seriesId);
+        }
+        if (!raw.append(seriesId, timestamp, value)) {
+            LOGGER.debug("Dropped a datapoint of {} older than the current segment", names.get(seriesId));
+            return;
+        }
+        if (downsampled != null) {
+            downsample(seriesId, timestamp, value);
+        }
+    }
+
+    /**
+     * Returns the datapoints in the given range of every series whose name starts with the given
+     * prefix.
+     *
+     * @param prefix the prefix of the names of the series to return
+     * @param from   the start of the range, in seconds since the epoch, inclusive
+     * @param until  the end of the range, in seconds since the epoch, inclusive
+     * @return the matching series, by name, without those which have no datapoints in the range
+     */
+    public SortedMap<String, TimeSeries> query(String prefix, long from, long until) {
+        return query(prefix, from, until, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the datapoints in the given range of the series whose names start with the given
+     * prefix, reading no more than {@code maxSeries} series: those whose names sort first.
+     *
+     * @param prefix    the prefix of the names of the series to return
+     * @param from      the start of the range, in seconds since the epoch, inclusive
+     * @param until     the end of the range, in seconds since the epoch, inclusive
+     * @param maxSeries the most series to read
+     * @return the matching series, by name, without those which have no datapoints in the range,
+     *         or none once the store is closed
+     */
+    public SortedMap<String, TimeSeries> query(String prefix, long from, long until, int maxSeries) {
+        final SortedMap<String, TimeSeries> results = new TreeMap<String, TimeSeries>();
+        final List<Segment.View> downsampledViews = new ArrayList<Segment.View>();
+        final List<Segment.View> rawViews = new ArrayList<Segment.View>();
+        final Collector downsampledCollector;
+        final Collector rawCollector;
+        synchronized (this) {
+            if (closed) {
+                return results;
+            }
+            final String[] matches = matches(prefix, maxSeries);
+            final TimeSeries[] series = new TimeSeries[matches.length];
+            final long oldestRaw = raw.oldest();
+            if (downsampled != null && from < oldestRaw) {
+                final long downsampledUntil = Math.min(until, oldestRaw - 1);
+                downsampledCollector = new Collector(matches, series, results, from, downsampledUntil);
+                downsampled.views(from, downsampledUntil, downsampledCollector, downsampledViews);
+            } else {
+                downsampledCollector = null;
+            }
+            final long rawFrom = Math.max(from, oldestRaw);
+            rawCollector = new Collector(matches, series, results, rawFrom, until);
+            raw.views(rawFrom, until, rawCollector, rawViews);
+        }
+        try {
+            if (downsampledCollector != null) {
+                Tier.scan(downsampledViews, downsampledCollector);
+            }
+            Tier.scan(rawViews, rawCollector);
+        } finally {
+            synchronized (this) {
+                Tier.release(downsampledViews);
+                Tier.release(rawViews);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes any datapoints not yet written out to disk. The operating system writes them out
+     * on its own eventually, so this is only needed to survive the machine, rather than the
+     * process, going down.
+     *
+     * @throws IOException if the datapoints cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        raw.force();
+        if (downsampled != null) {
+            downsampled.force();
+        }
+        namesOut.flush();
+    }
+
+    /**
+     * Flushes and closes the store, unmapping its segments once no query is reading them. The
+     * datapoints of the current, incomplete downsampling buckets are only kept in the raw tier.
+     *
+     * @throws IOException if the store cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            try {
+                flush();
+                namesOut.close();
+            } finally {
+                raw.close();
+                if (downsampled != null) {
+                    downsampled.close();
+                }
+                this.closed = true;
+            }
+        }
+    }
+
+    private void downsample(int seriesId, long timestamp, double value) throws IOException {
+        if (seriesId >= counts.length) {
+            final int length = Math.max(seriesId + 1, counts.length * 2);
+            this.buckets = Arrays.copyOf(buckets, length);
+            this.sums = Arrays.copyOf(sums, length);
+            this.counts = Arrays.copyOf(counts, length);
+        }
+        final long bucket = timestamp - timestamp % resolution;
+        if (counts[seriesId] > 0 && bucket != buckets[seriesId]) {
+            downsampled.append(seriesId, buckets[seriesId], sums[seriesId] / counts[seriesId]);
+            counts[seriesId] = 0;
+            sums[seriesId] = 0;
+        }
+        buckets[seriesId] = bucket;
+        sums[seriesId] += value;
+        counts[seriesId]++;
+    }
+
+    /**
+     * Returns the names of the series to read, by id, or {@code null} for those not to read.
+     */
+    private String[] matches(String prefix, int maxSeries) {
+        List<String> matching = new ArrayList<String>();
+        for (String name : names) {
+            if (name.startsWith(prefix)) {
+                matching.add(name);
+            }
+        }
+        if (matching.size() > maxSeries) {
+            Collections.sort(matching);
+            matching = matching.subList(0, maxSeries);
+        }
+        final String[] matches = new String[names.size()];
+        for (String name : matching) {
+            matches[ids.get(name)] = name;
+        }
+        return matches;
+    }
+
+    private void readNames(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        final RandomAccessFile in = new RandomAccessFile(file, "rw");
+        try {
+            long valid = 0;
+            try {
+                while (true) {
+                    final int id = in.readInt();
+                    final String name = in.readUTF();
+                    if (id != names.size()) {
+                        throw new IOException(file + " is corrupt: expected series " + names.size() + ", found " + id);
+                    }
+                    ids.put(name, id);
+                    names.add(name);
+                    valid = in.getFilePointer();
+                }
+            } catch (EOFException e) {
+                // the last name may have been cut short by a crash, so drop what's left of it
+                in.setLength(valid);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Collects the datapoints of the matching series in a range of time.
+     */
+    private static final class Collector implements Segment.Visitor {
+        private final String[] matches;
+        private final TimeSeries[] series;
+        private final SortedMap<String, TimeSeries> results;
+        private final long from;
+        private final long until;
+
+        private Collector(String[] matches, TimeSeries[] series, SortedMap<String, TimeSeries> results,
+                          long from, long until) {
+            this.matches = matches;
+            this.series = series;
+            this.results = results;
+            this.from = from;
+            this.until = until;
+        }
+
+        @Override
+        public boolean accepts(int seriesId) {
+            return seriesId >= 0 && seriesId < matches.length && matches[seriesId] != null;
+        }
+
+        @Override
+        public void visit(int seriesId, long timestamp, double value) {
+            if (timestamp < from || timestamp > until) {
+                return;
+            }
+            TimeSeries timeSeries = series[seriesId];
+            if (timeSeries == null) {
+                timeSeries = new TimeSeries(matches[seriesId]);
+                series[seriesId] = timeSeries;
+                results.put(timeSeries.getName(), timeSeries);
+            }
+            timeSeries.add(timestamp, value);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.history.TimeSeriesStore;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A metric's name as a {@link HistoryReporter} stores it, along with the id of the series of each
+ * of the metric's values, looked up the first time the value is stored. Only used by the reporter's
+ * polling thread.
+ */
+class HistoryName {
+    private static final int FIELD_COUNT = Field.values().length;
+
+    /**
+     * The values a {@link HistoryReporter} stores for a metric.
+     */
+    enum Field {
+        VALUE("value"),
+        COUNT("count"),
+        MEAN_RATE("meanRate"),
+        ONE_MINUTE_RATE("1MinuteRate"),
+        FIVE_MINUTE_RATE("5MinuteRate"),
+        FIFTEEN_MINUTE_RATE("15MinuteRate"),
+        MIN("min"),
+        MAX("max"),
+        MEAN("mean"),
+        STDDEV("stddev"),
+        MEDIAN("median"),
+        P75("75percentile"),
+        P95("95percentile"),
+        P98("98percentile"),
+        P99("99percentile"),
+        P999("999percentile");
+
+        private final String valueName;
+
+        Field(String valueName) {
+            this.valueName = valueName;
+        }
+    }
+
+    private final String name;
+    private final int[] seriesIds = new int[FIELD_COUNT];
+
+    HistoryName(String name) {
+        this.name = name;
+        Arrays.fill(seriesIds, -1);
+    }
+
+    /**
+     * Returns the id of the series of one of the metric's values in the given store.
+     */
+    int seriesId(TimeSeriesStore store, Field field) throws IOException {
+        final int id = seriesIds[field.ordinal()];
+        if (id >= 0) {
+            return id;
+        }
+        final int fresh = store.seriesId(name + '.' + field.valueName);
+        seriesIds[field.ordinal()] = fresh;
+        return fresh;
+    }
+}
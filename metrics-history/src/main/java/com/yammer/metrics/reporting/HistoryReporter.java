@@ -0,0 +1,215 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.history.TimeSeriesStore;
+import com.yammer.metrics.reporting.HistoryName.Field;
+import com.yammer.metrics.stats.Snapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reporter which periodically appends the values of a registry's metrics to a local
+ * {@link TimeSeriesStore}, so that a process keeps its own metric history, for example while the
+ * service its other reporters send metrics to is down. The history can be queried through
+ * {@link TimeSeriesStore#query(String, long, long)}, or over HTTP by handing the store to
+ * {@code MetricsServlet}.
+ * <p/>
+ * Each of a metric's values is stored as a series named after the metric and the value, e.g.
+ * {@code com.example.service.RequestResource.requests.99percentile}, so that every value of a
+ * metric, or every metric of a class, can be queried by prefix. Gauges are only stored if their
+ * values are numbers.
+ */
+public class HistoryReporter extends AbstractPollingReporter implements MetricProcessor<Long> {
+    private static final Logger LOG = LoggerFactory.getLogger(HistoryReporter.class);
+
+    /**
+     * Enables the history reporter for the default metrics registry, storing the metrics' history
+     * in the given directory with the store's default retention.
+     *
+     * @param directory the directory of the store
+     * @param period    the period between successive polls
+     * @param unit      the time unit of {@code period}
+     * @return the store, which can be queried, or handed to {@code MetricsServlet}
+     * @throws IOException if the store cannot be opened
+     */
+    public static TimeSeriesStore enable(File directory, long period, TimeUnit unit) throws IOException {
+        return enable(Metrics.defaultRegistry(), directory, period, unit);
+    }
+
+    /**
+     * Enables the history reporter for the given metrics registry, storing the metrics' history in
+     * the given directory with the store's default retention.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param directory       the directory of the store
+     * @param period          the period between successive polls
+     * @param unit            the time unit of {@code period}
+     * @return the store, which can be queried, or handed to {@code MetricsServlet}
+     * @throws IOException if the store cannot be opened
+     */
+    public static TimeSeriesStore enable(MetricsRegistry metricsRegistry, File directory, long period,
+                                         TimeUnit unit) throws IOException {
+        final TimeSeriesStore store = new TimeSeriesStore(directory);
+        final HistoryReporter reporter = new HistoryReporter(metricsRegistry, store);
+        reporter.start(period, unit);
+        return store;
+    }
+
+    private final TimeSeriesStore store;
+    private final MetricPredicate predicate;
+    private final Clock clock;
+    private final MetricNameCache<HistoryName> names;
+
+    /**
+     * Creates a new {@link HistoryReporter} which stores all of the metrics of the given registry.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} containing the metrics this reporter will
+     *                        store
+     * @param store           the store to append the metrics' values to
+     */
+    public HistoryReporter(MetricsRegistry metricsRegistry, TimeSeriesStore store) {
+        this(metricsRegistry, store, MetricPredicate.ALL, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new {@link HistoryReporter}.
+     *
+     * @param metricsRegistry the {@link MetricsRegistry} containing the metrics this reporter will
+     *                        store
+     * @param store           the store to append the metrics' values to
+     * @param predicate       the {@link MetricPredicate} which metrics are required to match before
+     *                        being stored
+     * @param clock           the clock used to timestamp the metrics' values
+     */
+    public HistoryReporter(MetricsRegistry metricsRegistry,
+                           TimeSeriesStore store,
+                           MetricPredicate predicate,
+                           Clock clock) {
+        super(metricsRegistry, "history-reporter");
+        this.store = store;
+        this.predicate = predicate;
+        this.clock = clock;
+        this.names = new MetricNameCache<HistoryName>() {
+            @Override
+            protected HistoryName load(MetricName name) {
+                return new HistoryName(nameOf(name));
+            }
+        };
+        metricsRegistry.addListener(names);
+    }
+
+    @Override
+    public void run() {
+        final Long epoch = clock.time() / 1000;
+        for (Map.Entry<MetricName, Metric> entry : getMetricsRegistry().allMetrics().entrySet()) {
+            if (predicate.matches(entry.getKey(), entry.getValue())) {
+                try {
+                    entry.getValue().processWith(this, entry.getKey(), epoch);
+                } catch (Exception e) {
+                    LOG.warn("Error storing the history of {}", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the reporter and flushes the store, which is left open for queries. Whoever opened the
+     * store closes it.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        getMetricsRegistry().removeListener(names);
+        try {
+            store.flush();
+        } catch (IOException e) {
+            LOG.warn("Error flushing the metrics history", e);
+        }
+    }
+
+    @Override
+    public void processGauge(MetricName name, Gauge<?> gauge, Long epoch) throws IOException {
+        if (gauge instanceof LongGauge) {
+            append(epoch, names.get(name), Field.VALUE, ((LongGauge) gauge).longValue());
+        } else if (gauge instanceof DoubleGauge) {
+            append(epoch, names.get(name), Field.VALUE, ((DoubleGauge) gauge).doubleValue());
+        } else {
+            final Object value = gauge.value();
+            if (value instanceof Number) {
+                append(epoch, names.get(name), Field.VALUE, ((Number) value).doubleValue());
+            }
+        }
+    }
+
+    @Override
+    public void processCounter(MetricName name, Counter counter, Long epoch) throws IOException {
+        append(epoch, names.get(name), Field.COUNT, counter.count());
+    }
+
+    @Override
+    public void processMeter(MetricName name, Metered meter, Long epoch) throws IOException {
+        final HistoryName historyName = names.get(name);
+        append(epoch, historyName, Field.COUNT, meter.count());
+        append(epoch, historyName, Field.MEAN_RATE, meter.meanRate());
+        append(epoch, historyName, Field.ONE_MINUTE_RATE, meter.oneMinuteRate());
+        append(epoch, historyName, Field.FIVE_MINUTE_RATE, meter.fiveMinuteRate());
+        append(epoch, historyName, Field.FIFTEEN_MINUTE_RATE, meter.fifteenMinuteRate());
+    }
+
+    @Override
+    public void processHistogram(MetricName name, Histogram histogram, Long epoch) throws IOException {
+        final HistoryName historyName = names.get(name);
+        final Snapshot snapshot = snapshotOf(histogram);
+        append(epoch, historyName, Field.COUNT, countOf(histogram, snapshot));
+        appendSummarizable(epoch, historyName, summaryOf(histogram, snapshot));
+        appendSampling(epoch, historyName, snapshot);
+    }
+
+    @Override
+    public void processTimer(MetricName name, Timer timer, Long epoch) throws IOException {
+        processMeter(name, timer, epoch);
+        final HistoryName historyName = names.get(name);
+        final Snapshot snapshot = snapshotOf(timer);
+        appendSummarizable(epoch, historyName, summaryOf(timer, snapshot));
+        appendSampling(epoch, historyName, snapshot);
+    }
+
+    private void appendSummarizable(long epoch, HistoryName name, Summarizable summary) throws IOException {
+        append(epoch, name, Field.MIN, summary.min());
+        append(epoch, name, Field.MAX, summary.max());
+        append(epoch, name, Field.MEAN, summary.mean());
+        append(epoch, name, Field.STDDEV, summary.stdDev());
+    }
+
+    private void appendSampling(long epoch, HistoryName name, Snapshot snapshot) throws IOException {
+        append(epoch, name, Field.MEDIAN, snapshot.getMedian());
+        append(epoch, name, Field.P75, snapshot.get75thPercentile());
+        append(epoch, name, Field.P95, snapshot.get95thPercentile());
+        append(epoch, name, Field.P98, snapshot.get98thPercentile());
+        append(epoch, name, Field.P99, snapshot.get99thPercentile());
+        append(epoch, name, Field.P999, snapshot.get999thPercentile());
+    }
+
+    private void append(long epoch, HistoryName name, Field field, double value) throws IOException {
+        store.append(name.seriesId(store, field), epoch, value);
+    }
+
+    private static String nameOf(MetricName name) {
+        final StringBuilder sb = new StringBuilder()
+                .append(name.getGroup())
+                .append('.')
+                .append(name.getType())
+                .append('.');
+        if (name.hasScope()) {
+            sb.append(name.getScope())
+              .append('.');
+        }
+        return sb.append(name.getName()).toString();
+    }
+}
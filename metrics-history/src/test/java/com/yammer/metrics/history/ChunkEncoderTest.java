@@ -0,0 +1,78 @@
+package com.yammer.metrics.history;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class ChunkEncoderTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    @Test
+    public void decodesWhatItEncodes() throws Exception {
+        final Random random = new Random(42);
+        final long[] timestamps = new long[200];
+        final double[] values = new double[200];
+        long timestamp = 1400000000L;
+        for (int i = 0; i < timestamps.length; i++) {
+            // mostly regular ticks with some jitter, gaps and jumps back in time
+            timestamp += (i % 50 == 49) ? -10000 : (i % 20 == 19) ? 100000 : 10 + random.nextInt(3);
+            timestamps[i] = timestamp;
+            values[i] = (i % 7 == 0) ? random.nextGaussian() * 1e6 : (i % 3 == 0) ? values[Math.max(0, i - 1)] : i * 0.5;
+        }
+        values[10] = Double.NaN;
+        values[11] = Double.NEGATIVE_INFINITY;
+        values[12] = -0.0;
+
+        final ByteBuffer chunks = ByteBuffer.allocate(64 * 1024);
+        final int chunkLength = 64;
+        int chunk = 0;
+        ChunkEncoder encoder = new ChunkEncoder(chunks, 0, chunkLength, 7);
+        for (int i = 0; i < timestamps.length; i++) {
+            if (!encoder.append(timestamps[i], values[i])) {
+                chunk++;
+                encoder = new ChunkEncoder(chunks, chunk * chunkLength, chunkLength, 7);
+                assertThat("a datapoint always fits in a new chunk",
+                           encoder.append(timestamps[i], values[i]),
+                           is(true));
+            }
+        }
+
+        int read = 0;
+        for (int i = 0; i <= chunk; i++) {
+            assertThat("the chunk records its series",
+                       ChunkDecoder.seriesId(chunks, i * chunkLength),
+                       is(7));
+            final ChunkDecoder decoder = new ChunkDecoder(chunks, i * chunkLength, chunkLength);
+            while (decoder.next()) {
+                assertThat("the timestamp is read back",
+                           decoder.timestamp(),
+                           is(timestamps[read]));
+                assertThat("the value is read back bit for bit",
+                           Double.doubleToRawLongBits(decoder.value()),
+                           is(Double.doubleToRawLongBits(values[read])));
+                read++;
+            }
+        }
+
+        assertThat("every datapoint is read back",
+                   read,
+                   is(timestamps.length));
+    }
+
+    @Test
+    public void compressesRegularDatapointsToAFewBitsEach() throws Exception {
+        final ChunkEncoder encoder = new ChunkEncoder(buffer, 0, buffer.capacity(), 0);
+        for (int i = 0; i < 1000; i++) {
+            encoder.append(1400000000L + i * 10, 12.0 + (i % 4));
+        }
+
+        assertThat("the chunk holds them in under two bytes each",
+                   buffer.getInt(4) / 8,
+                   is(lessThan(2000)));
+    }
+}
@@ -0,0 +1,87 @@
+package com.yammer.metrics.history;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TierTest {
+    private static final long START = 1400000000L - 1400000000L % 3600;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Double> values = new ArrayList<Double>();
+    private final Segment.Visitor visitor = new Segment.Visitor() {
+        @Override
+        public boolean accepts(int seriesId) {
+            return true;
+        }
+
+        @Override
+        public void visit(int seriesId, long timestamp, double value) {
+            values.add(value);
+        }
+    };
+
+    private File directory;
+    private Tier tier;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = new File(folder.getRoot(), "tier");
+        this.tier = new Tier(directory, 4096, 3600, 3600);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tier.close();
+    }
+
+    @Test
+    public void deletesAnExpiredSegmentOnlyOnceNothingIsReadingIt() throws Exception {
+        tier.append(0, START, 1);
+        tier.append(0, START + 3600, 2);
+        final List<Segment.View> views = new ArrayList<Segment.View>();
+        tier.views(START, START, visitor, views);
+
+        tier.append(0, START + 7200, 3);
+
+        assertThat("the expired segment is kept while a view of it is being read",
+                   directory.list().length,
+                   is(3));
+
+        Tier.scan(views, visitor);
+        Tier.release(views);
+
+        assertThat("the expired segment is read",
+                   values.toString(),
+                   is("[1.0]"));
+
+        assertThat("the expired segment is deleted once its view is released",
+                   directory.list().length,
+                   is(2));
+    }
+
+    @Test
+    public void readsTheSegmentBeingWrittenToAsItWasWhenViewed() throws Exception {
+        tier.append(0, START, 1);
+        final List<Segment.View> views = new ArrayList<Segment.View>();
+        tier.views(START, START + 10, visitor, views);
+
+        tier.append(0, START + 10, 2);
+        Tier.scan(views, visitor);
+        Tier.release(views);
+
+        assertThat(values.toString(),
+                   is("[1.0]"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.yammer.metrics.history;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimeSeriesStoreTest {
+    private static final long START = 1400000000L - 1400000000L % 3600;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private TimeSeriesStore store;
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Test
+    public void returnsTheDatapointsOfMatchingSeriesInRange() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        for (int i = 0; i < 100; i++) {
+            store.append("com.example.Requests.count", START + i * 10, i);
+            store.append("com.example.Requests.p99", START + i * 10, i * 1.5);
+            store.append("com.other.Thing.count", START + i * 10, -i);
+        }
+
+        final SortedMap<String, TimeSeries> results = store.query("com.example.", START + 500, START + 549);
+
+        assertThat("only the matching series are returned",
+                   results.keySet().toString(),
+                   is("[com.example.Requests.count, com.example.Requests.p99]"));
+
+        final TimeSeries p99 = results.get("com.example.Requests.p99");
+        assertThat("only the datapoints in range are returned",
+                   p99.size(),
+                   is(5));
+
+        assertThat("the datapoints are returned in order",
+                   p99.getTimestamp(0),
+                   is(START + 500));
+
+        assertThat("the values are returned",
+                   p99.getValue(4),
+                   is(54 * 1.5));
+    }
+
+    @Test
+    public void readsNoMoreThanTheGivenNumberOfSeries() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        store.append("c", START, 3);
+        store.append("a", START, 1);
+        store.append("b", START, 2);
+
+        assertThat("the series whose names sort first are returned",
+                   store.query("", START, START, 2).keySet().toString(),
+                   is("[a, b]"));
+    }
+
+    @Test
+    public void aQueryOnlyReadsTheDatapointsAppendedBeforeIt() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        store.append("a", START, 1);
+        final SortedMap<String, TimeSeries> before = store.query("", START, START + 10);
+        store.append("a", START + 10, 2);
+
+        assertThat("the query's datapoints don't change",
+                   before.get("a").size(),
+                   is(1));
+
+        assertThat("the next query reads the new datapoint",
+                   store.query("", START, START + 10).get("a").size(),
+                   is(2));
+    }
+
+    @Test
+    public void returnsNothingOnceClosed() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        store.append("a", START, 1);
+        store.close();
+
+        assertThat(store.query("", START, START).isEmpty(),
+                   is(true));
+    }
+
+    @Test
+    public void keepsItsHistoryAcrossRestarts() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        store.append("a", START, 1);
+        store.append("b", START, 2);
+        store.close();
+
+        this.store = new TimeSeriesStore(folder.getRoot());
+        store.append("b", START + 10, 3);
+        store.append("c", START + 10, 4);
+
+        final SortedMap<String, TimeSeries> results = store.query("", START, START + 10);
+
+        assertThat("the series are still known by name",
+                   results.keySet().toString(),
+                   is("[a, b, c]"));
+
+        assertThat("new datapoints are added to old series",
+                   results.get("b").size(),
+                   is(2));
+    }
+
+    @Test
+    public void startsNewSegmentsAsTheyFillUpOrTimePasses() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot(), 4096, 1, 24, 0, 0, TimeUnit.HOURS);
+        // each series takes a 256 byte chunk, and a 4KB segment only has room for 15
+        for (int i = 0; i < 20; i++) {
+            store.append("series-" + i, START, i);
+        }
+        store.append("series-0", START + 3600, 1);
+
+        assertThat("a segment was started when the first filled up and again an hour later",
+                   new File(folder.getRoot(), "raw").list().length,
+                   is(3));
+
+        assertThat("every datapoint can be read back",
+                   store.query("series-", START, START + 3600).size(),
+                   is(20));
+    }
+
+    @Test
+    public void deletesSegmentsOlderThanTheRetentionPeriod() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot(), 4096, 1, 2, 0, 0, TimeUnit.HOURS);
+        for (int hour = 0; hour < 5; hour++) {
+            store.append("series", START + hour * 3600, hour);
+        }
+
+        assertThat("only the segments holding the last two hours are kept",
+                   new File(folder.getRoot(), "raw").list().length,
+                   is(3));
+
+        assertThat("the expired datapoints are gone",
+                   store.query("series", START, START + 5 * 3600).get("series").getValue(0),
+                   is(2.0));
+    }
+
+    @Test
+    public void readsDownsampledDatapointsOnceTheRawOnesHaveExpired() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot(), 4096, 3600, 3600, 600, 86400, TimeUnit.SECONDS);
+        for (int i = 0; i < 3 * 360; i++) {
+            store.append("series", START + i * 10, i % 2 == 0 ? 10 : 20);
+        }
+
+        final TimeSeries series = store.query("series", START, START + 3 * 3600).get("series");
+
+        assertThat("the first datapoint is a ten minute average",
+                   series.getValue(0),
+                   is(15.0));
+
+        assertThat("the first datapoint is at the start of its bucket",
+                   series.getTimestamp(0),
+                   is(START));
+
+        assertThat("the ten minute averages of the expired first hour precede the raw datapoints",
+                   series.getTimestamp(6),
+                   is(START + 3600));
+
+        assertThat("all of the last two hours is there",
+                   series.size(),
+                   is(6 + 2 * 360));
+    }
+}
@@ -0,0 +1,134 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricPredicate;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.history.TimeSeries;
+import com.yammer.metrics.history.TimeSeriesStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HistoryReporterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Clock clock = mock(Clock.class);
+    private final MetricsRegistry registry = new MetricsRegistry(clock);
+    private TimeSeriesStore store;
+    private HistoryReporter reporter;
+
+    @Before
+    public void setUp() throws Exception {
+        this.store = new TimeSeriesStore(folder.getRoot());
+        this.reporter = new HistoryReporter(registry, store, MetricPredicate.ALL, clock);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        registry.shutdown();
+        store.close();
+    }
+
+    @Test
+    public void storesEachValueOfEachMetricOnEachPoll() throws Exception {
+        registry.newCounter(HistoryReporterTest.class, "counter").inc(3);
+        registry.newTimer(HistoryReporterTest.class, "timer").update(10, TimeUnit.MILLISECONDS);
+
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+        registry.newCounter(HistoryReporterTest.class, "counter").inc(2);
+        when(clock.time()).thenReturn(1400000010000L);
+        reporter.run();
+
+        final SortedMap<String, TimeSeries> history =
+                store.query("com.yammer.metrics.reporting.HistoryReporterTest.", 1400000000L, 1400000010L);
+
+        assertThat("every value of the timer is stored, along with the counter",
+                   history.size(),
+                   is(16));
+
+        final TimeSeries counter = history.get("com.yammer.metrics.reporting.HistoryReporterTest.counter.count");
+        assertThat("the counter is stored on each poll",
+                   counter.size(),
+                   is(2));
+
+        assertThat("the counter's values are stored",
+                   counter.getValue(1),
+                   is(5.0));
+
+        assertThat("the values are timestamped in seconds",
+                   counter.getTimestamp(1),
+                   is(1400000010L));
+
+        assertThat("the timer's percentiles are stored",
+                   history.get("com.yammer.metrics.reporting.HistoryReporterTest.timer.99percentile").getValue(0),
+                   is(10.0));
+    }
+
+    @Test
+    public void storesTheSummaryOfEachIntervalOfAnIntervalHistogram() throws Exception {
+        final Histogram histogram = registry.newHistogram(
+                new MetricName(HistoryReporterTest.class, "interval"), Histogram.SampleType.INTERVAL);
+        registry.setSnapshotTtl(0, TimeUnit.SECONDS);
+
+        histogram.update(1);
+        histogram.update(100);
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+        histogram.update(50);
+        when(clock.time()).thenReturn(1400000010000L);
+        reporter.run();
+
+        final SortedMap<String, TimeSeries> history =
+                store.query("com.yammer.metrics.reporting.HistoryReporterTest.interval.", 1400000010L, 1400000010L);
+
+        assertThat("the count is that of the interval",
+                   history.get("com.yammer.metrics.reporting.HistoryReporterTest.interval.count").getValue(0),
+                   is(1.0));
+
+        assertThat("the minimum is that of the interval, like the percentiles",
+                   history.get("com.yammer.metrics.reporting.HistoryReporterTest.interval.min").getValue(0),
+                   is(50.0));
+    }
+
+    @Test
+    public void onlyStoresNumericGauges() throws Exception {
+        registry.newGauge(HistoryReporterTest.class, "number", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return 42;
+            }
+        });
+        registry.newGauge(HistoryReporterTest.class, "string", new Gauge<String>() {
+            @Override
+            public String value() {
+                return "forty-two";
+            }
+        });
+
+        when(clock.time()).thenReturn(1400000000000L);
+        reporter.run();
+
+        final SortedMap<String, TimeSeries> history =
+                store.query("com.yammer.metrics.reporting.HistoryReporterTest.", 1400000000L, 1400000000L);
+
+        assertThat("only the numeric gauge is stored",
+                   history.keySet().toString(),
+                   is("[com.yammer.metrics.reporting.HistoryReporterTest.number.value]"));
+    }
+}
@@ -1,7 +1,7 @@
 package com.yammer.metrics.httpclient;
 
 import com.yammer.metrics.Metrics;
-import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.LongGauge;
 import com.yammer.metrics.core.MetricsRegistry;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.DnsResolver;
@@ -45,36 +45,36 @@ public class InstrumentedClientConnManager extends PoolingClientConnectionManage
         super(schemeRegistry, connTTL, connTTLTimeUnit, dnsResolver);
         metricsRegistry.newGauge(ClientConnectionManager.class,
                                  "available-connections",
-                                 new Gauge<Integer>() {
+                                 new LongGauge() {
                                      @Override
-                                     public Integer value() {
+                                     public long longValue() {
                                          // this acquires a lock on the connection pool; remove if contention sucks
                                          return getTotalStats().getAvailable();
                                      }
                                  });
         metricsRegistry.newGauge(ClientConnectionManager.class,
                                  "leased-connections",
-                                 new Gauge<Integer>() {
+                                 new LongGauge() {
                                      @Override
-                                     public Integer value() {
+                                     public long longValue() {
                                          // this acquires a lock on the connection pool; remove if contention sucks
                                          return getTotalStats().getLeased();
                                      }
                                  });
         metricsRegistry.newGauge(ClientConnectionManager.class,
                                  "max-connections",
-                                 new Gauge<Integer>() {
+                                 new LongGauge() {
                                      @Override
-                                     public Integer value() {
+                                     public long longValue() {
                                          // this acquires a lock on the connection pool; remove if contention sucks
                                          return getTotalStats().getMax();
                                      }
                                  });
         metricsRegistry.newGauge(ClientConnectionManager.class,
                                  "pending-connections",
-                                 new Gauge<Integer>() {
+                                 new LongGauge() {
                                      @Override
-                                     public Integer value() {
+                                     public long longValue() {
                                          // this acquires a lock on the connection pool; remove if contention sucks
                                          return getTotalStats().getPending();
                                      }
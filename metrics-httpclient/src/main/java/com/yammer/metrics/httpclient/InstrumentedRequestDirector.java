@@ -2,7 +2,6 @@ package com.yammer.metrics.httpclient;
 
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.Timer;
-import com.yammer.metrics.core.TimerContext;
 import org.apache.commons.logging.Log;
 import org.apache.http.*;
 import org.apache.http.client.*;
@@ -76,11 +75,12 @@ class InstrumentedRequestDirector extends DefaultRequestDirector {
 
     @Override
     public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) throws HttpException, IOException {
-        final TimerContext timerContext = timer(request).time();
+        final Timer timer = timer(request);
+        final long startTime = timer.start();
         try {
             return super.execute(target, request, context);
         } finally {
-            timerContext.stop();
+            timer.stop(startTime);
         }
     }
 
@@ -11,7 +11,6 @@ import com.yammer.metrics.annotation.Timed;
 import com.yammer.metrics.core.Meter;
 import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.Timer;
-import com.yammer.metrics.core.TimerContext;
 
 import java.util.concurrent.TimeUnit;
 
@@ -27,11 +26,11 @@ class InstrumentedResourceMethodDispatchProvider implements ResourceMethodDispat
 
         @Override
         public void dispatch(Object resource, HttpContext httpContext) {
-            final TimerContext context = timer.time();
+            final long startTime = timer.start();
             try {
                 underlying.dispatch(resource, httpContext);
             } finally {
-                context.stop();
+                timer.stop(startTime);
             }
         }
     }
@@ -111,7 +110,8 @@ class InstrumentedResourceMethodDispatchProvider implements ResourceMethodDispat
                                                  annotation.durationUnit() == null ?
                                                          TimeUnit.MILLISECONDS : annotation.durationUnit(),
                                                  annotation.rateUnit() == null ?
-                                                         TimeUnit.SECONDS : annotation.rateUnit());
+                                                         TimeUnit.SECONDS : annotation.rateUnit(),
+                                                 annotation.sampleRate());
             dispatcher = new TimedRequestDispatcher(dispatcher, timer);
         }
 
@@ -193,7 +193,7 @@ public class InstrumentedHandler extends HandlerWrapper {
                 resumes.mark();
             }
             isMilliseconds = false;
-            start = System.nanoTime();
+            start = dispatches.start();
         }
 
         try {
@@ -204,8 +204,7 @@ public class InstrumentedHandler extends HandlerWrapper {
                 dispatches.update(duration, TimeUnit.MILLISECONDS);
                 requestTimer(request.getMethod()).update(duration, TimeUnit.MILLISECONDS);
             } else {
-                final long duration = System.nanoTime() - start;
-                dispatches.update(duration, TimeUnit.NANOSECONDS);
+                final long duration = dispatches.stop(start);
                 requestTimer(request.getMethod()).update(duration, TimeUnit.NANOSECONDS);
             }
 
@@ -4,7 +4,7 @@ import com.yammer.metrics.util.RatioGauge;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.yammer.metrics.Metrics;
-import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.LongGauge;
 import com.yammer.metrics.core.MetricsRegistry;
 
 public class InstrumentedQueuedThreadPool extends QueuedThreadPool {
@@ -25,15 +25,15 @@ public class InstrumentedQueuedThreadPool extends QueuedThreadPool {
                 return getThreads();
             }
         });
-        registry.newGauge(QueuedThreadPool.class, "active-threads", new Gauge<Integer>() {
+        registry.newGauge(QueuedThreadPool.class, "active-threads", new LongGauge() {
             @Override
-            public Integer value() {
+            public long longValue() {
                 return getThreads();
             }
         });
-        registry.newGauge(QueuedThreadPool.class, "idle-threads", new Gauge<Integer>() {
+        registry.newGauge(QueuedThreadPool.class, "idle-threads", new LongGauge() {
             @Override
-            public Integer value() {
+            public long longValue() {
                 return getIdleThreads();
             }
         });
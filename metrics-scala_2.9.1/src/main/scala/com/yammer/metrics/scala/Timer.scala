@@ -12,11 +12,11 @@ class Timer(metric: com.yammer.metrics.core.Timer) {
    * Runs f, recording its duration, and returns the result of f.
    */
   def time[A](f: => A): A = {
-    val ctx = metric.time
+    val startTime = metric.start()
     try {
       f
     } finally {
-      ctx.stop
+      metric.stop(startTime)
     }
   }
 
@@ -33,6 +33,17 @@ class Timer(metric: com.yammer.metrics.core.Timer) {
    */
   def timerContext() = metric.time()
 
+  /**
+   * Starts timing an event, returning a start time to be passed to stop.
+   */
+  def start() = metric.start()
+
+  /**
+   * Stops timing an event which started at startTime, recording and returning its duration in
+   * nanoseconds.
+   */
+  def stop(startTime: Long) = metric.stop(startTime)
+
   /**
    * Returns the number of durations recorded.
    */
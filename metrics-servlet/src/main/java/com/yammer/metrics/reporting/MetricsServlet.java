@@ -6,6 +6,8 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.history.TimeSeries;
+import com.yammer.metrics.history.TimeSeriesStore;
 import com.yammer.metrics.stats.Snapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,11 +17,15 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.SortedMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * An HTTP servlet which outputs the metrics in a {@link MetricsRegistry} (and optionally the data
@@ -30,10 +36,24 @@ import java.util.concurrent.TimeUnit;
  * {@code com.yammer.metrics.reporting.MetricsServlet.registry} which is a
  * {@link MetricsRegistry} instance, {@link MetricsServlet} will use it instead of {@link Metrics}.
  * <p/>
+ * If the servlet context has an attribute named
+ * {@code com.yammer.metrics.reporting.MetricsServlet.history} which is a {@link TimeSeriesStore},
+ * such as the one {@link HistoryReporter} writes to, {@link MetricsServlet} can also return the
+ * metrics' history. The {@code metrics-history} module is an optional dependency, so it must be
+ * on the classpath for this.
+ * <p/>
  * {@link MetricsServlet} also takes an initialization parameter, {@code show-jvm-metrics}, which
  * should be a boolean value (e.g., {@code "true"} or {@code "false"}). It determines whether or not
  * JVM-level metrics will be included in the JSON output.
  * <p/>
+ * Responses are serialized once and then served from memory to every request with the same query
+ * string for a short while, set by the {@code cache-ttl} initialization parameter in milliseconds
+ * (one second by default, {@code 0} to disable caching), so that several clients polling the
+ * servlet at once don't each walk the registry; concurrent requests for a response which isn't
+ * cached wait for a single request to serialize it. Responses carry an {@code ETag} derived from their
+ * content, so a client which sends it back in an {@code If-None-Match} header is told when nothing
+ * has changed, and are compressed for clients which accept {@code gzip}.
+ * <p/>
  * {@code GET} requests to {@link MetricsServlet} can make use of the following query-string
  * parameters:
  * <dl>
@@ -58,6 +78,15 @@ import java.util.concurrent.TimeUnit;
  *         aggregating across hosts, you may want to do this to allow for more accurate quantile
  *         calculations.
  *     </dd>
+ *
+ *     <dt><code>/metrics?history=com.example.service&amp;from=1400000000&amp;until=1400003600</code></dt>
+ *     <dd>
+ *         <code>history</code> returns the stored history of every series whose name starts with
+ *         the given prefix, as arrays of <code>[timestamp, value]</code> pairs, instead of the
+ *         metrics' current values. <code>from</code> and <code>until</code> bound the range of
+ *         timestamps returned, in seconds since the epoch, and default to the last hour. At most
+ *         a week of history is returned for the first thousand series, by name, which match.
+ *     </dd>
  * </dl>
  */
 public class MetricsServlet extends HttpServlet implements MetricProcessor<MetricsServlet.Context> {
@@ -72,31 +101,99 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
      */
     public static final String JSON_FACTORY_ATTRIBUTE = JsonFactory.class.getCanonicalName();
 
+    /**
+     * The attribute name of the {@link TimeSeriesStore} instance in the servlet context.
+     */
+    public static final String HISTORY_ATTRIBUTE = MetricsServlet.class.getName() + ".history";
+
     /**
      * The initialization parameter name which determines whether or not JVM_level metrics will be
      * included in the JSON output.
      */
     public static final String SHOW_JVM_METRICS = "show-jvm-metrics";
 
+    /**
+     * The initialization parameter name of how long a response is served from memory for, in
+     * milliseconds.
+     */
+    public static final String CACHE_TTL = "cache-ttl";
+
     static final class Context {
         final boolean showFullSamples;
         final JsonGenerator json;
+        final RegistrySnapshot snapshot;
 
-        Context(JsonGenerator json, boolean showFullSamples) {
+        Context(JsonGenerator json, boolean showFullSamples, RegistrySnapshot snapshot) {
             this.json = json;
             this.showFullSamples = showFullSamples;
+            this.snapshot = snapshot;
         }
     }
 
     private static final JsonFactory DEFAULT_JSON_FACTORY = new JsonFactory(new ObjectMapper());
     private static final Logger LOGGER = LoggerFactory.getLogger(MetricsServlet.class);
     private static final String CONTENT_TYPE = "application/json";
+    private static final long DEFAULT_HISTORY_RANGE = TimeUnit.HOURS.toSeconds(1);
+    private static final long MAX_HISTORY_RANGE = TimeUnit.DAYS.toSeconds(7);
+    private static final int MAX_HISTORY_SERIES = 1000;
+    private static final long DEFAULT_CACHE_TTL = TimeUnit.SECONDS.toMillis(1);
+    private static final int MAX_CACHED_RESPONSES = 64;
+    private static final boolean HISTORY_AVAILABLE = isHistoryAvailable();
+
+    /**
+     * A serialized response, along with its compressed form once a client has asked for it.
+     */
+    private static final class CachedResponse {
+        private final byte[] body;
+        private final String etag;
+        private volatile byte[] gzipped;
+
+        CachedResponse(byte[] body) {
+            this.body = body;
+            this.etag = "W/\"" + Integer.toHexString(Arrays.hashCode(body)) +
+                    '-' + Integer.toHexString(body.length) + '"';
+        }
+
+        byte[] gzipped() throws IOException {
+            byte[] bytes = gzipped;
+            if (bytes == null) {
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream(body.length / 4 + 64);
+                final GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+                gzip.write(body);
+                gzip.close();
+                bytes = buffer.toByteArray();
+                this.gzipped = bytes;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * The serialization of a cached response, which every request for the response waits on
+     * until it has finished, so that each response is only serialized once per TTL.
+     */
+    private static final class CacheEntry extends FutureTask<CachedResponse> {
+        private final long expiry;
+
+        CacheEntry(Callable<CachedResponse> serializer, long expiry) {
+            super(serializer);
+            this.expiry = expiry;
+        }
+
+        boolean isExpired(long tick) {
+            // a serialization which outlives the TTL is still waited on, not started again
+            return isDone() && tick - expiry >= 0;
+        }
+    }
 
     private final Clock clock;
     private final VirtualMachineMetrics vm;
     private MetricsRegistry registry;
     private JsonFactory factory;
     private boolean showJvmMetrics;
+    private TimeSeriesStore history;
+    private long cacheTtl;
+    private final ConcurrentMap<String, CacheEntry> cache;
 
     /**
      * Creates a new {@link MetricsServlet}.
@@ -130,11 +227,60 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
                           MetricsRegistry registry,
                           JsonFactory factory,
                           boolean showJvmMetrics) {
+        this(clock, vm, registry, factory, showJvmMetrics, null);
+    }
+
+    /**
+     * Creates a new {@link MetricsServlet}.
+     *
+     * @param clock             the clock used for the current time
+     * @param vm                a {@link VirtualMachineMetrics} instance
+     * @param registry          a {@link MetricsRegistry}
+     * @param factory           a {@link JsonFactory}
+     * @param showJvmMetrics    whether or not JVM-level metrics will be included in the output
+     * @param history           the {@link TimeSeriesStore} holding the metrics' history, or
+     *                          {@code null} if none is kept
+     */
+    public MetricsServlet(Clock clock,
+                          VirtualMachineMetrics vm,
+                          MetricsRegistry registry,
+                          JsonFactory factory,
+                          boolean showJvmMetrics,
+                          TimeSeriesStore history) {
+        this(clock, vm, registry, factory, showJvmMetrics, history,
+             DEFAULT_CACHE_TTL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a new {@link MetricsServlet}.
+     *
+     * @param clock             the clock used for the current time
+     * @param vm                a {@link VirtualMachineMetrics} instance
+     * @param registry          a {@link MetricsRegistry}
+     * @param factory           a {@link JsonFactory}
+     * @param showJvmMetrics    whether or not JVM-level metrics will be included in the output
+     * @param history           the {@link TimeSeriesStore} holding the metrics' history, or
+     *                          {@code null} if none is kept
+     * @param cacheTtl          how long a response is served from memory for, or {@code 0} to
+     *                          serialize every response afresh
+     * @param cacheTtlUnit      the time unit of {@code cacheTtl}
+     */
+    public MetricsServlet(Clock clock,
+                          VirtualMachineMetrics vm,
+                          MetricsRegistry registry,
+                          JsonFactory factory,
+                          boolean showJvmMetrics,
+                          TimeSeriesStore history,
+                          long cacheTtl,
+                          TimeUnit cacheTtlUnit) {
         this.clock = clock;
         this.vm = vm;
         this.registry = registry;
         this.factory = factory;
         this.showJvmMetrics = showJvmMetrics;
+        this.history = history;
+        this.cacheTtl = cacheTtlUnit.toNanos(cacheTtl);
+        this.cache = new ConcurrentHashMap<String, CacheEntry>();
     }
 
     @Override
@@ -150,10 +296,28 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
             this.registry = (MetricsRegistry) o;
         }
 
+        // checking the attribute's type needs metrics-history, which is an optional dependency
+        if (HISTORY_AVAILABLE) {
+            final Object store = config.getServletContext().getAttribute(HISTORY_ATTRIBUTE);
+            if (store instanceof TimeSeriesStore) {
+                this.history = (TimeSeriesStore) store;
+            }
+        }
+
         final String showJvmMetricsParam = config.getInitParameter(SHOW_JVM_METRICS);
         if (showJvmMetricsParam != null) {
             this.showJvmMetrics = Boolean.parseBoolean(showJvmMetricsParam);
         }
+
+        final String cacheTtlParam = config.getInitParameter(CACHE_TTL);
+        if (cacheTtlParam != null) {
+            try {
+                this.cacheTtl = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(cacheTtlParam.trim()));
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid " + CACHE_TTL + ": " + cacheTtlParam, e);
+            }
+        }
+        cache.clear();
     }
 
     @Override
@@ -161,11 +325,132 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         final String classPrefix = req.getParameter("class");
         final boolean pretty = Boolean.parseBoolean(req.getParameter("pretty"));
         final boolean showFullSamples = Boolean.parseBoolean(req.getParameter("full-samples"));
+        final String historyPrefix = req.getParameter("history");
+        final String fromParam = req.getParameter("from");
+        final String untilParam = req.getParameter("until");
+
+        final Callable<CachedResponse> serializer;
+        if (historyPrefix != null) {
+            if (history == null) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No metrics history is kept");
+                return;
+            }
+            final long until;
+            final long from;
+            try {
+                until = parseTimestamp(untilParam, clock.time() / 1000);
+                // the range comes from the query string, so don't let it decode the whole store
+                from = Math.max(parseTimestamp(fromParam, until - DEFAULT_HISTORY_RANGE),
+                                until - MAX_HISTORY_RANGE);
+            } catch (NumberFormatException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid timestamp: " + e.getMessage());
+                return;
+            }
+            serializer = new Callable<CachedResponse>() {
+                @Override
+                public CachedResponse call() throws IOException {
+                    return new CachedResponse(serializeHistory(historyPrefix, from, until, pretty));
+                }
+            };
+        } else {
+            serializer = new Callable<CachedResponse>() {
+                @Override
+                public CachedResponse call() throws IOException {
+                    return new CachedResponse(serializeMetrics(classPrefix, pretty, showFullSamples));
+                }
+            };
+        }
+
+        final String key = cacheKey(classPrefix, pretty, showFullSamples, historyPrefix,
+                                    fromParam, untilParam);
+        final CachedResponse cached = cachedResponse(key, serializer);
+
+        resp.setHeader("ETag", cached.etag);
+        resp.setHeader("Vary", "Accept-Encoding");
+        if (matches(req.getHeader("If-None-Match"), cached.etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
         resp.setStatus(HttpServletResponse.SC_OK);
         resp.setContentType(CONTENT_TYPE);
-        final OutputStream output = resp.getOutputStream();
-        final JsonGenerator json = factory.createJsonGenerator(output, JsonEncoding.UTF8);
+        final byte[] bytes;
+        if (acceptsGzip(req.getHeader("Accept-Encoding"))) {
+            resp.setHeader("Content-Encoding", "gzip");
+            bytes = cached.gzipped();
+        } else {
+            bytes = cached.body;
+        }
+        resp.setContentLength(bytes.length);
+        resp.getOutputStream().write(bytes);
+    }
+
+    private CachedResponse cachedResponse(String key, Callable<CachedResponse> serializer) throws IOException {
+        final long tick = clock.tick();
+        while (true) {
+            CacheEntry entry = cache.get(key);
+            if (entry == null || entry.isExpired(tick)) {
+                final CacheEntry fresh = new CacheEntry(serializer, tick + cacheTtl);
+                if (!publish(key, entry, fresh, tick)) {
+                    // another request started serializing the response first, so wait for it
+                    continue;
+                }
+                fresh.run();
+                entry = fresh;
+            }
+            try {
+                return entry.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while serializing metrics");
+            } catch (ExecutionException e) {
+                // don't serve a failure from the cache; the next request tries again
+                cache.remove(key, entry);
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Publishes a new cache entry in place of an expired one, or of none. Returns {@code false} if
+     * another request published one first; otherwise the caller should run the new entry, which
+     * may not have been cached at all.
+     */
+    private boolean publish(String key, CacheEntry expired, CacheEntry fresh, long tick) {
+        if (cacheTtl <= 0) {
+            return true;
+        }
+        if (expired != null) {
+            return cache.replace(key, expired, fresh);
+        }
+        if (cache.size() >= MAX_CACHED_RESPONSES) {
+            // the keys come from the query string, so don't let odd queries fill up the heap
+            final Iterator<CacheEntry> entries = cache.values().iterator();
+            while (entries.hasNext()) {
+                if (entries.next().isExpired(tick)) {
+                    entries.remove();
+                }
+            }
+            if (cache.size() >= MAX_CACHED_RESPONSES) {
+                return true;
+            }
+        }
+        return cache.putIfAbsent(key, fresh) == null;
+    }
+
+    private byte[] serializeMetrics(String classPrefix, boolean pretty, boolean showFullSamples) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        final JsonGenerator json = factory.createJsonGenerator(buffer, JsonEncoding.UTF8);
         if (pretty) {
             json.useDefaultPrettyPrinter();
         }
@@ -179,6 +464,102 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         }
         json.writeEndObject();
         json.close();
+        return buffer.toByteArray();
+    }
+
+    private byte[] serializeHistory(String prefix, long from, long until, boolean pretty) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        final JsonGenerator json = factory.createJsonGenerator(buffer, JsonEncoding.UTF8);
+        if (pretty) {
+            json.useDefaultPrettyPrinter();
+        }
+        json.writeStartObject();
+        {
+            for (TimeSeries series : history.query(prefix, from, until, MAX_HISTORY_SERIES).values()) {
+                json.writeArrayFieldStart(series.getName());
+                for (int i = 0; i < series.size(); i++) {
+                    json.writeStartArray();
+                    json.writeNumber(series.getTimestamp(i));
+                    json.writeNumber(series.getValue(i));
+                    json.writeEndArray();
+                }
+                json.writeEndArray();
+            }
+        }
+        json.writeEndObject();
+        json.close();
+        return buffer.toByteArray();
+    }
+
+    private static String cacheKey(String classPrefix, boolean pretty, boolean showFullSamples,
+                                   String historyPrefix, String from, String until) {
+        final StringBuilder key = new StringBuilder()
+                .append(pretty ? 'p' : '-')
+                .append(showFullSamples ? 'f' : '-');
+        if (historyPrefix != null) {
+            key.append('h').append(historyPrefix)
+               .append('\n').append(from)
+               .append('\n').append(until);
+        } else if (classPrefix != null) {
+            key.append('c').append(classPrefix);
+        }
+        return key.toString();
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // entity tags are compared weakly, so the W/ prefix is ignored on either side
+        final String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(opaque) || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            final String[] parts = candidate.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    final String param = parts[i].trim();
+                    if (param.startsWith("q=") && isZero(param.substring(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isHistoryAvailable() {
+        try {
+            Class.forName("com.yammer.metrics.history.TimeSeriesStore", false,
+                          MetricsServlet.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static long parseTimestamp(String value, long defaultValue) {
+        return (value == null) ? defaultValue : Long.parseLong(value);
     }
 
     private void writeVmMetrics(JsonGenerator json) throws IOException {
@@ -284,6 +665,7 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
     }
 
     public void writeRegularMetrics(JsonGenerator json, String classPrefix, boolean showFullSamples) throws IOException {
+        final Context context = new Context(json, showFullSamples, registry.peekSnapshot());
         for (Map.Entry<String, SortedMap<MetricName, Metric>> entry : registry.groupedMetrics().entrySet()) {
             if (classPrefix == null || entry.getKey().startsWith(classPrefix)) {
                 json.writeFieldName(entry.getKey());
@@ -292,10 +674,7 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
                     for (Map.Entry<MetricName, Metric> subEntry : entry.getValue().entrySet()) {
                         json.writeFieldName(subEntry.getKey().getName());
                         try {
-                            subEntry.getValue()
-                                    .processWith(this,
-                                                 subEntry.getKey(),
-                                                 new Context(json, showFullSamples));
+                            subEntry.getValue().processWith(this, subEntry.getKey(), context);
                         } catch (Exception e) {
                             LOGGER.warn("Error writing out {}", subEntry.getKey(), e);
                         }
@@ -312,12 +691,13 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         json.writeStartObject();
         {
             json.writeStringField("type", "histogram");
-            json.writeNumberField("count", histogram.count());
-            writeSummarizable(histogram, json);
-            writeSampling(histogram, json);
+            final Snapshot snapshot = context.snapshot.getSnapshot(histogram);
+            json.writeNumberField("count", AbstractReporter.countOf(histogram, snapshot));
+            writeSummarizable(AbstractReporter.summaryOf(histogram, snapshot), json);
+            writeSampling(snapshot, json);
 
             if (context.showFullSamples) {
-                json.writeObjectField("values", histogram.getSnapshot().getValues());
+                json.writeObjectField("values", snapshot.getValues());
             }
         }
         json.writeEndObject();
@@ -340,7 +720,8 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         json.writeStartObject();
         {
             json.writeStringField("type", "gauge");
-            json.writeObjectField("value", evaluateGauge(gauge));
+            json.writeFieldName("value");
+            writeGaugeValue(gauge, json);
         }
         json.writeEndObject();
     }
@@ -367,10 +748,11 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
             json.writeStartObject();
             {
                 json.writeStringField("unit", timer.durationUnit().toString().toLowerCase());
-                writeSummarizable(timer, json);
-                writeSampling(timer, json);
+                final Snapshot snapshot = context.snapshot.getSnapshot(timer);
+                writeSummarizable(AbstractReporter.summaryOf(timer, snapshot), json);
+                writeSampling(snapshot, json);
                 if (context.showFullSamples) {
-                    json.writeObjectField("values", timer.getSnapshot().getValues());
+                    json.writeObjectField("values", snapshot.getValues());
                 }
             }
             json.writeEndObject();
@@ -385,12 +767,18 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         json.writeEndObject();
     }
 
-    private static Object evaluateGauge(Gauge<?> gauge) {
+    private static void writeGaugeValue(Gauge<?> gauge, JsonGenerator json) throws IOException {
         try {
-            return gauge.value();
+            if (gauge instanceof LongGauge) {
+                json.writeNumber(((LongGauge) gauge).longValue());
+            } else if (gauge instanceof DoubleGauge) {
+                json.writeNumber(((DoubleGauge) gauge).doubleValue());
+            } else {
+                json.writeObject(gauge.value());
+            }
         } catch (RuntimeException e) {
             LOGGER.warn("Error evaluating gauge", e);
-            return "error reading gauge: " + e.getMessage();
+            json.writeString("error reading gauge: " + e.getMessage());
         }
     }
 
@@ -401,8 +789,7 @@ public class MetricsServlet extends HttpServlet implements MetricProcessor<Metri
         json.writeNumberField("std_dev", metric.stdDev());
     }
 
-    private static void writeSampling(Sampling metric, JsonGenerator json) throws IOException {
-        final Snapshot snapshot = metric.getSnapshot();
+    private static void writeSampling(Snapshot snapshot, JsonGenerator json) throws IOException {
         json.writeNumberField("median", snapshot.getMedian());
         json.writeNumberField("p75", snapshot.get75thPercentile());
         json.writeNumberField("p95", snapshot.get95thPercentile());
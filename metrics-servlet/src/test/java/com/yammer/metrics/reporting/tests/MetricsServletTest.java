@@ -1,42 +1,64 @@
 package com.yammer.metrics.reporting.tests;
 
-import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Counter;
 import com.yammer.metrics.core.Gauge;
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.VirtualMachineMetrics;
+import com.yammer.metrics.history.TimeSeriesStore;
 import com.yammer.metrics.reporting.MetricsServlet;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
 
 public class MetricsServletTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
     private final Clock clock = mock(Clock.class);
     private final VirtualMachineMetrics vm = mock(VirtualMachineMetrics.class);
     private final MetricsRegistry registry = new MetricsRegistry(clock);
-    private final JsonFactory factory = mock(JsonFactory.class);
+    private final JsonFactory factory = new JsonFactory(new ObjectMapper());
 
     private final HttpServletRequest request = mock(HttpServletRequest.class);
     private final HttpServletResponse response = mock(HttpServletResponse.class);
-    private final ServletOutputStream output = mock(ServletOutputStream.class);
     private final MetricsServlet servlet = new MetricsServlet(clock, vm, registry, factory, false);
 
     private final ByteArrayOutputStream json = new ByteArrayOutputStream();
+    private final ServletOutputStream output = new ServletOutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            json.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            json.write(b, off, len);
+        }
+    };
 
     @Before
     public void setUp() throws Exception {
@@ -45,10 +67,6 @@ public class MetricsServletTest {
         when(request.getMethod()).thenReturn("GET");
 
         when(response.getOutputStream()).thenReturn(output);
-
-        final JsonGenerator generator = new JsonFactory(new ObjectMapper()).createJsonGenerator(json,
-                                                                                                JsonEncoding.UTF8);
-        when(factory.createJsonGenerator(output, JsonEncoding.UTF8)).thenReturn(generator);
     }
 
     @Test
@@ -200,6 +218,190 @@ public class MetricsServletTest {
                               "\"m15\":0.0}}}}"));
     }
 
+    @Test
+    public void generatesHistory() throws Exception {
+        final TimeSeriesStore store = new TimeSeriesStore(folder.getRoot());
+        try {
+            store.append("com.example.Thing.requests.count", 1400000000L, 1);
+            store.append("com.example.Thing.requests.count", 1400000010L, 3);
+            store.append("com.example.Thing.requests.count", 1400000020L, 6);
+            store.append("com.other.Thing.requests.count", 1400000010L, 9);
+            when(request.getParameter("history")).thenReturn("com.example.");
+            when(request.getParameter("from")).thenReturn("1400000010");
+            when(request.getParameter("until")).thenReturn("1400000020");
+
+            new MetricsServlet(clock, vm, registry, factory, false, store).service(request, response);
+
+            assertThat(json.toString(),
+                       is("{\"com.example.Thing.requests.count\":[[1400000010,3.0],[1400000020,6.0]]}"));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void returnsNoMoreThanAWeekOfHistory() throws Exception {
+        final TimeSeriesStore store = new TimeSeriesStore(folder.getRoot());
+        try {
+            store.append("com.example.Thing.requests.count", 1400000000L - 8 * 86400, 1);
+            store.append("com.example.Thing.requests.count", 1400000000L, 2);
+            when(request.getParameter("history")).thenReturn("com.example.");
+            when(request.getParameter("from")).thenReturn("0");
+            when(request.getParameter("until")).thenReturn("1400000000");
+
+            new MetricsServlet(clock, vm, registry, factory, false, store).service(request, response);
+
+            assertThat(json.toString(),
+                       is("{\"com.example.Thing.requests.count\":[[1400000000,2.0]]}"));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void respondsNotFoundIfNoHistoryIsKept() throws Exception {
+        when(request.getParameter("history")).thenReturn("com.example.");
+
+        servlet.service(request, response);
+
+        verify(response).sendError(eq(HttpServletResponse.SC_NOT_FOUND), anyString());
+    }
+
+    @Test
+    public void servesTheSameResponseUntilItExpires() throws Exception {
+        final MetricsServlet servlet = new MetricsServlet(clock, vm, registry, factory, false, null,
+                                                          1, TimeUnit.SECONDS);
+        final Counter counter = registry.newCounter(MetricsServletTest.class, "counter");
+        // the registry snapshot taken for the first response reads the clock as well
+        when(clock.tick()).thenReturn(0L, 0L, 999999999L, 1000000000L);
+
+        counter.inc();
+        servlet.service(request, response);
+        counter.inc();
+        servlet.service(request, response);
+        servlet.service(request, response);
+
+        assertThat("the first response is served until it expires",
+                   json.toString(),
+                   is("{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"counter\":{\"type\":\"counter\",\"count\":1}}}" +
+                              "{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"counter\":{\"type\":\"counter\",\"count\":1}}}" +
+                              "{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"counter\":{\"type\":\"counter\",\"count\":2}}}"));
+    }
+
+    @Test
+    public void serializesAResponseOnceForConcurrentRequests() throws Exception {
+        final MetricsServlet servlet = new MetricsServlet(clock, vm, registry, factory, false, null,
+                                                          1, TimeUnit.SECONDS);
+        final CountDownLatch serializing = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final AtomicInteger serializations = new AtomicInteger();
+        registry.newGauge(MetricsServletTest.class, "gauge", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                serializing.countDown();
+                try {
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return serializations.incrementAndGet();
+            }
+        });
+        final Runnable get = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    servlet.service(request, response);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        final Thread first = new Thread(get);
+        first.start();
+        serializing.await();
+        final Thread second = new Thread(get);
+        second.start();
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (second.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        finish.countDown();
+        first.join();
+        second.join();
+
+        assertThat("the response is only serialized once",
+                   serializations.get(),
+                   is(1));
+
+        assertThat("both requests are served the same response",
+                   json.toString(),
+                   is("{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"gauge\":{\"type\":\"gauge\",\"value\":1}}}" +
+                              "{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"gauge\":{\"type\":\"gauge\",\"value\":1}}}"));
+    }
+
+    @Test
+    public void respondsNotModifiedIfTheEntityTagMatches() throws Exception {
+        registry.newCounter(MetricsServletTest.class, "counter").inc(12);
+
+        servlet.service(request, response);
+        final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+
+        json.reset();
+        reset(response);
+        when(response.getOutputStream()).thenReturn(output);
+        when(request.getHeader("If-None-Match")).thenReturn("\"other\", " + etag.getValue());
+        servlet.service(request, response);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        assertThat("nothing is written",
+                   json.size(),
+                   is(0));
+    }
+
+    @Test
+    public void compressesTheResponseIfTheClientAcceptsGzip() throws Exception {
+        registry.newCounter(MetricsServletTest.class, "counter").inc(12);
+        when(request.getHeader("Accept-Encoding")).thenReturn("deflate, gzip;q=0.8");
+
+        servlet.service(request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        verify(response).setContentLength(json.size());
+        assertThat(gunzip(json.toByteArray()),
+                   is("{\"com.yammer.metrics.reporting.tests.MetricsServletTest\":" +
+                              "{\"counter\":{\"type\":\"counter\",\"count\":12}}}"));
+    }
+
+    @Test
+    public void doesNotCompressTheResponseIfTheClientRefusesGzip() throws Exception {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=0, identity");
+
+        servlet.service(request, response);
+
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        assertThat(json.toString(),
+                   is("{}"));
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString("UTF-8");
+    }
+
     // TODO: 1/19/12 <coda> -- test class prefix
     // TODO: 1/19/12 <coda> -- test pretty printing
     // TODO: 1/19/12 <coda> -- test full sample dumping
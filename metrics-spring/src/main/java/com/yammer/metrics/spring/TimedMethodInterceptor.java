@@ -43,13 +43,14 @@ public class TimedMethodInterceptor implements MethodInterceptor, MethodCallback
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
         final Timer timer = timers.get(invocation.getMethod().getName());
-        final TimerContext timerCtx = timer != null ? timer.time() : null;
+        if (timer == null) {
+            return invocation.proceed();
+        }
+        final long startTime = timer.start();
         try {
             return invocation.proceed();
         } finally {
-            if (timerCtx != null) {
-                timerCtx.stop();
-            }
+            timer.stop(startTime);
         }
     }
 
@@ -62,7 +63,8 @@ public class TimedMethodInterceptor implements MethodInterceptor, MethodCallback
         final String name = MetricName.chooseName(timed.name(), method);
         final MetricName metricName = new MetricName(group, type, name, scope);
 
-        final Timer timer = metrics.newTimer(metricName, timed.durationUnit(), timed.rateUnit());
+        final Timer timer = metrics.newTimer(metricName, timed.durationUnit(), timed.rateUnit(),
+                                             timed.sampleRate());
         timers.put(method.getName(), timer);
 
         if (log.isDebugEnabled()) {